@@ -0,0 +1,205 @@
+package dev.bitbite.networking;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Decides whether a {@link Server} admits a newly accepted connection.<br>
+ * Connections can be limited in total, per source address and by the rate they are accepted at.
+ * Furthermore new connections are shed while the server shows signs of overload, that is while the
+ * writes pending on all connections or the average time spent handling a received message exceed a limit.
+ * Rejected connections are closed before any resources are allocated for them and counted by {@link Rejection}.<br>
+ * A limit of 0 disables the respective check.
+ *
+ * @see Server#setAdmissionPolicy(AdmissionPolicy)
+ */
+public class AdmissionPolicy {
+
+	/**
+	 * The reasons a connection can be rejected for
+	 */
+	public enum Rejection {
+		MAX_CONNECTIONS,
+		MAX_CONNECTIONS_PER_ADDRESS,
+		ACCEPT_RATE,
+		PENDING_WRITES,
+		HANDLER_LATENCY
+	}
+
+	/**
+	 * The maximum amount of connections
+	 */
+	@Getter @Setter private int maxConnections = 0;
+	/**
+	 * The maximum amount of connections from a single source address
+	 */
+	@Getter @Setter private int maxConnectionsPerAddress = 0;
+	/**
+	 * The maximum amount of connections accepted per second. Up to a second's worth may be accepted in a burst
+	 */
+	@Getter @Setter private int maxAcceptRate = 0;
+	/**
+	 * The maximum amount of writes pending on all connections together
+	 */
+	@Getter @Setter private int maxPendingWrites = 0;
+	/**
+	 * The maximum average time in milliseconds spent handling a received message
+	 */
+	@Getter @Setter private long maxHandlerLatency = 0;
+
+	private static final long HANDLER_LATENCY_VALIDITY = 1_000_000_000L;
+
+	private final LongAdder[] rejected;
+	private double acceptTokens;
+	private long lastRefill;
+	private volatile long handlerLatency;
+	private volatile long lastHandlerSample;
+
+	/**
+	 * Creates an AdmissionPolicy without any limits
+	 */
+	public AdmissionPolicy() {
+		this.rejected = new LongAdder[Rejection.values().length];
+		for(int i = 0; i < this.rejected.length; i++) {
+			this.rejected[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Creates an AdmissionPolicy
+	 * @param maxConnections maximum amount of connections
+	 * @param maxConnectionsPerAddress maximum amount of connections from a single source address
+	 * @param maxAcceptRate maximum amount of connections accepted per second
+	 */
+	public AdmissionPolicy(int maxConnections, int maxConnectionsPerAddress, int maxAcceptRate) {
+		this();
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+		this.maxAcceptRate = maxAcceptRate;
+	}
+
+	/**
+	 * Decides whether a newly accepted connection is admitted. Cheap checks are made first,
+	 * so a flood of connections is rejected without looking at the existing ones.
+	 * If the connection is admitted, it has been reserved with the clientManager,
+	 * which counts it towards the connections of the server and from its source address.
+	 * @param clientManager managing the existing connections
+	 * @param address the source address of the connection, null if the transport has none
+	 * @return null if the connection is admitted, otherwise the reason for its rejection
+	 */
+	public Rejection admit(ClientManager clientManager, InetAddress address) {
+		Rejection rejection = check(clientManager, address);
+		if(rejection != null) {
+			this.rejected[rejection.ordinal()].increment();
+		}
+		return rejection;
+	}
+
+	/**
+	 * Checks the limits in the order of their cost. The connection is reserved atomically with checking the limits
+	 * on the amount of connections, and released again if a later limit is exceeded.
+	 * @param clientManager managing the existing connections
+	 * @param address the source address of the connection, may be null
+	 * @return null if all limits are met, otherwise the first one exceeded
+	 */
+	private Rejection check(ClientManager clientManager, InetAddress address) {
+		if(this.maxHandlerLatency > 0 && this.handlerLatency > this.maxHandlerLatency * 1_000_000
+				&& System.nanoTime() - this.lastHandlerSample < HANDLER_LATENCY_VALIDITY) {
+			return Rejection.HANDLER_LATENCY;
+		}
+		Rejection rejection = clientManager.reserveConnection(address, this.maxConnections, this.maxConnectionsPerAddress);
+		if(rejection != null) {
+			return rejection;
+		}
+		rejection = checkLoad(clientManager);
+		if(rejection != null) {
+			clientManager.releaseConnection(address);
+		}
+		return rejection;
+	}
+
+	/**
+	 * Checks the limits on the load of the server and the rate connections are accepted at
+	 * @param clientManager managing the existing connections
+	 * @return null if all limits are met, otherwise the first one exceeded
+	 */
+	private Rejection checkLoad(ClientManager clientManager) {
+		if(this.maxPendingWrites > 0) {
+			int pendingWrites = 0;
+			for(CommunicationHandler ch : clientManager.getCommunicationHandler()) {
+				pendingWrites += ch.getIOHandler().getPendingWrites();
+			}
+			if(pendingWrites >= this.maxPendingWrites) {
+				return Rejection.PENDING_WRITES;
+			}
+		}
+		if(this.maxAcceptRate > 0 && !takeAcceptToken()) {
+			return Rejection.ACCEPT_RATE;
+		}
+		return null;
+	}
+
+	/**
+	 * Takes a token from the bucket refilled at the maximum accept rate, which starts out full
+	 * @return true if a token was available
+	 */
+	private synchronized boolean takeAcceptToken() {
+		long now = System.nanoTime();
+		if(this.lastRefill == 0) {
+			this.acceptTokens = this.maxAcceptRate;
+		} else {
+			this.acceptTokens = Math.min(this.maxAcceptRate, this.acceptTokens + (now - this.lastRefill) * this.maxAcceptRate / 1e9);
+		}
+		this.lastRefill = now;
+		if(this.acceptTokens < 1) {
+			return false;
+		}
+		this.acceptTokens--;
+		return true;
+	}
+
+	/**
+	 * Records the time spent handling a received message. The average is an exponentially weighted
+	 * moving average which is updated without synchronization, so concurrent samples may get lost.
+	 * Once no sample has been recorded for a second, the average no longer causes rejections.
+	 * @param nanos the time spent in nanoseconds
+	 */
+	public void recordHandlerLatency(long nanos) {
+		long average = this.handlerLatency;
+		this.handlerLatency = average + ((nanos - average) >> 3);
+		this.lastHandlerSample = System.nanoTime();
+	}
+
+	/**
+	 * Returns the average time spent handling a received message
+	 * @return the average time in nanoseconds
+	 */
+	public long getHandlerLatency() {
+		return this.handlerLatency;
+	}
+
+	/**
+	 * Returns the amount of connections rejected for the given reason
+	 * @param reason of the rejections
+	 * @return the amount of connections rejected for the reason
+	 */
+	public long getRejectedConnections(Rejection reason) {
+		return this.rejected[reason.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the amount of connections rejected for any reason
+	 * @return the amount of rejected connections
+	 */
+	public long getRejectedConnections() {
+		long sum = 0;
+		for(LongAdder adder : this.rejected) {
+			sum += adder.sum();
+		}
+		return sum;
+	}
+
+}
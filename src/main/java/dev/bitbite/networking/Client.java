@@ -1,12 +1,29 @@
 package dev.bitbite.networking;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import dev.bitbite.networking.exceptions.RequestFailedException;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -19,12 +36,16 @@ import lombok.Setter;
  * Incoming data from the server will be preprocessed by {@link #preprocessReceivedData(byte[])}
  * and then forwarded to {@link #processReceivedData(byte[])}.<br>
  * Data to the server can be sent using the clients {@link IOHandler}.<br>
- * Some events trigger the notification of registered {@link ClientListener}s. 
+ * Some events trigger the notification of registered {@link ClientListener}s.<br>
+ * If a {@link ReconnectPolicy} is set, a lost connection is re-established automatically
+ * instead of closing the client.<br>
+ * Typed messages are encoded and decoded by the codecs of its {@link MessageCodecRegistry}.
  * 
  * @see IOHandler
  * @see ClientListener
+ * @see ReconnectPolicy
  */
-public abstract class Client {
+public abstract class Client implements Connection {
 
 	/**
 	 * An indicator whether the connection is closed
@@ -46,10 +67,93 @@ public abstract class Client {
 	 * The IOHandler used for the connection
 	 */
 	@Getter private IOHandler iOHandler;
+	/**
+	 * The RequestHandler used for request/response messaging on the connection
+	 */
+	private RequestHandler requestHandler;
+	/**
+	 * The StreamMultiplexer used for logical streams on the connection
+	 */
+	private StreamMultiplexer streamMultiplexer;
+	/**
+	 * The TopicHandler used for publish/subscribe messaging on the connection
+	 */
+	private TopicHandler topicHandler;
+	/**
+	 * The topic patterns the client is subscribed to, renewed on every connect
+	 */
+	private final Set<String> subscriptions;
+	/**
+	 * The JournalReceiver tracking the journaled messages received from the server, kept across connections
+	 */
+	private final JournalReceiver journalReceiver;
+	/**
+	 * An indicator whether the messages journaled by the server while the client was away are replayed after reconnecting
+	 */
+	@Getter @Setter private boolean replayOnReconnect = false;
+	/**
+	 * The default time in milliseconds to wait for the response to a request
+	 */
+	@Getter @Setter private long requestTimeout = 30_000;
+	/**
+	 * An indicator whether messages exceeding the maximum message size are passed to
+	 * {@link #processReceivedChunk(byte[], long, boolean, boolean)} instead of being discarded
+	 */
+	@Getter @Setter private boolean streamingReceiveEnabled = false;
+	/**
+	 * The directory messages exceeding the maximum message size and bulk messages are spooled to.
+	 * If set, such messages are written to files by a {@link SpoolFileReceiver} and passed to {@link #processReceivedFile(Path)}
+	 * instead of {@link #processReceivedChunk(byte[], long, boolean, boolean)}
+	 */
+	@Getter @Setter private Path spoolDirectory;
+	/**
+	 * The path of the Unix domain socket to connect to instead of the host and port.
+	 * Connections to a server on the same host then skip the TCP stack.
+	 */
+	@Getter @Setter private Path unixDomainSocketPath;
+	/**
+	 * The name of the local server in the same JVM to connect to instead of the host and port.
+	 * Messages are then passed to the server without copying them or going through the kernel.
+	 */
+	@Getter @Setter private String localName;
+	/**
+	 * The directory served by a shared memory server on the same host to connect to instead of the host and port.
+	 * Messages are then exchanged through ring buffers in a memory-mapped file, see {@link SharedMemorySocket}.
+	 */
+	@Getter @Setter private Path sharedMemoryDirectory;
+	/**
+	 * The {@link TrafficShaper} limiting the traffic of the connection, null means unlimited.
+	 * It is kept across reconnects.
+	 */
+	@Getter @Setter private TrafficShaper trafficShaper;
+	/**
+	 * The {@link TrafficCapture} recording the frames of the connection, null disables capturing.
+	 * It is kept across reconnects, every connection is captured as a connection of its own.
+	 */
+	@Getter @Setter private TrafficCapture trafficCapture;
+	/**
+	 * The {@link ClientEventLoopGroup} multiplexing the connection instead of threads of its own, null to use threads.
+	 * Changes apply to the next connection.
+	 */
+	@Getter @Setter private ClientEventLoopGroup eventLoopGroup;
+	/**
+	 * The framing, buffer sizes, socket options, flush policy and timeouts of the connection.
+	 * Null uses a {@link TransportConfig#TransportConfig() default config} created when connecting.
+	 * Changes apply to the next connection.
+	 */
+	@Setter private TransportConfig transportConfig;
+	/**
+	 * The registration of the current connection at the event loop group, null if it is served by threads
+	 */
+	private ClientEventLoopGroup.Registration registration;
 	/**
 	 * The DataPreProcessor used for the connection
 	 */
 	@Getter private DataPreProcessor dataPreProcessor;
+	/**
+	 * The codecs and handlers of typed messages
+	 */
+	@Getter private final MessageCodecRegistry messageCodecs;
 	/**
 	 * The DisconnectedServerDetector used for the connection
 	 */
@@ -70,6 +174,30 @@ public abstract class Client {
 	 * The listeners that are registered to the IOHandler
 	 */
 	private ArrayList<IOHandlerListener> ioListeners;
+	/**
+	 * The time in milliseconds to wait for a connection attempt before the next address is attempted in parallel
+	 */
+	@Getter @Setter private int connectionAttemptDelay = 250;
+	/**
+	 * Further endpoints of the server, raced against the addresses of the host when connecting
+	 */
+	private final List<InetSocketAddress> alternateEndpoints;
+	/**
+	 * The policy used to reconnect after the connection has been lost, null disables reconnecting
+	 */
+	@Getter @Setter private ReconnectPolicy reconnectPolicy;
+	/**
+	 * An indicator whether {@link #close()} has been called
+	 */
+	private volatile boolean closeRequested = false;
+	/**
+	 * An indicator whether the client is currently trying to re-establish the connection
+	 */
+	private volatile boolean reconnecting = false;
+	/**
+	 * Holds data that has been sent while reconnecting
+	 */
+	private final ArrayDeque<byte[]> outageBuffer = new ArrayDeque<byte[]>();
 
 	/**
 	 * An indicator whether the client should print stacktraces of exceptions
@@ -87,7 +215,10 @@ public abstract class Client {
 		CONNECTION_FAILED,
 		CLOSE,
 		CLOSE_FAILED,
-		CLOSE_SUCCESS
+		CLOSE_SUCCESS,
+		RECONNECT,
+		RECONNECT_FAILED,
+		OUTAGE_BUFFER_OVERFLOW
 	}
 	
 	/**
@@ -102,6 +233,10 @@ public abstract class Client {
 		this.listeners = new ArrayList<ClientListener>();
 		this.ioListeners = new ArrayList<IOHandlerListener>();
 		this.dataPreProcessor = new DataPreProcessor();
+		this.messageCodecs = new MessageCodecRegistry();
+		this.subscriptions = new LinkedHashSet<String>();
+		this.alternateEndpoints = new CopyOnWriteArrayList<InetSocketAddress>();
+		this.journalReceiver = new JournalReceiver();
 		this.ioListeners.add(new ClientCloseListener(this));
 		this.disconnectedServerDetector = new DisconnectedServerDetector(this);
 		this.disconnectedServerDetector.setName("Disconnected Server Detector");
@@ -124,25 +259,62 @@ public abstract class Client {
 	 * @return true if the connection process as been completed successfully
 	 */
 	public boolean connect() {
+		this.closeRequested = false;
 		try {
 			this.notifyListeners(EventType.CONNECTION);
+			TransportConfig transportConfig = this.getTransportConfig();
 			this.openSocket();
-			this.iOHandler = new IOHandler(this.socket.getInputStream(), this.socket.getOutputStream(), this::preprocessReceivedData);
+			this.registration = null;
+			if(this.socket instanceof LocalSocket localSocket) {
+				this.iOHandler = new LocalIOHandler(localSocket, transportConfig, this::preprocessReceivedData);
+			} else if(this.eventLoopGroup != null && this.socket.getChannel() != null) {
+				this.registration = this.eventLoopGroup.register(this.socket.getChannel());
+				this.iOHandler = new IOHandler(InputStream.nullInputStream(), this.registration, this.registration, transportConfig, this::preprocessReceivedData);
+			} else {
+				this.iOHandler = new IOHandler(this.socket.getInputStream(), this.socket.getOutputStream(), this.socket.getChannel(), transportConfig, this::preprocessReceivedData);
+			}
 			this.ioListeners.forEach(l -> this.iOHandler.registerListener(l));
+			if(this.trafficShaper != null) {
+				this.iOHandler.addTrafficShaper(this.trafficShaper);
+			}
+			if(this.trafficCapture != null) {
+				this.iOHandler.setTrafficCapture(this.trafficCapture);
+			}
+			this.requestHandler = new RequestHandler(this.iOHandler, this.dataPreProcessor, this::processRequest);
+			this.streamMultiplexer = new StreamMultiplexer(this.iOHandler, this.dataPreProcessor, this::processStreamData, true);
+			this.messageCodecs.attach(this, this.iOHandler, this.dataPreProcessor);
+			this.journalReceiver.attach(this.iOHandler);
+			synchronized(this.subscriptions) {
+				this.topicHandler = new TopicHandler(this.iOHandler, this.dataPreProcessor, null, null, this::processPublication);
+				this.subscriptions.forEach(this.topicHandler::subscribe);
+			}
+			if(this.spoolDirectory != null) {
+				this.iOHandler.setMessageChunkReceiver(new SpoolFileReceiver(this.spoolDirectory, this::processReceivedFile));
+			} else if(this.streamingReceiveEnabled) {
+				this.iOHandler.setMessageChunkReceiver(this::processReceivedChunk);
+			}
 			if(this.socket.isConnected()) {
 				this.notifyListeners(EventType.CONNECTION_SUCCESS);
 				this.socket.setKeepAlive(this.keepAlive);
 			}
 			if(this.readThread != null) {
 				this.readThread.interrupt();
+				this.readThread = null;
 			}
-			this.readThread = Thread.ofVirtual().name("read-thread").start(()->{
-				while(!Thread.interrupted()) {
-					this.iOHandler.read();
-				}
-				Thread.currentThread().interrupt();
-			});
-			this.disconnectedServerDetector.start();
+			if(this.registration != null) {
+				this.registration.start(this.iOHandler);
+			} else {
+				IOHandler handler = this.iOHandler;
+				this.readThread = Thread.ofVirtual().name("read-thread").start(()->{
+					while(!Thread.interrupted() && !handler.isClosed()) {
+						handler.readBlocking();
+					}
+					Thread.currentThread().interrupt();
+				});
+				this.disconnectedServerDetector.setMaxReadThreshold(TimeUnit.MILLISECONDS.toNanos(transportConfig.getIdleTimeout()));
+				this.startDisconnectedServerDetector();
+			}
+			this.closed = false;
 		} catch (Exception e) {
 			this.notifyListeners(EventType.CONNECTION_FAILED, e);
 			return false;
@@ -153,29 +325,266 @@ public abstract class Client {
 	/**
 	 * Opens the Socket connection.
 	 * Moved to a different function to make it easier to replace the Socket implementation.
+	 * The socket is backed by a {@link SocketChannel}, which allows files to be sent without copying them to the heap.
+	 * If a Unix domain socket path is set, a {@link UnixDomainSocket} connected to it is opened instead.
+	 * If a local name is set, a {@link LocalSocket} connected to the local server with that name is opened instead.
+	 * If a shared memory directory is set, a {@link SharedMemorySocket} connected to the server serving it is opened instead.
 	 * @throws UnknownHostException if the specified Host is unknown
 	 * @throws IOException when the process of opening the Socket fails.
 	 */
 	protected void openSocket() throws UnknownHostException, IOException {
-		this.socket = new Socket(this.HOST, this.PORT);
+		if(this.localName != null) {
+			this.socket = LocalSocket.connect(this.localName);
+			return;
+		}
+		if(this.unixDomainSocketPath != null) {
+			this.socket = UnixDomainSocket.connect(this.unixDomainSocketPath);
+			return;
+		}
+		if(this.sharedMemoryDirectory != null) {
+			this.socket = SharedMemorySocket.connect(this.sharedMemoryDirectory, this.getTransportConfig());
+			return;
+		}
+		this.socket = this.connectSocket(() -> SocketChannel.open().socket());
+	}
+	
+	/**
+	 * Connects a socket to the first reachable address of the host or the alternate endpoints.<br>
+	 * All addresses the host resolves to are attempted, alternating between IPv6 and IPv4, followed by the
+	 * addresses of the alternate endpoints. The attempts are raced: each is started once the previous one failed
+	 * or the connection attempt delay elapsed without a result, the first connected socket wins and the other
+	 * attempts are cancelled. Each attempt gives up after the connect timeout.
+	 * The socket options of the {@link TransportConfig} are applied to every socket before it connects.
+	 * @param factory creating an unconnected socket per attempt
+	 * @return the connected socket
+	 * @throws UnknownHostException if neither the host nor an alternate endpoint could be resolved
+	 * @throws IOException if no attempt succeeded
+	 * 
+	 * @see #addAlternateEndpoint(String, int)
+	 * @see #setConnectionAttemptDelay(int)
+	 */
+	protected Socket connectSocket(Callable<Socket> factory) throws UnknownHostException, IOException {
+		List<InetSocketAddress> endpoints = new ArrayList<InetSocketAddress>();
+		endpoints.add(InetSocketAddress.createUnresolved(this.HOST, this.PORT));
+		endpoints.addAll(this.alternateEndpoints);
+		TransportConfig transportConfig = this.getTransportConfig();
+		return ConnectRacer.connect(ConnectRacer.resolve(endpoints), () -> transportConfig.configure(factory.call()), 
+									this.connectionAttemptDelay, transportConfig.getConnectTimeout());
+	}
+	
+	/**
+	 * Returns the transport settings of the connection
+	 * @return the config set, or a default config if none has been set
+	 */
+	public TransportConfig getTransportConfig() {
+		return this.transportConfig != null ? this.transportConfig : new TransportConfig();
+	}
+	
+	/**
+	 * Returns the timeout for establishing the connection of the {@link TransportConfig}
+	 * @return the timeout in milliseconds, 0 means no timeout
+	 */
+	public int getConnectTimeout() {
+		return this.getTransportConfig().getConnectTimeout();
+	}
+	
+	/**
+	 * Sets the timeout for establishing the connection by replacing the {@link TransportConfig} with a copy using it.
+	 * When several addresses are raced, it applies to each attempt.
+	 * @param connectTimeout in milliseconds, 0 means no timeout
+	 * 
+	 * @see TransportConfig#withConnectTimeout(int)
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.transportConfig = this.getTransportConfig().withConnectTimeout(connectTimeout);
+	}
+	
+	/**
+	 * Adds an endpoint of the server that is raced against the host when connecting,
+	 * for example a replica in another network
+	 * @param host of the endpoint
+	 * @param port of the endpoint
+	 */
+	public void addAlternateEndpoint(String host, int port) {
+		this.alternateEndpoints.add(InetSocketAddress.createUnresolved(host, port));
+	}
+	
+	/**
+	 * Removes an alternate endpoint
+	 * @param host of the endpoint
+	 * @param port of the endpoint
+	 * @return true if the endpoint had been added
+	 */
+	public boolean removeAlternateEndpoint(String host, int port) {
+		return this.alternateEndpoints.remove(InetSocketAddress.createUnresolved(host, port));
+	}
+	
+	/**
+	 * Returns the alternate endpoints raced against the host when connecting
+	 * @return the alternate endpoints, unresolved
+	 */
+	public List<InetSocketAddress> getAlternateEndpoints() {
+		return Collections.unmodifiableList(this.alternateEndpoints);
+	}
+	
+	/**
+	 * Starts the {@link DisconnectedServerDetector}. Since a thread can only be started once,
+	 * a new detector with the same threshold replaces the previous one if that has already been started.
+	 */
+	private void startDisconnectedServerDetector() {
+		if(this.disconnectedServerDetector.getState() != Thread.State.NEW) {
+			DisconnectedServerDetector previous = this.disconnectedServerDetector;
+			previous.interrupt();
+			this.disconnectedServerDetector = new DisconnectedServerDetector(this);
+			this.disconnectedServerDetector.setName(previous.getName());
+			this.disconnectedServerDetector.setMaxReadThreshold(previous.getMAX_READ_THRESHOLD());
+		}
+		this.disconnectedServerDetector.start();
+	}
+	
+	/**
+	 * Gets called once the IOHandler has been closed.
+	 * Closes the client, or starts reconnecting if a {@link ReconnectPolicy} is set
+	 * and the connection has not been closed on purpose.
+	 */
+	protected void onConnectionLost() {
+		if(this.requestHandler != null) {
+			this.requestHandler.close();
+			this.streamMultiplexer.close();
+		}
+		if(this.closeRequested || this.reconnectPolicy == null) {
+			this.close();
+			return;
+		}
+		synchronized(this.outageBuffer) {
+			if(this.reconnecting) {
+				return;
+			}
+			this.reconnecting = true;
+		}
+		Thread.ofVirtual().name("reconnect-thread").start(this::reconnect);
+	}
+	
+	/**
+	 * Tries to re-establish the connection as described by the {@link ReconnectPolicy}.
+	 * Once connected, data sent in the meantime is written to the server.
+	 * If the policy does not allow any further attempts the client is closed.
+	 */
+	private void reconnect() {
+		ReconnectPolicy policy = this.reconnectPolicy;
+		this.releaseConnection();
+		for(int attempt = 0; policy != null && policy.allowsAttempt(attempt); attempt++) {
+			long delay = policy.computeDelay(attempt);
+			this.notifyListeners(EventType.RECONNECT, attempt + 1, delay);
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if(this.closeRequested) {
+				break;
+			}
+			if(this.connect()) {
+				if(this.replayOnReconnect && this.journalReceiver.getLastSequence() >= 0) {
+					this.requestReplay(this.journalReceiver.getLastSequence() + 1);
+				}
+				this.flushOutageBuffer();
+				return;
+			}
+		}
+		synchronized(this.outageBuffer) {
+			this.outageBuffer.clear();
+			this.reconnecting = false;
+		}
+		if(!this.closeRequested) {
+			this.notifyListeners(EventType.RECONNECT_FAILED);
+			this.close();
+		}
+	}
+	
+	/**
+	 * Stops the threads and closes the socket of the current connection without closing the client
+	 */
+	private void releaseConnection() {
+		if(this.readThread != null) {
+			this.readThread.interrupt();
+		}
+		this.disconnectedServerDetector.interrupt();
+		try {
+			if(this.socket != null) {
+				this.socket.close();
+			}
+		} catch (IOException e) {
+			if(Client.VERBOSE) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the data that has been held back while reconnecting
+	 */
+	private void flushOutageBuffer() {
+		synchronized(this.outageBuffer) {
+			byte[] data;
+			while((data = this.outageBuffer.poll()) != null) {
+				this.iOHandler.write(data);
+			}
+			this.reconnecting = false;
+		}
+	}
+	
+	/**
+	 * Holds back already processed data while the client is reconnecting
+	 * @param data to hold back
+	 * @return true if the client is reconnecting and the data has been taken care of
+	 */
+	private boolean bufferWhileReconnecting(byte[] data) {
+		if(!this.reconnecting) {
+			return false;
+		}
+		synchronized(this.outageBuffer) {
+			if(!this.reconnecting) {
+				return false;
+			}
+			ReconnectPolicy policy = this.reconnectPolicy;
+			if(policy != null && this.outageBuffer.size() < policy.getBufferCapacity()) {
+				this.outageBuffer.add(data);
+			} else {
+				this.notifyListeners(EventType.OUTAGE_BUFFER_OVERFLOW, data);
+			}
+			return true;
+		}
 	}
 	
 	/**
 	 * Closes the connection.<br>
 	 * Listeners will be called before the disconnection process is started
 	 * and when it succeeded or failed.<br>
-	 * It will also call the close method of the client objects IOHandler
+	 * It will also call the close method of the client objects IOHandler.
+	 * Closing a client that never connected stops it from reconnecting.
 	 * 
 	 * @return true if the connection has been closed successfully
 	 * 
 	 * @see IOHandler#close()
 	 */
 	public boolean close() {
+		this.closeRequested = true;
 		try {
 			this.notifyListeners(EventType.CLOSE);
-			this.readThread.interrupt();
-			this.iOHandler.close();
-			this.socket.close();
+			if(this.requestHandler != null) {
+				this.requestHandler.close();
+				this.streamMultiplexer.close();
+			}
+			if(this.readThread != null) {
+				this.readThread.interrupt();
+			}
+			if(this.iOHandler != null) {
+				this.iOHandler.close();
+			}
+			if(this.socket != null) {
+				this.socket.close();
+			}
 			this.disconnectedServerDetector.interrupt();
 		} catch(Exception e) {
 			this.notifyListeners(EventType.CLOSE_FAILED, e);
@@ -187,14 +596,306 @@ public abstract class Client {
 	}
 	
 	/**
-	 * Sends data to the Server
+	 * Sends data to the Server.
+	 * While the client is reconnecting the data is held back and sent once the connection is re-established.
 	 * @param data to send
 	 */
 	public void send(byte[] data) {
 		data = dataPreProcessor.process(TransferMode.OUT, data);
+		if(this.bufferWhileReconnecting(data)) {
+			return;
+		}
 		this.iOHandler.write(data);
 	}
 	
+	/**
+	 * Sends data to the Server with the given priority, so it overtakes queued data of lower priorities.
+	 * While the client is reconnecting the data is held back and sent in order once the connection is re-established.
+	 * @param data to send
+	 * @param priority of the data
+	 * 
+	 * @see Priority
+	 */
+	public void send(byte[] data, Priority priority) {
+		data = dataPreProcessor.process(TransferMode.OUT, data);
+		if(this.bufferWhileReconnecting(data)) {
+			return;
+		}
+		this.iOHandler.write(data, priority);
+	}
+	
+	/**
+	 * Sends a typed message to the server, encoded by the codec registered for its class.
+	 * Unlike other data, typed messages are not held back while the client is reconnecting, but rejected.
+	 * @param message to send
+	 * 
+	 * @throws IllegalArgumentException if no codec is registered for the class of the message
+	 * @throws IllegalStateException if the client has never been connected or is reconnecting
+	 * @see MessageCodecRegistry
+	 */
+	@Override
+	public void sendMessage(Object message) {
+		if(this.iOHandler == null) {
+			throw new IllegalStateException("Not connected");
+		}
+		if(this.reconnecting) {
+			throw new IllegalStateException("Reconnecting");
+		}
+		this.messageCodecs.write(this.iOHandler, this.dataPreProcessor, message);
+	}
+	
+	/**
+	 * Returns the address of the server
+	 * @return the address of the server, or the host and port if not connected
+	 */
+	@Override
+	public String getRemoteAddress() {
+		if(this.socket != null && this.socket.getRemoteSocketAddress() != null) {
+			return this.socket.getRemoteSocketAddress().toString();
+		}
+		return this.HOST+":"+this.PORT;
+	}
+	
+	/**
+	 * Sends a whole file to the server as a single message.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param path of the file to send
+	 * @throws IOException if the file could not be read or sent
+	 * @throws IllegalStateException if delimited framing is used
+	 * 
+	 * @see #sendFile(FileChannel, long, long)
+	 */
+	public void sendFile(Path path) throws IOException {
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			sendFile(file, 0, file.size());
+		}
+	}
+	
+	/**
+	 * Sends a region of a file to the server as a single message.<br>
+	 * If no outgoing {@link DataProcessingLayer} is registered, the content is transferred to the socket
+	 * by the operating system without being copied to the heap. Otherwise the region is read into memory
+	 * and sent like regular data.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param file to send the content of
+	 * @param position of the first byte to send
+	 * @param length of the content to send
+	 * @throws IOException if the file could not be read or sent, or the client is not connected
+	 * @throws IllegalStateException if delimited framing is used
+	 * 
+	 * @see IOHandler#writeFile(FileChannel, long, long)
+	 */
+	public void sendFile(FileChannel file, long position, long length) throws IOException {
+		if(this.iOHandler == null || this.reconnecting) {
+			throw new IOException("Not connected");
+		}
+		if(this.iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Files require length-prefixed framing");
+		}
+		if(!this.dataPreProcessor.getLayers(TransferMode.OUT).isEmpty()) {
+			this.send(IOHandler.readFileRegion(file, position, length));
+			return;
+		}
+		this.iOHandler.writeFile(file, position, length);
+	}
+	
+	/**
+	 * Sends a request to the server and waits at most {@link #getRequestTimeout()} milliseconds for the response.
+	 * Any number of requests may be pending at the same time.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param data to send
+	 * @return a future of the response
+	 * 
+	 * @see RequestHandler#request(byte[], long, TimeUnit)
+	 */
+	public CompletableFuture<byte[]> request(byte[] data) {
+		return request(data, this.requestTimeout, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Sends a request to the server.
+	 * Any number of requests may be pending at the same time.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param data to send
+	 * @param timeout the time to wait for the response
+	 * @param unit of the timeout
+	 * @return a future of the response
+	 * 
+	 * @see RequestHandler#request(byte[], long, TimeUnit)
+	 */
+	public CompletableFuture<byte[]> request(byte[] data, long timeout, TimeUnit unit) {
+		if(this.requestHandler == null || !this.isConnected()) {
+			return CompletableFuture.failedFuture(new RequestFailedException("Not connected"));
+		}
+		return this.requestHandler.request(data, timeout, unit);
+	}
+	
+	/**
+	 * This function will be called once the client receives a request from the server.
+	 * Its return value is sent back as the response. Requests are processed on separate
+	 * virtual threads, so this function may be called concurrently.<br>
+	 * By default requests are rejected.
+	 * 
+	 * @param data of the request
+	 * @return the response
+	 * @throws RequestFailedException if the request can not be processed, its message is sent back to the server
+	 */
+	protected byte[] processRequest(byte[] data) throws RequestFailedException {
+		throw new RequestFailedException("Client does not accept requests");
+	}
+	
+	/**
+	 * Opens a logical stream to the server, multiplexed over the existing connection.
+	 * Data written to the stream is sent in chunks, interleaved with other streams and messages.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @return the stream
+	 * 
+	 * @see StreamMultiplexer
+	 */
+	public MultiplexedStream openStream() {
+		return this.streamMultiplexer.openStream();
+	}
+	
+	/**
+	 * Subscribes to the topics matching a pattern. Publications to them are passed to {@link #processPublication(String, byte[])}.
+	 * The subscription is kept across reconnects and sent to the server on every connect.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param pattern of the topics, see {@link TopicTrie} for the syntax
+	 * 
+	 * @throws IllegalArgumentException if the pattern is malformed
+	 * @see TopicHandler
+	 */
+	public void subscribe(String pattern) {
+		TopicTrie.split(pattern, true);
+		synchronized(this.subscriptions) {
+			if(this.subscriptions.add(pattern) && this.topicHandler != null && !this.iOHandler.isClosed()) {
+				this.topicHandler.subscribe(pattern);
+			}
+		}
+	}
+	
+	/**
+	 * Unsubscribes from a pattern the client subscribed to
+	 * @param pattern to unsubscribe from
+	 */
+	public void unsubscribe(String pattern) {
+		synchronized(this.subscriptions) {
+			if(this.subscriptions.remove(pattern) && this.topicHandler != null && !this.iOHandler.isClosed()) {
+				this.topicHandler.unsubscribe(pattern);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the topic patterns the client is subscribed to
+	 * @return a copy of the patterns
+	 */
+	public Set<String> getSubscriptions() {
+		synchronized(this.subscriptions) {
+			return new LinkedHashSet<String>(this.subscriptions);
+		}
+	}
+	
+	/**
+	 * Publishes data to a topic. The server relays it to the clients subscribed to the topic.
+	 * Unlike other data, publications are not held back while the client is reconnecting, but rejected.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param topic to publish to, must not contain wildcards
+	 * @param data to publish
+	 * 
+	 * @throws IllegalArgumentException if the topic is malformed
+	 * @throws IllegalStateException if the client has never been connected or is reconnecting
+	 * @see Server#processPublication(String, String, byte[])
+	 */
+	public void publish(String topic, byte[] data) {
+		if(this.topicHandler == null) {
+			throw new IllegalStateException("Not connected");
+		}
+		if(this.reconnecting) {
+			throw new IllegalStateException("Reconnecting");
+		}
+		this.topicHandler.publish(topic, data);
+	}
+	
+	/**
+	 * Asks the server to replay the messages it journaled starting with a sequence number.
+	 * Messages received in the meantime are held back until the replay has ended, and messages that have been
+	 * received before are skipped, so every message is passed on once and in order.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param fromSequence the sequence number of the first message to replay
+	 * 
+	 * @throws IllegalStateException if the client has never been connected
+	 * @see MessageJournal
+	 * @see #setReplayOnReconnect(boolean)
+	 */
+	public void requestReplay(long fromSequence) {
+		this.journalReceiver.requestReplay(fromSequence);
+	}
+	
+	/**
+	 * Returns the sequence number of the last journaled message received from the server
+	 * @return the last sequence number, -1 if no journaled message has been received
+	 */
+	public long getLastSequence() {
+		return this.journalReceiver.getLastSequence();
+	}
+	
+	/**
+	 * This function will be called once the client receives a publication to a topic it is subscribed to.
+	 * By default the data is passed to {@link #processReceivedData(byte[])}.
+	 * 
+	 * @param topic the data has been published to
+	 * @param data of the publication
+	 */
+	protected void processPublication(String topic, byte[] data) {
+		processReceivedData(data);
+	}
+	
+	/**
+	 * This function will be called for every chunk the client receives on a stream opened by the server.
+	 * By default chunks are dropped.
+	 * 
+	 * @param streamId of the stream the chunk belongs to
+	 * @param data of the chunk
+	 * @param last true if the server closed the stream with this chunk
+	 */
+	protected void processStreamData(int streamId, byte[] data, boolean last) {}
+	
+	/**
+	 * This function will be called for every chunk of a message exceeding the maximum message size,
+	 * if streaming receive is enabled. The chunks are not processed by the {@link DataPreProcessor}.
+	 * By default chunks are dropped.
+	 * 
+	 * @param data of the chunk
+	 * @param messageLength the total length of the message, or -1 if it is unknown
+	 * @param first true if the chunk starts a new message
+	 * @param last true if the chunk ends the message
+	 * 
+	 * @see TransportConfig#getMaxMessageSize()
+	 */
+	protected void processReceivedChunk(byte[] data, long messageLength, boolean first, boolean last) {}
+	
+	/**
+	 * This function will be called for every message exceeding the maximum message size and every
+	 * bulk message, if a spool directory is set. The message has been written to the file without being
+	 * processed by the {@link DataPreProcessor}. The file belongs to the client afterwards, so it should be
+	 * moved or deleted once it is no longer needed. By default the file is deleted.
+	 * 
+	 * @param file containing the message
+	 * 
+	 * @see #setSpoolDirectory(Path)
+	 * @see SpoolFileReceiver
+	 */
+	protected void processReceivedFile(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			if(Client.VERBOSE) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
 	/**
 	 * Preprocesses incomming data by sending it to the {@link DataPreProcessor}.
 	 * The processed data is then forwarded to {@link #processReceivedData(byte[])};
@@ -296,6 +997,25 @@ public abstract class Client {
 			case CLOSE_SUCCESS:
 				this.listeners.forEach(l -> l.onCloseSuccess());
 				break;
+			case RECONNECT:
+				if(args.length < 2) {
+					throw new IllegalArgumentException("Expected objects of type Integer and Long, but got "+args.length+" arguments");
+				} else if(!(args[0] instanceof Integer && args[1] instanceof Long)) {
+					throw new IllegalArgumentException("Expected objects of type Integer and Long, but got "+args[0].getClass().getSimpleName()+" and "+args[1].getClass().getSimpleName());
+				}
+				this.listeners.forEach(l -> l.onReconnect((Integer)args[0], (Long)args[1]));
+				break;
+			case RECONNECT_FAILED:
+				this.listeners.forEach(l -> l.onReconnectFailed());
+				break;
+			case OUTAGE_BUFFER_OVERFLOW:
+				if(args.length == 0) {
+					throw new IllegalArgumentException("Expected object of type byte[], but got nothing");
+				} else if(!(args[0] instanceof byte[])) {
+					throw new IllegalArgumentException("Expected object of type byte[], but got "+args[0].getClass().getSimpleName());
+				}
+				this.listeners.forEach(l -> l.onOutageBufferOverflow((byte[])args[0]));
+				break;
 			default:
 				break;
 		}
@@ -306,7 +1026,7 @@ public abstract class Client {
 	 * @return true if there is an active connection to the server
 	 */
 	public boolean isConnected() {
-		if(this.socket == null || this.socket.isClosed()) {
+		if(this.reconnecting || this.socket == null || this.socket.isClosed()) {
 			return false;
 		}
 		return this.socket.isConnected();
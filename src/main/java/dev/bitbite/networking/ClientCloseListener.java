@@ -4,7 +4,8 @@ import lombok.AllArgsConstructor;
 
 /**
  * This class represents a listener for the close event of a client connection.
- * It will close the client object once the connection is closed.
+ * It will close the client object once the connection is closed,
+ * or let it reconnect if a {@link ReconnectPolicy} is set.
  */
 @AllArgsConstructor
 public class ClientCloseListener extends IOHandlerListener {
@@ -19,11 +20,13 @@ public class ClientCloseListener extends IOHandlerListener {
 	
 	/**
 	 * Called when the client's close operation has completed.
-	 * Closes the client connection.
+	 * Closes the client connection or starts reconnecting.
+	 * 
+	 * @see Client#onConnectionLost()
 	 */
 	@Override
 	public void onCloseEnd() {
-		this.client.close();
+		this.client.onConnectionLost();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,344 @@
+package dev.bitbite.networking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multiplexes the connections of many {@link Client}s over a few selector threads.<br>
+ * A client with a group, see {@link Client#setEventLoopGroup(ClientEventLoopGroup)}, starts neither a read thread
+ * nor a {@link DisconnectedServerDetector}. Its socket is switched to non-blocking mode and assigned to one of the
+ * event loops round-robin. The loop reads whatever arrives and passes it to the {@link IOHandler} of the client,
+ * and notices a closed connection right away, which is what the detector checks for. Each loop also sweeps its
+ * connections once per second, the one shared timer for their liveness. So a client costs its buffers and a few
+ * objects instead of threads.<br>
+ * Received messages are handled on the loop thread, so handlers should hand lengthy work to other threads.
+ * Inbound traffic shaping pauses the whole loop. Writers write from their own threads and only wait for the loop
+ * while the socket buffer is full. Files are copied through a buffer instead of being transferred by the kernel.<br>
+ * Only sockets backed by a {@link SocketChannel} can be multiplexed. Other clients, for example SSL or local ones,
+ * keep using their threads.
+ *
+ * @see Client#setEventLoopGroup(ClientEventLoopGroup)
+ */
+public class ClientEventLoopGroup implements Closeable {
+
+	/**
+	 * The time in milliseconds between two sweeps of the connections of a loop
+	 */
+	private static final long SWEEP_INTERVAL = 1000;
+
+	private final EventLoop[] loops;
+	private final AtomicInteger next;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a group with one loop per processor, at most 4
+	 * @throws IOException if a selector could not be opened
+	 */
+	public ClientEventLoopGroup() throws IOException {
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Creates a group with the given amount of loops
+	 * @param threads the amount of loops, each running on a thread of its own
+	 * @throws IOException if a selector could not be opened
+	 * @throws IllegalArgumentException if the amount of threads is not positive
+	 */
+	public ClientEventLoopGroup(int threads) throws IOException {
+		if(threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required");
+		}
+		this.loops = new EventLoop[threads];
+		this.next = new AtomicInteger();
+		try {
+			for(int i = 0; i < threads; i++) {
+				this.loops[i] = new EventLoop(i + 1);
+			}
+		} catch(IOException e) {
+			this.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the amount of loops
+	 * @return the amount of threads of the group
+	 */
+	public int getThreads() {
+		return this.loops.length;
+	}
+
+	/**
+	 * Returns the amount of connections currently multiplexed by the group
+	 * @return the amount of connections
+	 */
+	public int getConnections() {
+		int connections = 0;
+		for(EventLoop loop : this.loops) {
+			if(loop != null) {
+				connections += loop.selector.keys().size();
+			}
+		}
+		return connections;
+	}
+
+	/**
+	 * Stops the loops. The connections they multiplex are closed, which their clients notice as a lost connection.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		for(EventLoop loop : this.loops) {
+			if(loop != null) {
+				loop.selector.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * Switches a connected channel to non-blocking mode and assigns it to a loop.
+	 * The loop only starts reading once {@link Registration#start(IOHandler)} has been called.
+	 * @param channel the connected channel
+	 * @return the registration providing the streams for the IOHandler
+	 * @throws IOException if the group is closed or the channel could not be switched to non-blocking mode
+	 */
+	Registration register(SocketChannel channel) throws IOException {
+		if(this.closed) {
+			throw new IOException("Event loop group is closed");
+		}
+		channel.configureBlocking(false);
+		return new Registration(this.loops[Math.floorMod(this.next.getAndIncrement(), this.loops.length)], channel);
+	}
+
+	/**
+	 * A selector and the thread serving it
+	 */
+	private final class EventLoop implements Runnable {
+		private final Selector selector;
+		private final Thread thread;
+		private final byte[] readBuffer;
+		private final ByteBuffer readByteBuffer;
+		private Selector writeSelector;
+
+		private EventLoop(int index) throws IOException {
+			this.selector = Selector.open();
+			this.readBuffer = new byte[64 * 1024];
+			this.readByteBuffer = ByteBuffer.wrap(this.readBuffer);
+			this.thread = Thread.ofPlatform().daemon().name("client-event-loop-"+index).start(this);
+		}
+
+		/**
+		 * Selects ready connections and serves them until the group is closed
+		 */
+		@Override
+		public void run() {
+			long lastSweep = System.currentTimeMillis();
+			while(!ClientEventLoopGroup.this.closed) {
+				try {
+					this.selector.select(SWEEP_INTERVAL);
+				} catch(IOException e) {
+					if(Client.isVERBOSE()) {
+						e.printStackTrace();
+					}
+				}
+				for(SelectionKey key : this.selector.selectedKeys()) {
+					Registration registration = (Registration)key.attachment();
+					if(!key.isValid()) {
+						continue;
+					}
+					if(key.isWritable()) {
+						key.interestOpsAnd(~SelectionKey.OP_WRITE);
+						registration.signalWritable();
+					}
+					if(key.isReadable()) {
+						registration.read(this.readBuffer, this.readByteBuffer);
+					}
+				}
+				this.selector.selectedKeys().clear();
+				if(System.currentTimeMillis() - lastSweep >= SWEEP_INTERVAL) {
+					lastSweep = System.currentTimeMillis();
+					this.sweep();
+				}
+			}
+			for(SelectionKey key : new ArrayList<SelectionKey>(this.selector.keys())) {
+				((Registration)key.attachment()).close();
+			}
+			try {
+				this.selector.close();
+				if(this.writeSelector != null) {
+					this.writeSelector.close();
+				}
+			} catch(IOException e) {}
+		}
+
+		/**
+		 * Closes the connections whose channel or IOHandler has been closed without the loop noticing
+		 */
+		private void sweep() {
+			List<Registration> lost = new ArrayList<Registration>();
+			for(SelectionKey key : this.selector.keys()) {
+				Registration registration = (Registration)key.attachment();
+				if(!key.isValid() || !registration.channel.isOpen() || registration.iOHandler.isClosed()) {
+					lost.add(registration);
+				}
+			}
+			lost.forEach(Registration::close);
+		}
+
+		/**
+		 * Waits on the loop thread until a channel is writable, using a selector of its own
+		 * since the loop cannot serve its own selector meanwhile
+		 * @param channel to wait for
+		 * @throws IOException if the channel has been closed or the selector could not be opened
+		 */
+		private void awaitWritable(SocketChannel channel) throws IOException {
+			if(this.writeSelector == null) {
+				this.writeSelector = Selector.open();
+			}
+			SelectionKey key = channel.register(this.writeSelector, SelectionKey.OP_WRITE);
+			try {
+				this.writeSelector.select(SWEEP_INTERVAL);
+			} finally {
+				key.cancel();
+				this.writeSelector.selectNow();
+			}
+		}
+	}
+
+	/**
+	 * A connection assigned to a loop. It is the OutputStream and the channel the IOHandler of the client writes to.
+	 * Writes block the writing thread until the socket has taken all bytes.
+	 */
+	static final class Registration extends OutputStream implements WritableByteChannel {
+		private final EventLoop loop;
+		private final SocketChannel channel;
+		private IOHandler iOHandler;
+		private SelectionKey key;
+		private volatile Thread waitingWriter;
+
+		private Registration(EventLoop loop, SocketChannel channel) {
+			this.loop = loop;
+			this.channel = channel;
+		}
+
+		/**
+		 * Starts reading from the connection on the loop
+		 * @param iOHandler to pass the read bytes to
+		 * @throws IOException if the channel has been closed
+		 */
+		void start(IOHandler iOHandler) throws IOException {
+			this.iOHandler = iOHandler;
+			this.key = this.channel.register(this.loop.selector, SelectionKey.OP_READ, this);
+			this.loop.selector.wakeup();
+		}
+
+		/**
+		 * Reads what has arrived and passes it to the IOHandler, closing it at the end of the stream
+		 * @param buffer the read buffer of the loop
+		 * @param byteBuffer wrapping the read buffer
+		 */
+		private void read(byte[] buffer, ByteBuffer byteBuffer) {
+			try {
+				byteBuffer.clear();
+				int read = this.channel.read(byteBuffer);
+				if(read < 0) {
+					this.close();
+				} else if(read > 0) {
+					this.iOHandler.receive(buffer, 0, read);
+				}
+			} catch(IOException e) {
+				this.close();
+			}
+		}
+
+		/**
+		 * Wakes the writer waiting for the socket to become writable
+		 */
+		private void signalWritable() {
+			Thread writer = this.waitingWriter;
+			if(writer != null) {
+				LockSupport.unpark(writer);
+			}
+		}
+
+		/**
+		 * Waits until the socket is probably writable again
+		 * @throws IOException if the channel has been closed
+		 */
+		private void awaitWritable() throws IOException {
+			if(Thread.currentThread() == this.loop.thread) {
+				this.loop.awaitWritable(this.channel);
+			} else {
+				this.waitingWriter = Thread.currentThread();
+				try {
+					this.key.interestOpsOr(SelectionKey.OP_WRITE);
+					this.loop.selector.wakeup();
+					LockSupport.parkNanos(this, SWEEP_INTERVAL * 1_000_000);
+				} finally {
+					this.waitingWriter = null;
+				}
+			}
+			if(!this.channel.isOpen()) {
+				throw new ClosedChannelException();
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int written = 0;
+			while(src.hasRemaining()) {
+				int count = this.channel.write(src);
+				if(count == 0) {
+					this.awaitWritable();
+				}
+				written += count;
+			}
+			return written;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.write(ByteBuffer.wrap(b, off, len));
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.channel.isOpen();
+		}
+
+		/**
+		 * Closes the channel and the IOHandler, which lets the client notice the lost connection
+		 */
+		@Override
+		public void close() {
+			if(this.key != null) {
+				this.key.cancel();
+			}
+			try {
+				this.channel.close();
+			} catch(IOException e) {}
+			this.signalWritable();
+			this.loop.selector.wakeup();
+			if(this.iOHandler != null && !this.iOHandler.isClosed()) {
+				this.iOHandler.close();
+			}
+		}
+	}
+
+}
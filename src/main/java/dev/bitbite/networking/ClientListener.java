@@ -43,4 +43,20 @@ public abstract class ClientListener {
 	 */
 	public void onCloseFailed(Exception e) {}
 	
+	/**
+	 * Will be called before the client waits for the next attempt to re-establish a lost connection
+	 * @param attempt the number of the upcoming attempt, starting at 1
+	 * @param delay the time in milliseconds the client waits before the attempt
+	 */
+	public void onReconnect(int attempt, long delay) {}
+	/**
+	 * Will be called if the client gave up re-establishing the connection
+	 */
+	public void onReconnectFailed() {}
+	/**
+	 * Will be called if data sent while reconnecting is dropped because the buffer is full
+	 * @param data the dropped data
+	 */
+	public void onOutageBufferOverflow(byte[] data) {}
+	
 }
@@ -1,22 +1,32 @@
 package dev.bitbite.networking;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import lombok.Getter;
 
 /**
  * Administrates the clients an runs in its own Thread. It accepts them from the serversocket and
  * starts a {@link CommunicationHandler} in a separate thread for each connecting client.<br>
+ * If the server listens with additional serversockets, each of them is served by its own acceptor thread.<br>
+ * If the server has an {@link AdmissionPolicy}, connections it rejects are closed right after being accepted.<br>
  * 
  * @see CommunicationHandler
  */
 public class ClientManager extends Thread {
 
-	private boolean closing = false;
+	private volatile boolean closing = false;
 	@Getter private final Server server;
 	@Getter private CopyOnWriteArrayList<CommunicationHandler> communicationHandler;
+	private final CopyOnWriteArrayList<Thread> acceptors;
+	private final ConcurrentHashMap<InetAddress, Integer> connectionCounts;
+	private final AtomicInteger connections;
 	
 	/**
 	 * Initiates a ClientManager object
@@ -25,29 +35,70 @@ public class ClientManager extends Thread {
 	public ClientManager(Server server) {
 		this.server = server;
 		this.communicationHandler = new CopyOnWriteArrayList<CommunicationHandler>();
+		this.acceptors = new CopyOnWriteArrayList<Thread>();
+		this.connectionCounts = new ConcurrentHashMap<InetAddress, Integer>();
+		this.connections = new AtomicInteger();
 	}
 	
 	/**
 	 * Starts the process of accepting clients to the server. For each client that is accepted
 	 * a {@link CommunicationHandler} is started in a separate Thread.
+	 * Additional serversockets of the server are accepted from by acceptor threads started here.
 	 * 
 	 * @see CommunicationHandler
 	 */
 	@Override
 	public void run() {
 		this.server.notifyListeners(Server.EventType.ACCEPT_START);
+		for(ServerSocket serverSocket : this.server.getAdditionalServerSockets()) {
+			Thread acceptor = new Thread(() -> accept(serverSocket), "Acceptor-"+(this.acceptors.size()+1));
+			this.acceptors.add(acceptor);
+			if(this.closing) {
+				break;
+			}
+			acceptor.start();
+		}
+		accept(this.server.getServerSocket());
+		this.server.notifyListeners(Server.EventType.ACCEPT_END);
+	}
+	
+	/**
+	 * Accepts clients from the given serversocket until the calling thread is interrupted or the serversocket is closed
+	 * @param serverSocket to accept clients from
+	 */
+	private void accept(ServerSocket serverSocket) {
 		while(!Thread.currentThread().isInterrupted()) {
-			if(this.server.getServerSocket().isClosed()) {
+			if(serverSocket.isClosed()) {
 				Thread.currentThread().interrupt();
 				continue;
 			}
 			Socket clientSocket = null;
 			try {
-				clientSocket = this.server.getServerSocket().accept();
+				clientSocket = serverSocket.accept();
 				if(clientSocket == null) continue;
-				CommunicationHandler ch = new CommunicationHandler(clientSocket, this);
-				ch.registerListener(this.server.getIOListeners());
-				this.communicationHandler.add(ch);
+				FlightRecorderEvents.ConnectionAccepted event = new FlightRecorderEvents.ConnectionAccepted();
+				event.begin();
+				InetAddress address = sourceAddress(clientSocket);
+				AdmissionPolicy admissionPolicy = this.server.getAdmissionPolicy();
+				if(admissionPolicy != null) {
+					AdmissionPolicy.Rejection rejection = admissionPolicy.admit(this, address);
+					if(rejection != null) {
+						reject(clientSocket, rejection);
+						event.record(String.valueOf(clientSocket.getRemoteSocketAddress()), rejection.name());
+						continue;
+					}
+				} else {
+					reserveConnection(address, 0, 0);
+				}
+				CommunicationHandler ch;
+				try {
+					ch = new CommunicationHandler(clientSocket, this);
+				} catch(RuntimeException e) {
+					// reported by the handler as COMMUNICATIONHANDLER_INIT_FAILED
+					releaseConnection(address);
+					continue;
+				}
+				event.record(String.valueOf(clientSocket.getRemoteSocketAddress()), null);
 				this.server.notifyListeners(Server.EventType.ACCEPT, ch);
 			} catch(SocketTimeoutException e) {
 				continue;
@@ -72,7 +123,97 @@ public class ClientManager extends Thread {
 				}
 			}
 		}
-		this.server.notifyListeners(Server.EventType.ACCEPT_END);
+	}
+	
+	/**
+	 * Closes a rejected connection without lingering, so no resources are held for it
+	 * @param clientSocket the rejected connection
+	 * @param rejection the reason for the rejection
+	 */
+	private void reject(Socket clientSocket, AdmissionPolicy.Rejection rejection) {
+		try {
+			clientSocket.setSoLinger(true, 0);
+		} catch(Exception e) {}
+		try {
+			clientSocket.close();
+		} catch(Exception e) {}
+		this.server.notifyListeners(Server.EventType.CONNECTION_REJECTED, rejection, clientSocket.getRemoteSocketAddress());
+	}
+	
+	/**
+	 * Returns the source address of a connection
+	 * @param clientSocket the connection
+	 * @return the address or null if the transport has no IP addresses
+	 */
+	static InetAddress sourceAddress(Socket clientSocket) {
+		if(clientSocket.getRemoteSocketAddress() instanceof InetSocketAddress address) {
+			return address.getAddress();
+		}
+		return null;
+	}
+	
+	/**
+	 * Reserves a connection unless the server or the given source address already has the given amount of connections.
+	 * Checking the limits and reserving are atomic, so concurrent acceptors cannot exceed them.
+	 * The reservation is released once the {@link CommunicationHandler} of the connection is removed.
+	 * @param address the source address, null if the transport has none
+	 * @param maxConnections the maximum amount of connections, 0 for no limit
+	 * @param maxConnectionsPerAddress the maximum amount of connections from the address, 0 for no limit
+	 * @return null if the connection has been reserved, otherwise the limit that has been reached
+	 */
+	AdmissionPolicy.Rejection reserveConnection(InetAddress address, int maxConnections, int maxConnectionsPerAddress) {
+		int current;
+		do {
+			current = this.connections.get();
+			if(maxConnections > 0 && current >= maxConnections) {
+				return AdmissionPolicy.Rejection.MAX_CONNECTIONS;
+			}
+		} while(!this.connections.compareAndSet(current, current + 1));
+		if(address == null) {
+			return null;
+		}
+		boolean[] reserved = new boolean[1];
+		this.connectionCounts.compute(address, (key, count) -> {
+			int connections = count == null ? 0 : count;
+			if(maxConnectionsPerAddress > 0 && connections >= maxConnectionsPerAddress) {
+				return count;
+			}
+			reserved[0] = true;
+			return connections + 1;
+		});
+		if(!reserved[0]) {
+			this.connections.decrementAndGet();
+			return AdmissionPolicy.Rejection.MAX_CONNECTIONS_PER_ADDRESS;
+		}
+		return null;
+	}
+	
+	/**
+	 * Releases a connection reserved with {@link #reserveConnection(InetAddress, int, int)}
+	 * @param address the source address, null if the transport has none
+	 */
+	void releaseConnection(InetAddress address) {
+		this.connections.decrementAndGet();
+		if(address != null) {
+			this.connectionCounts.computeIfPresent(address, (key, count) -> count > 1 ? count - 1 : null);
+		}
+	}
+	
+	/**
+	 * Returns the amount of connections from the given source address
+	 * @param address the source address
+	 * @return the amount of connections
+	 */
+	public int getConnectionCount(InetAddress address) {
+		return this.connectionCounts.getOrDefault(address, 0);
+	}
+	
+	/**
+	 * Returns the amount of reserved connections, including the ones whose {@link CommunicationHandler} is still being created
+	 * @return the amount of connections
+	 */
+	public int getConnectionCount() {
+		return this.connections.get();
 	}
 	
 	/**
@@ -81,7 +222,8 @@ public class ClientManager extends Thread {
 	 */
 	public boolean close() {
 		closing = true;
-		Thread.currentThread().interrupt();
+		this.interrupt();
+		this.acceptors.forEach(Thread::interrupt);
 		this.communicationHandler.forEach(ch -> ch.close());
 		return true;
 	}
@@ -104,10 +246,20 @@ public class ClientManager extends Thread {
 	}
 	
 	/**
-	 * Removes the given communicationHandler from the list
+	 * Adds the given communicationHandler to the list. Its connection has to be reserved already.
+	 * @param communicationHandler to add
+	 */
+	protected void addCommunicationHandler(CommunicationHandler communicationHandler) {
+		this.communicationHandler.add(communicationHandler);
+	}
+	
+	/**
+	 * Removes the given communicationHandler from the list and releases its connection
 	 * @param communicationHandler to remove
 	 */
 	protected void removeCommunicationHandler(CommunicationHandler communicationHandler) {
-		this.communicationHandler.remove(communicationHandler);
+		if(this.communicationHandler.remove(communicationHandler)) {
+			releaseConnection(communicationHandler.getSourceAddress());
+		}
 	}
 }
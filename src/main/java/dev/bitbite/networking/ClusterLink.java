@@ -0,0 +1,74 @@
+package dev.bitbite.networking;
+
+/**
+ * A link from a {@link ClusterNode} to the server of another node.<br>
+ * The link is a client of the other node, which introduces its node after connecting
+ * and reconnects as described by its {@link ReconnectPolicy} once the connection is lost.
+ * Cluster frames are handled by the node; plain messages received on the link are dropped.
+ *
+ * @see ClusterNode#addPeer(String, int)
+ */
+public class ClusterLink extends Client {
+
+	private final ClusterNode node;
+
+	/**
+	 * Creates a link to the node listening on the given address, reconnecting without limit.
+	 * The link uses the {@link TransportConfig} of the server of its node, so both agree on the framing.
+	 * @param host of the other node
+	 * @param port of the other node
+	 * @param node the link belongs to
+	 */
+	public ClusterLink(String host, int port, ClusterNode node) {
+		super(host, port);
+		this.node = node;
+		this.setReconnectPolicy(new ReconnectPolicy());
+		this.setTransportConfig(node.getServer().getTransportConfig());
+	}
+
+	/**
+	 * Connects to the other node and introduces this node
+	 * 
+	 * @return true if the connection process as been completed successfully
+	 */
+	@Override
+	public boolean connect() {
+		if(!super.connect()) {
+			return false;
+		}
+		this.node.open(this.getIOHandler());
+		return true;
+	}
+
+	/**
+	 * Forgets the link at the node before closing or reconnecting it
+	 */
+	@Override
+	protected void onConnectionLost() {
+		if(this.getIOHandler() != null) {
+			this.node.detach(this.getIOHandler());
+		}
+		super.onConnectionLost();
+	}
+
+	/**
+	 * Forgets the link at the node and closes it
+	 * 
+	 * @return true if the connection has been closed successfully
+	 */
+	@Override
+	public boolean close() {
+		if(this.getIOHandler() != null) {
+			this.node.detach(this.getIOHandler());
+		}
+		return super.close();
+	}
+
+	/**
+	 * Drops plain messages, which nodes do not exchange
+	 * @param data received
+	 */
+	@Override
+	protected void processReceivedData(byte[] data) {}
+
+}
@@ -0,0 +1,475 @@
+package dev.bitbite.networking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * Joins a {@link Server} into a cluster of servers, so publications and broadcasts reach the clients of all nodes.<br>
+ * Nodes are connected by links, each of which is a regular connection from a {@link ClusterLink} of one node
+ * to the server of another node, exchanging {@link FrameType#CLUSTER} frames. After connecting, both ends
+ * introduce themselves with their node id and the topic patterns their local clients are subscribed to.
+ * Nodes keep each other informed whenever a pattern gains its first or loses its last local subscriber,
+ * so a publication is only forwarded to the nodes having subscribers for its topic.<br>
+ * A publication or broadcast on one node is forwarded once to each interested peer node, which fans it out
+ * to its local clients without forwarding it any further. The nodes therefore have to form a full mesh,
+ * where every node links to every other node; linking a pair of nodes in both directions is harmless.
+ * Every forwarded message carries the id of its origin node and a sequence number, which lets receiving nodes
+ * suppress duplicates, for example when several links connect the same pair of nodes. Sequence numbers start
+ * at the current time, so the messages of a restarted node keeping its id are not mistaken for duplicates.<br>
+ * Links reconnect on their own and payloads are exchanged between nodes without being processed by the
+ * {@link DataPreProcessor}s of the servers.
+ *
+ * @see Server#publish(String, byte[])
+ * @see Server#broadcast(byte[])
+ */
+public class ClusterNode {
+
+	/**
+	 * The size of the window of sequence numbers per origin node in which duplicates are detected
+	 */
+	public static final int DUPLICATE_WINDOW = 1024;
+
+	static final byte HELLO = 0;
+	static final byte INTEREST = 1;
+	static final byte DISINTEREST = 2;
+	static final byte PUBLICATION = 3;
+	static final byte BROADCAST = 4;
+
+	/**
+	 * A node this node is linked to
+	 */
+	private static final class Peer {
+		private final long nodeId;
+		private final CopyOnWriteArrayList<IOHandler> links = new CopyOnWriteArrayList<IOHandler>();
+
+		private Peer(long nodeId) {
+			this.nodeId = nodeId;
+		}
+
+		private IOHandler primaryLink() {
+			for(IOHandler link : this.links) {
+				if(!link.isClosed()) {
+					return link;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Remembers the sequence numbers received from one origin node within a sliding window
+	 */
+	private static final class DuplicateWindow {
+		private final long[] bits = new long[DUPLICATE_WINDOW / 64];
+		private long highest = -1;
+
+		/**
+		 * Marks a sequence number as received
+		 * @param sequence to mark
+		 * @return true if it has not been received before and is not older than the window
+		 */
+		private synchronized boolean mark(long sequence) {
+			if(sequence > this.highest) {
+				if(sequence - this.highest >= DUPLICATE_WINDOW) {
+					Arrays.fill(this.bits, 0);
+				} else {
+					for(long s = this.highest + 1; s < sequence; s++) {
+						clear(s);
+					}
+				}
+				this.highest = sequence;
+				set(sequence);
+				return true;
+			}
+			if(this.highest - sequence >= DUPLICATE_WINDOW || isSet(sequence)) {
+				return false;
+			}
+			set(sequence);
+			return true;
+		}
+
+		private boolean isSet(long sequence) {
+			int bit = (int)(sequence % DUPLICATE_WINDOW);
+			return (this.bits[bit >>> 6] & (1L << bit)) != 0;
+		}
+
+		private void set(long sequence) {
+			int bit = (int)(sequence % DUPLICATE_WINDOW);
+			this.bits[bit >>> 6] |= 1L << bit;
+		}
+
+		private void clear(long sequence) {
+			int bit = (int)(sequence % DUPLICATE_WINDOW);
+			this.bits[bit >>> 6] &= ~(1L << bit);
+		}
+	}
+
+	/**
+	 * The server this node fans messages out to
+	 */
+	@Getter private final Server server;
+	/**
+	 * The id identifying this node within the cluster, random unless given
+	 */
+	@Getter private final long nodeId;
+	private final AtomicLong sequence;
+	private final TopicTrie<Peer> peerInterests;
+	private final ConcurrentHashMap<Long, Peer> peers;
+	private final ConcurrentHashMap<IOHandler, Peer> links;
+	private final CopyOnWriteArraySet<IOHandler> introducedLinks;
+	private final ConcurrentHashMap<Long, DuplicateWindow> received;
+	private final Map<String, Integer> localInterests;
+	private final CopyOnWriteArrayList<ClusterLink> outboundLinks;
+
+	/**
+	 * Creates a node with a random id for a server. Must be created before the server is started.
+	 * @param server to join into the cluster
+	 */
+	public ClusterNode(Server server) {
+		this(server, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Creates a node for a server. Must be created before the server is started.
+	 * @param server to join into the cluster
+	 * @param nodeId the id identifying this node within the cluster, unique among all nodes
+	 */
+	public ClusterNode(Server server, long nodeId) {
+		this.server = server;
+		this.nodeId = nodeId;
+		this.sequence = new AtomicLong(System.currentTimeMillis() << 20);
+		this.peerInterests = new TopicTrie<Peer>();
+		this.peers = new ConcurrentHashMap<Long, Peer>();
+		this.links = new ConcurrentHashMap<IOHandler, Peer>();
+		this.introducedLinks = new CopyOnWriteArraySet<IOHandler>();
+		this.received = new ConcurrentHashMap<Long, DuplicateWindow>();
+		this.localInterests = new HashMap<String, Integer>();
+		this.outboundLinks = new CopyOnWriteArrayList<ClusterLink>();
+		server.setClusterNode(this);
+	}
+
+	/**
+	 * Links this node to the node listening on the given address. The link reconnects on its own if it is lost.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param host of the peer node
+	 * @param port of the peer node
+	 * @return the link, whose connection attempt may have failed
+	 */
+	public ClusterLink addPeer(String host, int port) {
+		ClusterLink link = new ClusterLink(host, port, this);
+		this.outboundLinks.add(link);
+		link.connect();
+		return link;
+	}
+
+	/**
+	 * Closes all links this node has opened
+	 */
+	public void close() {
+		this.outboundLinks.forEach(ClusterLink::close);
+		this.outboundLinks.clear();
+	}
+
+	/**
+	 * Returns the ids of the nodes this node is currently linked to
+	 * @return the ids of the linked nodes
+	 */
+	public List<Long> getPeerIds() {
+		return new ArrayList<Long>(this.peers.keySet());
+	}
+
+	/**
+	 * Indicates whether a connection accepted by the server is a link from another node
+	 * @param iOHandler of the connection
+	 * @return true if the connection is a link
+	 */
+	public boolean isLink(IOHandler iOHandler) {
+		return this.links.containsKey(iOHandler);
+	}
+
+	/**
+	 * Registers this node for cluster frames received on a connection, before its first frame is read.
+	 * The other end introduces itself first, which this node answers.
+	 * @param iOHandler of the connection
+	 */
+	void attach(IOHandler iOHandler) {
+		if(iOHandler.getFraming() == IOHandler.Framing.LENGTH_PREFIXED) {
+			iOHandler.setFrameHandler(FrameType.CLUSTER, (buffer, offset, length) -> this.onFrame(iOHandler, buffer, offset, length));
+		}
+	}
+
+	/**
+	 * Registers this node for cluster frames received on a link it opened and introduces itself
+	 * @param iOHandler of the link
+	 */
+	void open(IOHandler iOHandler) {
+		this.attach(iOHandler);
+		this.introduce(iOHandler);
+	}
+
+	/**
+	 * Forgets a link once its connection has been closed.
+	 * A peer without any remaining link is forgotten along with its interests.
+	 * @param iOHandler of the link
+	 */
+	void detach(IOHandler iOHandler) {
+		this.introducedLinks.remove(iOHandler);
+		Peer peer = this.links.remove(iOHandler);
+		if(peer == null) {
+			return;
+		}
+		peer.links.remove(iOHandler);
+		if(peer.links.isEmpty() && this.peers.remove(peer.nodeId, peer)) {
+			this.peerInterests.unsubscribeAll(peer);
+		}
+	}
+
+	/**
+	 * Records that a pattern has been subscribed to by a local client and tells the peers once it gains its first subscriber
+	 * @param pattern subscribed to
+	 */
+	synchronized void addLocalInterest(String pattern) {
+		if(this.localInterests.merge(pattern, 1, Integer::sum) == 1) {
+			this.writeToAllLinks(INTEREST, pattern);
+		}
+	}
+
+	/**
+	 * Records that a local client unsubscribed from a pattern and tells the peers once it lost its last subscriber
+	 * @param pattern unsubscribed from
+	 */
+	synchronized void removeLocalInterest(String pattern) {
+		Integer count = this.localInterests.computeIfPresent(pattern, (p, c) -> c > 1 ? c - 1 : null);
+		if(count == null) {
+			this.writeToAllLinks(DISINTEREST, pattern);
+		}
+	}
+
+	/**
+	 * Forwards a publication of this node to every peer having subscribers for its topic
+	 * @param topic the data has been published to
+	 * @param data of the publication, unprocessed
+	 */
+	void forwardPublication(String topic, byte[] data) {
+		if(this.peers.isEmpty()) {
+			return;
+		}
+		byte[] topicHeader = TopicHandler.encodeTopic(topic);
+		byte[] header = new byte[17 + topicHeader.length];
+		this.writeOrigin(header, PUBLICATION);
+		System.arraycopy(topicHeader, 0, header, 17, topicHeader.length);
+		for(Peer peer : this.peerInterests.match(topic)) {
+			IOHandler link = peer.primaryLink();
+			if(link != null) {
+				link.write(FrameType.CLUSTER, header, data);
+			}
+		}
+	}
+
+	/**
+	 * Forwards a broadcast of this node to every peer
+	 * @param data of the broadcast, unprocessed
+	 */
+	void forwardBroadcast(byte[] data) {
+		if(this.peers.isEmpty()) {
+			return;
+		}
+		byte[] header = new byte[17];
+		this.writeOrigin(header, BROADCAST);
+		for(Peer peer : this.peers.values()) {
+			IOHandler link = peer.primaryLink();
+			if(link != null) {
+				link.write(FrameType.CLUSTER, header, data);
+			}
+		}
+	}
+
+	/**
+	 * Writes the kind of a forwarded message followed by the id of this node and the next sequence number
+	 * @param header to write to
+	 * @param kind of the message
+	 */
+	private void writeOrigin(byte[] header, byte kind) {
+		header[0] = kind;
+		writeLong(header, 1, this.nodeId);
+		writeLong(header, 9, this.sequence.getAndIncrement());
+	}
+
+	/**
+	 * Introduces this node on a link with its id followed by the patterns its local clients are subscribed to
+	 * @param iOHandler of the link
+	 */
+	private synchronized void introduce(IOHandler iOHandler) {
+		byte[] hello = new byte[8];
+		writeLong(hello, 0, this.nodeId);
+		this.introducedLinks.add(iOHandler);
+		iOHandler.write(FrameType.CLUSTER, new byte[] {HELLO}, hello, Priority.HIGH);
+		for(String pattern : this.localInterests.keySet()) {
+			iOHandler.write(FrameType.CLUSTER, new byte[] {INTEREST}, pattern.getBytes(StandardCharsets.UTF_8), Priority.HIGH);
+		}
+	}
+
+	/**
+	 * Tells all peers this node introduced itself to about a change of the local interests
+	 * @param kind of the change
+	 * @param pattern that changed
+	 */
+	private void writeToAllLinks(byte kind, String pattern) {
+		byte[] data = pattern.getBytes(StandardCharsets.UTF_8);
+		for(IOHandler link : this.introducedLinks) {
+			if(!link.isClosed()) {
+				link.write(FrameType.CLUSTER, new byte[] {kind}, data, Priority.HIGH);
+			}
+		}
+	}
+
+	/**
+	 * Handles a received cluster frame. Malformed frames are reported to the listeners of the IOHandler as failed reads.
+	 * @param iOHandler of the link the frame has been received on
+	 * @param buffer containing the frame
+	 * @param offset of the kind byte
+	 * @param length of the frame without the type byte
+	 */
+	private void onFrame(IOHandler iOHandler, byte[] buffer, int offset, int length) {
+		try {
+			if(length < 1) {
+				throw new IllegalStateException("Received empty cluster frame");
+			}
+			byte kind = buffer[offset];
+			if(kind == HELLO) {
+				this.onHello(iOHandler, buffer, offset + 1, length - 1);
+				return;
+			}
+			Peer peer = this.links.get(iOHandler);
+			if(peer == null) {
+				throw new IllegalStateException("Received cluster frame before introduction");
+			}
+			switch(kind) {
+				case INTEREST:
+					this.peerInterests.subscribe(new String(buffer, offset + 1, length - 1, StandardCharsets.UTF_8), peer);
+					break;
+				case DISINTEREST:
+					this.peerInterests.unsubscribe(new String(buffer, offset + 1, length - 1, StandardCharsets.UTF_8), peer);
+					break;
+				case PUBLICATION:
+					this.onPublication(buffer, offset + 1, length - 1);
+					break;
+				case BROADCAST:
+					this.onBroadcast(buffer, offset + 1, length - 1);
+					break;
+				default:
+					throw new IllegalStateException("Received cluster frame of unknown kind "+kind);
+			}
+		} catch(Exception e) {
+			iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, e);
+		}
+	}
+
+	/**
+	 * Registers the link to the introduced node. A link this node did not open is answered with an introduction.
+	 * @param iOHandler of the link
+	 * @param buffer containing the frame
+	 * @param offset of the node id
+	 * @param length of the frame without the kind byte
+	 */
+	private void onHello(IOHandler iOHandler, byte[] buffer, int offset, int length) {
+		if(length < 8) {
+			throw new IllegalStateException("Received malformed introduction");
+		}
+		long peerId = readLong(buffer, offset);
+		if(peerId == this.nodeId) {
+			throw new IllegalStateException("Node linked to itself");
+		}
+		Peer peer = this.peers.computeIfAbsent(peerId, Peer::new);
+		peer.links.addIfAbsent(iOHandler);
+		boolean answer = this.links.put(iOHandler, peer) == null && !this.isOutbound(iOHandler);
+		if(answer) {
+			this.introduce(iOHandler);
+		}
+	}
+
+	/**
+	 * Fans a forwarded publication out to the local subscribers unless it has been received before
+	 * @param buffer containing the frame
+	 * @param offset of the origin node id
+	 * @param length of the frame without the kind byte
+	 */
+	private void onPublication(byte[] buffer, int offset, int length) {
+		if(length < 18 || !this.isNew(buffer, offset)) {
+			return;
+		}
+		int topicLength = ((buffer[offset + 16] & 0xFF) << 8) | (buffer[offset + 17] & 0xFF);
+		if(topicLength > length - 18) {
+			throw new IllegalStateException("Received publication with malformed topic");
+		}
+		String topic = new String(buffer, offset + 18, topicLength, StandardCharsets.UTF_8);
+		byte[] data = Arrays.copyOfRange(buffer, offset + 18 + topicLength, offset + length);
+		this.server.publishLocally(topic, data);
+	}
+
+	/**
+	 * Fans a forwarded broadcast out to the local clients unless it has been received before
+	 * @param buffer containing the frame
+	 * @param offset of the origin node id
+	 * @param length of the frame without the kind byte
+	 */
+	private void onBroadcast(byte[] buffer, int offset, int length) {
+		if(length < 16 || !this.isNew(buffer, offset)) {
+			return;
+		}
+		this.server.broadcastLocally(Arrays.copyOfRange(buffer, offset + 16, offset + length));
+	}
+
+	/**
+	 * Checks the origin node id and sequence number of a forwarded message against the ones received before
+	 * @param buffer containing the frame
+	 * @param offset of the origin node id
+	 * @return true if the message has not been received before
+	 */
+	private boolean isNew(byte[] buffer, int offset) {
+		long origin = readLong(buffer, offset);
+		long sequence = readLong(buffer, offset + 8);
+		return this.received.computeIfAbsent(origin, o -> new DuplicateWindow()).mark(sequence);
+	}
+
+	/**
+	 * Indicates whether a link has been opened by this node
+	 * @param iOHandler of the link
+	 * @return true if one of the outbound links uses the IOHandler
+	 */
+	private boolean isOutbound(IOHandler iOHandler) {
+		for(ClusterLink link : this.outboundLinks) {
+			if(link.getIOHandler() == iOHandler) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void writeLong(byte[] buffer, int offset, long value) {
+		for(int i = 7; i >= 0; i--) {
+			buffer[offset + i] = (byte)value;
+			value >>>= 8;
+		}
+	}
+
+	private static long readLong(byte[] buffer, int offset) {
+		long value = 0;
+		for(int i = 0; i < 8; i++) {
+			value = (value << 8) | (buffer[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+}
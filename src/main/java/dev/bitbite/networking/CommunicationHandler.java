@@ -1,59 +1,152 @@
 package dev.bitbite.networking;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
 import java.net.Socket;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import dev.bitbite.networking.Server.EventType;
 import lombok.Getter;
 
 /**
  * Manages the Communication with a client by handling its IO.
+ * As the {@link Connection} of the client it is passed to the handlers of typed messages.
  */
-public class CommunicationHandler {
+public class CommunicationHandler implements Connection {
 
 	private Socket clientSocket;
 	private ClientManager clientManager;
 	@Getter private IOHandler iOHandler;
+	@Getter private RequestHandler requestHandler;
+	@Getter private StreamMultiplexer streamMultiplexer;
+	@Getter private TopicHandler topicHandler;
 	private Thread readThread;
+	/**
+	 * The IP address the client connected from, null if the transport has none
+	 */
+	@Getter private InetAddress sourceAddress;
+	/**
+	 * Whether closing the handler has begun
+	 */
+	@Getter private volatile boolean closed = false;
 	
 	/**
-	 * Creates a CommunicationHandler object for a socket
+	 * Creates a CommunicationHandler object for a socket, registers it with the clientManager and starts reading.
+	 * The connection has to be reserved with the clientManager already, it is released when the handler is closed.
+	 * If the handler cannot be set up, the socket is closed and the handler is neither registered nor started.
 	 * @param clientSocket which IO should be handled
 	 * @param clientManager the clientManager of the server which accepted the client
+	 * 
+	 * @throws UncheckedIOException if the socket could not be configured or its streams could not be opened
 	 */
 	public CommunicationHandler(Socket clientSocket, ClientManager clientManager) {
 		this.clientSocket = clientSocket;
 		this.clientManager = clientManager;
+		this.sourceAddress = ClientManager.sourceAddress(clientSocket);
 		try {
-			this.iOHandler = new IOHandler(clientSocket.getInputStream(), 
-										   clientSocket.getOutputStream(),
-										   this::processReceivedData);
+			TransportConfig transportConfig = this.clientManager.getServer().getTransportConfig();
+			if(clientSocket instanceof LocalSocket localSocket) {
+				this.iOHandler = new LocalIOHandler(localSocket, transportConfig, this::processReceivedData);
+			} else {
+				transportConfig.configure(clientSocket);
+				this.iOHandler = new IOHandler(clientSocket.getInputStream(), 
+											   clientSocket.getOutputStream(),
+											   clientSocket.getChannel(),
+											   transportConfig,
+											   this::processReceivedData);
+			}
 			this.iOHandler.registerListener(new CommunicationHandlerCloseListener(this));
+			registerListener(this.clientManager.getServer().getIOListeners());
+			if(this.clientManager.getServer().getConnectionTrafficShaper() != null) {
+				this.iOHandler.addTrafficShaper(new TrafficShaper(this.clientManager.getServer().getConnectionTrafficShaper()));
+			}
+			if(this.clientManager.getServer().getTrafficShaper() != null) {
+				this.iOHandler.addTrafficShaper(this.clientManager.getServer().getTrafficShaper());
+			}
+			if(this.clientManager.getServer().getTrafficCapture() != null) {
+				this.iOHandler.setTrafficCapture(this.clientManager.getServer().getTrafficCapture());
+			}
+			this.requestHandler = new RequestHandler(this.iOHandler, 
+													 this.clientManager.getServer().getDataPreProcessor(),
+													 data -> this.clientManager.getServer().processRequest(this.getIP(), data));
+			this.streamMultiplexer = new StreamMultiplexer(this.iOHandler,
+														   this.clientManager.getServer().getDataPreProcessor(),
+														   (id, data, last) -> this.clientManager.getServer().processStreamData(this.getIP(), id, data, last),
+														   false);
+			this.topicHandler = new TopicHandler(this.iOHandler,
+												 this.clientManager.getServer().getDataPreProcessor(),
+												 pattern -> this.clientManager.getServer().subscribe(this, pattern),
+												 pattern -> this.clientManager.getServer().unsubscribe(this, pattern),
+												 (topic, data) -> this.clientManager.getServer().processPublication(this.getIP(), topic, data));
+			this.clientManager.getServer().getMessageCodecs().attach(this, this.iOHandler, this.clientManager.getServer().getDataPreProcessor());
+			if(this.clientManager.getServer().getClusterNode() != null) {
+				this.clientManager.getServer().getClusterNode().attach(this.iOHandler);
+			}
+			MessageJournal.attach(this.clientManager.getServer()::getJournal, this.iOHandler, 
+								  () -> this.clientManager.getServer().getTopics().getSubscriptions(this));
+			if(this.clientManager.getServer().getSpoolDirectory() != null) {
+				this.iOHandler.setMessageChunkReceiver(new SpoolFileReceiver(this.clientManager.getServer().getSpoolDirectory(),
+						file -> this.clientManager.getServer().processReceivedFile(this.getIP(), file)));
+			} else if(this.clientManager.getServer().isStreamingReceiveEnabled()) {
+				this.iOHandler.setMessageChunkReceiver((data, length, first, last) -> 
+						this.clientManager.getServer().processReceivedChunk(this.getIP(), data, length, first, last));
+			}
 		} catch (IOException e) {
-			this.clientManager.getServer().notifyListeners(Server.EventType.COMMUNICATIONHANDLER_INIT_FAILED, e);
+			this.abortInit(e);
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			this.abortInit(e);
+			throw e;
 		}
+		this.clientManager.addCommunicationHandler(this);
 		this.readThread = Thread.ofVirtual().name("readthread-"+getIP()).start(() -> {
-			while(!readThread.isInterrupted()) {
+			while(!Thread.currentThread().isInterrupted() && !this.iOHandler.isClosed()) {
 				this.iOHandler.readBlocking();
 			}
 		});
 	}
 	
+	/**
+	 * Reports a failed setup and closes the socket, leaving the release of the connection to the clientManager
+	 * @param exception that made the setup fail
+	 */
+	private void abortInit(Exception exception) {
+		this.closed = true;
+		this.clientManager.getServer().notifyListeners(Server.EventType.COMMUNICATIONHANDLER_INIT_FAILED, exception);
+		try {
+			this.clientSocket.close();
+		} catch(IOException e) {}
+	}
+	
 	/**
 	 * Closes the IOStreams and the socket itself.
 	 */
 	public void close() {
+		this.closed = true;
+		FlightRecorderEvents.ConnectionClosed event = new FlightRecorderEvents.ConnectionClosed();
+		event.begin();
 		this.clientManager.getServer().notifyListeners(EventType.COMMUNICATIONHANDLER_CLOSE, this);
 		try {
-			this.readThread.interrupt();
-			this.readThread.join(100);
+			this.requestHandler.close();
+			this.streamMultiplexer.close();
+			if(this.readThread != null && Thread.currentThread() != this.readThread) {
+				this.readThread.interrupt();
+				this.readThread.join(100);
+			}
 			this.iOHandler.close();
 			this.clientSocket.close();
-			this.clientManager.removeCommunicationHandler(this);
 		} catch(Exception e) {
 			this.clientManager.getServer().notifyListeners(EventType.COMMUNICATIONHANDLER_CLOSE_FAILED, this, e);
 		}
+		this.clientManager.removeCommunicationHandler(this);
+		this.clientManager.getServer().unsubscribeAll(this);
+		if(this.clientManager.getServer().getClusterNode() != null) {
+			this.clientManager.getServer().getClusterNode().detach(this.iOHandler);
+		}
+		event.record(this.getIP());
 		this.clientManager.getServer().notifyListeners(EventType.COMMUNICATIONHANDLER_CLOSE_END, this);
 	}
 	
@@ -65,6 +158,38 @@ public class CommunicationHandler {
 		this.iOHandler.write(data);
 	}
 	
+	/**
+	 * Sends data to the client with the given priority
+	 * @param data to send
+	 * @param priority of the data
+	 */
+	protected void send(byte[] data, Priority priority) {
+		this.iOHandler.write(data, priority);
+	}
+	
+	/**
+	 * Sends a request to the client
+	 * @param data to send, not yet processed; the {@link RequestHandler} passes it through the {@link DataPreProcessor}
+	 * @param timeout the time to wait for the response
+	 * @param unit of the timeout
+	 * @return a future of the response
+	 * 
+	 * @see RequestHandler#request(byte[], long, TimeUnit)
+	 */
+	public CompletableFuture<byte[]> request(byte[] data, long timeout, TimeUnit unit) {
+		return this.requestHandler.request(data, timeout, unit);
+	}
+	
+	/**
+	 * Opens a logical stream to the client, multiplexed over the existing connection
+	 * @return the stream
+	 * 
+	 * @see StreamMultiplexer#openStream()
+	 */
+	public MultiplexedStream openStream() {
+		return this.streamMultiplexer.openStream();
+	}
+	
 	/**
 	 * Forces the currently read bytes to be handled
 	 */
@@ -88,8 +213,16 @@ public class CommunicationHandler {
 	 * @param data received from the client
 	 */
 	protected void processReceivedData(byte[] data) {
+		AdmissionPolicy admissionPolicy = this.clientManager.getServer().getAdmissionPolicy();
+		long start = admissionPolicy != null ? System.nanoTime() : 0;
 		data = this.clientManager.getServer().getDataPreProcessor().process(DataPreProcessor.TransferMode.IN, data);
+		FlightRecorderEvents.HandlerExecution event = new FlightRecorderEvents.HandlerExecution();
+		event.begin();
 		this.clientManager.getServer().processReceivedData(this.getIP(), data);
+		event.record(this.getIP(), data.length);
+		if(admissionPolicy != null) {
+			admissionPolicy.recordHandlerLatency(System.nanoTime() - start);
+		}
 	}
 	
 	/**
@@ -116,4 +249,26 @@ public class CommunicationHandler {
 		return this.clientSocket.getRemoteSocketAddress().toString();
 	}
 	
+	/**
+	 * Returns the remote socket address of the associated client socket
+	 * @return the remote socket address of the associated client socket
+	 * 
+	 * @see #getIP()
+	 */
+	@Override
+	public String getRemoteAddress() {
+		return getIP();
+	}
+	
+	/**
+	 * Sends a typed message to the client, encoded by the codec the server registered for its class
+	 * @param message to send
+	 * 
+	 * @throws IllegalArgumentException if no codec is registered for the class of the message
+	 */
+	@Override
+	public void sendMessage(Object message) {
+		this.clientManager.getServer().getMessageCodecs().write(this.iOHandler, this.clientManager.getServer().getDataPreProcessor(), message);
+	}
+	
 }
@@ -0,0 +1,216 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Connects to the first reachable of several addresses, racing the connection attempts in the style of
+ * Happy Eyeballs (RFC 8305).<br>
+ * The attempts are started one after another, each after the previous one failed or the attempt delay elapsed
+ * without a result, so a blackholed address only delays the connection by the attempt delay.
+ * The first attempt to connect wins, the sockets of all other attempts are closed, which cancels them.
+ */
+class ConnectRacer {
+
+	/**
+	 * Takes the place of the winner once the race has been cancelled, so no attempt can win afterwards
+	 */
+	private static final Socket CANCELLED = new Socket();
+
+	private ConnectRacer() {}
+
+	/**
+	 * Resolves the endpoints to the addresses to race, in the order they are attempted.
+	 * The addresses of the first endpoint come first, alternating between IPv6 and IPv4 so a broken
+	 * address family costs at most one attempt delay, followed by the addresses of the other endpoints.
+	 * @param endpoints to resolve, resolved or unresolved
+	 * @return the addresses
+	 * @throws UnknownHostException if none of the endpoints could be resolved
+	 */
+	static List<InetSocketAddress> resolve(List<InetSocketAddress> endpoints) throws UnknownHostException {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		UnknownHostException failure = null;
+		for(int i = 0; i < endpoints.size(); i++) {
+			InetSocketAddress endpoint = endpoints.get(i);
+			if(!endpoint.isUnresolved()) {
+				addresses.add(endpoint);
+				continue;
+			}
+			InetAddress[] resolved;
+			try {
+				resolved = InetAddress.getAllByName(endpoint.getHostString());
+			} catch(UnknownHostException e) {
+				if(failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+				continue;
+			}
+			List<InetAddress> ordered = i == 0 ? interleave(resolved) : List.of(resolved);
+			for(InetAddress address : ordered) {
+				addresses.add(new InetSocketAddress(address, endpoint.getPort()));
+			}
+		}
+		if(addresses.isEmpty()) {
+			throw failure != null ? failure : new UnknownHostException("No endpoints to connect to");
+		}
+		return addresses;
+	}
+
+	/**
+	 * Orders addresses alternating between the family of the first address and the other family
+	 * @param addresses in the order they have been resolved
+	 * @return the ordered addresses
+	 */
+	private static List<InetAddress> interleave(InetAddress[] addresses) {
+		List<InetAddress> first = new ArrayList<InetAddress>();
+		List<InetAddress> second = new ArrayList<InetAddress>();
+		boolean firstIsV6 = addresses.length > 0 && addresses[0] instanceof Inet6Address;
+		for(InetAddress address : addresses) {
+			((address instanceof Inet6Address) == firstIsV6 ? first : second).add(address);
+		}
+		List<InetAddress> ordered = new ArrayList<InetAddress>(addresses.length);
+		for(int i = 0; i < Math.max(first.size(), second.size()); i++) {
+			if(i < first.size()) {
+				ordered.add(first.get(i));
+			}
+			if(i < second.size()) {
+				ordered.add(second.get(i));
+			}
+		}
+		return ordered;
+	}
+
+	/**
+	 * Connects to the first reachable address, racing the attempts
+	 * @param addresses to attempt in order
+	 * @param factory creating an unconnected socket per attempt
+	 * @param attemptDelay the time in milliseconds to wait for an attempt before the next one is started
+	 * @param timeout the time in milliseconds each attempt may take, 0 means no timeout
+	 * @return the connected socket
+	 * @throws IOException if no attempt succeeded, with the failures of the other attempts suppressed
+	 * @throws InterruptedIOException if the thread has been interrupted while waiting
+	 */
+	static Socket connect(List<InetSocketAddress> addresses, Callable<Socket> factory, int attemptDelay, int timeout) throws IOException {
+		if(addresses.size() == 1) {
+			Socket socket = create(factory);
+			try {
+				socket.connect(addresses.get(0), timeout);
+			} catch(IOException e) {
+				socket.close();
+				throw e;
+			}
+			return socket;
+		}
+		BlockingQueue<IOException> failures = new LinkedBlockingQueue<IOException>();
+		AtomicReference<Socket> winner = new AtomicReference<Socket>();
+		List<Socket> sockets = new ArrayList<Socket>();
+		Object done = new Object();
+		int started = 0;
+		int failed = 0;
+		IOException failure = null;
+		try {
+			while(true) {
+				if(started < addresses.size()) {
+					InetSocketAddress address = addresses.get(started++);
+					Socket socket = create(factory);
+					sockets.add(socket);
+					Thread.ofVirtual().name("connect-"+address).start(() -> attempt(socket, address, timeout, winner, failures, done));
+				}
+				synchronized(done) {
+					if(winner.get() == null && failures.isEmpty()) {
+						done.wait(started < addresses.size() ? Math.max(1, attemptDelay) : 0);
+					}
+				}
+				if(winner.get() != null) {
+					return winner.get();
+				}
+				IOException result;
+				while((result = failures.poll()) != null) {
+					failed++;
+					if(failure == null) {
+						failure = result;
+					} else {
+						failure.addSuppressed(result);
+					}
+				}
+				if(failed == addresses.size()) {
+					throw failure;
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Socket connected = winner.getAndSet(CANCELLED);
+			if(connected != null) {
+				connected.close();
+			}
+			throw new InterruptedIOException("Interrupted while connecting");
+		} finally {
+			Socket connected = winner.get();
+			for(Socket socket : sockets) {
+				if(socket != connected) {
+					try {
+						socket.close();
+					} catch(IOException e) {}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Connects a socket and reports the result, closing the socket if another attempt has already won
+	 * @param socket to connect
+	 * @param address to connect to
+	 * @param timeout of the attempt in milliseconds
+	 * @param winner the socket of the winning attempt
+	 * @param failures the failures of the attempts
+	 * @param done notified once the attempt is over
+	 */
+	private static void attempt(Socket socket, InetSocketAddress address, int timeout, AtomicReference<Socket> winner,
+			BlockingQueue<IOException> failures, Object done) {
+		try {
+			socket.connect(address, timeout);
+			if(!winner.compareAndSet(null, socket)) {
+				socket.close();
+				return;
+			}
+		} catch(IOException e) {
+			if(winner.get() != null) {
+				return;
+			}
+			failures.add(new IOException("Connecting to "+address+" failed", e));
+		}
+		synchronized(done) {
+			done.notifyAll();
+		}
+	}
+
+	/**
+	 * Creates an unconnected socket
+	 * @param factory to create the socket with
+	 * @return the socket
+	 * @throws IOException if the socket could not be created
+	 */
+	private static Socket create(Callable<Socket> factory) throws IOException {
+		try {
+			return factory.call();
+		} catch(IOException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new IOException("Could not create socket", e);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package dev.bitbite.networking;
+
+/**
+ * A connection typed messages are received on, passed to {@link MessageHandler}s so they can reply.
+ * Implemented by the {@link Client} and, on the server side, by the {@link CommunicationHandler} of each client.
+ */
+public interface Connection {
+
+	/**
+	 * Returns the address of the remote side
+	 * @return the address of the remote side
+	 */
+	public String getRemoteAddress();
+
+	/**
+	 * Sends a typed message, encoded by the codec registered for its class
+	 * @param message to send
+	 *
+	 * @throws IllegalArgumentException if no codec is registered for the class of the message
+	 */
+	public void sendMessage(Object message);
+
+}
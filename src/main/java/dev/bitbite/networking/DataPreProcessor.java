@@ -51,16 +51,32 @@ public class DataPreProcessor {
 	protected byte[] process(TransferMode mode, byte[] data) {
 		if(mode == TransferMode.IN) {
 			for(DataProcessingLayer layer : this.incomingDataProcessingLayers) {
-				data = layer.process(data);
+				data = invoke(layer, mode, data);
 			}
 		} else if(mode == TransferMode.OUT) {
 			for(DataProcessingLayer layer : this.outgoingDataProcessingLayers) {
-				data = layer.process(data);
+				data = invoke(layer, mode, data);
 			}
 		}
 		return data;
 	}
 	
+	/**
+	 * Lets a layer process the data and records the invocation for the Java Flight Recorder
+	 * @param layer to invoke
+	 * @param mode - transfer direction of the data
+	 * @param data to process
+	 * @return processed data
+	 */
+	private static byte[] invoke(DataProcessingLayer layer, TransferMode mode, byte[] data) {
+		FlightRecorderEvents.LayerInvocation event = new FlightRecorderEvents.LayerInvocation();
+		event.begin();
+		int size = data != null ? data.length : 0;
+		data = layer.process(data);
+		event.record(layer, mode, size, data);
+		return data;
+	}
+	
 	/**
 	 * Initializes the {@link DataProcessingLayer}s
 	 * @throws LayerInitFailedException if {@link DataProcessingLayer#onEnable()} returns false
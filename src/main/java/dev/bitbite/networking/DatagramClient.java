@@ -0,0 +1,293 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import dev.bitbite.networking.exceptions.LayerDisableFailedException;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents an abstract implementation of the client-side of a datagram (UDP) transport.<br>
+ * Like the {@link Client} it must be connected using {@link #connect()}, which only fixes the
+ * peer of the channel since datagrams need no handshake. Every datagram sent with {@link #send(byte[])}
+ * is a message of its own and every received datagram is processed by the DataProcessingLayers
+ * and then propagated to {@link #processReceivedData(byte[])}.<br>
+ * Datagrams may be lost, duplicated or reordered. The server keeps a session for the client as long as
+ * it sends datagrams, so a client only receiving data should send a datagram from time to time.
+ *
+ * @see DatagramServer
+ */
+public abstract class DatagramClient {
+
+	/**
+	 * The host of the server
+	 */
+	@Getter private final String HOST;
+	/**
+	 * The port of the server
+	 */
+	@Getter private final int PORT;
+	/**
+	 * The channel datagrams are received and sent with
+	 */
+	@Getter private DatagramChannel channel;
+	/**
+	 * The DataPreProcessor used for all datagrams
+	 */
+	@Getter private DataPreProcessor dataPreProcessor;
+	private ArrayList<ClientListener> listeners;
+	private ArrayList<IOHandlerListener> ioListeners;
+	private final ByteBuffer receiveBuffer;
+	private final ByteBuffer sendBuffer;
+	private final ReentrantLock sendLock;
+	private volatile boolean closed = false;
+
+	/**
+	 * An indicator whether the client should print stacktraces of exceptions
+	 */
+	@Getter @Setter private static boolean VERBOSE = false;
+
+	/**
+	 * The different event-types, which occur in the client, listeners can listen on
+	 *
+	 * @see ClientListener
+	 * @see IOHandlerListener
+	 */
+	enum EventType {
+		CLOSE,
+		CLOSE_FAILED,
+		CLOSE_SUCCESS,
+		CONNECTION,
+		CONNECTION_FAILED,
+		CONNECTION_SUCCESS,
+		READ_FAILED,
+		WRITE_FAILED
+	}
+
+	/**
+	 * Creates a datagram client for the given server
+	 * @param host of the server
+	 * @param port of the server
+	 */
+	public DatagramClient(String host, int port) {
+		this.HOST = host;
+		this.PORT = port;
+		this.dataPreProcessor = new DataPreProcessor();
+		this.listeners = new ArrayList<ClientListener>();
+		this.ioListeners = new ArrayList<IOHandlerListener>();
+		this.receiveBuffer = ByteBuffer.allocateDirect(DatagramServer.MAX_DATAGRAM_SIZE);
+		this.sendBuffer = ByteBuffer.allocateDirect(DatagramServer.MAX_DATAGRAM_SIZE);
+		this.sendLock = new ReentrantLock();
+	}
+
+	/**
+	 * Opens the channel to the server, initializes the {@link DataProcessingLayer}s and starts receiving datagrams
+	 * @return true if the channel has been opened
+	 */
+	public boolean connect() {
+		this.notifyListeners(EventType.CONNECTION);
+		try {
+			this.openChannel();
+			this.dataPreProcessor.initLayers();
+		} catch(Exception e) {
+			this.notifyListeners(EventType.CONNECTION_FAILED, e);
+			return false;
+		}
+		Thread.ofVirtual().name("datagram-read-thread").start(this::receive);
+		this.notifyListeners(EventType.CONNECTION_SUCCESS);
+		return true;
+	}
+
+	/**
+	 * Opens the {@link DatagramChannel} and connects it to the server, so only its datagrams are received.
+	 * Moved to a different function to make it easier to replace the channel implementation.
+	 * @throws IOException when the process of opening the channel fails.
+	 */
+	protected void openChannel() throws IOException {
+		this.channel = DatagramChannel.open();
+		this.channel.connect(new InetSocketAddress(this.HOST, this.PORT));
+	}
+
+	/**
+	 * Closes the channel and disables the {@link DataProcessingLayer}s
+	 */
+	public void close() {
+		this.notifyListeners(EventType.CLOSE);
+		this.closed = true;
+		try {
+			if(this.channel != null) {
+				this.channel.close();
+			}
+			this.dataPreProcessor.shutdown();
+		} catch (LayerDisableFailedException | IOException e) {
+			this.notifyListeners(EventType.CLOSE_FAILED, e);
+			return;
+		}
+		this.notifyListeners(EventType.CLOSE_SUCCESS);
+	}
+
+	/**
+	 * Sends the data as a single datagram to the server.
+	 * The data is processed and copied into a reused send buffer.
+	 * @param data to send
+	 * @return true if the datagram has been sent
+	 *
+	 * @throws IllegalArgumentException if the processed data exceeds {@link DatagramServer#MAX_DATAGRAM_SIZE}
+	 */
+	public boolean send(byte[] data) {
+		byte[] processed = this.dataPreProcessor.process(TransferMode.OUT, data);
+		if(processed.length > DatagramServer.MAX_DATAGRAM_SIZE) {
+			throw new IllegalArgumentException("Datagram of "+processed.length+" bytes exceeds the maximum of "+DatagramServer.MAX_DATAGRAM_SIZE+" bytes");
+		}
+		if(this.closed || this.channel == null) {
+			return false;
+		}
+		this.sendLock.lock();
+		try {
+			this.sendBuffer.clear();
+			this.sendBuffer.put(processed);
+			this.sendBuffer.flip();
+			this.channel.write(this.sendBuffer);
+			return true;
+		} catch(IOException e) {
+			this.notifyListeners(EventType.WRITE_FAILED, e);
+			return false;
+		} finally {
+			this.sendLock.unlock();
+		}
+	}
+
+	/**
+	 * This function will be called for every datagram the client receives from the server.
+	 *
+	 * @param data of the datagram
+	 */
+	protected abstract void processReceivedData(byte[] data);
+
+	/**
+	 * Receives datagrams into the reused receive buffer until the client is closed.
+	 * An unreachable server is reported, but does not stop receiving, since it may come up later.
+	 */
+	private void receive() {
+		while(!this.closed) {
+			byte[] data;
+			try {
+				this.receiveBuffer.clear();
+				this.channel.read(this.receiveBuffer);
+				this.receiveBuffer.flip();
+				data = new byte[this.receiveBuffer.remaining()];
+				this.receiveBuffer.get(data);
+			} catch(ClosedChannelException e) {
+				break;
+			} catch(PortUnreachableException e) {
+				this.notifyListeners(EventType.READ_FAILED, e);
+				continue;
+			} catch(IOException e) {
+				this.notifyListeners(EventType.READ_FAILED, e);
+				break;
+			}
+			try {
+				this.processReceivedData(this.dataPreProcessor.process(TransferMode.IN, data));
+			} catch(Exception e) {
+				this.notifyListeners(EventType.READ_FAILED, e);
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether the channel to the server is open
+	 * @return true if the channel is open
+	 */
+	public boolean isConnected() {
+		return !this.closed && this.channel != null && this.channel.isConnected();
+	}
+
+	/**
+	 * Registers a ClientListener
+	 * @param listener to add
+	 */
+	public void registerListener(ClientListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Registers a IOHandlerListener, which is notified of failed reads and writes
+	 * @param listener to add
+	 */
+	public void registerListener(IOHandlerListener listener) {
+		this.ioListeners.add(listener);
+	}
+
+	/**
+	 * Removes ClientListener from the listeners
+	 * @param listener to remove
+	 */
+	public void removeListener(ClientListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Removes IOHandlerListener from the listeners
+	 * @param listener to remove
+	 */
+	public void removeListener(IOHandlerListener listener) {
+		this.ioListeners.remove(listener);
+	}
+
+	/**
+	 * Calls the respective function of each listener depending on the event type.<br>
+	 * Optionally propagates additional info such as exceptions.
+	 *
+	 * @param type of event that occured
+	 * @param args optional additional data
+	 *
+	 * @throws IllegalArgumentException if additional arguments are supplied
+	 * whose types do not match the expected types of the listeners eventfunction
+	 *
+	 * @see ClientListener
+	 * @see IOHandlerListener
+	 */
+	private void notifyListeners(EventType type, Object... args) {
+		if(DatagramClient.VERBOSE && args.length > 0 && args[0] instanceof Exception) {
+			((Exception)args[0]).printStackTrace();
+		}
+		if(args.length > 0 && !(args[0] instanceof Exception)) {
+			throw new IllegalArgumentException("Expected object of type Exception, but got "+args[0].getClass().getSimpleName());
+		}
+		switch(type) {
+			case CONNECTION:
+				this.listeners.forEach(l -> l.onConnectionCreation());
+				break;
+			case CONNECTION_SUCCESS:
+				this.listeners.forEach(l -> l.onConnectionSuccess());
+				break;
+			case CONNECTION_FAILED:
+				this.listeners.forEach(l -> l.onConnectionFailed((Exception)args[0]));
+				break;
+			case CLOSE:
+				this.listeners.forEach(l -> l.onCloseRequested());
+				break;
+			case CLOSE_FAILED:
+				this.listeners.forEach(l -> l.onCloseFailed((Exception)args[0]));
+				break;
+			case CLOSE_SUCCESS:
+				this.listeners.forEach(l -> l.onCloseSuccess());
+				break;
+			case READ_FAILED:
+				this.ioListeners.forEach(l -> l.onDataReadFailed((Exception)args[0]));
+				break;
+			case WRITE_FAILED:
+				this.ioListeners.forEach(l -> l.onWriteFailed((Exception)args[0]));
+				break;
+		}
+	}
+
+}
@@ -0,0 +1,466 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import dev.bitbite.networking.exceptions.LayerDisableFailedException;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Represents an abstract implementation of the server-side of a datagram (UDP) transport.<br>
+ * Like the {@link Server} it must be started using {@link #start()} and shut down using {@link #close()}.
+ * Every received datagram is a message of its own, which is processed by the DataProcessingLayers and
+ * then propagated to {@link #processReceivedData(String, byte[])}.<br>
+ * Datagrams are neither acknowledged nor retransmitted, so a lost datagram never delays the ones after it.
+ * This suits data of which only the latest value matters, such as telemetry or game state.<br>
+ * Peers are tracked in {@link DatagramSession}s, which expire after {@link #getSessionTimeout()} milliseconds
+ * without a datagram. Datagrams are received in batches of up to {@link #getReceiveBatchSize()} per wake-up,
+ * and datagrams to several peers are sent from a single reused buffer.
+ *
+ * @see DatagramClient
+ */
+public abstract class DatagramServer {
+
+	/**
+	 * The maximum payload of a datagram
+	 */
+	public static final int MAX_DATAGRAM_SIZE = 65_507;
+
+	/**
+	 * The port the server is listening on
+	 */
+	@Getter private final int PORT;
+	/**
+	 * The channel datagrams are received and sent with
+	 */
+	@Getter private DatagramChannel channel;
+	/**
+	 * The DataPreProcessor used for all datagrams
+	 */
+	@Getter private DataPreProcessor dataPreProcessor;
+	/**
+	 * The time in milliseconds after which a session without received datagrams expires
+	 */
+	@Getter @Setter private long sessionTimeout = 30_000;
+	/**
+	 * The maximum amount of datagrams received at once before expired sessions are removed
+	 */
+	@Getter @Setter private int receiveBatchSize = 64;
+	private final ConcurrentHashMap<String, DatagramSession> sessions;
+	private ArrayList<ServerListener> listeners;
+	private ArrayList<IOHandlerListener> iOListeners;
+	private Selector selector;
+	private Thread receiveThread;
+	private final ByteBuffer receiveBuffer;
+	private final ByteBuffer sendBuffer;
+	private final ReentrantLock sendLock;
+	private volatile boolean closed = false;
+
+	/**
+	 * If set to true, the server will print stacktraces of exceptions
+	 */
+	@Getter @Setter private static boolean VERBOSE = false;
+
+	/**
+	 * The different event-types, which occur in the server, listeners can listen on
+	 *
+	 * @see ServerListener
+	 * @see IOHandlerListener
+	 */
+	enum EventType {
+		CLOSE,
+		CLOSE_END,
+		CLOSE_FAILED,
+		READ_FAILED,
+		SESSION_EXPIRED,
+		SESSION_START,
+		START,
+		START_FAILED,
+		START_SUCCESS,
+		WRITE_FAILED
+	}
+
+	/**
+	 * Creates a datagram server and sets the port the server will try to listen on
+	 * @param port to listen on
+	 */
+	public DatagramServer(int port) {
+		this.PORT = port;
+		this.dataPreProcessor = new DataPreProcessor();
+		this.sessions = new ConcurrentHashMap<String, DatagramSession>();
+		this.listeners = new ArrayList<ServerListener>();
+		this.iOListeners = new ArrayList<IOHandlerListener>();
+		this.receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+		this.sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+		this.sendLock = new ReentrantLock();
+	}
+
+	/**
+	 * Opens the {@link DatagramChannel}, initializes the {@link DataProcessingLayer}s and starts receiving datagrams
+	 */
+	public void start() {
+		this.notifyListeners(EventType.START);
+		try {
+			this.openChannel();
+			this.dataPreProcessor.initLayers();
+		} catch(Exception e) {
+			this.notifyListeners(EventType.START_FAILED, e);
+			return;
+		}
+		this.receiveThread = new Thread(this::receive, "DatagramReceiver");
+		this.receiveThread.start();
+		this.notifyListeners(EventType.START_SUCCESS);
+	}
+
+	/**
+	 * Opens the {@link DatagramChannel} and registers it for reading.
+	 * Moved to a different function to make it easier to replace the channel implementation.
+	 * @throws IOException when the process of opening the channel fails.
+	 */
+	protected void openChannel() throws IOException {
+		this.channel = DatagramChannel.open();
+		this.channel.bind(new InetSocketAddress(this.PORT));
+		this.channel.configureBlocking(false);
+		this.selector = Selector.open();
+		this.channel.register(this.selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Closes the channel, removes all sessions and disables the {@link DataProcessingLayer}s
+	 */
+	public void close() {
+		this.notifyListeners(EventType.CLOSE);
+		this.closed = true;
+		try {
+			if(this.channel != null) {
+				this.channel.close();
+				this.selector.close();
+			}
+			this.sessions.clear();
+			this.dataPreProcessor.shutdown();
+		} catch (LayerDisableFailedException | IOException e) {
+			this.notifyListeners(EventType.CLOSE_FAILED, e);
+		}
+		this.notifyListeners(EventType.CLOSE_END);
+	}
+
+	/**
+	 * This function will be called for every datagram the server receives.
+	 *
+	 * @param clientAddress of the peer the datagram came from
+	 * @param data of the datagram
+	 */
+	protected abstract void processReceivedData(String clientAddress, byte[] data);
+
+	/**
+	 * Sends the data as a single datagram to the peer with the specified address.
+	 * If the send buffer of the socket is full the datagram is dropped.
+	 * @param clientAddress to send the data to
+	 * @param data to send
+	 * @return true if the datagram has been sent, false if there is no session with that address or it was dropped
+	 *
+	 * @throws IllegalArgumentException if the processed data exceeds {@link #MAX_DATAGRAM_SIZE}
+	 */
+	public boolean send(String clientAddress, byte[] data) {
+		DatagramSession session = this.sessions.get(clientAddress);
+		if(session == null) {
+			return false;
+		}
+		return send(session.getAddress(), data);
+	}
+
+	/**
+	 * Sends the data as a single datagram to the given address, regardless of whether there is a session.
+	 * If the send buffer of the socket is full the datagram is dropped.
+	 * @param address to send the data to
+	 * @param data to send
+	 * @return true if the datagram has been sent, false if it was dropped
+	 *
+	 * @throws IllegalArgumentException if the processed data exceeds {@link #MAX_DATAGRAM_SIZE}
+	 */
+	public boolean send(SocketAddress address, byte[] data) {
+		byte[] processed = this.dataPreProcessor.process(TransferMode.OUT, data);
+		this.sendLock.lock();
+		try {
+			fillSendBuffer(processed);
+			return sendBuffered(address);
+		} finally {
+			this.sendLock.unlock();
+		}
+	}
+
+	/**
+	 * Sends the data to all peers with an active session.
+	 * The data is processed and copied into the send buffer once, which is then reused for every peer.
+	 * @param data to send
+	 *
+	 * @throws IllegalArgumentException if the processed data exceeds {@link #MAX_DATAGRAM_SIZE}
+	 */
+	public void broadcast(byte[] data) {
+		byte[] processed = this.dataPreProcessor.process(TransferMode.OUT, data);
+		this.sendLock.lock();
+		try {
+			fillSendBuffer(processed);
+			for(DatagramSession session : this.sessions.values()) {
+				this.sendBuffer.rewind();
+				sendBuffered(session.getAddress());
+			}
+		} finally {
+			this.sendLock.unlock();
+		}
+	}
+
+	/**
+	 * Copies the data into the send buffer
+	 * @param data to copy
+	 */
+	private void fillSendBuffer(byte[] data) {
+		if(data.length > MAX_DATAGRAM_SIZE) {
+			throw new IllegalArgumentException("Datagram of "+data.length+" bytes exceeds the maximum of "+MAX_DATAGRAM_SIZE+" bytes");
+		}
+		this.sendBuffer.clear();
+		this.sendBuffer.put(data);
+		this.sendBuffer.flip();
+	}
+
+	/**
+	 * Sends the content of the send buffer to the given address
+	 * @param address to send to
+	 * @return true if the datagram has been sent, false if it was dropped
+	 */
+	private boolean sendBuffered(SocketAddress address) {
+		try {
+			if(this.channel.send(this.sendBuffer, address) > 0 || this.sendBuffer.limit() == 0) {
+				return true;
+			}
+			this.notifyListeners(EventType.WRITE_FAILED, new IOException("Send buffer full, datagram to "+address+" dropped"));
+		} catch(IOException e) {
+			this.notifyListeners(EventType.WRITE_FAILED, e);
+		}
+		return false;
+	}
+
+	/**
+	 * Waits for datagrams and receives them in batches until the server is closed.
+	 * Between batches expired sessions are removed.
+	 */
+	private void receive() {
+		long lastExpiryCheck = System.nanoTime();
+		while(!this.closed) {
+			try {
+				this.selector.select(Math.max(1, this.sessionTimeout / 2));
+				this.selector.selectedKeys().clear();
+				receiveBatch();
+			} catch(ClosedSelectorException | ClosedChannelException e) {
+				break;
+			} catch(IOException e) {
+				this.notifyListeners(EventType.READ_FAILED, e);
+			}
+			if(System.nanoTime() - lastExpiryCheck >= this.sessionTimeout * 500_000) {
+				expireSessions();
+				lastExpiryCheck = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Receives the datagrams currently available, up to the batch size
+	 * @throws IOException if receiving fails
+	 */
+	private void receiveBatch() throws IOException {
+		for(int i = 0; i < this.receiveBatchSize; i++) {
+			this.receiveBuffer.clear();
+			SocketAddress sender = this.channel.receive(this.receiveBuffer);
+			if(sender == null) {
+				return;
+			}
+			this.receiveBuffer.flip();
+			byte[] data = new byte[this.receiveBuffer.remaining()];
+			this.receiveBuffer.get(data);
+			String clientAddress = sender.toString();
+			DatagramSession session = this.sessions.get(clientAddress);
+			if(session == null) {
+				session = new DatagramSession(sender);
+				this.sessions.put(clientAddress, session);
+				this.notifyListeners(EventType.SESSION_START, session);
+			} else {
+				session.touch();
+			}
+			try {
+				this.processReceivedData(clientAddress, this.dataPreProcessor.process(TransferMode.IN, data));
+			} catch(Exception e) {
+				this.notifyListeners(EventType.READ_FAILED, e);
+			}
+		}
+	}
+
+	/**
+	 * Removes the sessions whose peers have been silent for longer than the session timeout
+	 */
+	private void expireSessions() {
+		Iterator<DatagramSession> iterator = this.sessions.values().iterator();
+		while(iterator.hasNext()) {
+			DatagramSession session = iterator.next();
+			if(session.getIdleTime() > this.sessionTimeout) {
+				iterator.remove();
+				this.notifyListeners(EventType.SESSION_EXPIRED, session);
+			}
+		}
+	}
+
+	/**
+	 * Returns the session of the peer with the specified address
+	 * @param clientAddress of the peer
+	 * @return the session or null if there is none
+	 */
+	public DatagramSession getSession(String clientAddress) {
+		return this.sessions.get(clientAddress);
+	}
+
+	/**
+	 * Returns the active sessions
+	 * @return an unmodifiable view of the active sessions
+	 */
+	public Collection<DatagramSession> getSessions() {
+		return Collections.unmodifiableCollection(this.sessions.values());
+	}
+
+	/**
+	 * Indicates whether the server is closed
+	 * @return true if the server has been closed
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Registers a ServerListener
+	 * @param listener to add
+	 */
+	public void registerListener(ServerListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Registers an IOHandlerListener, which is notified of failed reads and writes
+	 * @param listener to add
+	 */
+	public void registerListener(IOHandlerListener listener) {
+		this.iOListeners.add(listener);
+	}
+
+	/**
+	 * Removes ServerListener from the listeners
+	 * @param listener to remove
+	 */
+	public void removeListener(ServerListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Removes IOHandlerListener from the listeners
+	 * @param listener to remove
+	 */
+	public void removeListener(IOHandlerListener listener) {
+		this.iOListeners.remove(listener);
+	}
+
+	/**
+	 * Calls the respective function of each listener depending on the event type.<br>
+	 * Optionally Propagates additional info such as exceptions.
+	 *
+	 * @param type of event that occured
+	 * @param args optional additional data
+	 *
+	 * @throws IllegalArgumentException if additional arguments are supplied
+	 * whose types do not match the expected types of the listeners eventfunction
+	 *
+	 * @see ServerListener
+	 * @see IOHandlerListener
+	 */
+	protected void notifyListeners(EventType type, Object... args) {
+		if(DatagramServer.VERBOSE && args.length > 0 && args[0] instanceof Exception) {
+			((Exception)args[0]).printStackTrace();
+		}
+		switch(type) {
+			case START:
+				this.listeners.forEach(ServerListener::onStart);
+				break;
+			case START_SUCCESS:
+				this.listeners.forEach(ServerListener::onStartSuccess);
+				break;
+			case START_FAILED:
+				this.listeners.forEach(l -> l.onStartFailed(expectException(args)));
+				break;
+			case CLOSE:
+				this.listeners.forEach(ServerListener::onClose);
+				break;
+			case CLOSE_END:
+				this.listeners.forEach(ServerListener::onCloseEnd);
+				break;
+			case CLOSE_FAILED:
+				this.listeners.forEach(l -> l.onCloseFailed(expectException(args)));
+				break;
+			case SESSION_START:
+				this.listeners.forEach(l -> l.onSessionStart(expectSession(args)));
+				break;
+			case SESSION_EXPIRED:
+				this.listeners.forEach(l -> l.onSessionExpired(expectSession(args)));
+				break;
+			case READ_FAILED:
+				this.iOListeners.forEach(l -> l.onDataReadFailed(expectException(args)));
+				break;
+			case WRITE_FAILED:
+				this.iOListeners.forEach(l -> l.onWriteFailed(expectException(args)));
+				break;
+		}
+	}
+
+	/**
+	 * Checks that the first additional argument of an event is an exception
+	 * @param args the additional arguments of the event
+	 * @return the exception
+	 *
+	 * @throws IllegalArgumentException if the first argument is missing or not an exception
+	 */
+	private static Exception expectException(Object... args) {
+		if(args.length == 0) {
+			throw new IllegalArgumentException("Expected object of type Exception, but got nothing");
+		} else if(!(args[0] instanceof Exception)) {
+			throw new IllegalArgumentException("Expected object of type Exception, but got "+args[0].getClass().getSimpleName());
+		}
+		return (Exception)args[0];
+	}
+
+	/**
+	 * Checks that the first additional argument of an event is a session
+	 * @param args the additional arguments of the event
+	 * @return the session
+	 *
+	 * @throws IllegalArgumentException if the first argument is missing or not a session
+	 */
+	private static DatagramSession expectSession(Object... args) {
+		if(args.length == 0) {
+			throw new IllegalArgumentException("Expected object of type DatagramSession, but got nothing");
+		} else if(!(args[0] instanceof DatagramSession)) {
+			throw new IllegalArgumentException("Expected object of type DatagramSession, but got "+args[0].getClass().getSimpleName());
+		}
+		return (DatagramSession)args[0];
+	}
+
+}
@@ -0,0 +1,51 @@
+package dev.bitbite.networking;
+
+import java.net.SocketAddress;
+
+import lombok.Getter;
+
+/**
+ * The pseudo-session a {@link DatagramServer} keeps for every peer it has received datagrams from.
+ * UDP has no connections, so a session starts with the first datagram of a peer and
+ * expires once the peer has been silent for the session timeout of the server.
+ *
+ * @see DatagramServer#getSessionTimeout()
+ */
+public class DatagramSession {
+
+	/**
+	 * The socket address of the peer
+	 */
+	@Getter private final SocketAddress address;
+	/**
+	 * The address of the peer in the format passed to <code>processReceivedData</code>
+	 */
+	@Getter private final String clientAddress;
+	private volatile long lastReceived;
+
+	/**
+	 * Creates a session for the given peer
+	 * @param address of the peer
+	 */
+	DatagramSession(SocketAddress address) {
+		this.address = address;
+		this.clientAddress = address.toString();
+		this.lastReceived = System.nanoTime();
+	}
+
+	/**
+	 * Marks that a datagram has been received from the peer
+	 */
+	void touch() {
+		this.lastReceived = System.nanoTime();
+	}
+
+	/**
+	 * Returns the time since the last datagram of the peer has been received
+	 * @return the idle time in milliseconds
+	 */
+	public long getIdleTime() {
+		return (System.nanoTime() - this.lastReceived) / 1_000_000;
+	}
+
+}
@@ -63,6 +63,7 @@ public class DisconnectedServerDetector extends Thread {
 				Thread.currentThread().interrupt();
 			}
 		}
+		executorService.shutdownNow();
 		Thread.currentThread().interrupt();
 	}
 	
@@ -0,0 +1,207 @@
+package dev.bitbite.networking;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events of the library, shown under "OpenNetLib" in recordings.<br>
+ * Events of the hot paths carry a default threshold, so a continuous recording only keeps the slow frames,
+ * layer invocations and handlers, and does not record stack traces for them. The thresholds can be lowered
+ * in the recording settings, for example {@code dev.bitbite.networking.FrameRead#threshold=0 ms}.
+ * While no recording is running, creating and committing the events costs next to nothing.
+ * Every event has a {@code record} method that ends it and commits it if it passes the threshold,
+ * filling in its fields only then.
+ */
+final class FlightRecorderEvents {
+
+	private FlightRecorderEvents() {}
+
+	/**
+	 * A connection has been accepted by a server, lasting until it has been set up or rejected
+	 */
+	@Name("dev.bitbite.networking.ConnectionAccepted")
+	@Label("Connection Accepted")
+	@Category({"OpenNetLib", "Connections"})
+	@StackTrace(false)
+	static final class ConnectionAccepted extends Event {
+		@Label("Remote Address")
+		String remoteAddress;
+		@Label("Rejection")
+		@Description("The reason the admission policy rejected the connection, null if it has been admitted")
+		String rejection;
+
+		void record(String remoteAddress, String rejection) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.remoteAddress = remoteAddress;
+				this.rejection = rejection;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A connection of a server has been closed, lasting while it was closed
+	 */
+	@Name("dev.bitbite.networking.ConnectionClosed")
+	@Label("Connection Closed")
+	@Category({"OpenNetLib", "Connections"})
+	@StackTrace(false)
+	static final class ConnectionClosed extends Event {
+		@Label("Remote Address")
+		String remoteAddress;
+
+		void record(String remoteAddress) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.remoteAddress = remoteAddress;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A frame has been read, lasting while it was passed to the read callback or the handler of its type
+	 */
+	@Name("dev.bitbite.networking.FrameRead")
+	@Label("Frame Read")
+	@Category({"OpenNetLib", "Frames"})
+	@StackTrace(false)
+	@Threshold("20 ms")
+	static final class FrameRead extends Event {
+		@Label("Frame Type")
+		String frameType;
+		@Label("Size")
+		@DataAmount
+		int size;
+
+		void record(byte type, int size) {
+			this.end();
+			if(this.shouldCommit()) {
+				FrameType frameType = FrameType.fromId(type);
+				this.frameType = frameType != null ? frameType.name() : Integer.toString(type & 0xFF);
+				this.size = size;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A frame has been written, lasting from the call until the write returned
+	 */
+	@Name("dev.bitbite.networking.FrameWrite")
+	@Label("Frame Write")
+	@Category({"OpenNetLib", "Frames"})
+	@StackTrace(false)
+	@Threshold("20 ms")
+	static final class FrameWrite extends Event {
+		@Label("Frame Type")
+		String frameType;
+		@Label("Size")
+		@DataAmount
+		int size;
+		@Label("Priority")
+		String priority;
+
+		void record(FrameType type, int size, Priority priority) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.frameType = type.name();
+				this.size = size;
+				this.priority = priority != null ? priority.name() : null;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A frame waited before it could be written, lasting while traffic shapers held it back
+	 * and until its writer acquired the connection
+	 */
+	@Name("dev.bitbite.networking.OutboundStall")
+	@Label("Outbound Stall")
+	@Category({"OpenNetLib", "Frames"})
+	@Threshold("10 ms")
+	static final class OutboundStall extends Event {
+		@Label("Frame Type")
+		String frameType;
+		@Label("Priority")
+		String priority;
+		@Label("Pending Writes")
+		@Description("The writes waiting for or in progress on the connection when the frame could be written")
+		int pendingWrites;
+
+		void record(FrameType type, Priority priority, int pendingWrites) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.frameType = type.name();
+				this.priority = priority.name();
+				this.pendingWrites = pendingWrites;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * A {@link DataProcessingLayer} processed data
+	 */
+	@Name("dev.bitbite.networking.LayerInvocation")
+	@Label("Data Processing Layer Invocation")
+	@Category({"OpenNetLib", "Processing"})
+	@StackTrace(false)
+	@Threshold("5 ms")
+	static final class LayerInvocation extends Event {
+		@Label("Layer")
+		Class<?> layer;
+		@Label("Transfer Mode")
+		String mode;
+		@Label("Input Size")
+		@DataAmount
+		int inputSize;
+		@Label("Output Size")
+		@DataAmount
+		int outputSize;
+
+		void record(DataProcessingLayer layer, DataPreProcessor.TransferMode mode, int inputSize, byte[] output) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.layer = layer.getClass();
+				this.mode = mode.name();
+				this.inputSize = inputSize;
+				this.outputSize = output != null ? output.length : 0;
+				this.commit();
+			}
+		}
+	}
+
+	/**
+	 * The server handled data received from a client
+	 */
+	@Name("dev.bitbite.networking.HandlerExecution")
+	@Label("Handler Execution")
+	@Category({"OpenNetLib", "Processing"})
+	@Threshold("20 ms")
+	static final class HandlerExecution extends Event {
+		@Label("Remote Address")
+		String remoteAddress;
+		@Label("Size")
+		@DataAmount
+		int size;
+
+		void record(String remoteAddress, int size) {
+			this.end();
+			if(this.shouldCommit()) {
+				this.remoteAddress = remoteAddress;
+				this.size = size;
+				this.commit();
+			}
+		}
+	}
+
+}
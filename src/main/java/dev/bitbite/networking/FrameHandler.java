@@ -0,0 +1,21 @@
+package dev.bitbite.networking;
+
+/**
+ * Handles frames of a specific {@link FrameType} received by an {@link IOHandler}.<br>
+ * The frame is passed as a region of the IOHandlers buffer, starting after the type byte.
+ * The buffer must not be retained after the call returns.
+ * 
+ * @see IOHandler#setFrameHandler(FrameType, FrameHandler)
+ */
+@FunctionalInterface
+public interface FrameHandler {
+
+	/**
+	 * Handles a received frame
+	 * @param buffer containing the frame
+	 * @param offset of the first byte after the type byte
+	 * @param length of the frame without the type byte
+	 */
+	public void onFrame(byte[] buffer, int offset, int length);
+	
+}
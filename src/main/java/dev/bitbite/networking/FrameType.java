@@ -0,0 +1,108 @@
+package dev.bitbite.networking;
+
+/**
+ * The types of frames that can be exchanged when {@link IOHandler.Framing#LENGTH_PREFIXED} framing is used.
+ * Each frame carries its type as the first byte after the length prefix, 
+ * followed by a type specific header and the payload.<br>
+ * With {@link IOHandler.Framing#DELIMITED} framing only {@link #MESSAGE} frames can be sent.
+ * 
+ * @see IOHandler
+ */
+public enum FrameType {
+	/**
+	 * A plain message, which is forwarded to <code>processReceivedData</code>
+	 */
+	MESSAGE(0),
+	/**
+	 * A request expecting a response, headed by its correlation id
+	 */
+	REQUEST(1),
+	/**
+	 * The response to a request, headed by the correlation id of the request and a status byte
+	 */
+	RESPONSE(2),
+	/**
+	 * A chunk of a multiplexed stream, headed by the stream id and a flags byte
+	 */
+	STREAM_DATA(3),
+	/**
+	 * Grants the sender of a multiplexed stream more bytes to send, headed by the stream id and the amount of bytes
+	 */
+	STREAM_WINDOW_UPDATE(4),
+	/**
+	 * A message announced as bulk. It is handled like a message exceeding the maximum message size,
+	 * so a registered {@link MessageChunkReceiver} receives it regardless of its size.
+	 * Without one it is forwarded to <code>processReceivedData</code> like a plain message.
+	 */
+	BULK_MESSAGE(5),
+	/**
+	 * A message encoded by a {@link MessageCodec}, headed by its type id as a varint
+	 * 
+	 * @see MessageCodecRegistry
+	 */
+	TYPED_MESSAGE(6),
+	/**
+	 * Subscribes the sender to the topics matching the pattern carried as the payload
+	 * 
+	 * @see TopicHandler
+	 */
+	SUBSCRIBE(7),
+	/**
+	 * Unsubscribes the sender from the pattern carried as the payload
+	 * 
+	 * @see TopicHandler
+	 */
+	UNSUBSCRIBE(8),
+	/**
+	 * A message published to a topic, headed by the length of the topic as two bytes and the topic
+	 * 
+	 * @see TopicHandler
+	 */
+	PUBLISH(9),
+	/**
+	 * A frame exchanged between the nodes of a cluster, headed by a byte telling its kind
+	 * 
+	 * @see ClusterNode
+	 */
+	CLUSTER(10),
+	/**
+	 * A message appended to a {@link MessageJournal}, headed by its sequence number followed by the type and header of the wrapped frame
+	 */
+	JOURNALED(11),
+	/**
+	 * Requests the replay of journaled messages, or marks the start and end of a replay, headed by a byte telling which
+	 * 
+	 * @see MessageJournal
+	 */
+	REPLAY(12);
+	
+	private static final FrameType[] BY_ID = new FrameType[256];
+	static {
+		for(FrameType type : values()) {
+			BY_ID[type.id & 0xFF] = type;
+		}
+	}
+	
+	private final byte id;
+	
+	FrameType(int id) {
+		this.id = (byte)id;
+	}
+	
+	/**
+	 * Returns the byte identifying this type on the wire
+	 * @return the byte identifying this type on the wire
+	 */
+	public byte getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Looks up the frame type identified by the given byte
+	 * @param id the byte identifying the type on the wire
+	 * @return the frame type or null if the id is unknown
+	 */
+	public static FrameType fromId(byte id) {
+		return BY_ID[id & 0xFF];
+	}
+}
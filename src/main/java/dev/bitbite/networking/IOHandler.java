@@ -1,11 +1,25 @@
 package dev.bitbite.networking;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
+import dev.bitbite.networking.exceptions.MessageTooLargeException;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -16,23 +30,117 @@ import lombok.Setter;
  * You can write to the outputstream via {@link #write(byte[])}<br>
  * The process of reading data must be initiated using {@link #read()}. 
  * This is necessary to make it possible to read data of multiple IOHandlers within a single
- * thread without any IOHandler blocking the process.
+ * thread without any IOHandler blocking the process.<br>
+ * Messages are separated according to the configured {@link Framing}. With length-prefixed
+ * framing every frame carries a {@link FrameType}; frames other than plain messages are passed
+ * to the {@link FrameHandler} registered for their type.<br>
+ * Messages are reassembled from as many reads as necessary, up to the maximum message size.
+ * Larger messages and messages announced as {@link FrameType#BULK_MESSAGE} are handed to a
+ * registered {@link MessageChunkReceiver} chunk by chunk as they arrive. Without one, larger
+ * messages are discarded.<br>
+ * Framing, buffer sizes and flushing follow the {@link TransportConfig} the IOHandler has been created with.
+ * The amount of bytes read at once adapts to the traffic of the connection within the bounds of the config.
  */
 public class IOHandler {
 
+	/**
+	 * The ways messages can be separated from each other on the wire
+	 */
+	public enum Framing {
+		/**
+		 * Each message is terminated by the end-of-message byte.
+		 * Messages must not contain that byte and only {@link FrameType#MESSAGE} frames are supported.
+		 */
+		DELIMITED,
+		/**
+		 * Each frame is preceded by its length as a 4 byte big-endian integer,
+		 * followed by the byte of its {@link FrameType}. Frames may contain any bytes.
+		 */
+		LENGTH_PREFIXED
+	}
+	
 	private static byte END_OF_MESSAGE_BYTE = 0x0A;
 	private static int MAX_READ_SIZE = 1024;
+	private static Framing FRAMING = Framing.DELIMITED;
+	private static int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+	private static final int LENGTH_PREFIX_SIZE = 4;
+	private static final int RETAINED_BUFFER_SIZE = 64 * 1024;
 	@Getter @Setter private static boolean VERBOSE = false;
 	
 	private boolean closing = false;
 	@Getter private boolean closed = false;
 	private InputStream inputStream;
 	private OutputStream outputStream;
-	private ArrayList<Byte> readBuffer;
+	private WritableByteChannel channel;
+	private byte[] readBuffer;
+	private int readBufferSize;
+	private byte[] readChunkBuffer;
+	private ReadState readState;
+	private int frameLength;
+	private long frameRemaining;
+	private long streamedBytes;
+	private long streamedMessageLength;
+	private final int maxMessageSize;
+	private volatile MessageChunkReceiver chunkReceiver;
+	private final ReentrantLock readLock;
 	private Consumer<byte[]> readCallback;
 	private ArrayList<IOHandlerListener> listeners;
+	private FrameHandler[] frameHandlers;
+	private final ReentrantLock writeLock;
+	private final AtomicInteger pendingWrites;
+	private final ConcurrentLinkedQueue<QueuedFrame>[] lanes;
+	private final CopyOnWriteArrayList<TrafficShaper> trafficShapers;
+	private volatile TrafficCapture trafficCapture;
+	private long captureConnection;
+	private int receivedFrames;
+	private final Framing framing;
+	private final TransportConfig transportConfig;
+	private final byte endOfMessageByte;
+	private int readSize;
+	private final int minReadSize;
+	private final int maxReadSize;
+	private int smallReads;
+	private boolean unflushed;
 	private long lastRead;
 	
+	/**
+	 * A frame waiting in a priority lane to be written
+	 */
+	private static final class QueuedFrame {
+		private final FrameType type;
+		private final byte[] header;
+		private final byte[] data;
+		private boolean written;
+		
+		private QueuedFrame(FrameType type, byte[] header, byte[] data) {
+			this.type = type;
+			this.header = header;
+			this.data = data;
+		}
+	}
+	
+	/**
+	 * The states of reading a message
+	 */
+	private enum ReadState {
+		/**
+		 * The message is collected in the buffer
+		 */
+		ASSEMBLING,
+		/**
+		 * The frame exceeds the maximum message size, its type is not known yet
+		 */
+		OVERSIZED,
+		/**
+		 * The message exceeds the maximum message size and is passed on in chunks
+		 */
+		STREAMING,
+		/**
+		 * The message exceeds the maximum message size and is skipped
+		 */
+		DISCARDING
+	}
+	
 	/**
 	 * The different event-types, which occur in the IOHandler, listeners can listen on
 	 * 
@@ -61,17 +169,206 @@ public class IOHandler {
 	 * @throws IllegalArgumentException if at least one of the supplied arguments is null
 	 */
 	public IOHandler(InputStream inputStream, OutputStream outputStream, Consumer<byte[]> onRead) {
-		if(inputStream == null || outputStream == null || onRead == null) {
+		this(inputStream, outputStream, null, onRead);
+	}
+	
+	/**
+	 * Initializes the IOHandler with the given Streams, the channel the outputStream writes to and read-Callback method.<br>
+	 * The channel is used to transfer files without copying them to the heap.
+	 * @param inputStream, the inputStream to read the data from
+	 * @param outputStream, the outputStream to write to
+	 * @param channel, the channel the outputStream writes to, may be null
+	 * @param onRead, the read Callback method which is called when a message is received
+	 * 
+	 * @throws IllegalArgumentException if at least one of the supplied streams or the callback is null
+	 */
+	public IOHandler(InputStream inputStream, OutputStream outputStream, WritableByteChannel channel, Consumer<byte[]> onRead) {
+		this(inputStream, outputStream, channel, new TransportConfig(), onRead);
+	}
+	
+	/**
+	 * Initializes the IOHandler with the given Streams, the channel the outputStream writes to, its transport settings and read-Callback method.<br>
+	 * If the config has a write buffer, frames are encoded into a buffer in front of the outputStream and flushed as its flush policy says.
+	 * @param inputStream, the inputStream to read the data from
+	 * @param outputStream, the outputStream to write to
+	 * @param channel, the channel the outputStream writes to, may be null
+	 * @param transportConfig, the framing, buffer sizes and flush policy to use
+	 * @param onRead, the read Callback method which is called when a message is received
+	 * 
+	 * @throws IllegalArgumentException if at least one of the supplied streams, the config or the callback is null
+	 */
+	public IOHandler(InputStream inputStream, OutputStream outputStream, WritableByteChannel channel, TransportConfig transportConfig, Consumer<byte[]> onRead) {
+		if(inputStream == null || outputStream == null || transportConfig == null || onRead == null) {
 			throw new IllegalArgumentException("Parameters of IOHandler constructor must not be null");
 		}
 		this.inputStream = inputStream;
-		this.outputStream = outputStream;
-		this.readBuffer = new ArrayList<>();
+		this.outputStream = transportConfig.getWriteBufferSize() > 0 ? new BufferedOutputStream(outputStream, transportConfig.getWriteBufferSize()) : outputStream;
+		this.channel = channel;
+		this.transportConfig = transportConfig;
+		this.endOfMessageByte = transportConfig.getEndOfMessageByte();
+		this.readSize = transportConfig.getReadBufferSize();
+		this.minReadSize = transportConfig.getMinReadBufferSize();
+		this.maxReadSize = transportConfig.getMaxReadBufferSize();
+		this.readBuffer = new byte[this.readSize];
+		this.readChunkBuffer = new byte[this.readSize];
+		this.readState = ReadState.ASSEMBLING;
+		this.frameLength = -1;
+		this.maxMessageSize = transportConfig.getMaxMessageSize();
+		this.readLock = new ReentrantLock();
 		this.readCallback = onRead;
 		this.listeners = new ArrayList<>();
+		this.frameHandlers = new FrameHandler[256];
+		this.writeLock = new ReentrantLock(true);
+		this.pendingWrites = new AtomicInteger();
+		this.lanes = createLanes();
+		this.trafficShapers = new CopyOnWriteArrayList<TrafficShaper>();
+		this.framing = transportConfig.getFraming();
 		this.lastRead = System.nanoTime();
 	}
 	
+	/**
+	 * Registers the handler for received frames of the given type, replacing any previous handler.
+	 * Frames of type {@link FrameType#MESSAGE} are always passed to the read callback.
+	 * @param type of the frames to handle
+	 * @param handler to call, or null to ignore frames of that type
+	 */
+	public void setFrameHandler(FrameType type, FrameHandler handler) {
+		if(type == FrameType.MESSAGE) {
+			throw new IllegalArgumentException("Messages are handled by the read callback");
+		}
+		this.frameHandlers[type.getId() & 0xFF] = handler;
+	}
+	
+	/**
+	 * Registers the receiver for messages exceeding the maximum message size and bulk messages.
+	 * Such messages are then passed on in chunks as they arrive instead of being discarded.
+	 * The chunks are not processed by any {@link DataProcessingLayer}.
+	 * @param receiver to pass the chunks to, or null to discard such messages
+	 */
+	public void setMessageChunkReceiver(MessageChunkReceiver receiver) {
+		this.chunkReceiver = receiver;
+	}
+	
+	/**
+	 * Returns the framing this IOHandler uses
+	 * @return the framing this IOHandler uses
+	 */
+	public Framing getFraming() {
+		return this.framing;
+	}
+	
+	/**
+	 * Returns the transport settings this IOHandler has been created with
+	 * @return the transport config
+	 */
+	public TransportConfig getTransportConfig() {
+		return this.transportConfig;
+	}
+	
+	/**
+	 * Returns the amount of bytes the next read from the connection reads at most,
+	 * as adapted to the sizes of the recent reads
+	 * @return the current read size in bytes
+	 */
+	public int getReadSize() {
+		return this.readSize;
+	}
+	
+	/**
+	 * Adds a {@link TrafficShaper} whose limits the traffic of this IOHandler has to obey,
+	 * in addition to those of the shapers added before
+	 * @param shaper to add
+	 */
+	public void addTrafficShaper(TrafficShaper shaper) {
+		this.trafficShapers.addIfAbsent(shaper);
+	}
+	
+	/**
+	 * Removes a {@link TrafficShaper}
+	 * @param shaper to remove
+	 */
+	public void removeTrafficShaper(TrafficShaper shaper) {
+		this.trafficShapers.remove(shaper);
+	}
+	
+	/**
+	 * Returns the {@link TrafficShaper}s the traffic of this IOHandler obeys
+	 * @return the traffic shapers
+	 */
+	public List<TrafficShaper> getTrafficShapers() {
+		return this.trafficShapers;
+	}
+	
+	/**
+	 * Sets the {@link TrafficCapture} recording the frames received and written from now on,
+	 * replacing any previous capture. Null stops capturing.
+	 * @param capture to record to, may be null
+	 */
+	public synchronized void setTrafficCapture(TrafficCapture capture) {
+		if(this.trafficCapture != null) {
+			this.trafficCapture.record(this.captureConnection, TrafficCapture.Event.CLOSE, (byte)0, null, null, 0, 0);
+		}
+		if(capture != null) {
+			this.captureConnection = capture.open();
+		}
+		this.trafficCapture = capture;
+	}
+	
+	/**
+	 * Returns the {@link TrafficCapture} recording the frames of this IOHandler
+	 * @return the capture, null if the frames are not captured
+	 */
+	public TrafficCapture getTrafficCapture() {
+		return this.trafficCapture;
+	}
+	
+	/**
+	 * Records a frame in the traffic capture, if there is one
+	 * @param event either {@link TrafficCapture.Event#INBOUND} or {@link TrafficCapture.Event#OUTBOUND}
+	 * @param type id of the frame type
+	 * @param header type specific header, may be null
+	 * @param data buffer containing the rest of the frame
+	 * @param offset of the rest of the frame
+	 * @param length of the rest of the frame
+	 */
+	void capture(TrafficCapture.Event event, byte type, byte[] header, byte[] data, int offset, int length) {
+		TrafficCapture capture = this.trafficCapture;
+		if(capture != null) {
+			capture.record(this.captureConnection, event, type, header, data, offset, length);
+		}
+	}
+	
+	/**
+	 * Waits as long as the traffic shapers require before a frame of the given size is written
+	 * @param bytes the size of the frame
+	 */
+	void shapeOutbound(long bytes) {
+		if(!this.trafficShapers.isEmpty()) {
+			TrafficShaper.shapeOutbound(this.trafficShapers, bytes);
+		}
+	}
+	
+	/**
+	 * Waits as long as the traffic shapers require after bytes and frames have been read,
+	 * which pauses reading from the connection
+	 * @param bytes the amount of bytes read
+	 * @param frames the amount of frames read
+	 */
+	void shapeInbound(long bytes, int frames) {
+		if(!this.trafficShapers.isEmpty()) {
+			TrafficShaper.shapeInbound(this.trafficShapers, bytes, frames);
+		}
+	}
+	
+	/**
+	 * Returns the amount of writes that are waiting for or in progress on the connection.
+	 * A growing value means data is produced faster than the peer receives it.
+	 * @return the amount of pending writes
+	 */
+	public int getPendingWrites() {
+		return this.pendingWrites.get();
+	}
+	
 	/**
 	 * Closes the streams
 	 */
@@ -83,11 +380,16 @@ public class IOHandler {
 		this.notifyListeners(EventType.CLOSE_START);
 		try {
 			this.outputStream.flush();
+		} catch(Exception e) {
+			this.notifyListeners(EventType.CLOSE_FAILED, e);
+		}
+		try {
 			this.outputStream.close();
-			closed = true;
 		} catch(Exception e) {
 			this.notifyListeners(EventType.CLOSE_FAILED, e);
 		}
+		closed = true;
+		this.setTrafficCapture(null);
 		this.notifyListeners(EventType.CLOSE_END);
 	}
 	
@@ -101,7 +403,7 @@ public class IOHandler {
 		try {
 			int available = 0;
 			if((available = inputStream.available()) > 0) {
-				readNBytes(Math.min(available, MAX_READ_SIZE));
+				readChunk(Math.min(available, this.readSize), false, true);
 			}
 		} catch (SocketException e) {
 			if(e.getMessage().contains("Connection reset") || e.getMessage().contains("Socket closed")) {
@@ -114,13 +416,17 @@ public class IOHandler {
 		}
 	}
 	
+	/**
+	 * Reads up to {@link #getReadSize()} bytes from the inputstream, blocking until data is available.
+	 * Every message completed by the read bytes is handled before this method returns.
+	 */
 	public void readBlocking() {
 		if(closing || closed) {
 			return;
 		}
 		try {
 			this.notifyListeners(EventType.DATA_READ_START);
-			readToNBytes(MAX_READ_SIZE);
+			readChunk(this.readSize, true, true);
 			this.notifyListeners(EventType.DATA_READ_END);
 		} catch (Exception e) {
 			this.notifyListeners(EventType.DATA_READ_FAILED, e);
@@ -129,33 +435,77 @@ public class IOHandler {
 
 	/**
 	 * Tries to read a set amount of bytes from the stream. 
-	 * If an end-of-message byte is detected the read bytes are passed to the
-	 * read callback. 
+	 * Every message completed by the read bytes is passed to the read callback,
+	 * incomplete messages are kept in the buffer until the next call.
 	 * If an end of stream is detected the IOHandler is closed.
 	 * If more bytes are available than the amount that should be read they are left
-	 * in the stream until the next call
+	 * in the stream until the next call.
+	 * If another thread is currently reading, nothing is read.
 	 * @param amount of bytes to read
 	 */
 	protected void readNBytes(int amount) {
+		readChunk(amount, false, false);
+	}
+	
+	/**
+	 * Reads the given amount of bytes, handling every message completed on the way,
+	 * and flushes the buffer afterwards
+	 * @param total number of bytes to be read until the buffer gets flushed
+	 */
+	protected void readToNBytes(int total) {
+		int read = 0;
+		while(read < total && !closing && !closed) {
+			int count = readChunk(total - read, true, false);
+			if(count < 0) {
+				break;
+			}
+			read += count;
+		}
+		flushRead();
+	}
+	
+	/**
+	 * Reads up to the given amount of bytes from the stream and decodes them.
+	 * Reading and decoding happen under a lock, so bytes are decoded in the order they arrived
+	 * even if several threads read from this IOHandler.
+	 * @param amount the maximum amount of bytes to read
+	 * @param wait true to wait for other threads to finish reading, false to return immediately instead
+	 * @param adapt true to adapt the read size to the amount of bytes read
+	 * @return the amount of bytes read, or -1 if the stream has ended or the IOHandler is closed
+	 */
+	private int readChunk(int amount, boolean wait, boolean adapt) {
 		if(closing || closed) {
-			return;
+			return -1;
 		}
 		try {
-			for(int i = 0; i < amount; i++) {
-				int iRead = inputStream.read();
-				this.lastRead = System.nanoTime();
-				if(iRead == -1) {
-					close();
-					return;
-				}
-				byte read = ((Integer)iRead).byteValue();
-				if(read != IOHandler.END_OF_MESSAGE_BYTE) {
-					readBuffer.add(read);
-				} else {
-					flushRead();
-					break;
-				}
+			if(wait) {
+				this.readLock.lockInterruptibly();
+			} else if(!this.readLock.tryLock()) {
+				return 0;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+		try {
+			if(this.readChunkBuffer.length < amount) {
+				this.readChunkBuffer = new byte[amount];
+			}
+			int read = inputStream.read(this.readChunkBuffer, 0, amount);
+			this.lastRead = System.nanoTime();
+			if(read == -1) {
+				close();
+				return -1;
+			}
+			int frames = this.receivedFrames;
+			decode(this.readChunkBuffer, 0, read);
+			if(adapt) {
+				adaptReadSize(read);
 			}
+			shapeInbound(read, this.receivedFrames - frames);
+			return read;
+		} catch (ClosedChannelException e) {
+			close();
 		} catch (SocketException e) {
 			if(e.getMessage().contains("Connection reset") || e.getMessage().contains("Socket closed") || e.getMessage().contains("Broken pipe")) {
 				close();
@@ -164,30 +514,376 @@ public class IOHandler {
 			}
 		} catch (Exception e) {
 			this.notifyListeners(EventType.DATA_READ_FAILED, e);
+		} finally {
+			this.readLock.unlock();
 		}
+		return -1;
 	}
 	
 	/**
-	 * Reads bytes until the buffer contains the given amount of bytes
-	 * @param total number of bytes to be read to the buffer until it gets flushed
+	 * Decodes bytes read by someone else than this IOHandler, like the loop of a {@link ClientEventLoopGroup},
+	 * as if they had been read from the inputstream
+	 * @param buffer containing the read bytes
+	 * @param offset of the first read byte
+	 * @param length of the read bytes
 	 */
-	protected void readToNBytes(int total) {
-		while(readBuffer.size() < total) {
-			readNBytes(1);
+	void receive(byte[] buffer, int offset, int length) {
+		if(closing || closed) {
+			return;
+		}
+		this.readLock.lock();
+		try {
+			this.notifyListeners(EventType.DATA_READ_START);
+			this.lastRead = System.nanoTime();
+			int frames = this.receivedFrames;
+			decode(buffer, offset, length);
+			shapeInbound(length, this.receivedFrames - frames);
+			this.notifyListeners(EventType.DATA_READ_END);
+		} catch (Exception e) {
+			this.notifyListeners(EventType.DATA_READ_FAILED, e);
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+	
+	/**
+	 * Splits the read bytes into messages according to the framing
+	 * @param buffer containing the read bytes
+	 * @param offset of the first read byte
+	 * @param length of the read bytes
+	 */
+	private void decode(byte[] buffer, int offset, int length) {
+		if(this.framing == Framing.LENGTH_PREFIXED) {
+			decodeLengthPrefixed(buffer, offset, length);
+			return;
+		}
+		int start = offset;
+		int end = offset + length;
+		for(int i = offset; i < end; i++) {
+			if(buffer[i] == this.endOfMessageByte) {
+				consumeDelimited(buffer, start, i - start, true);
+				start = i + 1;
+			}
+		}
+		if(start < end) {
+			consumeDelimited(buffer, start, end - start, false);
+		}
+	}
+	
+	/**
+	 * Adds a segment of a delimited message to the buffer, streams or discards it
+	 * once the message exceeds the maximum message size
+	 * @param buffer containing the segment
+	 * @param offset of the segment
+	 * @param length of the segment
+	 * @param complete true if the segment is followed by the end-of-message byte
+	 */
+	private void consumeDelimited(byte[] buffer, int offset, int length, boolean complete) {
+		if(this.readState == ReadState.ASSEMBLING) {
+			if(this.readBufferSize + length <= this.maxMessageSize) {
+				appendToBuffer(buffer, offset, length);
+				if(complete) {
+					byte[] message = Arrays.copyOf(this.readBuffer, this.readBufferSize);
+					resetBuffer();
+					shrinkBuffer();
+					this.receivedFrames++;
+					capture(TrafficCapture.Event.INBOUND, FrameType.MESSAGE.getId(), null, message, 0, message.length);
+					FlightRecorderEvents.FrameRead event = new FlightRecorderEvents.FrameRead();
+					event.begin();
+					readCallback.accept(message);
+					event.record(FrameType.MESSAGE.getId(), message.length);
+				}
+				return;
+			}
+			beginOversizedMessage(-1);
+			if(this.readState == ReadState.STREAMING && this.readBufferSize > 0) {
+				deliverChunk(this.readBuffer, 0, this.readBufferSize, false);
+			}
+			this.readBufferSize = 0;
+		}
+		if(this.readState == ReadState.STREAMING) {
+			deliverChunk(buffer, offset, length, complete);
+		}
+		if(complete) {
+			resetBuffer();
 		}
-		flushRead();
 	}
 	
 	/**
-	 * Calls the readCallback with the bytes currently contained in the buffer
+	 * Reassembles length-prefixed frames, streams or discards frames exceeding the maximum message size
+	 * @param buffer containing the read bytes
+	 * @param offset of the first read byte
+	 * @param length of the read bytes
+	 */
+	private void decodeLengthPrefixed(byte[] buffer, int offset, int length) {
+		int position = offset;
+		int end = offset + length;
+		while(position < end) {
+			if(this.frameLength < 0) {
+				int count = Math.min(LENGTH_PREFIX_SIZE - this.readBufferSize, end - position);
+				appendToBuffer(buffer, position, count);
+				position += count;
+				if(this.readBufferSize == LENGTH_PREFIX_SIZE) {
+					this.frameLength = ((this.readBuffer[0] & 0xFF) << 24) | ((this.readBuffer[1] & 0xFF) << 16)
+							| ((this.readBuffer[2] & 0xFF) << 8) | (this.readBuffer[3] & 0xFF);
+					this.frameRemaining = this.frameLength;
+					this.readBufferSize = 0;
+					if(this.frameLength < 1) {
+						this.rejectFrameWithoutType();
+						return;
+					} else if(this.frameLength > this.maxMessageSize) {
+						this.readState = ReadState.OVERSIZED;
+					}
+				}
+				continue;
+			}
+			if(this.readState == ReadState.ASSEMBLING && this.frameRemaining == this.frameLength
+					&& buffer[position] == FrameType.BULK_MESSAGE.getId() && this.chunkReceiver != null) {
+				position++;
+				this.frameRemaining--;
+				beginOversizedMessage(this.frameLength - 1);
+			} else if(this.readState == ReadState.OVERSIZED) {
+				byte type = buffer[position++];
+				this.frameRemaining--;
+				if(type == FrameType.MESSAGE.getId() || type == FrameType.BULK_MESSAGE.getId()) {
+					beginOversizedMessage(this.frameLength - 1);
+				} else {
+					this.readState = ReadState.DISCARDING;
+					this.notifyListeners(EventType.DATA_READ_FAILED, new MessageTooLargeException(this.frameLength, this.maxMessageSize));
+				}
+			} else {
+				int count = (int)Math.min(this.frameRemaining, end - position);
+				int chunk = position;
+				position += count;
+				this.frameRemaining -= count;
+				if(this.readState == ReadState.ASSEMBLING) {
+					appendToBuffer(buffer, chunk, count);
+				} else if(this.readState == ReadState.STREAMING) {
+					deliverChunk(buffer, chunk, count, this.frameRemaining == 0);
+				}
+			}
+			if(this.frameRemaining == 0) {
+				ReadState state = this.readState;
+				int size = this.readBufferSize;
+				resetBuffer();
+				if(state == ReadState.STREAMING && this.streamedBytes == 0) {
+					deliverChunk(buffer, position, 0, true);
+				}
+				this.streamedBytes = 0;
+				if(state == ReadState.ASSEMBLING) {
+					dispatchFrame(this.readBuffer, 0, size);
+					shrinkBuffer();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Notifies the listeners about a frame without type and closes the connection,
+	 * as the following bytes can no longer be split into frames reliably
+	 */
+	private void rejectFrameWithoutType() {
+		this.notifyListeners(EventType.DATA_READ_FAILED, new IllegalStateException("Received frame without type"));
+		resetBuffer();
+		close();
+	}
+	
+	/**
+	 * Decides how to handle a message exceeding the maximum message size. If a {@link MessageChunkReceiver}
+	 * is registered the message is streamed, otherwise it is discarded and the listeners are notified.
+	 * @param messageLength the length of the message or -1 if it is unknown
+	 */
+	private void beginOversizedMessage(long messageLength) {
+		this.streamedBytes = 0;
+		this.streamedMessageLength = messageLength;
+		if(this.chunkReceiver != null) {
+			this.readState = ReadState.STREAMING;
+		} else {
+			this.readState = ReadState.DISCARDING;
+			this.notifyListeners(EventType.DATA_READ_FAILED, new MessageTooLargeException(messageLength, this.maxMessageSize));
+		}
+	}
+	
+	/**
+	 * Passes a chunk of a streamed message to the {@link MessageChunkReceiver}.
+	 * If the receiver fails, the rest of the message is discarded and the listeners are notified,
+	 * so the following frames are still read correctly.
+	 * @param buffer containing the chunk
+	 * @param offset of the chunk
+	 * @param length of the chunk
+	 * @param last true if the chunk ends the message
+	 */
+	private void deliverChunk(byte[] buffer, int offset, int length, boolean last) {
+		if(length == 0 && !last) {
+			return;
+		}
+		boolean first = this.streamedBytes == 0;
+		this.streamedBytes += Math.max(length, 1);
+		try {
+			this.chunkReceiver.onMessageChunk(buffer, offset, length, this.streamedMessageLength, first, last);
+		} catch(RuntimeException e) {
+			if(!last) {
+				this.readState = ReadState.DISCARDING;
+			}
+			this.notifyListeners(EventType.DATA_READ_FAILED, e);
+		}
+	}
+	
+	/**
+	 * Appends bytes to the buffer, growing it if necessary
+	 * @param buffer containing the bytes
+	 * @param offset of the first byte
+	 * @param length of the bytes
+	 */
+	private void appendToBuffer(byte[] buffer, int offset, int length) {
+		int required = this.readBufferSize + length;
+		if(required > this.readBuffer.length) {
+			this.readBuffer = Arrays.copyOf(this.readBuffer, Math.max(required, Math.min(this.readBuffer.length * 2, this.maxMessageSize + LENGTH_PREFIX_SIZE)));
+		}
+		System.arraycopy(buffer, offset, this.readBuffer, this.readBufferSize, length);
+		this.readBufferSize = required;
+	}
+	
+	/**
+	 * Discards the buffered bytes and prepares for the next message
+	 */
+	private void resetBuffer() {
+		this.readBufferSize = 0;
+		this.frameLength = -1;
+		this.frameRemaining = 0;
+		this.readState = ReadState.ASSEMBLING;
+	}
+	
+	/**
+	 * Adapts the read size to the amount of bytes the last read returned, within the bounds of the transport config.
+	 * A read filling the whole read size doubles it, so bulk transfers are drained in fewer reads.
+	 * Two reads in a row that would have fit into half of it halve it, and the chunk buffer with it,
+	 * so connections exchanging small messages do not hold on to large buffers.
+	 * Must be called while holding the read lock.
+	 * @param read the amount of bytes read
+	 */
+	private void adaptReadSize(int read) {
+		if(read >= this.readSize && this.readSize < this.maxReadSize) {
+			this.readSize = (int)Math.min(this.maxReadSize, this.readSize * 2L);
+			this.smallReads = 0;
+		} else if(read <= this.readSize / 2 && this.readSize > this.minReadSize) {
+			if(++this.smallReads >= 2) {
+				this.readSize = Math.max(this.minReadSize, this.readSize / 2);
+				this.readChunkBuffer = new byte[this.readSize];
+				this.smallReads = 0;
+			}
+		} else {
+			this.smallReads = 0;
+		}
+	}
+	
+	/**
+	 * Releases a buffer that has grown for a large message
+	 */
+	private void shrinkBuffer() {
+		if(this.readBufferSize == 0 && this.readBuffer.length > RETAINED_BUFFER_SIZE) {
+			this.readBuffer = new byte[this.readSize];
+		}
+	}
+	
+	/**
+	 * Passes the bytes currently contained in the buffer to the read callback.
+	 * With length-prefixed framing only whole frames are handled, so nothing happens.
 	 */
 	protected void flushRead() {
-		byte[] result = new byte[readBuffer.size()];
-		for(int i = 0; i < readBuffer.size(); i++) {
-		    result[i] = readBuffer.get(i).byteValue();
+		if(this.framing == Framing.LENGTH_PREFIXED) {
+			return;
+		}
+		this.readLock.lock();
+		try {
+			if(this.readState != ReadState.ASSEMBLING) {
+				return;
+			}
+			byte[] result = Arrays.copyOf(this.readBuffer, this.readBufferSize);
+			resetBuffer();
+			shrinkBuffer();
+			readCallback.accept(result);
+		} finally {
+			this.readLock.unlock();
 		}
-		readBuffer.clear();
-		readCallback.accept(result);
+	}
+	
+	/**
+	 * Passes a received frame to the read callback or the {@link FrameHandler} of its type
+	 * @param buffer containing the frame
+	 * @param offset of the type byte
+	 * @param length of the frame including the type byte
+	 */
+	private void dispatchFrame(byte[] buffer, int offset, int length) {
+		if(length < 1) {
+			deliverFrame(buffer, offset, length);
+			return;
+		}
+		this.receivedFrames++;
+		capture(TrafficCapture.Event.INBOUND, buffer[offset], null, buffer, offset + 1, length - 1);
+		FlightRecorderEvents.FrameRead event = new FlightRecorderEvents.FrameRead();
+		event.begin();
+		byte type = buffer[offset];
+		deliverFrame(buffer, offset, length);
+		event.record(type, length - 1);
+	}
+	
+	/**
+	 * Passes a frame to the read callback or the {@link FrameHandler} of its type without counting it as received,
+	 * so frames nested in other frames can be passed on
+	 * @param buffer containing the frame
+	 * @param offset of the type byte
+	 * @param length of the frame including the type byte
+	 */
+	void deliverFrame(byte[] buffer, int offset, int length) {
+		if(length < 1) {
+			this.rejectFrameWithoutType();
+			return;
+		}
+		byte type = buffer[offset];
+		if(type == FrameType.MESSAGE.getId() || type == FrameType.BULK_MESSAGE.getId()) {
+			readCallback.accept(Arrays.copyOfRange(buffer, offset + 1, offset + length));
+			return;
+		}
+		FrameHandler handler = this.frameHandlers[type & 0xFF];
+		if(handler == null) {
+			this.notifyListeners(EventType.DATA_READ_FAILED, new IllegalStateException("No handler for frame type "+type));
+			return;
+		}
+		handler.onFrame(buffer, offset + 1, length - 1);
+	}
+	
+	/**
+	 * Passes a frame received as a whole to the read callback or the {@link FrameHandler} of its type.
+	 * Messages are passed on without being copied, other frames are joined with their header.
+	 * @param type of the frame
+	 * @param header type specific header, may be null
+	 * @param data of the frame
+	 */
+	void dispatchFrame(FrameType type, byte[] header, byte[] data) {
+		this.lastRead = System.nanoTime();
+		capture(TrafficCapture.Event.INBOUND, type.getId(), header, data, 0, data.length);
+		FlightRecorderEvents.FrameRead event = new FlightRecorderEvents.FrameRead();
+		event.begin();
+		int size = (header == null ? 0 : header.length) + data.length;
+		if(type == FrameType.MESSAGE || type == FrameType.BULK_MESSAGE) {
+			readCallback.accept(data);
+			event.record(type.getId(), size);
+			return;
+		}
+		FrameHandler handler = this.frameHandlers[type.getId() & 0xFF];
+		if(handler == null) {
+			this.notifyListeners(EventType.DATA_READ_FAILED, new IllegalStateException("No handler for frame type "+type));
+			return;
+		}
+		if(header == null || header.length == 0) {
+			handler.onFrame(data, 0, data.length);
+		} else {
+			byte[] frame = Arrays.copyOf(header, header.length + data.length);
+			System.arraycopy(data, 0, frame, header.length, data.length);
+			handler.onFrame(frame, 0, frame.length);
+		}
+		event.record(type.getId(), size);
 	}
 	
 	/**
@@ -196,20 +892,313 @@ public class IOHandler {
 	 * @see java.io.PrintWriter
 	 */
 	public void write(byte[] data) {
+		write(FrameType.MESSAGE, null, data);
+	}
+	
+	/**
+	 * Writes data with the given priority to the OutputStream and flushes it.
+	 * @param data to be send
+	 * @param priority of the data
+	 * 
+	 * @see #write(FrameType, byte[], byte[], Priority)
+	 */
+	public void write(byte[] data, Priority priority) {
+		write(FrameType.MESSAGE, null, data, priority);
+	}
+	
+	/**
+	 * Writes a frame of the given type with {@link Priority#NORMAL} to the OutputStream and flushes it.
+	 * @param type of the frame
+	 * @param header type specific header written in front of the data, may be null
+	 * @param data to be send
+	 * 
+	 * @throws IllegalStateException if a frame other than a message should be written with delimited framing
+	 * @see #write(FrameType, byte[], byte[], Priority)
+	 */
+	public void write(FrameType type, byte[] header, byte[] data) {
+		write(type, header, data, Priority.NORMAL);
+	}
+	
+	/**
+	 * Writes a frame of the given type to the OutputStream and flushes it.
+	 * Concurrent writes are serialized so frames never interleave.<br>
+	 * The frame is queued in the lane of its priority. Whichever writer holds the write lock drains the lanes
+	 * as described in {@link Priority} until its own frame has been written, so a frame of a higher priority
+	 * overtakes frames of lower priorities that are still waiting. The method returns once the frame has been written.
+	 * @param type of the frame
+	 * @param header type specific header written in front of the data, may be null
+	 * @param data to be send
+	 * @param priority of the frame
+	 * 
+	 * @throws IllegalStateException if a frame other than a message should be written with delimited framing
+	 */
+	public void write(FrameType type, byte[] header, byte[] data, Priority priority) {
+		if(this.framing == Framing.DELIMITED && type != FrameType.MESSAGE) {
+			throw new IllegalStateException("Frames of type "+type+" require length-prefixed framing");
+		}
 		if(closing || closed) {
 			return;
 		}
+		FlightRecorderEvents.FrameWrite event = new FlightRecorderEvents.FrameWrite();
+		event.begin();
+		FlightRecorderEvents.OutboundStall stall = new FlightRecorderEvents.OutboundStall();
+		stall.begin();
+		int size = (header == null ? 0 : header.length) + data.length;
 		this.notifyListeners(EventType.WRITE, data);
+		shapeOutbound(size);
+		QueuedFrame frame = new QueuedFrame(type, header, data);
+		this.pendingWrites.incrementAndGet();
+		this.lanes[priority.ordinal()].offer(frame);
+		this.writeLock.lock();
+		stall.record(type, priority, this.pendingWrites.get());
 		try {
-			this.outputStream.write(data);
-			this.outputStream.write('\n');
-			this.outputStream.flush();
+			drainLanes(frame);
+		} finally {
+			this.writeLock.unlock();
+		}
+		this.notifyListeners(EventType.WRITE_END);
+		event.record(type, size, priority);
+	}
+	
+	/**
+	 * Writes queued frames in weighted rounds until the given frame has been written, flushing them as the
+	 * {@link TransportConfig.FlushPolicy} says. With {@link TransportConfig.FlushPolicy#WHEN_IDLE} the flush is left to
+	 * the next writer if one is waiting, which flushes the frames of both.<br>
+	 * If a write fails, the stream may end within a frame, so the queued frames are discarded and the connection is closed.
+	 * Must be called while holding the write lock.
+	 * @param own the frame of the calling writer
+	 */
+	private void drainLanes(QueuedFrame own) {
+		TransportConfig.FlushPolicy flushPolicy = this.transportConfig.getFlushPolicy();
+		try {
+			while(!own.written) {
+				if(closing || closed) {
+					discardQueuedFrames();
+					return;
+				}
+				for(Priority priority : Priority.values()) {
+					ConcurrentLinkedQueue<QueuedFrame> lane = this.lanes[priority.ordinal()];
+					QueuedFrame frame;
+					for(int i = 0; i < priority.getWeight() && (frame = lane.poll()) != null; i++) {
+						writeFrame(frame);
+						this.unflushed = true;
+						if(flushPolicy == TransportConfig.FlushPolicy.EVERY_FRAME) {
+							this.outputStream.flush();
+							this.unflushed = false;
+						}
+					}
+				}
+			}
+			if(this.unflushed && (flushPolicy != TransportConfig.FlushPolicy.WHEN_IDLE || this.pendingWrites.get() == 0)) {
+				this.outputStream.flush();
+				this.unflushed = false;
+			}
 		} catch(Exception e) {
 			this.notifyListeners(EventType.WRITE_FAILED, e);
+			discardQueuedFrames();
+			close();
+		}
+	}
+	
+	/**
+	 * Removes all frames from the lanes without writing them, so their writers return.
+	 * Must be called while holding the write lock.
+	 */
+	private void discardQueuedFrames() {
+		for(ConcurrentLinkedQueue<QueuedFrame> lane : this.lanes) {
+			QueuedFrame frame;
+			while((frame = lane.poll()) != null) {
+				frame.written = true;
+				this.pendingWrites.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Encodes a queued frame to the OutputStream without flushing it
+	 * @param frame to write
+	 * @throws IOException if the frame could not be written
+	 */
+	private void writeFrame(QueuedFrame frame) throws IOException {
+		capture(TrafficCapture.Event.OUTBOUND, frame.type.getId(), frame.header, frame.data, 0, frame.data.length);
+		try {
+			if(this.framing == Framing.LENGTH_PREFIXED) {
+				int length = 1 + (frame.header == null ? 0 : frame.header.length) + frame.data.length;
+				this.outputStream.write(new byte[] {
+						(byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length, 
+						frame.type.getId()
+				});
+				if(frame.header != null) {
+					this.outputStream.write(frame.header);
+				}
+				this.outputStream.write(frame.data);
+			} else {
+				this.outputStream.write(frame.data);
+				this.outputStream.write(this.endOfMessageByte);
+			}
+		} finally {
+			frame.written = true;
+			this.pendingWrites.decrementAndGet();
 		}
-		this.notifyListeners(EventType.WRITE_END);
+	}
+	
+	/**
+	 * Creates one empty lane per priority
+	 * @return the lanes indexed by the ordinal of their priority
+	 */
+	@SuppressWarnings("unchecked")
+	private static ConcurrentLinkedQueue<QueuedFrame>[] createLanes() {
+		ConcurrentLinkedQueue<QueuedFrame>[] lanes = new ConcurrentLinkedQueue[Priority.values().length];
+		for(int i = 0; i < lanes.length; i++) {
+			lanes[i] = new ConcurrentLinkedQueue<QueuedFrame>();
+		}
+		return lanes;
 	}
 
+	/**
+	 * Writes a region of a file as a single message.<br>
+	 * If the IOHandler has a channel the content is transferred with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * which lets the operating system copy it to the socket directly (sendfile on Linux).
+	 * Otherwise it is copied through a small buffer. In both cases only the frame header passes through the heap.<br>
+	 * Requires {@link Framing#LENGTH_PREFIXED} framing, since a file may contain the end-of-message byte.
+	 * The message is announced as {@link FrameType#BULK_MESSAGE}, so a receiver
+	 * with a {@link MessageChunkReceiver} does not have to hold it in memory either.<br>
+	 * Listeners are not notified of the content about to be written, 
+	 * only of the end of the write or its failure.<br>
+	 * If the content could not be written completely the connection is closed, as the receiver can no longer find the next frame.
+	 * @param file to read the content from
+	 * @param position of the first byte to send
+	 * @param length of the content to send
+	 * @throws IOException if the region reaches beyond the end of the file, the file could not be read or the content could not be written
+	 * @throws IllegalArgumentException if the content is too large for a single frame
+	 * @throws IllegalStateException if delimited framing is used
+	 */
+	public void writeFile(FileChannel file, long position, long length) throws IOException {
+		if(this.getFraming() != Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Files require length-prefixed framing");
+		}
+		if(length > Integer.MAX_VALUE - 1) {
+			throw new IllegalArgumentException("File region of "+length+" bytes exceeds the maximum frame size");
+		}
+		if(closing || closed) {
+			throw new IOException("IOHandler is closed");
+		}
+		checkFileRegion(file, position, length);
+		shapeOutbound(length);
+		this.pendingWrites.incrementAndGet();
+		this.writeLock.lock();
+		try {
+			int frameLength = (int)length + 1;
+			this.outputStream.write(new byte[] {
+					(byte)(frameLength >>> 24), (byte)(frameLength >>> 16), (byte)(frameLength >>> 8), (byte)frameLength, 
+					FrameType.BULK_MESSAGE.getId()
+			});
+			transfer(file, position, length);
+			this.outputStream.flush();
+			this.unflushed = false;
+		} catch(IOException e) {
+			this.notifyListeners(EventType.WRITE_FAILED, e);
+			close();
+			throw e;
+		} finally {
+			this.writeLock.unlock();
+			this.pendingWrites.decrementAndGet();
+		}
+		this.notifyListeners(EventType.WRITE_END);
+	}
+	
+	/**
+	 * Writes frames that have already been encoded for length-prefixed framing from a region of a file,
+	 * transferring them like {@link #writeFile(FileChannel, long, long)} without copying them to the heap.
+	 * The region must consist of whole frames. If it could not be written completely the connection is closed.
+	 * @param file to read the frames from
+	 * @param position of the first frame
+	 * @param length of the region
+	 * @throws IOException if the region reaches beyond the end of the file, the file could not be read or the frames could not be written
+	 */
+	void writeEncoded(FileChannel file, long position, long length) throws IOException {
+		if(closing || closed) {
+			throw new IOException("IOHandler is closed");
+		}
+		checkFileRegion(file, position, length);
+		shapeOutbound(length);
+		this.pendingWrites.incrementAndGet();
+		this.writeLock.lock();
+		try {
+			transfer(file, position, length);
+			this.outputStream.flush();
+			this.unflushed = false;
+		} catch(IOException e) {
+			this.notifyListeners(EventType.WRITE_FAILED, e);
+			close();
+			throw e;
+		} finally {
+			this.writeLock.unlock();
+			this.pendingWrites.decrementAndGet();
+		}
+		this.notifyListeners(EventType.WRITE_END);
+	}
+	
+	/**
+	 * Checks that a region lies within a file before anything of it is written
+	 * @param file containing the region
+	 * @param position of the first byte of the region
+	 * @param length of the region
+	 * @throws IOException if the size of the file could not be read or the region reaches beyond the end of the file
+	 * @throws IllegalArgumentException if the position or length is negative
+	 */
+	private static void checkFileRegion(FileChannel file, long position, long length) throws IOException {
+		if(position < 0 || length < 0) {
+			throw new IllegalArgumentException("Invalid file region of "+length+" bytes at "+position);
+		}
+		long size = file.size();
+		if(position > size || length > size - position) {
+			throw new IOException("File region ends "+(position + length - size)+" bytes beyond the end of the file");
+		}
+	}
+	
+	/**
+	 * Transfers a region of a file to the channel of the IOHandler, or its OutputStream if it has no channel.
+	 * Must be called while holding the write lock.
+	 * @param file to read from
+	 * @param position of the first byte to transfer
+	 * @param length of the region
+	 * @throws IOException if the file could not be read or ends before the end of the region, or the content could not be written
+	 */
+	private void transfer(FileChannel file, long position, long length) throws IOException {
+		this.outputStream.flush();
+		WritableByteChannel target = this.channel != null ? this.channel : Channels.newChannel(this.outputStream);
+		long transferred = 0;
+		while(transferred < length) {
+			long count = file.transferTo(position + transferred, length - transferred, target);
+			if(count <= 0 && position + transferred >= file.size()) {
+				throw new IOException("File ended "+(length - transferred)+" bytes before the end of the region");
+			}
+			transferred += count;
+		}
+	}
+	
+	/**
+	 * Reads a region of a file into memory
+	 * @param file to read from
+	 * @param position of the first byte to read
+	 * @param length of the region
+	 * @return the content of the region
+	 * @throws IOException if the file could not be read or ends before the end of the region
+	 */
+	static byte[] readFileRegion(FileChannel file, long position, long length) throws IOException {
+		if(length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("File region of "+length+" bytes is too large to be held in memory");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int)length);
+		while(buffer.hasRemaining()) {
+			if(file.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("File ended "+buffer.remaining()+" bytes before the end of the region");
+			}
+		}
+		return buffer.array();
+	}
+	
 	/**
 	 * Registers a ClientListener
 	 * @param listener to add
@@ -240,7 +1229,7 @@ public class IOHandler {
 	 * 
 	 * @see IOHandlerListener
 	 */
-	private void notifyListeners(EventType type, Object... args) {
+	protected void notifyListeners(EventType type, Object... args) {
 		if(IOHandler.VERBOSE && args.length > 0 && args[0] instanceof Exception) {
 			((Exception)args[0]).printStackTrace();
 		}
@@ -304,39 +1293,82 @@ public class IOHandler {
 	}
 	
 	/**
-	 * Returns the byte that is currently set to mark the end of a message.
+	 * Returns the byte that marks the end of a message by default.
 	 * Its default value is set to 0x0A, which is the LINE FEED byte.
-	 * @return the byte that is currently set to mark the end of a message
+	 * @return the byte that marks the end of a message by default
+	 * @see TransportConfig#getEndOfMessageByte()
 	 */
 	public static byte getEndOfMessageByte() {
 		return IOHandler.END_OF_MESSAGE_BYTE;
 	}
 	
 	/**
-	 * Sets the byte that marks the end of a message.
+	 * Sets the byte that marks the end of a message in {@link TransportConfig}s created afterwards.
 	 * Its default value is set to 0x0A, which is the LINE FEED byte.
 	 * @param endOfMessageByte the byte that should represent the end of a message
+	 * @see TransportConfig#withEndOfMessageByte(byte)
 	 */
 	public static void setEndOfMessageByte(byte endOfMessageByte) {
 		IOHandler.END_OF_MESSAGE_BYTE = endOfMessageByte;
 	}
 	
 	/**
-	 * Returns the maximum count of bytes that are being read at one time.
-	 * This is done so that a long message does not block other connections from reading for too long. 
-	 * @return the maximum count of bytes that are being read at one time.
+	 * Returns the count of bytes that are being read at one time from a new connection by default.
+	 * The count then adapts to the traffic of the connection, see {@link #getReadSize()}.
+	 * @return the count of bytes that are being read at one time from a new connection.
+	 * @see TransportConfig#getReadBufferSize()
 	 */
 	public static int getMaxReadSize() {
 		return IOHandler.MAX_READ_SIZE;
 	}
 	
 	/**
-	 * Sets the maximum count of bytes that are being read at one time.
-	 * This is done so that a long message does not block other connections from reading for too long.
-	 * Higher values may result in longer answer times.
-	 * @param maxReadSize the maximum count of bytes that are being read at one time.
+	 * Sets the count of bytes that are being read at one time from a new connection in {@link TransportConfig}s created afterwards.
+	 * The count then adapts to the traffic of the connection, see {@link #getReadSize()}.
+	 * @param maxReadSize the count of bytes that are being read at one time from a new connection.
+	 * @see TransportConfig#withReadBufferSize(int)
 	 */
 	public static void setMaxReadSize(int maxReadSize) {
 		IOHandler.MAX_READ_SIZE = maxReadSize;
 	}
+	
+	/**
+	 * Returns the maximum size of a message in bytes that is reassembled in memory by default.
+	 * Its default value is 16 MiB.
+	 * @return the maximum size of a message in bytes
+	 * @see TransportConfig#getMaxMessageSize()
+	 */
+	public static int getMaxMessageSize() {
+		return IOHandler.MAX_MESSAGE_SIZE;
+	}
+	
+	/**
+	 * Sets the maximum size of a message in bytes that IOHandlers reassemble in memory in {@link TransportConfig}s created afterwards.
+	 * Larger messages are passed to the {@link MessageChunkReceiver} or discarded.
+	 * @param maxMessageSize the maximum size of a message in bytes
+	 * @see TransportConfig#withMaxMessageSize(int)
+	 */
+	public static void setMaxMessageSize(int maxMessageSize) {
+		IOHandler.MAX_MESSAGE_SIZE = maxMessageSize;
+	}
+	
+	/**
+	 * Returns the framing newly created IOHandlers use by default.
+	 * Its default value is {@link Framing#DELIMITED}.
+	 * @return the framing newly created IOHandlers use by default
+	 * @see TransportConfig#getFraming()
+	 */
+	public static Framing getDefaultFraming() {
+		return IOHandler.FRAMING;
+	}
+	
+	/**
+	 * Sets the framing of {@link TransportConfig}s created afterwards.
+	 * Both sides of a connection must use the same framing.
+	 * @param framing the framing newly created IOHandlers should use
+	 * @see TransportConfig#withFraming(Framing)
+	 */
+	public static void setDefaultFraming(Framing framing) {
+		IOHandler.FRAMING = framing;
+	}
 }
@@ -0,0 +1,163 @@
+package dev.bitbite.networking;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Receives the {@link FrameType#JOURNALED} frames of a server with a {@link MessageJournal} on the client side.<br>
+ * It unwraps the frames and passes them on like frames received directly, unless their sequence number
+ * is not greater than the last one received, so messages are never passed on twice. After a replay
+ * has been requested, messages are held back until the server announces the range it replays. Those
+ * beyond the range are held back until the replay has ended, the others are replayed anyway.
+ * If more messages than allowed are held back, the connection is closed instead of waiting for the replay any longer.
+ * The last sequence number is kept across connections, so a replay requested after reconnecting continues with
+ * the first message that has not been passed on.
+ *
+ * @see MessageJournal
+ */
+class JournalReceiver {
+
+	/**
+	 * The default maximum amount of messages held back while a replay is pending
+	 */
+	static final int MAX_HELD_BACK = 16 * 1024;
+
+	private volatile long lastSequence = -1;
+	private IOHandler iOHandler;
+	private boolean awaitingReplay;
+	private boolean replaying;
+	private long replayLast;
+	private final ArrayDeque<byte[]> heldBack;
+	private final int maxHeldBack;
+
+	/**
+	 * Creates a receiver that has not received any journaled message yet
+	 */
+	JournalReceiver() {
+		this(MAX_HELD_BACK);
+	}
+
+	/**
+	 * Creates a receiver that has not received any journaled message yet
+	 * @param maxHeldBack the maximum amount of messages held back while a replay is pending
+	 */
+	JournalReceiver(int maxHeldBack) {
+		this.heldBack = new ArrayDeque<byte[]>();
+		this.maxHeldBack = maxHeldBack;
+	}
+
+	/**
+	 * Returns the sequence number of the last journaled message passed on
+	 * @return the last sequence number, -1 if none has been received
+	 */
+	long getLastSequence() {
+		return this.lastSequence;
+	}
+
+	/**
+	 * Registers the receiver for journaled and replay frames at the IOHandler of a new connection.
+	 * A replay that has not ended on the previous connection is abandoned.
+	 * @param iOHandler of the connection
+	 */
+	synchronized void attach(IOHandler iOHandler) {
+		this.iOHandler = iOHandler;
+		this.awaitingReplay = false;
+		this.replaying = false;
+		this.heldBack.clear();
+		if(iOHandler.getFraming() == IOHandler.Framing.LENGTH_PREFIXED) {
+			iOHandler.setFrameHandler(FrameType.JOURNALED, this::onJournaled);
+			iOHandler.setFrameHandler(FrameType.REPLAY, this::onReplay);
+		}
+	}
+
+	/**
+	 * Asks the server to replay the journaled messages starting with a sequence number
+	 * @param from the sequence number of the first message to replay
+	 *
+	 * @throws IllegalStateException if not connected with length-prefixed framing
+	 */
+	void requestReplay(long from) {
+		IOHandler iOHandler;
+		synchronized(this) {
+			iOHandler = this.iOHandler;
+			if(iOHandler == null || iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+				throw new IllegalStateException("Replays require a connection with length-prefixed framing");
+			}
+			this.awaitingReplay = true;
+		}
+		byte[] request = new byte[8];
+		MessageJournal.writeLong(request, 0, from);
+		iOHandler.write(FrameType.REPLAY, new byte[] {MessageJournal.REPLAY_REQUEST}, request, Priority.HIGH);
+	}
+
+	/**
+	 * Passes a journaled frame on or holds it back while a replay is pending.
+	 * Once the limit of held back messages is reached, the connection is closed and the following frames are dropped.
+	 * @param buffer containing the frame
+	 * @param offset of the sequence number
+	 * @param length of the frame without the type byte
+	 */
+	private synchronized void onJournaled(byte[] buffer, int offset, int length) {
+		if(this.iOHandler.isClosed()) {
+			return;
+		}
+		if(length < 9) {
+			this.iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, new IllegalStateException("Received malformed journaled frame"));
+			return;
+		}
+		long sequence = MessageJournal.readLong(buffer, offset);
+		if(this.awaitingReplay || (this.replaying && sequence > this.replayLast)) {
+			if(this.heldBack.size() >= this.maxHeldBack) {
+				this.heldBack.clear();
+				this.iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED,
+						new IllegalStateException("More than "+this.maxHeldBack+" messages held back while waiting for a replay"));
+				this.iOHandler.close();
+				return;
+			}
+			this.heldBack.add(Arrays.copyOfRange(buffer, offset, offset + length));
+			return;
+		}
+		this.deliver(sequence, buffer, offset + 8, length - 8);
+	}
+
+	/**
+	 * Handles the start and end of a replay
+	 * @param buffer containing the frame
+	 * @param offset of the byte telling the start from the end
+	 * @param length of the frame without the type byte
+	 */
+	private synchronized void onReplay(byte[] buffer, int offset, int length) {
+		if(length < 17) {
+			this.iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, new IllegalStateException("Received malformed replay frame"));
+			return;
+		}
+		if(buffer[offset] == MessageJournal.REPLAY_START) {
+			this.awaitingReplay = false;
+			this.replaying = true;
+			this.replayLast = MessageJournal.readLong(buffer, offset + 9);
+			this.heldBack.removeIf(frame -> MessageJournal.readLong(frame, 0) <= this.replayLast);
+		} else if(buffer[offset] == MessageJournal.REPLAY_END) {
+			this.replaying = false;
+			byte[] frame;
+			while(!this.awaitingReplay && (frame = this.heldBack.poll()) != null) {
+				this.deliver(MessageJournal.readLong(frame, 0), frame, 8, frame.length - 8);
+			}
+		}
+	}
+
+	/**
+	 * Passes the wrapped frame of a journaled message on, unless it has been passed on before
+	 * @param sequence of the message
+	 * @param buffer containing the wrapped frame
+	 * @param offset of the type byte of the wrapped frame
+	 * @param length of the wrapped frame
+	 */
+	private void deliver(long sequence, byte[] buffer, int offset, int length) {
+		if(sequence <= this.lastSequence) {
+			return;
+		}
+		this.lastSequence = sequence;
+		this.iOHandler.deliverFrame(buffer, offset, length);
+	}
+
+}
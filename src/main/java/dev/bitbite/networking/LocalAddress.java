@@ -0,0 +1,45 @@
+package dev.bitbite.networking;
+
+import java.net.SocketAddress;
+
+import lombok.Getter;
+
+/**
+ * The address of an endpoint of a transport between endpoints on the same host, which has no network address,
+ * like the in-JVM local transport or the shared memory transport
+ *
+ * @see LocalSocket
+ * @see SharedMemorySocket
+ */
+public class LocalAddress extends SocketAddress {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The name of the endpoint
+	 */
+	@Getter private final String name;
+
+	/**
+	 * Creates the address of the endpoint with the given name
+	 * @param name of the endpoint
+	 */
+	public LocalAddress(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof LocalAddress && ((LocalAddress)other).name.equals(this.name);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "local:"+this.name;
+	}
+
+}
@@ -0,0 +1,26 @@
+package dev.bitbite.networking;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A frame exchanged between two {@link LocalSocket}s. It holds references to the arrays
+ * passed to the writing {@link LocalIOHandler}, which are handed to the reading side as they are.
+ */
+@AllArgsConstructor
+class LocalFrame {
+
+	/**
+	 * The type of the frame
+	 */
+	@Getter private final FrameType type;
+	/**
+	 * The type specific header, may be null
+	 */
+	@Getter private final byte[] header;
+	/**
+	 * The payload of the frame
+	 */
+	@Getter private final byte[] data;
+
+}
@@ -0,0 +1,210 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * The IOHandler of a {@link LocalSocket}. Instead of encoding frames into a stream it passes them
+ * to the other endpoint as they are, so the array of a message written on one side is the array
+ * the read callback receives on the other side. Arrays must therefore not be modified once written.<br>
+ * Frames of all types are supported, as if {@link Framing#LENGTH_PREFIXED} framing was used,
+ * and messages are not limited by the maximum message size.
+ *
+ * @see LocalSocket
+ */
+public class LocalIOHandler extends IOHandler {
+
+	private final LocalSocket socket;
+	private final ReentrantLock readLock;
+
+	/**
+	 * Initializes the IOHandler for the given local socket
+	 * @param socket to exchange frames with
+	 * @param onRead the read Callback method which is called when a message is received
+	 */
+	public LocalIOHandler(LocalSocket socket, Consumer<byte[]> onRead) {
+		this(socket, new TransportConfig(), onRead);
+	}
+
+	/**
+	 * Initializes the IOHandler for the given local socket with a transport config.
+	 * Only the settings that do not concern the encoding of frames apply, such as those of multiplexed streams.
+	 * @param socket to exchange frames with
+	 * @param transportConfig the transport settings of the connection
+	 * @param onRead the read Callback method which is called when a message is received
+	 */
+	public LocalIOHandler(LocalSocket socket, TransportConfig transportConfig, Consumer<byte[]> onRead) {
+		super(InputStream.nullInputStream(), OutputStream.nullOutputStream(), null, transportConfig, onRead);
+		this.socket = socket;
+		this.readLock = new ReentrantLock();
+	}
+
+	@Override
+	public Framing getFraming() {
+		return Framing.LENGTH_PREFIXED;
+	}
+
+	/**
+	 * Handles the frames received so far without waiting
+	 */
+	@Override
+	public void read() {
+		if(isClosed() || !this.readLock.tryLock()) {
+			return;
+		}
+		try {
+			drain();
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for a frame and handles it, along with all other frames received so far.
+	 * If the other endpoint has been closed, this IOHandler is closed.
+	 */
+	@Override
+	public void readBlocking() {
+		if(isClosed()) {
+			return;
+		}
+		try {
+			this.readLock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try {
+			this.notifyListeners(EventType.DATA_READ_START);
+			LocalFrame frame = this.socket.take();
+			if(frame == null) {
+				close();
+				return;
+			}
+			deliver(frame);
+			drain();
+			this.notifyListeners(EventType.DATA_READ_END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			this.notifyListeners(EventType.DATA_READ_FAILED, e);
+		} finally {
+			this.readLock.unlock();
+		}
+	}
+
+	@Override
+	protected void readNBytes(int amount) {
+		read();
+	}
+
+	@Override
+	protected void readToNBytes(int total) {
+		read();
+	}
+
+	@Override
+	protected void flushRead() {}
+
+	/**
+	 * Handles all frames received so far
+	 */
+	private void drain() {
+		LocalFrame frame;
+		while((frame = this.socket.poll()) != null) {
+			try {
+				deliver(frame);
+			} catch(Exception e) {
+				this.notifyListeners(EventType.DATA_READ_FAILED, e);
+			}
+		}
+	}
+
+	/**
+	 * Passes a frame to the read callback or the {@link FrameHandler} of its type
+	 * and waits as long as the traffic shapers require
+	 * @param frame to pass on
+	 */
+	private void deliver(LocalFrame frame) {
+		dispatchFrame(frame.getType(), frame.getHeader(), frame.getData());
+		shapeInbound((frame.getHeader() == null ? 0 : frame.getHeader().length) + frame.getData().length, 1);
+	}
+
+	/**
+	 * Passes the frame to the other endpoint without copying the data, waiting while the window of the other endpoint is full.
+	 * The priority is ignored, since frames are handed over without waiting for each other.
+	 * @param type of the frame
+	 * @param header type specific header, may be null
+	 * @param data to be send
+	 * @param priority of the frame
+	 */
+	@Override
+	public void write(FrameType type, byte[] header, byte[] data, Priority priority) {
+		if(isClosed()) {
+			return;
+		}
+		FlightRecorderEvents.FrameWrite event = new FlightRecorderEvents.FrameWrite();
+		event.begin();
+		FlightRecorderEvents.OutboundStall stall = new FlightRecorderEvents.OutboundStall();
+		stall.begin();
+		int size = (header == null ? 0 : header.length) + data.length;
+		this.notifyListeners(EventType.WRITE, data);
+		shapeOutbound(size);
+		stall.record(type, priority, 0);
+		capture(TrafficCapture.Event.OUTBOUND, type.getId(), header, data, 0, data.length);
+		if(!this.socket.send(new LocalFrame(type, header, data))) {
+			this.notifyListeners(EventType.WRITE_FAILED, new SocketException("Socket closed"));
+		}
+		this.notifyListeners(EventType.WRITE_END);
+		event.record(type, size, priority);
+	}
+
+	/**
+	 * Reads the file region into memory and passes it to the other endpoint as a single message
+	 */
+	@Override
+	public void writeFile(FileChannel file, long position, long length) throws IOException {
+		if(isClosed()) {
+			throw new IOException("IOHandler is closed");
+		}
+		write(FrameType.MESSAGE, null, readFileRegion(file, position, length));
+	}
+
+	/**
+	 * Reads the encoded frames from the file region and passes them to the other endpoint one by one
+	 */
+	@Override
+	void writeEncoded(FileChannel file, long position, long length) throws IOException {
+		if(isClosed()) {
+			throw new IOException("IOHandler is closed");
+		}
+		byte[] frames = readFileRegion(file, position, length);
+		int offset = 0;
+		while(offset + 5 <= frames.length) {
+			int frameLength = ((frames[offset] & 0xFF) << 24) | ((frames[offset + 1] & 0xFF) << 16) 
+							| ((frames[offset + 2] & 0xFF) << 8) | (frames[offset + 3] & 0xFF);
+			FrameType type = FrameType.fromId(frames[offset + 4]);
+			if(frameLength < 1 || type == null || offset + 4 + frameLength > frames.length) {
+				throw new IOException("Region does not consist of whole frames");
+			}
+			write(type, null, Arrays.copyOfRange(frames, offset + 5, offset + 4 + frameLength));
+			offset += 4 + frameLength;
+		}
+	}
+
+	/**
+	 * Closes the IOHandler and the socket, which signals the end of the connection to the other endpoint
+	 */
+	@Override
+	public void close() {
+		super.close();
+		this.socket.close();
+	}
+
+}
@@ -0,0 +1,149 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ServerSocket} of the in-JVM local transport, registered under a name that
+ * {@link LocalSocket}s in the same JVM connect to.<br>
+ * Accepted sockets report the name followed by a sequence number as their remote address,
+ * which keeps client addresses unique.
+ *
+ * @see Server#setLocalName(String)
+ */
+public class LocalServerSocket extends ServerSocket {
+
+	private static final ConcurrentHashMap<String, LocalServerSocket> SERVERS = new ConcurrentHashMap<String, LocalServerSocket>();
+	private static final LocalSocket CLOSED = new LocalSocket(null);
+
+	private final String name;
+	private final LinkedBlockingQueue<LocalSocket> pending;
+	private final AtomicLong connections;
+	private volatile int timeout = 0;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a server socket and registers it under the given name
+	 * @param name to register the socket under
+	 * @throws BindException if the name is already in use
+	 */
+	public LocalServerSocket(String name) throws IOException {
+		this.name = name;
+		this.pending = new LinkedBlockingQueue<LocalSocket>();
+		this.connections = new AtomicLong();
+		if(SERVERS.putIfAbsent(name, this) != null) {
+			throw new BindException("Local name "+name+" is already in use");
+		}
+	}
+
+	/**
+	 * Looks up the server socket registered under the given name
+	 * @param name of the server socket
+	 * @return the server socket or null if there is none
+	 */
+	static LocalServerSocket lookup(String name) {
+		return SERVERS.get(name);
+	}
+
+	/**
+	 * Returns the id of the next accepted connection
+	 * @return the id of the next accepted connection
+	 */
+	long nextConnectionId() {
+		return this.connections.incrementAndGet();
+	}
+
+	/**
+	 * Queues a connecting socket to be accepted
+	 * @param socket the endpoint to be accepted
+	 * @throws ConnectException if the server socket is closed
+	 */
+	void enqueue(LocalSocket socket) throws ConnectException {
+		if(this.closed) {
+			throw new ConnectException("Local server "+this.name+" is closed");
+		}
+		this.pending.offer(socket);
+	}
+
+	/**
+	 * Waits for a connection and accepts it.
+	 * If a timeout is set, a {@link SocketTimeoutException} is thrown once it elapses.
+	 * @return the accepted socket
+	 * @throws SocketException if the socket is closed
+	 * @throws InterruptedIOException if the waiting thread has been interrupted
+	 */
+	@Override
+	public Socket accept() throws IOException {
+		if(this.closed) {
+			throw new SocketException("Socket is closed");
+		}
+		LocalSocket socket;
+		try {
+			socket = this.timeout > 0 ? this.pending.poll(this.timeout, TimeUnit.MILLISECONDS) : this.pending.take();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Accept interrupted");
+		}
+		if(socket == null) {
+			throw new SocketTimeoutException("Accept timed out");
+		}
+		if(socket == CLOSED) {
+			this.pending.offer(CLOSED);
+			throw new SocketException("Socket is closed");
+		}
+		return socket;
+	}
+
+	@Override
+	public void setSoTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public int getSoTimeout() {
+		return this.timeout;
+	}
+
+	@Override
+	public boolean isBound() {
+		return true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Unregisters the name and closes the connections that have not been accepted yet
+	 */
+	@Override
+	public void close() {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		SERVERS.remove(this.name, this);
+		LocalSocket socket;
+		while((socket = this.pending.poll()) != null) {
+			socket.close();
+		}
+		this.pending.offer(CLOSED);
+	}
+
+	@Override
+	public String toString() {
+		return "LocalServerSocket["+this.name+"]";
+	}
+
+}
@@ -0,0 +1,211 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An endpoint of a connection of the in-JVM local transport. Frames written on one endpoint are put
+ * into a lock-free queue of the other one, where a waiting reader is woken up. No bytes are copied
+ * and nothing passes through the kernel.<br>
+ * The queue is bounded by a window of {@link #WINDOW_SIZE} bytes, like the buffers of a TCP connection:
+ * a writer waits while the frames it has queued and the other endpoint has not read yet fill the window.<br>
+ * The socket has no streams of its own; it is read and written through a {@link LocalIOHandler}.
+ * Closing an endpoint lets the other one read the frames still queued and then see the end of the connection.
+ *
+ * @see LocalServerSocket
+ * @see Client#setLocalName(String)
+ */
+public class LocalSocket extends Socket {
+
+	/**
+	 * The amount of bytes of frames that may be queued at an endpoint before writers have to wait.
+	 * Every frame counts with its size plus {@link #FRAME_OVERHEAD}, a frame larger than the window fills the whole window.
+	 */
+	static final int WINDOW_SIZE = 4 * 1024 * 1024;
+	private static final int FRAME_OVERHEAD = 16;
+
+	private final SocketAddress remoteAddress;
+	private final ConcurrentLinkedQueue<LocalFrame> inbound;
+	private final Semaphore window;
+	private LocalSocket peer;
+	private volatile Thread waitingReader;
+	private volatile boolean closed = false;
+	private volatile boolean peerClosed = false;
+
+	/**
+	 * Creates an unconnected endpoint
+	 * @param remoteAddress the address to report for the remote side
+	 */
+	LocalSocket(SocketAddress remoteAddress) {
+		this.remoteAddress = remoteAddress;
+		this.inbound = new ConcurrentLinkedQueue<LocalFrame>();
+		this.window = new Semaphore(WINDOW_SIZE);
+	}
+
+	/**
+	 * Connects to the local server with the given name
+	 * @param name of the server
+	 * @return the connected socket
+	 * @throws ConnectException if there is no local server with that name
+	 */
+	public static LocalSocket connect(String name) throws IOException {
+		LocalServerSocket server = LocalServerSocket.lookup(name);
+		if(server == null) {
+			throw new ConnectException("No local server named "+name);
+		}
+		LocalSocket client = new LocalSocket(new LocalAddress(name));
+		LocalSocket accepted = new LocalSocket(new LocalAddress(name+"#"+server.nextConnectionId()));
+		client.peer = accepted;
+		accepted.peer = client;
+		server.enqueue(accepted);
+		return client;
+	}
+
+	/**
+	 * Puts a frame into the queue of the other endpoint and wakes up its reader.
+	 * Waits while the window of the other endpoint is full.
+	 * @param frame to send
+	 * @return false if either endpoint is closed or the waiting thread has been interrupted
+	 */
+	boolean send(LocalFrame frame) {
+		if(this.closed || this.peerClosed) {
+			return false;
+		}
+		try {
+			this.peer.window.acquire(windowShare(frame));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		if(this.closed || this.peerClosed) {
+			return false;
+		}
+		this.peer.inbound.offer(frame);
+		this.peer.wakeUp();
+		return true;
+	}
+
+	/**
+	 * Returns the next received frame without waiting
+	 * @return the frame or null if there is none
+	 */
+	LocalFrame poll() {
+		return this.read(this.inbound.poll());
+	}
+
+	/**
+	 * Waits for the next received frame
+	 * @return the frame or null if the connection has ended and all frames have been read
+	 * @throws InterruptedException if the waiting thread has been interrupted
+	 */
+	LocalFrame take() throws InterruptedException {
+		while(true) {
+			LocalFrame frame = this.poll();
+			if(frame != null) {
+				return frame;
+			}
+			if(this.closed || this.peerClosed) {
+				return this.poll();
+			}
+			this.waitingReader = Thread.currentThread();
+			if(this.inbound.isEmpty() && !this.closed && !this.peerClosed) {
+				LockSupport.park(this);
+			}
+			this.waitingReader = null;
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Frees the share of the window a frame taken from the queue occupied
+	 * @param frame taken from the queue, may be null
+	 * @return the frame
+	 */
+	private LocalFrame read(LocalFrame frame) {
+		if(frame != null) {
+			this.window.release(windowShare(frame));
+		}
+		return frame;
+	}
+
+	/**
+	 * Returns the share of the window a frame occupies
+	 * @param frame to measure
+	 * @return the share in bytes
+	 */
+	private static int windowShare(LocalFrame frame) {
+		long size = FRAME_OVERHEAD + (long)frame.getData().length + (frame.getHeader() == null ? 0 : frame.getHeader().length);
+		return (int)Math.min(WINDOW_SIZE, size);
+	}
+
+	/**
+	 * Wakes up the thread waiting for a frame, if there is one
+	 */
+	private void wakeUp() {
+		Thread reader = this.waitingReader;
+		if(reader != null) {
+			LockSupport.unpark(reader);
+		}
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return InputStream.nullInputStream();
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return OutputStream.nullOutputStream();
+	}
+
+	@Override
+	public SocketAddress getRemoteSocketAddress() {
+		return this.remoteAddress;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return this.peer != null;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public void setKeepAlive(boolean on) {}
+
+	/**
+	 * Closes this endpoint and signals the end of the connection to the other one
+	 */
+	@Override
+	public synchronized void close() {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		this.wakeUp();
+		this.window.release(Integer.MAX_VALUE / 4);
+		if(this.peer != null) {
+			this.peer.peerClosed = true;
+			this.peer.wakeUp();
+			this.peer.window.release(Integer.MAX_VALUE / 4);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "LocalSocket["+this.remoteAddress+"]";
+	}
+
+}
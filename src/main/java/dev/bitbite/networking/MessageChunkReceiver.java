@@ -0,0 +1,40 @@
+package dev.bitbite.networking;
+
+import java.util.Arrays;
+
+/**
+ * Receives messages exceeding the maximum message size in chunks as they arrive,
+ * so they never have to be held in memory as a whole.
+ * 
+ * @see IOHandler#setMessageChunkReceiver(MessageChunkReceiver)
+ * @see IOHandler#getMaxMessageSize()
+ */
+@FunctionalInterface
+public interface MessageChunkReceiver {
+
+	/**
+	 * Gets called for every chunk of a large message, in the order the chunks arrive
+	 * @param data of the chunk
+	 * @param messageLength the total length of the message, or -1 if it is unknown because delimited framing is used
+	 * @param first true if the chunk starts a new message
+	 * @param last true if the chunk ends the message
+	 */
+	public void onMessageChunk(byte[] data, long messageLength, boolean first, boolean last);
+	
+	/**
+	 * Gets called for every chunk of a large message with a view of the read buffer.
+	 * The buffer must not be retained after this method returns.
+	 * By default the chunk is copied and passed to {@link #onMessageChunk(byte[], long, boolean, boolean)};
+	 * receivers writing the chunk elsewhere can override this to avoid the copy.
+	 * @param buffer containing the chunk
+	 * @param offset of the chunk
+	 * @param length of the chunk
+	 * @param messageLength the total length of the message, or -1 if it is unknown because delimited framing is used
+	 * @param first true if the chunk starts a new message
+	 * @param last true if the chunk ends the message
+	 */
+	public default void onMessageChunk(byte[] buffer, int offset, int length, long messageLength, boolean first, boolean last) {
+		onMessageChunk(Arrays.copyOfRange(buffer, offset, offset + length), messageLength, first, last);
+	}
+	
+}
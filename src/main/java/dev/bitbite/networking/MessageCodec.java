@@ -0,0 +1,31 @@
+package dev.bitbite.networking;
+
+/**
+ * Converts messages of a type to bytes and back, so they can be sent as typed messages.<br>
+ * Decoding happens directly on the read buffer of the connection, without copying the message first.
+ * A codec may therefore return a flyweight, a reusable view reading its fields from the buffer,
+ * as long as the view is only used until the handler returns. Since codecs are shared by all connections,
+ * such views must not be shared between threads, for example by keeping one per thread.
+ *
+ * @param <T> the type of the messages
+ * @see MessageCodecRegistry
+ */
+public interface MessageCodec<T> {
+
+	/**
+	 * Encodes a message
+	 * @param message to encode
+	 * @return the encoded message
+	 */
+	public byte[] encode(T message);
+
+	/**
+	 * Decodes a message
+	 * @param buffer containing the encoded message, must not be retained after the message has been handled
+	 * @param offset of the encoded message
+	 * @param length of the encoded message
+	 * @return the decoded message
+	 */
+	public T decode(byte[] buffer, int offset, int length);
+
+}
@@ -0,0 +1,213 @@
+package dev.bitbite.networking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Maps message classes to {@link MessageCodec}s and compact integer type ids, and dispatches received
+ * typed messages to the {@link MessageHandler} of their type.<br>
+ * A typed message is sent as a {@link FrameType#TYPED_MESSAGE} frame headed by its type id as a varint,
+ * so ids below 128 take a single byte. Received messages are looked up in a table indexed by the type id,
+ * decoded directly from the read buffer and passed to their handler on the read thread of the connection.
+ * Both sides of a connection must register the same ids for the same types.<br>
+ * Payloads are processed by the {@link DataPreProcessor} like regular messages; received ones are only copied
+ * out of the read buffer if there are layers processing incoming data.
+ * Typed messages require {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+ *
+ * @see Server#getMessageCodecs()
+ * @see Client#getMessageCodecs()
+ */
+public class MessageCodecRegistry {
+
+	/**
+	 * The highest type id that can be registered
+	 */
+	public static final int MAX_TYPE_ID = 65_535;
+
+	/**
+	 * A registered type
+	 * @param <T> the type of the messages
+	 */
+	private static final class Entry<T> {
+		private final Class<T> type;
+		private final MessageCodec<T> codec;
+		private final byte[] header;
+		private volatile MessageHandler<? super T> handler;
+
+		private Entry(Class<T> type, MessageCodec<T> codec, byte[] header) {
+			this.type = type;
+			this.codec = codec;
+			this.header = header;
+		}
+
+		private void handle(Connection connection, byte[] buffer, int offset, int length) {
+			MessageHandler<? super T> handler = this.handler;
+			if(handler == null) {
+				throw new IllegalStateException("No handler for messages of type "+this.type.getName());
+			}
+			handler.onMessage(connection, this.codec.decode(buffer, offset, length));
+		}
+	}
+
+	private volatile Entry<?>[] byId;
+	private final ConcurrentHashMap<Class<?>, Entry<?>> byType;
+
+	/**
+	 * Creates an empty registry
+	 */
+	public MessageCodecRegistry() {
+		this.byId = new Entry<?>[0];
+		this.byType = new ConcurrentHashMap<Class<?>, Entry<?>>();
+	}
+
+	/**
+	 * Registers a codec for a type under the given id
+	 * @param <T> the type of the messages
+	 * @param typeId the id identifying the type on the wire
+	 * @param type the class of the messages
+	 * @param codec to encode and decode the messages with
+	 *
+	 * @throws IllegalArgumentException if the id is out of range or already in use, or the type is already registered
+	 */
+	public synchronized <T> void register(int typeId, Class<T> type, MessageCodec<T> codec) {
+		if(typeId < 0 || typeId > MAX_TYPE_ID) {
+			throw new IllegalArgumentException("Type id "+typeId+" is out of range");
+		}
+		if(typeId < this.byId.length && this.byId[typeId] != null) {
+			throw new IllegalArgumentException("Type id "+typeId+" is already in use by "+this.byId[typeId].type.getName());
+		}
+		if(this.byType.containsKey(type)) {
+			throw new IllegalArgumentException("Type "+type.getName()+" is already registered");
+		}
+		Entry<T> entry = new Entry<T>(type, codec, encodeVarInt(typeId));
+		Entry<?>[] byId = Arrays.copyOf(this.byId, Math.max(this.byId.length, typeId + 1));
+		byId[typeId] = entry;
+		this.byType.put(type, entry);
+		this.byId = byId;
+	}
+
+	/**
+	 * Registers a codec for a type under the given id along with the handler for received messages
+	 * @param <T> the type of the messages
+	 * @param typeId the id identifying the type on the wire
+	 * @param type the class of the messages
+	 * @param codec to encode and decode the messages with
+	 * @param handler of received messages
+	 *
+	 * @throws IllegalArgumentException if the id is out of range or already in use, or the type is already registered
+	 */
+	public <T> void register(int typeId, Class<T> type, MessageCodec<T> codec, MessageHandler<? super T> handler) {
+		register(typeId, type, codec);
+		setHandler(type, handler);
+	}
+
+	/**
+	 * Sets the handler for received messages of a registered type
+	 * @param <T> the type of the messages
+	 * @param type the class of the messages
+	 * @param handler of received messages
+	 *
+	 * @throws IllegalArgumentException if the type is not registered
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void setHandler(Class<T> type, MessageHandler<? super T> handler) {
+		Entry<T> entry = (Entry<T>)this.byType.get(type);
+		if(entry == null) {
+			throw new IllegalArgumentException("Type "+type.getName()+" is not registered");
+		}
+		entry.handler = handler;
+	}
+
+	/**
+	 * Encodes a message and writes it as a typed message
+	 * @param iOHandler to write the message to
+	 * @param dataPreProcessor to process the payload with
+	 * @param message to write
+	 *
+	 * @throws IllegalArgumentException if no codec is registered for the class of the message
+	 */
+	@SuppressWarnings("unchecked")
+	void write(IOHandler iOHandler, DataPreProcessor dataPreProcessor, Object message) {
+		Entry<Object> entry = (Entry<Object>)this.byType.get(message.getClass());
+		if(entry == null) {
+			throw new IllegalArgumentException("No codec registered for "+message.getClass().getName());
+		}
+		byte[] data = dataPreProcessor.process(TransferMode.OUT, entry.codec.encode(message));
+		iOHandler.write(FrameType.TYPED_MESSAGE, entry.header, data);
+	}
+
+	/**
+	 * Registers a {@link FrameHandler} at the IOHandler that dispatches received typed messages to their handlers.
+	 * Messages that cannot be dispatched are reported to the listeners of the IOHandler as failed reads.
+	 * Nothing happens if the IOHandler does not use length-prefixed framing.
+	 * @param connection to pass to the handlers
+	 * @param iOHandler receiving the typed messages
+	 * @param dataPreProcessor to process the payloads with
+	 */
+	void attach(Connection connection, IOHandler iOHandler, DataPreProcessor dataPreProcessor) {
+		if(iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			return;
+		}
+		iOHandler.setFrameHandler(FrameType.TYPED_MESSAGE, (buffer, offset, length) -> {
+			try {
+				dispatch(connection, dataPreProcessor, buffer, offset, length);
+			} catch(Exception e) {
+				iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, e);
+			}
+		});
+	}
+
+	/**
+	 * Decodes a typed message and passes it to the handler of its type
+	 * @param connection to pass to the handler
+	 * @param dataPreProcessor to process the payload with
+	 * @param buffer containing the frame
+	 * @param offset of the type id
+	 * @param length of the frame without the type byte
+	 */
+	private void dispatch(Connection connection, DataPreProcessor dataPreProcessor, byte[] buffer, int offset, int length) {
+		int end = offset + length;
+		int typeId = 0;
+		int shift = 0;
+		int position = offset;
+		byte b;
+		do {
+			if(position == end || shift > 28) {
+				throw new IllegalStateException("Received typed message with malformed type id");
+			}
+			b = buffer[position++];
+			typeId |= (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		Entry<?>[] byId = this.byId;
+		Entry<?> entry = typeId >= 0 && typeId < byId.length ? byId[typeId] : null;
+		if(entry == null) {
+			throw new IllegalStateException("Received typed message of unknown type id "+typeId);
+		}
+		if(dataPreProcessor.getLayers(TransferMode.IN).isEmpty()) {
+			entry.handle(connection, buffer, position, end - position);
+			return;
+		}
+		byte[] data = dataPreProcessor.process(TransferMode.IN, Arrays.copyOfRange(buffer, position, end));
+		entry.handle(connection, data, 0, data.length);
+	}
+
+	/**
+	 * Encodes a non-negative int as a varint, seven bits per byte starting with the lowest
+	 * @param value to encode
+	 * @return the encoded value
+	 */
+	private static byte[] encodeVarInt(int value) {
+		byte[] encoded = new byte[5];
+		int length = 0;
+		while((value & ~0x7F) != 0) {
+			encoded[length++] = (byte)((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		encoded[length++] = (byte)value;
+		return Arrays.copyOf(encoded, length);
+	}
+
+}
@@ -0,0 +1,19 @@
+package dev.bitbite.networking;
+
+/**
+ * Handles received typed messages of a type
+ *
+ * @param <T> the type of the messages
+ * @see MessageCodecRegistry#setHandler(Class, MessageHandler)
+ */
+@FunctionalInterface
+public interface MessageHandler<T> {
+
+	/**
+	 * Handles a received message
+	 * @param connection the message has been received on
+	 * @param message the decoded message
+	 */
+	public void onMessage(Connection connection, T message);
+
+}
@@ -0,0 +1,445 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * An append-only journal of the messages a server broadcasts and publishes, letting reconnecting clients catch up.<br>
+ * Every journaled message gets the next sequence number and is sent as a {@link FrameType#JOURNALED} frame carrying
+ * the number and the frame it wraps. The journal appends these frames, encoded exactly as they are sent, to segment
+ * files mapped into memory. Once a segment is full the next one is started, and segments are deleted once the journal
+ * exceeds its maximum size or they exceed the maximum age.<br>
+ * A client remembers the last sequence number it received and, after reconnecting, asks for the messages following it
+ * with a {@link FrameType#REPLAY} frame. The journal answers with the range it is about to replay, transfers the
+ * journaled frames straight from the segment files to the socket, leaving out publications to topics the client is not
+ * subscribed to, and marks the end of the replay. Messages the server sends in the meantime are held back by the client
+ * until the replay has ended, so it receives every message once and in order.<br>
+ * Messages are appended and sent under the lock of the journal, so every connection receives them in the order of their
+ * sequence numbers. The journal requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+ *
+ * @see Server#setJournal(MessageJournal)
+ * @see Client#requestReplay(long)
+ */
+public class MessageJournal {
+
+	static final byte REPLAY_REQUEST = 0;
+	static final byte REPLAY_START = 1;
+	static final byte REPLAY_END = 2;
+
+	private static final String SUFFIX = ".journal";
+	private static final int FRAME_HEADER_SIZE = 4 + 1 + 8 + 1;
+
+	/**
+	 * A segment file holding the frames starting with a sequence number
+	 */
+	private static final class Segment {
+		private final Path path;
+		private final long firstSequence;
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private volatile int size;
+		private long lastAppend;
+		private int pins;
+		private boolean deleted;
+
+		private Segment(Path path, long firstSequence, int capacity) throws IOException {
+			this.path = path;
+			this.firstSequence = firstSequence;
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, this.channel.size()));
+			this.lastAppend = System.currentTimeMillis();
+		}
+
+		private int frameLength(int position) {
+			return this.buffer.getInt(position);
+		}
+
+		private long sequence(int position) {
+			return this.buffer.getLong(position + 5);
+		}
+	}
+
+	/**
+	 * The directory the segment files are kept in
+	 */
+	@Getter private final Path directory;
+	/**
+	 * The size of a segment file in bytes. Changes apply to the next segment.
+	 */
+	@Getter @Setter private int segmentSize = 64 * 1024 * 1024;
+	/**
+	 * The maximum size of all segments in bytes before the oldest ones are deleted, 0 means unlimited
+	 */
+	@Getter @Setter private long maxSize = 0;
+	/**
+	 * The maximum time in milliseconds since the last append to a segment before it is deleted, 0 means unlimited
+	 */
+	@Getter @Setter private long maxAge = 0;
+	private final ArrayList<Segment> segments;
+	private long nextSequence;
+	private long lastRetentionCheck;
+
+	/**
+	 * Opens the journal in a directory, continuing the segments already contained in it
+	 * @param directory to keep the segment files in, created if it does not exist
+	 * @throws IOException if the directory or its segments could not be opened
+	 */
+	public MessageJournal(Path directory) throws IOException {
+		this.directory = directory;
+		this.segments = new ArrayList<Segment>();
+		Files.createDirectories(directory);
+		List<Path> files;
+		try(Stream<Path> stream = Files.list(directory)) {
+			files = stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+		}
+		for(Path file : files) {
+			String name = file.getFileName().toString();
+			Segment segment = new Segment(file, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), 0);
+			segment.lastAppend = Files.getLastModifiedTime(file).toMillis();
+			this.recover(segment);
+			this.segments.add(segment);
+		}
+		this.nextSequence = System.currentTimeMillis() << 20;
+		if(!this.segments.isEmpty()) {
+			Segment last = this.segments.get(this.segments.size() - 1);
+			this.nextSequence = last.firstSequence;
+			for(int position = 0; position < last.size; position += 4 + last.frameLength(position)) {
+				this.nextSequence = last.sequence(position) + 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the sequence number the next journaled message gets
+	 * @return the next sequence number
+	 */
+	public synchronized long getNextSequence() {
+		return this.nextSequence;
+	}
+
+	/**
+	 * Returns the sequence number of the oldest message still contained in the journal
+	 * @return the oldest sequence number, or the next sequence number if the journal is empty
+	 */
+	public synchronized long getFirstSequence() {
+		for(Segment segment : this.segments) {
+			if(segment.size > 0) {
+				return segment.sequence(0);
+			}
+		}
+		return this.nextSequence;
+	}
+
+	/**
+	 * Closes the segment files. The journal must not be used afterwards.
+	 */
+	public synchronized void close() {
+		for(Segment segment : this.segments) {
+			try {
+				segment.buffer.force();
+				segment.channel.close();
+			} catch (IOException e) {
+				if(Server.isVERBOSE()) {
+					e.printStackTrace();
+				}
+			}
+		}
+		this.segments.clear();
+	}
+
+	/**
+	 * Appends a message to the journal and hands the header of its {@link FrameType#JOURNALED} frame to the writer,
+	 * which sends the frame to the connections, while still holding the lock of the journal
+	 * @param type of the wrapped frame
+	 * @param header of the wrapped frame, may be null
+	 * @param data of the wrapped frame, already processed
+	 * @param writer sending the frame with the given header and the data
+	 * @throws IOException if a new segment could not be created
+	 */
+	synchronized void append(FrameType type, byte[] header, byte[] data, Consumer<byte[]> writer) throws IOException {
+		long sequence = this.nextSequence;
+		int headerLength = header == null ? 0 : header.length;
+		byte[] journaledHeader = new byte[9 + headerLength];
+		writeLong(journaledHeader, 0, sequence);
+		journaledHeader[8] = type.getId();
+		if(header != null) {
+			System.arraycopy(header, 0, journaledHeader, 9, headerLength);
+		}
+		int recordLength = FRAME_HEADER_SIZE + headerLength + data.length;
+		Segment segment = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+		if(segment == null || segment.size + recordLength > segment.buffer.capacity()) {
+			segment = this.roll(sequence, recordLength);
+		}
+		int position = segment.size;
+		segment.buffer.put(position + 4, FrameType.JOURNALED.getId());
+		segment.buffer.put(position + 5, journaledHeader);
+		segment.buffer.put(position + 5 + journaledHeader.length, data);
+		segment.buffer.putInt(position, recordLength - 4);
+		segment.size = position + recordLength;
+		segment.lastAppend = System.currentTimeMillis();
+		this.nextSequence++;
+		this.enforceRetention(false);
+		writer.accept(journaledHeader);
+	}
+
+	/**
+	 * Registers a {@link FrameHandler} at the IOHandler of a connection that answers replay requests on a virtual thread.
+	 * Without a journal an empty replay is answered, so the client does not wait for it.
+	 * If a replay fails, the connection is closed, as the client would otherwise wait for its end forever.
+	 * @param journal supplying the current journal of the server, which may be null
+	 * @param iOHandler of the connection
+	 * @param subscriptions supplying the topic patterns the client is subscribed to
+	 */
+	static void attach(Supplier<MessageJournal> journal, IOHandler iOHandler, Supplier<Set<String>> subscriptions) {
+		if(iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			return;
+		}
+		iOHandler.setFrameHandler(FrameType.REPLAY, (buffer, offset, length) -> {
+			if(length < 9 || buffer[offset] != REPLAY_REQUEST) {
+				iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, new IllegalStateException("Received malformed replay request"));
+				return;
+			}
+			long from = readLong(buffer, offset + 1);
+			MessageJournal current = journal.get();
+			Thread.ofVirtual().name("journal-replay").start(() -> {
+				try {
+					if(current != null) {
+						current.replay(from, iOHandler, subscriptions.get());
+					} else {
+						iOHandler.write(FrameType.REPLAY, new byte[] {REPLAY_START}, encodeRange(from, from - 1));
+						iOHandler.write(FrameType.REPLAY, new byte[] {REPLAY_END}, encodeRange(from, from - 1));
+					}
+				} catch(Exception e) {
+					iOHandler.notifyListeners(IOHandler.EventType.WRITE_FAILED, e);
+					iOHandler.close();
+				}
+			});
+		});
+	}
+
+	/**
+	 * Replays the journaled messages from a sequence number up to the last one appended so far.
+	 * Adjacent frames to replay are transferred together, publications to topics matching none of the patterns are left out.
+	 * @param from the sequence number of the first message to replay
+	 * @param iOHandler to replay the messages to
+	 * @param patterns the topic patterns the client is subscribed to
+	 * @throws IOException if the segments could not be read or the messages could not be written
+	 */
+	void replay(long from, IOHandler iOHandler, Set<String> patterns) throws IOException {
+		List<Segment> pinned = new ArrayList<Segment>();
+		List<Integer> limits = new ArrayList<Integer>();
+		long first;
+		long last;
+		synchronized(this) {
+			last = this.nextSequence - 1;
+			for(int i = 0; i < this.segments.size(); i++) {
+				Segment segment = this.segments.get(i);
+				boolean next = i + 1 < this.segments.size();
+				if(next && this.segments.get(i + 1).firstSequence <= from) {
+					continue;
+				}
+				segment.pins++;
+				pinned.add(segment);
+				limits.add(segment.size);
+			}
+			first = Math.max(from, pinned.isEmpty() || pinned.get(0).size == 0 ? from : pinned.get(0).sequence(0));
+		}
+		TopicTrie<Boolean> topics = new TopicTrie<Boolean>();
+		patterns.forEach(p -> topics.subscribe(p, Boolean.TRUE));
+		try {
+			iOHandler.write(FrameType.REPLAY, new byte[] {REPLAY_START}, encodeRange(first, last));
+			for(int i = 0; i < pinned.size(); i++) {
+				this.replay(pinned.get(i), limits.get(i), from, last, iOHandler, topics);
+			}
+			iOHandler.write(FrameType.REPLAY, new byte[] {REPLAY_END}, encodeRange(first, last));
+		} finally {
+			synchronized(this) {
+				for(Segment segment : pinned) {
+					segment.pins--;
+					if(segment.deleted && segment.pins == 0) {
+						this.delete(segment);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replays the frames of a segment within a range of sequence numbers
+	 * @param segment to replay from
+	 * @param limit the size of the segment when the replay started
+	 * @param from the first sequence number to replay
+	 * @param last the last sequence number to replay
+	 * @param iOHandler to replay the frames to
+	 * @param topics the patterns the client is subscribed to
+	 * @throws IOException if the frames could not be transferred
+	 */
+	private void replay(Segment segment, int limit, long from, long last, IOHandler iOHandler, TopicTrie<Boolean> topics) throws IOException {
+		int rangeStart = -1;
+		int position = 0;
+		while(position < limit) {
+			int end = position + 4 + segment.frameLength(position);
+			long sequence = segment.sequence(position);
+			boolean include = sequence >= from && sequence <= last && this.isSubscribed(segment, position, topics);
+			if(include && rangeStart < 0) {
+				rangeStart = position;
+			} else if(!include && rangeStart >= 0) {
+				iOHandler.writeEncoded(segment.channel, rangeStart, position - rangeStart);
+				rangeStart = -1;
+			}
+			if(sequence > last) {
+				break;
+			}
+			position = end;
+		}
+		if(rangeStart >= 0) {
+			iOHandler.writeEncoded(segment.channel, rangeStart, position - rangeStart);
+		}
+	}
+
+	/**
+	 * Indicates whether the client receives a journaled frame, which is the case unless it is a publication
+	 * to a topic matching none of the patterns the client is subscribed to
+	 * @param segment containing the frame
+	 * @param position of the frame
+	 * @param topics the patterns the client is subscribed to
+	 * @return true if the frame is to be replayed
+	 */
+	private boolean isSubscribed(Segment segment, int position, TopicTrie<Boolean> topics) {
+		if(segment.buffer.get(position + 13) != FrameType.PUBLISH.getId()) {
+			return true;
+		}
+		int topicLength = segment.buffer.getShort(position + FRAME_HEADER_SIZE) & 0xFFFF;
+		byte[] topic = new byte[topicLength];
+		segment.buffer.get(position + FRAME_HEADER_SIZE + 2, topic);
+		return !topics.match(new String(topic, StandardCharsets.UTF_8)).isEmpty();
+	}
+
+	/**
+	 * Starts a new segment for the given sequence number and deletes segments exceeding the retention limits
+	 * @param sequence the first sequence number of the segment
+	 * @param recordLength the length of the first frame, which the segment must be able to hold
+	 * @return the new segment
+	 * @throws IOException if the segment file could not be created
+	 */
+	private Segment roll(long sequence, int recordLength) throws IOException {
+		Path path = this.directory.resolve(String.format("%020d", sequence)+SUFFIX);
+		Segment segment = new Segment(path, sequence, Math.max(this.segmentSize, recordLength));
+		this.segments.add(segment);
+		this.enforceRetention(true);
+		return segment;
+	}
+
+	/**
+	 * Deletes the oldest segments while the journal exceeds its maximum size or they exceed the maximum age.
+	 * The current segment is never deleted. Checks the age at most once per second unless forced.
+	 * @param force true to check regardless of the time since the last check
+	 */
+	private void enforceRetention(boolean force) {
+		long now = System.currentTimeMillis();
+		if(!force && now - this.lastRetentionCheck < 1000) {
+			return;
+		}
+		this.lastRetentionCheck = now;
+		long total = 0;
+		for(Segment segment : this.segments) {
+			total += segment.buffer.capacity();
+		}
+		while(this.segments.size() > 1) {
+			Segment oldest = this.segments.get(0);
+			boolean tooLarge = this.maxSize > 0 && total > this.maxSize;
+			boolean tooOld = this.maxAge > 0 && now - oldest.lastAppend > this.maxAge;
+			if(!tooLarge && !tooOld) {
+				break;
+			}
+			this.segments.remove(0);
+			total -= oldest.buffer.capacity();
+			oldest.deleted = true;
+			if(oldest.pins == 0) {
+				this.delete(oldest);
+			}
+		}
+	}
+
+	/**
+	 * Closes and deletes the file of a segment no longer part of the journal
+	 * @param segment to delete
+	 */
+	private void delete(Segment segment) {
+		try {
+			segment.channel.close();
+			Files.deleteIfExists(segment.path);
+		} catch (IOException e) {
+			if(Server.isVERBOSE()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the frames of a segment written before the journal was opened.
+	 * The unused rest of a segment is zeroed, and a frame never has a length of 0. Since the length of a frame
+	 * is written last, a frame torn by a crash has no length yet. Frames whose sequence number does not follow
+	 * the one of the previous frame end the segment as well.
+	 * @param segment to recover
+	 */
+	private void recover(Segment segment) {
+		int capacity = segment.buffer.capacity();
+		int position = 0;
+		long expected = segment.firstSequence;
+		while(position + FRAME_HEADER_SIZE <= capacity) {
+			int frameLength = segment.frameLength(position);
+			if(frameLength < FRAME_HEADER_SIZE - 4 || position + 4 + frameLength > capacity
+					|| segment.buffer.get(position + 4) != FrameType.JOURNALED.getId()
+					|| segment.sequence(position) != expected) {
+				break;
+			}
+			expected++;
+			position += 4 + frameLength;
+		}
+		segment.size = position;
+	}
+
+	/**
+	 * Encodes the first and last sequence number of a replay
+	 * @param first sequence number
+	 * @param last sequence number
+	 * @return the encoded range
+	 */
+	private static byte[] encodeRange(long first, long last) {
+		byte[] range = new byte[16];
+		writeLong(range, 0, first);
+		writeLong(range, 8, last);
+		return range;
+	}
+
+	static void writeLong(byte[] buffer, int offset, long value) {
+		for(int i = 7; i >= 0; i--) {
+			buffer[offset + i] = (byte)value;
+			value >>>= 8;
+		}
+	}
+
+	static long readLong(byte[] buffer, int offset) {
+		long value = 0;
+		for(int i = 0; i < 8; i++) {
+			value = (value << 8) | (buffer[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,165 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The sending side of a logical stream opened by a {@link StreamMultiplexer}.<br>
+ * Written data is sent in chunks as long as the flow control window of the stream allows it;
+ * otherwise the writing thread waits until the receiver grants more bytes.
+ * Closing the stream sends a final, empty chunk marking its end.
+ */
+public class MultiplexedStream extends OutputStream {
+
+	private final StreamMultiplexer multiplexer;
+	private final int id;
+	private final int maxChunkSize;
+	private final ReentrantLock windowLock;
+	private final Condition windowOpened;
+	private long window;
+	private boolean closed = false;
+	private boolean aborted = false;
+
+	/**
+	 * Creates a MultiplexedStream
+	 * @param multiplexer the stream belongs to
+	 * @param id of the stream
+	 * @param maxChunkSize the maximum size of a chunk in bytes
+	 * @param window the amount of bytes that may be sent before the receiver grants more
+	 */
+	MultiplexedStream(StreamMultiplexer multiplexer, int id, int maxChunkSize, int window) {
+		this.multiplexer = multiplexer;
+		this.id = id;
+		this.maxChunkSize = maxChunkSize;
+		this.window = window;
+		this.windowLock = new ReentrantLock();
+		this.windowOpened = this.windowLock.newCondition();
+	}
+
+	/**
+	 * Returns the id of the stream
+	 * @return the id of the stream
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Writes a single byte as its own chunk. Prefer writing arrays.
+	 * @param b the byte to write
+	 * @throws IOException if the stream or the connection is closed
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+
+	/**
+	 * Sends the data in chunks, waiting for the window to open whenever it is exhausted
+	 * @param data to send
+	 * @param offset of the first byte to send
+	 * @param length of the data to send
+	 * @throws IOException if the stream or the connection is closed or the thread is interrupted while waiting
+	 */
+	@Override
+	public void write(byte[] data, int offset, int length) throws IOException {
+		int position = offset;
+		int end = offset + length;
+		while(position < end) {
+			awaitWindow();
+			int chunkSize = Math.min(this.maxChunkSize, end - position);
+			int sent = this.multiplexer.sendChunk(this, Arrays.copyOfRange(data, position, position + chunkSize), false);
+			consume(sent);
+			position += chunkSize;
+		}
+	}
+
+	/**
+	 * Marks the end of the stream. Further writes fail.
+	 * @throws IOException if the connection is closed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.windowLock.lock();
+		try {
+			if(this.closed) {
+				return;
+			}
+			this.closed = true;
+		} finally {
+			this.windowLock.unlock();
+		}
+		if(this.aborted || this.multiplexer.isClosed()) {
+			throw new IOException("Connection closed");
+		}
+		this.multiplexer.sendChunk(this, new byte[0], true);
+	}
+
+	/**
+	 * Adds bytes granted by the receiver to the window and wakes waiting writers
+	 * @param bytes granted by the receiver
+	 */
+	void grant(int bytes) {
+		this.windowLock.lock();
+		try {
+			this.window += bytes;
+			this.windowOpened.signalAll();
+		} finally {
+			this.windowLock.unlock();
+		}
+	}
+
+	/**
+	 * Fails the stream because its connection has been closed
+	 */
+	void abort() {
+		this.windowLock.lock();
+		try {
+			this.aborted = true;
+			this.windowOpened.signalAll();
+		} finally {
+			this.windowLock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until the window of the stream allows sending
+	 * @throws IOException if the stream or the connection is closed or the thread is interrupted
+	 */
+	private void awaitWindow() throws IOException {
+		this.windowLock.lock();
+		try {
+			while(this.window <= 0 && !this.aborted && !this.closed) {
+				this.windowOpened.await();
+			}
+			if(this.closed) {
+				throw new IOException("Stream closed");
+			}
+			if(this.aborted || this.multiplexer.isClosed()) {
+				throw new IOException("Connection closed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the window to open", e);
+		} finally {
+			this.windowLock.unlock();
+		}
+	}
+
+	/**
+	 * Subtracts sent bytes from the window
+	 * @param bytes that have been sent
+	 */
+	private void consume(int bytes) {
+		this.windowLock.lock();
+		try {
+			this.window -= bytes;
+		} finally {
+			this.windowLock.unlock();
+		}
+	}
+
+}
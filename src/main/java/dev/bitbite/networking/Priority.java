@@ -0,0 +1,39 @@
+package dev.bitbite.networking;
+
+/**
+ * The priorities outbound frames can be written with.<br>
+ * Each connection queues frames waiting to be written in one lane per priority. The writer drains
+ * the lanes in rounds, taking up to {@link #getWeight()} frames from each lane per round starting
+ * with the highest priority. Frames of a higher priority thereby overtake queued frames of lower
+ * priorities, while lower priorities still get their share and do not starve.
+ *
+ * @see IOHandler#write(FrameType, byte[], byte[], Priority)
+ */
+public enum Priority {
+	/**
+	 * For urgent control messages like heartbeats and cancellations
+	 */
+	HIGH(8),
+	/**
+	 * The priority of all frames written without a priority
+	 */
+	NORMAL(4),
+	/**
+	 * For bulk data that may wait
+	 */
+	LOW(1);
+
+	private final int weight;
+
+	Priority(int weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * Returns the amount of frames of this priority written per round
+	 * @return the amount of frames of this priority written per round
+	 */
+	public int getWeight() {
+		return this.weight;
+	}
+}
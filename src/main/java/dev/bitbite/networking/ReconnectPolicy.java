@@ -0,0 +1,83 @@
+package dev.bitbite.networking;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Describes how a {@link Client} reconnects after its connection to the server has been lost.<br>
+ * Delays between attempts grow exponentially from {@link #initialDelay} up to {@link #maxDelay}.
+ * Each delay is drawn uniformly from <code>[0, cap]</code> ("full jitter"), so that many clients
+ * losing their connection at the same time do not hit the restarted server in lockstep.<br>
+ * Data sent while the client is reconnecting is held in a buffer of {@link #bufferCapacity}
+ * messages and written once the connection has been re-established.
+ *
+ * @see Client#setReconnectPolicy(ReconnectPolicy)
+ */
+public class ReconnectPolicy {
+
+	/**
+	 * The upper bound of the delay before the first attempt in milliseconds
+	 */
+	@Getter @Setter private long initialDelay = 100;
+	/**
+	 * The maximum upper bound of the delay between two attempts in milliseconds
+	 */
+	@Getter @Setter private long maxDelay = 30_000;
+	/**
+	 * The factor the delay bound grows by with each failed attempt
+	 */
+	@Getter @Setter private double multiplier = 2.0;
+	/**
+	 * The maximum amount of attempts before giving up. Values below 1 mean unlimited attempts
+	 */
+	@Getter @Setter private int maxAttempts = 0;
+	/**
+	 * The maximum amount of messages held back while reconnecting
+	 */
+	@Getter @Setter private int bufferCapacity = 1024;
+
+	/**
+	 * Creates a ReconnectPolicy with the default settings:
+	 * 100ms initial delay, 30s maximum delay, a multiplier of 2,
+	 * unlimited attempts and a buffer of 1024 messages.
+	 */
+	public ReconnectPolicy() {}
+
+	/**
+	 * Creates a ReconnectPolicy
+	 * @param initialDelay upper bound of the delay before the first attempt in milliseconds
+	 * @param maxDelay maximum upper bound of the delay between two attempts in milliseconds
+	 * @param maxAttempts maximum amount of attempts, values below 1 mean unlimited attempts
+	 */
+	public ReconnectPolicy(long initialDelay, long maxDelay, int maxAttempts) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Computes the delay before the given attempt.
+	 * @param attempt the zero-based index of the attempt
+	 * @return the delay in milliseconds
+	 */
+	public long computeDelay(int attempt) {
+		double bound = this.initialDelay * Math.pow(this.multiplier, attempt);
+		long cap = (long)Math.min(this.maxDelay, bound);
+		if(cap <= 0) {
+			return 0;
+		}
+		return ThreadLocalRandom.current().nextLong(cap + 1);
+	}
+
+	/**
+	 * Indicates whether another attempt may be made
+	 * @param attempt the zero-based index of the attempt
+	 * @return true if the attempt is allowed by this policy
+	 */
+	public boolean allowsAttempt(int attempt) {
+		return this.maxAttempts < 1 || attempt < this.maxAttempts;
+	}
+
+}
@@ -0,0 +1,216 @@
+package dev.bitbite.networking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import dev.bitbite.networking.exceptions.RequestFailedException;
+
+/**
+ * Implements request/response messaging on top of an {@link IOHandler}.<br>
+ * Every request carries a correlation id, which the response repeats. This allows any number of
+ * requests to be in flight on a single connection and responses to arrive in any order.
+ * Pending requests are kept in a map by their id and fail once their timeout elapses.<br>
+ * Incoming requests are answered by the {@link RequestResponder}, each on its own virtual thread,
+ * so a slow request does not hold back the ones behind it. At most {@link #MAX_REQUESTS_IN_FLIGHT} requests
+ * are processed at once, requests beyond that are answered with an error right away.<br>
+ * Payloads of requests and responses are processed by the {@link DataPreProcessor} like regular messages.
+ * Request/response messaging requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+ *
+ * @see FrameType#REQUEST
+ * @see FrameType#RESPONSE
+ */
+public class RequestHandler {
+
+	private static final byte STATUS_OK = 0;
+	private static final byte STATUS_ERROR = 1;
+	static final int MAX_REQUESTS_IN_FLIGHT = 1024;
+
+	private final IOHandler iOHandler;
+	private final DataPreProcessor dataPreProcessor;
+	private final RequestResponder responder;
+	private final AtomicInteger nextId;
+	private final Semaphore requestsInFlight;
+	private final ConcurrentHashMap<Integer, CompletableFuture<byte[]>> pendingRequests;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a RequestHandler and registers it for request and response frames at the IOHandler
+	 * @param iOHandler to exchange requests and responses with
+	 * @param dataPreProcessor to process the payloads with
+	 * @param responder computing the response to an incoming request
+	 */
+	public RequestHandler(IOHandler iOHandler, DataPreProcessor dataPreProcessor, RequestResponder responder) {
+		this(iOHandler, dataPreProcessor, responder, MAX_REQUESTS_IN_FLIGHT);
+	}
+
+	/**
+	 * Creates a RequestHandler processing at most the given amount of incoming requests at once
+	 * and registers it for request and response frames at the IOHandler
+	 * @param iOHandler to exchange requests and responses with
+	 * @param dataPreProcessor to process the payloads with
+	 * @param responder computing the response to an incoming request
+	 * @param maxRequestsInFlight the maximum amount of incoming requests processed at once
+	 */
+	RequestHandler(IOHandler iOHandler, DataPreProcessor dataPreProcessor, RequestResponder responder, int maxRequestsInFlight) {
+		this.iOHandler = iOHandler;
+		this.dataPreProcessor = dataPreProcessor;
+		this.responder = responder;
+		this.nextId = new AtomicInteger();
+		this.requestsInFlight = new Semaphore(maxRequestsInFlight);
+		this.pendingRequests = new ConcurrentHashMap<Integer, CompletableFuture<byte[]>>();
+		if(iOHandler.getFraming() == IOHandler.Framing.LENGTH_PREFIXED) {
+			iOHandler.setFrameHandler(FrameType.REQUEST, this::onRequest);
+			iOHandler.setFrameHandler(FrameType.RESPONSE, this::onResponse);
+		}
+	}
+
+	/**
+	 * Sends a request. The returned future completes with the response or fails with a
+	 * {@link RequestFailedException} if the remote side could not process the request or the
+	 * connection is closed, and with a {@link java.util.concurrent.TimeoutException} if no
+	 * response arrived in time.
+	 * @param data to send
+	 * @param timeout the time to wait for the response
+	 * @param unit of the timeout
+	 * @return a future of the response
+	 *
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	public CompletableFuture<byte[]> request(byte[] data, long timeout, TimeUnit unit) {
+		if(this.iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Requests require length-prefixed framing");
+		}
+		if(this.closed) {
+			return CompletableFuture.failedFuture(new RequestFailedException("Connection closed"));
+		}
+		int id = this.nextId.getAndIncrement();
+		CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+		this.pendingRequests.put(id, response);
+		response.orTimeout(timeout, unit).whenComplete((r, t) -> this.pendingRequests.remove(id));
+		data = this.dataPreProcessor.process(TransferMode.OUT, data);
+		this.iOHandler.write(FrameType.REQUEST, encodeInt(id), data);
+		if(this.closed || this.iOHandler.isClosed()) {
+			response.completeExceptionally(new RequestFailedException("Connection closed"));
+		}
+		return response;
+	}
+
+	/**
+	 * Fails all pending requests. Requests sent afterwards fail immediately.
+	 */
+	public void close() {
+		this.closed = true;
+		RequestFailedException exception = new RequestFailedException("Connection closed");
+		this.pendingRequests.values().forEach(r -> r.completeExceptionally(exception));
+		this.pendingRequests.clear();
+	}
+
+	/**
+	 * Returns the amount of requests waiting for their response
+	 * @return the amount of requests waiting for their response
+	 */
+	public int getPendingRequestCount() {
+		return this.pendingRequests.size();
+	}
+
+	/**
+	 * Answers a received request frame on a virtual thread, or with an error right away
+	 * if too many requests are being processed
+	 * @param buffer containing the frame
+	 * @param offset of the correlation id
+	 * @param length of the frame without the type byte
+	 */
+	private void onRequest(byte[] buffer, int offset, int length) {
+		if(length < 4) {
+			return;
+		}
+		byte[] id = Arrays.copyOfRange(buffer, offset, offset + 4);
+		if(!this.requestsInFlight.tryAcquire()) {
+			respond(id, STATUS_ERROR, "Too many requests in flight".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		byte[] data = Arrays.copyOfRange(buffer, offset + 4, offset + length);
+		try {
+			Thread.ofVirtual().name("request-"+decodeInt(id, 0)).start(() -> {
+				byte status = STATUS_OK;
+				byte[] response;
+				try {
+					response = this.responder.respond(this.dataPreProcessor.process(TransferMode.IN, data));
+					if(response == null) {
+						response = new byte[0];
+					}
+				} catch(Exception e) {
+					status = STATUS_ERROR;
+					response = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+				} finally {
+					this.requestsInFlight.release();
+				}
+				respond(id, status, response);
+			});
+		} catch(RuntimeException | Error e) {
+			this.requestsInFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends the response to a request
+	 * @param id of the request
+	 * @param status of the response
+	 * @param response to send, not yet processed by the {@link DataPreProcessor}
+	 */
+	private void respond(byte[] id, byte status, byte[] response) {
+		byte[] header = Arrays.copyOf(id, 5);
+		header[4] = status;
+		this.iOHandler.write(FrameType.RESPONSE, header, this.dataPreProcessor.process(TransferMode.OUT, response));
+	}
+
+	/**
+	 * Completes the pending request a received response frame belongs to
+	 * @param buffer containing the frame
+	 * @param offset of the correlation id
+	 * @param length of the frame without the type byte
+	 */
+	private void onResponse(byte[] buffer, int offset, int length) {
+		if(length < 5) {
+			return;
+		}
+		CompletableFuture<byte[]> response = this.pendingRequests.remove(decodeInt(buffer, offset));
+		if(response == null) {
+			return;
+		}
+		byte[] data = this.dataPreProcessor.process(TransferMode.IN, Arrays.copyOfRange(buffer, offset + 5, offset + length));
+		if(buffer[offset + 4] == STATUS_OK) {
+			response.complete(data);
+		} else {
+			response.completeExceptionally(new RequestFailedException(new String(data, StandardCharsets.UTF_8)));
+		}
+	}
+
+	/**
+	 * Encodes an integer as 4 big-endian bytes
+	 * @param value to encode
+	 * @return the encoded integer
+	 */
+	static byte[] encodeInt(int value) {
+		return new byte[] { (byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value };
+	}
+
+	/**
+	 * Decodes 4 big-endian bytes to an integer
+	 * @param buffer containing the bytes
+	 * @param offset of the first byte
+	 * @return the decoded integer
+	 */
+	static int decodeInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+	}
+
+}
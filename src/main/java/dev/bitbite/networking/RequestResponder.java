@@ -0,0 +1,20 @@
+package dev.bitbite.networking;
+
+/**
+ * Computes the responses to the requests received by a {@link RequestHandler}.
+ * 
+ * @see RequestHandler
+ */
+@FunctionalInterface
+public interface RequestResponder {
+
+	/**
+	 * Gets called for every received request, possibly concurrently.
+	 * An exception thrown by this method is sent back as an error response carrying its message.
+	 * @param data of the request, processed by the {@link DataPreProcessor}
+	 * @return the response, null for an empty response
+	 * @throws Exception if the request could not be processed
+	 */
+	public byte[] respond(byte[] data) throws Exception;
+	
+}
@@ -22,14 +22,16 @@ public abstract class SSLClient extends Client {
 	}
 
 	/**
-	 * Opens an SSL socket using the default SSLSocketFactory.
+	 * Opens an SSL socket using the default SSLSocketFactory
+	 * and connects it within the clients connect timeout, racing the addresses of the host and the alternate endpoints.
 	 *
 	 * @throws UnknownHostException if the IP address of the host could not be determined
 	 * @throws IOException          if an I/O error occurs while creating the socket
+	 * @see #connectSocket(java.util.concurrent.Callable)
 	 */
 	@Override
 	protected void openSocket() throws UnknownHostException, IOException {
-		super.socket = SSLSocketFactory.getDefault().createSocket(super.HOST, super.PORT);
+		super.socket = connectSocket(SSLSocketFactory.getDefault()::createSocket);
 	}
 
 	/**
@@ -1,11 +1,25 @@
 package dev.bitbite.networking;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import dev.bitbite.networking.DataPreProcessor.TransferMode;
 import dev.bitbite.networking.exceptions.LayerDisableFailedException;
+import dev.bitbite.networking.exceptions.RequestFailedException;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -38,6 +52,11 @@ public abstract class Server {
 	 * The ServerSocket the server will use to listen for incoming connections
 	 */
 	@Getter protected ServerSocket serverSocket;
+	/**
+	 * The further ServerSockets listening on the same port if more than one acceptor is used.
+	 * Each of them is served by its own acceptor thread of the {@link ClientManager}.
+	 */
+	@Getter protected ArrayList<ServerSocket> additionalServerSockets;
 	/**
 	 * The ClientManager the server will use to manage all connected clients
 	 */
@@ -46,6 +65,22 @@ public abstract class Server {
 	 * The DataPreProcessor the server will use to process incoming and outgoing data
 	 */
 	@Getter protected DataPreProcessor dataPreProcessor;
+	/**
+	 * The codecs and handlers of typed messages, shared by all connections
+	 */
+	@Getter protected MessageCodecRegistry messageCodecs;
+	/**
+	 * The topic patterns the connected clients are subscribed to
+	 */
+	@Getter protected TopicTrie<CommunicationHandler> topics;
+	/**
+	 * The node joining the server into a cluster, null if the server is on its own
+	 */
+	@Getter private ClusterNode clusterNode;
+	/**
+	 * The journal of broadcast and published messages reconnecting clients can catch up from, null disables journaling
+	 */
+	@Getter private MessageJournal journal;
 	/**
 	 * The DisconnectedClientDetector the server will use to detect disconnected clients
 	 */
@@ -62,6 +97,70 @@ public abstract class Server {
 	 * The timeout for the serverSocket
 	 */
 	@Getter @Setter private int SO_TIMEOUT = 0;
+	/**
+	 * The maximum amount of pending connections per listening socket, 0 uses the default of the platform
+	 */
+	@Getter @Setter private int acceptBacklog = 0;
+	/**
+	 * The amount of sockets listening on the port, each with its own acceptor thread.
+	 * If greater than one, the sockets are bound with SO_REUSEPORT so the kernel spreads incoming connections across them.
+	 * Falls back to a single socket if the platform does not support SO_REUSEPORT.
+	 */
+	@Getter @Setter private int acceptorCount = 1;
+	/**
+	 * The policy deciding which connections are admitted, null admits all connections
+	 */
+	@Getter @Setter private AdmissionPolicy admissionPolicy;
+	/**
+	 * The {@link TrafficShaper} shared by all connections, limiting the traffic of the server as a whole. Null means unlimited.
+	 */
+	@Getter @Setter private TrafficShaper trafficShaper;
+	/**
+	 * The template for the {@link TrafficShaper} every connection gets a copy of, limiting each connection on its own. Null means unlimited.
+	 * Groups of connections, like those of one tenant, can share a further shaper added to their IOHandlers
+	 * via {@link IOHandler#addTrafficShaper(TrafficShaper)} once they have been accepted.
+	 */
+	@Getter @Setter private TrafficShaper connectionTrafficShaper;
+	/**
+	 * The {@link TrafficCapture} recording the frames of every connection accepted from now on. Null disables capturing.
+	 */
+	@Getter @Setter private TrafficCapture trafficCapture;
+	/**
+	 * The framing, buffer sizes, socket options, flush policy and timeouts of the connections accepted from now on.
+	 * Null uses a {@link TransportConfig#TransportConfig() default config} created when a connection is accepted.
+	 * The receive buffer size applies to the listening sockets, so it has to be set before the server is started.
+	 */
+	@Setter private TransportConfig transportConfig;
+	/**
+	 * The default time in milliseconds to wait for the response to a request
+	 */
+	@Getter @Setter private long requestTimeout = 30_000;
+	/**
+	 * An indicator whether messages exceeding the maximum message size are passed to
+	 * {@link #processReceivedChunk(String, byte[], long, boolean, boolean)} instead of being discarded
+	 */
+	@Getter @Setter private boolean streamingReceiveEnabled = false;
+	/**
+	 * The directory messages exceeding the maximum message size and bulk messages are spooled to.
+	 * If set, such messages are written to files by a {@link SpoolFileReceiver} and passed to {@link #processReceivedFile(String, Path)}
+	 * instead of {@link #processReceivedChunk(String, byte[], long, boolean, boolean)}
+	 */
+	@Getter @Setter private Path spoolDirectory;
+	/**
+	 * The path of the Unix domain socket to listen on instead of the port.
+	 * Clients on the same host connecting to it skip the TCP stack.
+	 */
+	@Getter @Setter private Path unixDomainSocketPath;
+	/**
+	 * The name to listen on for clients in the same JVM instead of the port.
+	 * Messages are then passed between server and clients without copying them or going through the kernel.
+	 */
+	@Getter @Setter private String localName;
+	/**
+	 * The directory to serve for clients on the same host instead of the port.
+	 * Messages are then exchanged through ring buffers in memory-mapped files, see {@link SharedMemorySocket}.
+	 */
+	@Getter @Setter private Path sharedMemoryDirectory;
 
 	/**
 	 * If set to true, the server will print stacktraces of exceptions
@@ -86,6 +185,7 @@ public abstract class Server {
 		COMMUNICATIONHANDLER_CLOSE_END,
 		COMMUNICATIONHANDLER_CLOSE_FAILED,
 		COMMUNICATIONHANDLER_INIT_FAILED,
+		CONNECTION_REJECTED,
 		SOCKET_CLOSED,
 		START,
 		START_FAILED,
@@ -101,10 +201,13 @@ public abstract class Server {
 		this.clientManager = new ClientManager(this);
 		this.clientManager.setName("ClientManager");
 		this.dataPreProcessor = new DataPreProcessor();
+		this.messageCodecs = new MessageCodecRegistry();
+		this.topics = new TopicTrie<CommunicationHandler>();
 		this.disconnectedClientDetector = new DisconnectedClientDetector(this);
 		this.disconnectedClientDetector.setName("Disconnected Client Detector");
 		this.listeners = new ArrayList<ServerListener>();
 		this.iOListeners = new ArrayList<IOHandlerListener>();
+		this.additionalServerSockets = new ArrayList<ServerSocket>();
 	}
 	
 	/**
@@ -115,6 +218,13 @@ public abstract class Server {
 		try {
 			this.openServerSocket();
 			this.serverSocket.setSoTimeout(SO_TIMEOUT);
+			for(ServerSocket serverSocket : this.additionalServerSockets) {
+				serverSocket.setSoTimeout(SO_TIMEOUT);
+			}
+			if(this.journal != null && this.getTransportConfig().getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+				throw new IllegalStateException("The journal requires length-prefixed framing");
+			}
+			this.disconnectedClientDetector.setMaxReadThreshold(TimeUnit.MILLISECONDS.toNanos(this.getTransportConfig().getIdleTimeout()));
 			this.disconnectedClientDetector.start();
 			this.dataPreProcessor.initLayers();
 		} catch(Exception e) {
@@ -128,10 +238,51 @@ public abstract class Server {
 	/**
 	 * Opens the {@link ServerSocket}. 
 	 * Moved to a different function to make it easier to replace the ServerSocket implementation.
+	 * The socket is backed by a {@link ServerSocketChannel}, so accepted sockets have channels 
+	 * which allow files to be sent without copying them to the heap.
+	 * If a Unix domain socket path is set, a {@link UnixDomainServerSocket} bound to it is opened instead.
+	 * If a local name is set, a {@link LocalServerSocket} registered under that name is opened instead.
+	 * If a shared memory directory is set, a {@link SharedMemoryServerSocket} serving it is opened instead.
+	 * Otherwise, if more than one acceptor is configured, the further sockets are bound to the same port with SO_REUSEPORT.
+	 * The receive buffer size of the {@link TransportConfig} is set before binding, so accepted connections inherit it.
 	 * @throws IOException when the process of opening the ServerSocket fails.
 	 */
 	protected void openServerSocket() throws IOException {
-		this.serverSocket = new ServerSocket(this.PORT);
+		if(this.localName != null) {
+			this.serverSocket = new LocalServerSocket(this.localName);
+			return;
+		}
+		if(this.unixDomainSocketPath != null) {
+			this.serverSocket = new UnixDomainServerSocket(this.unixDomainSocketPath);
+			return;
+		}
+		if(this.sharedMemoryDirectory != null) {
+			this.serverSocket = new SharedMemoryServerSocket(this.sharedMemoryDirectory, this.getTransportConfig());
+			return;
+		}
+		int receiveBufferSize = this.getTransportConfig().getReceiveBufferSize();
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		boolean reusePort = this.acceptorCount > 1 && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		if(reusePort) {
+			channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+		}
+		if(receiveBufferSize > 0) {
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+		}
+		this.serverSocket = channel.socket();
+		this.serverSocket.bind(new InetSocketAddress(this.PORT), this.acceptBacklog);
+		if(!reusePort) {
+			return;
+		}
+		for(int i = 1; i < this.acceptorCount; i++) {
+			ServerSocketChannel additionalChannel = ServerSocketChannel.open();
+			additionalChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+			if(receiveBufferSize > 0) {
+				additionalChannel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+			}
+			additionalChannel.bind(new InetSocketAddress(this.serverSocket.getLocalPort()), this.acceptBacklog);
+			this.additionalServerSockets.add(additionalChannel.socket());
+		}
 	}
 	
 	/**
@@ -140,10 +291,19 @@ public abstract class Server {
 	 */
 	public void close() {
 		this.notifyListeners(EventType.CLOSE);
+		if(this.clusterNode != null) {
+			this.clusterNode.close();
+		}
 		this.clientManager.close();
+		if(this.journal != null) {
+			this.journal.close();
+		}
 		try {
 			this.dataPreProcessor.shutdown();
 			this.serverSocket.close();
+			for(ServerSocket serverSocket : this.additionalServerSockets) {
+				serverSocket.close();
+			}
 			this.disconnectedClientDetector.interrupt();
 		} catch (LayerDisableFailedException | IOException e) {
 			this.notifyListeners(EventType.CLOSE_FAILED, e);
@@ -158,6 +318,114 @@ public abstract class Server {
 	 * @param data sent by the server
 	 */
 	protected abstract void processReceivedData(String clientAddress, byte[] data);
+	
+	/**
+	 * This function will be called once the server receives a request from a client.
+	 * Its return value is sent back as the response. Requests are processed on separate
+	 * virtual threads, so this function may be called concurrently.<br>
+	 * By default requests are rejected.
+	 * 
+	 * @param clientAddress of the client the request came from
+	 * @param data of the request
+	 * @return the response
+	 * @throws RequestFailedException if the request can not be processed, its message is sent back to the client
+	 */
+	protected byte[] processRequest(String clientAddress, byte[] data) throws RequestFailedException {
+		throw new RequestFailedException("Server does not accept requests");
+	}
+	
+	/**
+	 * This function will be called for every chunk of a message exceeding the maximum message size,
+	 * if streaming receive is enabled. The chunks are not processed by the {@link DataPreProcessor}.
+	 * By default chunks are dropped.
+	 * 
+	 * @param clientAddress of the client the message came from
+	 * @param data of the chunk
+	 * @param messageLength the total length of the message, or -1 if it is unknown
+	 * @param first true if the chunk starts a new message
+	 * @param last true if the chunk ends the message
+	 * 
+	 * @see TransportConfig#getMaxMessageSize()
+	 */
+	protected void processReceivedChunk(String clientAddress, byte[] data, long messageLength, boolean first, boolean last) {}
+	
+	/**
+	 * This function will be called for every message exceeding the maximum message size and every
+	 * bulk message, if a spool directory is set. The message has been written to the file without being
+	 * processed by the {@link DataPreProcessor}. The file belongs to the server afterwards, so it should be
+	 * moved or deleted once it is no longer needed. By default the file is deleted.
+	 * 
+	 * @param clientAddress of the client the message came from
+	 * @param file containing the message
+	 * 
+	 * @see #setSpoolDirectory(Path)
+	 * @see SpoolFileReceiver
+	 */
+	protected void processReceivedFile(String clientAddress, Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			if(Server.VERBOSE) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * This function will be called for every chunk the server receives on a stream opened by a client.
+	 * By default chunks are dropped.
+	 * 
+	 * @param clientAddress of the client the chunk came from
+	 * @param streamId of the stream the chunk belongs to
+	 * @param data of the chunk
+	 * @param last true if the client closed the stream with this chunk
+	 */
+	protected void processStreamData(String clientAddress, int streamId, byte[] data, boolean last) {}
+	
+	/**
+	 * This function will be called once the server receives a publication from a client.
+	 * By default the publication is relayed to all clients subscribed to its topic.
+	 * 
+	 * @param clientAddress of the client the publication came from
+	 * @param topic the data has been published to
+	 * @param data of the publication
+	 * 
+	 * @see #publish(String, byte[])
+	 */
+	protected void processPublication(String clientAddress, String topic, byte[] data) {
+		this.publish(topic, data);
+	}
+	
+	/**
+	 * Opens a logical stream to the client with the specified address, multiplexed over the existing connection.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param clientAddress to open the stream to
+	 * @return the stream or null if there is no client with that address
+	 * 
+	 * @see StreamMultiplexer
+	 */
+	public MultiplexedStream openStream(String clientAddress) {
+		CommunicationHandler ch = this.clientManager.getCommunicationHandlerByIP(clientAddress);
+		return ch == null ? null : ch.openStream();
+	}
+	
+	/**
+	 * Sends a request to the client with the specified address and waits at most 
+	 * {@link #getRequestTimeout()} milliseconds for the response.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param clientAddress to send the request to
+	 * @param data to send
+	 * @return a future of the response
+	 * 
+	 * @see RequestHandler#request(byte[], long, TimeUnit)
+	 */
+	public CompletableFuture<byte[]> request(String clientAddress, byte[] data) {
+		CommunicationHandler ch = this.clientManager.getCommunicationHandlerByIP(clientAddress);
+		if(ch == null) {
+			return CompletableFuture.failedFuture(new RequestFailedException("Unknown client "+clientAddress));
+		}
+		return ch.request(data, this.requestTimeout, TimeUnit.MILLISECONDS);
+	}
 
 	/**
 	 * Sends the data to the client with the specified address.
@@ -171,13 +439,258 @@ public abstract class Server {
 		return true;
 	}
 	
+	/**
+	 * Sends the data to the client with the specified address with the given priority,
+	 * so it overtakes queued data of lower priorities.
+	 * @param clientAddress to send the data to
+	 * @param data to send
+	 * @param priority of the data
+	 * @return true if the data has been sent successfully
+	 * 
+	 * @see Priority
+	 */
+	public boolean send(String clientAddress, byte[] data, Priority priority) {
+		data = this.dataPreProcessor.process(TransferMode.OUT, data);
+		this.clientManager.getCommunicationHandlerByIP(clientAddress).send(data, priority);
+		return true;
+	}
+	
+	/**
+	 * Sends a typed message to the client with the specified address,
+	 * encoded by the codec registered for its class
+	 * @param clientAddress to send the message to
+	 * @param message to send
+	 * @return true if the message has been sent, false if there is no client with that address
+	 * 
+	 * @throws IllegalArgumentException if no codec is registered for the class of the message
+	 * @see MessageCodecRegistry
+	 */
+	public boolean sendMessage(String clientAddress, Object message) {
+		CommunicationHandler ch = this.clientManager.getCommunicationHandlerByIP(clientAddress);
+		if(ch == null) {
+			return false;
+		}
+		ch.sendMessage(message);
+		return true;
+	}
+	
+	/**
+	 * Sends a whole file to the client with the specified address as a single message.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param clientAddress to send the file to
+	 * @param path of the file to send
+	 * @return true if the file has been sent, false if there is no client with that address
+	 * @throws IOException if the file could not be read or sent
+	 * @throws IllegalStateException if delimited framing is used
+	 * 
+	 * @see #sendFile(String, FileChannel, long, long)
+	 */
+	public boolean sendFile(String clientAddress, Path path) throws IOException {
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			return sendFile(clientAddress, file, 0, file.size());
+		}
+	}
+	
+	/**
+	 * Sends a region of a file to the client with the specified address as a single message.<br>
+	 * If no outgoing {@link DataProcessingLayer} is registered, the content is transferred to the socket
+	 * by the operating system without being copied to the heap. Otherwise the region is read into memory
+	 * and sent like regular data.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param clientAddress to send the file to
+	 * @param file to send the content of
+	 * @param position of the first byte to send
+	 * @param length of the content to send
+	 * @return true if the file has been sent, false if there is no client with that address
+	 * @throws IOException if the file could not be read or sent
+	 * @throws IllegalStateException if delimited framing is used
+	 * 
+	 * @see IOHandler#writeFile(FileChannel, long, long)
+	 */
+	public boolean sendFile(String clientAddress, FileChannel file, long position, long length) throws IOException {
+		CommunicationHandler ch = this.clientManager.getCommunicationHandlerByIP(clientAddress);
+		if(ch == null) {
+			return false;
+		}
+		if(ch.getIOHandler().getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Files require length-prefixed framing");
+		}
+		if(!this.dataPreProcessor.getLayers(TransferMode.OUT).isEmpty()) {
+			ch.send(this.dataPreProcessor.process(TransferMode.OUT, IOHandler.readFileRegion(file, position, length)));
+			return true;
+		}
+		ch.getIOHandler().writeFile(file, position, length);
+		return true;
+	}
+	
 	/**
 	 * Sends the data to all connected clients.
+	 * If the server is part of a cluster, the data is also forwarded to the clients of all other nodes.
+	 * If the server has a {@link MessageJournal}, the data is journaled, so clients can replay it after reconnecting.
 	 * @param data to broadcast
 	 */
 	public void broadcast(byte[] data) {
+		this.broadcastLocally(data);
+		if(this.clusterNode != null) {
+			this.clusterNode.forwardBroadcast(data);
+		}
+	}
+	
+	/**
+	 * Sends the data to all clients of this server, leaving out the links of other nodes of the cluster
+	 * @param data to broadcast
+	 */
+	void broadcastLocally(byte[] data) {
+		byte[] processedData = this.dataPreProcessor.process(TransferMode.OUT, data);
+		List<CommunicationHandler> recipients = new ArrayList<CommunicationHandler>();
+		this.clientManager.getCommunicationHandler().forEach(ch -> {
+			if(this.clusterNode == null || !this.clusterNode.isLink(ch.getIOHandler())) {
+				recipients.add(ch);
+			}
+		});
+		if(!this.journal(FrameType.MESSAGE, null, processedData, recipients)) {
+			recipients.forEach(ch -> ch.send(processedData));
+		}
+	}
+	
+	/**
+	 * Appends a message to the journal, if there is one, and sends it to the recipients as a journaled message
+	 * @param type of the message
+	 * @param header of the message, may be null
+	 * @param data of the message, already processed
+	 * @param recipients to send the message to
+	 * @return true if the message has been journaled and sent, false if it still has to be sent
+	 */
+	private boolean journal(FrameType type, byte[] header, byte[] data, Collection<CommunicationHandler> recipients) {
+		MessageJournal journal = this.journal;
+		if(journal == null) {
+			return false;
+		}
+		try {
+			journal.append(type, header, data, journaledHeader -> 
+					recipients.forEach(ch -> ch.getIOHandler().write(FrameType.JOURNALED, journaledHeader, data)));
+			return true;
+		} catch (IOException e) {
+			if(Server.VERBOSE) {
+				e.printStackTrace();
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Subscribes a client to the topics matching a pattern and lets the cluster know about the interest.
+	 * Subscriptions of closed clients are ignored. Since a client may be closed, and unsubscribed from all patterns,
+	 * while subscribing, the subscription is undone if the client turns out to be closed afterwards.
+	 * @param ch of the client
+	 * @param pattern of the topics
+	 */
+	void subscribe(CommunicationHandler ch, String pattern) {
+		if(ch.isClosed()) {
+			return;
+		}
+		if(this.topics.subscribe(pattern, ch) && this.clusterNode != null) {
+			this.clusterNode.addLocalInterest(pattern);
+		}
+		if(ch.isClosed()) {
+			this.unsubscribe(ch, pattern);
+		}
+	}
+	
+	/**
+	 * Unsubscribes a client from a pattern and lets the cluster know about the lost interest
+	 * @param ch of the client
+	 * @param pattern to unsubscribe from
+	 */
+	void unsubscribe(CommunicationHandler ch, String pattern) {
+		if(this.topics.unsubscribe(pattern, ch) && this.clusterNode != null) {
+			this.clusterNode.removeLocalInterest(pattern);
+		}
+	}
+	
+	/**
+	 * Unsubscribes a client from all patterns, once its connection has been closed
+	 * @param ch of the client
+	 */
+	void unsubscribeAll(CommunicationHandler ch) {
+		Set<String> patterns = this.topics.unsubscribeAll(ch);
+		if(this.clusterNode != null) {
+			patterns.forEach(this.clusterNode::removeLocalInterest);
+		}
+	}
+	
+	/**
+	 * Sets the node joining the server into a cluster
+	 * @param clusterNode of the server
+	 */
+	void setClusterNode(ClusterNode clusterNode) {
+		this.clusterNode = clusterNode;
+	}
+	
+	/**
+	 * Publishes the data to all clients subscribed to a pattern matching the topic.<br>
+	 * The subscribers are looked up in the {@link TopicTrie} and the data is processed
+	 * and encoded once, then written to exactly the subscribed clients.
+	 * If the server is part of a cluster, the data is also forwarded to the nodes having subscribers for the topic.
+	 * If the server has a {@link MessageJournal}, the data is journaled even without subscribers, so clients
+	 * subscribing later can catch up by replaying it.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param topic to publish to, must not contain wildcards
+	 * @param data to publish
+	 * @return the amount of clients of this server the data has been published to
+	 * 
+	 * @throws IllegalArgumentException if the topic is malformed
+	 * @see TopicHandler
+	 * @see ClusterNode
+	 */
+	public int publish(String topic, byte[] data) {
+		int published = this.publishLocally(topic, data);
+		if(this.clusterNode != null) {
+			this.clusterNode.forwardPublication(topic, data);
+		}
+		return published;
+	}
+	
+	/**
+	 * Publishes the data to the clients of this server subscribed to a pattern matching the topic,
+	 * without forwarding it to other nodes of the cluster
+	 * @param topic to publish to, must not contain wildcards
+	 * @param data to publish
+	 * @return the amount of clients the data has been published to
+	 */
+	int publishLocally(String topic, byte[] data) {
+		Set<CommunicationHandler> subscribers = this.topics.match(topic);
+		if(subscribers.isEmpty() && this.journal == null) {
+			return 0;
+		}
+		byte[] header = TopicHandler.encodeTopic(topic);
 		byte[] processedData = this.dataPreProcessor.process(TransferMode.OUT, data);
-		this.clientManager.getCommunicationHandler().forEach(ch -> ch.send(processedData));
+		if(!this.journal(FrameType.PUBLISH, header, processedData, subscribers)) {
+			subscribers.forEach(ch -> TopicHandler.writePublication(ch.getIOHandler(), header, processedData));
+		}
+		return subscribers.size();
+	}
+	
+	/**
+	 * Sets the journal of broadcast and published messages reconnecting clients can catch up from.
+	 * Journaled messages are replayed as encoded frames, so the journal requires the transport config
+	 * of the server to use {@link IOHandler.Framing#LENGTH_PREFIXED} framing. This is checked again on {@link #start()}.
+	 * @param journal to use, null disables journaling
+	 * @throws IllegalStateException if the transport config does not use length-prefixed framing
+	 */
+	public void setJournal(MessageJournal journal) {
+		if(journal != null && this.getTransportConfig().getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("The journal requires length-prefixed framing");
+		}
+		this.journal = journal;
+	}
+	
+	/**
+	 * Returns the transport settings of the connections accepted from now on
+	 * @return the config set, or a default config if none has been set
+	 */
+	public TransportConfig getTransportConfig() {
+		return this.transportConfig != null ? this.transportConfig : new TransportConfig();
 	}
 	
 	/**
@@ -303,6 +816,14 @@ public abstract class Server {
 				}
 				this.listeners.forEach(l -> l.onCommunicationHandlerInitFailed((Exception)args[0]));
 				break;
+			case CONNECTION_REJECTED:
+				if(args.length < 2) {
+					throw new IllegalArgumentException("Expected objects of type Rejection and SocketAddress, but got "+args.length+" objects");
+				} else if(!(args[0] instanceof AdmissionPolicy.Rejection)) {
+					throw new IllegalArgumentException("Expected object of type Rejection, but got "+args[0].getClass().getSimpleName());
+				}
+				this.listeners.forEach(l -> l.onConnectionRejected((AdmissionPolicy.Rejection)args[0], (SocketAddress)args[1]));
+				break;
 			case COMMUNICATIONHANDLER_CLOSE:
 				if(args.length == 0) {
 					throw new IllegalArgumentException("Expected object of type CommunicationHandler, but got nothing");
@@ -1,5 +1,7 @@
 package dev.bitbite.networking;
 
+import java.net.SocketAddress;
+
 /**
  * This class contains all functions which, if registered at the server object, will be called
  * when certain events are happening.
@@ -68,6 +70,13 @@ public abstract class ServerListener {
 	 */
 	public void onCommunicationHandlerInitFailed(Exception exception) {}
 	
+	/**
+	 * Will be called once a connection has been rejected by the {@link AdmissionPolicy} of the server
+	 * @param rejection the reason for the rejection
+	 * @param clientAddress the address of the rejected client, may be null
+	 */
+	public void onConnectionRejected(AdmissionPolicy.Rejection rejection, SocketAddress clientAddress) {}
+	
 	/**
 	 * Will be called before a CommunicationHandler is tried to be closed
 	 * @param ch CommunicationHandler that is going to be closed
@@ -99,4 +108,16 @@ public abstract class ServerListener {
 	 * @param clientAddress of the closed Socket
 	 */
 	public void onSocketClosed(Exception exception, String clientAddress) {}
+	
+	/**
+	 * Will be called once a {@link DatagramServer} received the first datagram of a peer
+	 * @param session of the peer
+	 */
+	public void onSessionStart(DatagramSession session) {}
+	
+	/**
+	 * Will be called once the session of a peer of a {@link DatagramServer} expired
+	 * @param session of the peer
+	 */
+	public void onSessionExpired(DatagramSession session) {}
 }
@@ -0,0 +1,395 @@
+package dev.bitbite.networking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.bitbite.networking.exceptions.RequestFailedException;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Routes data to a set of servers partitioning their state by key.<br>
+ * The client keeps a connection to every endpoint and places each endpoint on a consistent-hash ring
+ * with {@link #getVirtualNodes()} points. A key is routed to the owner of the first point at or after its hash,
+ * so adding or removing an endpoint only moves the keys between it and its neighbours on the ring.
+ * The ring is rebuilt as an immutable snapshot whenever the endpoints change, so routing a key only hashes it
+ * and searches the snapshot, without locking or allocating.<br>
+ * If a load factor is set, routing follows consistent hashing with bounded loads: a shard whose load, the amount of
+ * its pending requests and writes, exceeds the load factor times the average load is passed over in favour of the
+ * next shard on the ring. This keeps hot keys from overloading a single server at the cost of their affinity.<br>
+ * A health check reconnects shards that lost their connection. Until then, routing passes over them as well.
+ *
+ * @see Client
+ */
+public abstract class ShardedClient {
+
+	/**
+	 * A connection to one endpoint
+	 */
+	private static final class Shard {
+		private final String endpoint;
+		private final Client client;
+		private final AtomicInteger pendingRequests = new AtomicInteger();
+
+		private Shard(String endpoint, Client client) {
+			this.endpoint = endpoint;
+			this.client = client;
+		}
+
+		private boolean isHealthy() {
+			return this.client.isConnected();
+		}
+
+		private int getLoad() {
+			IOHandler iOHandler = this.client.getIOHandler();
+			return this.pendingRequests.get() + (iOHandler != null ? iOHandler.getPendingWrites() : 0);
+		}
+	}
+
+	/**
+	 * An immutable snapshot of the ring, the hashes of its points in ascending order along with their owners
+	 */
+	private static final class Ring {
+		private final int[] points;
+		private final Shard[] owners;
+		private final Shard[] shards;
+
+		private Ring(int[] points, Shard[] owners, Shard[] shards) {
+			this.points = points;
+			this.owners = owners;
+			this.shards = shards;
+		}
+	}
+
+	/**
+	 * The amount of points each endpoint is placed on the ring with. Changes apply once the endpoints change.
+	 */
+	@Getter @Setter private int virtualNodes = 160;
+	/**
+	 * The factor by which the load of a shard may exceed the average load before keys are routed past it,
+	 * for example 1.25. 0 disables bounded loads, so keys always go to their owner while it is healthy.
+	 */
+	@Getter @Setter private volatile double loadFactor = 0;
+	/**
+	 * The time in milliseconds between two health checks
+	 */
+	@Getter @Setter private volatile long healthCheckInterval = 1000;
+	/**
+	 * The default time in milliseconds to wait for the response to a request
+	 */
+	@Getter @Setter private long requestTimeout = 30_000;
+	private final LinkedHashMap<String, Shard> shards;
+	private volatile Ring ring;
+	private final Thread healthChecker;
+
+	/**
+	 * Creates a ShardedClient without endpoints
+	 */
+	public ShardedClient() {
+		this.shards = new LinkedHashMap<String, Shard>();
+		this.ring = new Ring(new int[0], new Shard[0], new Shard[0]);
+		this.healthChecker = Thread.ofVirtual().name("shard-health-checker").start(this::checkHealth);
+	}
+
+	/**
+	 * Adds an endpoint, connects to it and places it on the ring
+	 * @param host of the endpoint
+	 * @param port of the endpoint
+	 * @return the client connected to the endpoint, whose connection attempt may have failed
+	 *
+	 * @throws IllegalArgumentException if the endpoint has already been added
+	 */
+	public Client addEndpoint(String host, int port) {
+		String endpoint = host+":"+port;
+		Client client;
+		synchronized(this.shards) {
+			if(this.shards.containsKey(endpoint)) {
+				throw new IllegalArgumentException("Endpoint "+endpoint+" has already been added");
+			}
+			client = this.createClient(host, port);
+			this.shards.put(endpoint, new Shard(endpoint, client));
+			this.rebuildRing();
+		}
+		client.connect();
+		return client;
+	}
+
+	/**
+	 * Removes an endpoint from the ring and closes the connection to it
+	 * @param host of the endpoint
+	 * @param port of the endpoint
+	 * @return true if the endpoint had been added
+	 */
+	public boolean removeEndpoint(String host, int port) {
+		Shard shard;
+		synchronized(this.shards) {
+			shard = this.shards.remove(host+":"+port);
+			if(shard == null) {
+				return false;
+			}
+			this.rebuildRing();
+		}
+		shard.client.close();
+		return true;
+	}
+
+	/**
+	 * Returns the endpoints on the ring
+	 * @return the endpoints as host:port
+	 */
+	public List<String> getEndpoints() {
+		List<String> endpoints = new ArrayList<String>();
+		for(Shard shard : this.ring.shards) {
+			endpoints.add(shard.endpoint);
+		}
+		return endpoints;
+	}
+
+	/**
+	 * Sends data to the shard owning the key
+	 * @param key deciding the shard
+	 * @param data to send
+	 *
+	 * @throws IllegalStateException if no shard is available
+	 */
+	public void send(String key, byte[] data) {
+		this.route(hash(key)).client.send(data);
+	}
+
+	/**
+	 * Sends data to the shard owning the key
+	 * @param key deciding the shard
+	 * @param data to send
+	 *
+	 * @throws IllegalStateException if no shard is available
+	 */
+	public void send(byte[] key, byte[] data) {
+		this.route(hash(key)).client.send(data);
+	}
+
+	/**
+	 * Sends a request to the shard owning the key, using the default request timeout.
+	 * Requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+	 * @param key deciding the shard
+	 * @param data to send
+	 * @return a future of the response
+	 *
+	 * @see Client#request(byte[], long, TimeUnit)
+	 */
+	public CompletableFuture<byte[]> request(String key, byte[] data) {
+		Shard shard;
+		try {
+			shard = this.route(hash(key));
+		} catch(IllegalStateException e) {
+			return CompletableFuture.failedFuture(new RequestFailedException(e.getMessage()));
+		}
+		shard.pendingRequests.incrementAndGet();
+		return shard.client.request(data, this.requestTimeout, TimeUnit.MILLISECONDS)
+						   .whenComplete((r, t) -> shard.pendingRequests.decrementAndGet());
+	}
+
+	/**
+	 * Returns the client of the shard a key is currently routed to
+	 * @param key to route
+	 * @return the client of the shard
+	 *
+	 * @throws IllegalStateException if no shard is available
+	 */
+	public Client getClient(String key) {
+		return this.route(hash(key)).client;
+	}
+
+	/**
+	 * Closes the connections to all endpoints and stops the health check
+	 */
+	public void close() {
+		this.healthChecker.interrupt();
+		synchronized(this.shards) {
+			for(Shard shard : this.shards.values()) {
+				shard.client.close();
+			}
+		}
+	}
+
+	/**
+	 * Creates the client connecting to an endpoint. By default its received data is passed to
+	 * {@link #processReceivedData(String, byte[])}. Can be overridden to configure the clients,
+	 * for example with {@link DataProcessingLayer}s or a different transport.
+	 * @param host of the endpoint
+	 * @param port of the endpoint
+	 * @return the client, not yet connected
+	 */
+	protected Client createClient(String host, int port) {
+		String endpoint = host+":"+port;
+		return new Client(host, port) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				ShardedClient.this.processReceivedData(endpoint, data);
+			}
+		};
+	}
+
+	/**
+	 * This function will be called once data is received from one of the endpoints
+	 * @param endpoint the data came from as host:port
+	 * @param data received
+	 */
+	protected abstract void processReceivedData(String endpoint, byte[] data);
+
+	/**
+	 * Finds the shard owning a hash: the first healthy shard at or after it on the ring
+	 * that is not loaded beyond the bound, if bounded loads are enabled
+	 * @param hash of the key
+	 * @return the shard
+	 *
+	 * @throws IllegalStateException if no shard is healthy
+	 */
+	private Shard route(int hash) {
+		Ring ring = this.ring;
+		int length = ring.points.length;
+		if(length == 0) {
+			throw new IllegalStateException("No endpoints");
+		}
+		int start = Arrays.binarySearch(ring.points, hash);
+		if(start < 0) {
+			start = -start - 1;
+		}
+		double loadFactor = this.loadFactor;
+		int bound = loadFactor > 0 ? loadBound(ring, loadFactor) : Integer.MAX_VALUE;
+		Shard fallback = null;
+		for(int i = 0; i < length; i++) {
+			Shard shard = ring.owners[(start + i) % length];
+			if(!shard.isHealthy()) {
+				continue;
+			}
+			if(shard.getLoad() < bound) {
+				return shard;
+			}
+			if(fallback == null) {
+				fallback = shard;
+			}
+		}
+		if(fallback == null) {
+			throw new IllegalStateException("No healthy endpoint");
+		}
+		return fallback;
+	}
+
+	/**
+	 * Computes the load a healthy shard may carry before keys are routed past it
+	 * @param ring the current ring
+	 * @param loadFactor the factor by which the load may exceed the average
+	 * @return the bound
+	 */
+	private static int loadBound(Ring ring, double loadFactor) {
+		int total = 1;
+		int healthy = 0;
+		for(Shard shard : ring.shards) {
+			if(shard.isHealthy()) {
+				total += shard.getLoad();
+				healthy++;
+			}
+		}
+		return healthy == 0 ? Integer.MAX_VALUE : (int)Math.ceil(loadFactor * total / healthy);
+	}
+
+	/**
+	 * Places the points of all shards on a new ring and publishes it
+	 */
+	private void rebuildRing() {
+		Shard[] shards = this.shards.values().toArray(new Shard[0]);
+		int virtualNodes = Math.max(1, this.virtualNodes);
+		long[] entries = new long[shards.length * virtualNodes];
+		for(int s = 0; s < shards.length; s++) {
+			for(int v = 0; v < virtualNodes; v++) {
+				long point = hash(shards[s].endpoint+"#"+v);
+				entries[s * virtualNodes + v] = (point << 32) | s;
+			}
+		}
+		Arrays.sort(entries);
+		int[] points = new int[entries.length];
+		Shard[] owners = new Shard[entries.length];
+		for(int i = 0; i < entries.length; i++) {
+			points[i] = (int)(entries[i] >> 32);
+			owners[i] = shards[(int)entries[i]];
+		}
+		this.ring = new Ring(points, owners, shards);
+	}
+
+	/**
+	 * Reconnects shards that lost their connection, once every health check interval.
+	 * Shards removed in the meantime are skipped, and a shard removed while it reconnects is closed again,
+	 * so the clients of removed shards stay closed.
+	 */
+	private void checkHealth() {
+		while(!Thread.currentThread().isInterrupted()) {
+			try {
+				Thread.sleep(this.healthCheckInterval);
+			} catch (InterruptedException e) {
+				return;
+			}
+			for(Shard shard : this.ring.shards) {
+				if(shard.isHealthy() || shard.client.getReconnectPolicy() != null) {
+					continue;
+				}
+				synchronized(this.shards) {
+					if(this.shards.get(shard.endpoint) != shard) {
+						continue;
+					}
+				}
+				shard.client.connect();
+				synchronized(this.shards) {
+					if(this.shards.get(shard.endpoint) != shard) {
+						shard.client.close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hashes a key by its characters
+	 * @param key to hash
+	 * @return the hash
+	 */
+	static int hash(String key) {
+		int h = 0x811C9DC5;
+		for(int i = 0; i < key.length(); i++) {
+			h = (h ^ key.charAt(i)) * 0x01000193;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Hashes a key by its bytes
+	 * @param key to hash
+	 * @return the hash
+	 */
+	static int hash(byte[] key) {
+		int h = 0x811C9DC5;
+		for(byte b : key) {
+			h = (h ^ (b & 0xFF)) * 0x01000193;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Spreads the bits of a hash, so similar keys land far apart on the ring
+	 * @param h the hash
+	 * @return the spread hash
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+}
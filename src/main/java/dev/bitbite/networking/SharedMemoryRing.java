@@ -0,0 +1,155 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.SocketException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A single-producer/single-consumer ring buffer inside a memory-mapped file, used by one
+ * direction of a {@link SharedMemorySocket}.<br>
+ * The ring starts with a header holding the write position and the read position, each on its own
+ * cache line so producer and consumer do not invalidate each other's line. Positions only grow;
+ * the index into the data area is the position modulo the capacity, which is a power of two.
+ * A position is published with release semantics after the bytes have been copied and read with
+ * acquire semantics before they are copied, so no locks are needed between the processes.
+ */
+class SharedMemoryRing {
+
+	/**
+	 * The size of the header in front of the data area
+	 */
+	static final int HEADER_SIZE = 128;
+	private static final int WRITE_POSITION_OFFSET = 0;
+	private static final int READ_POSITION_OFFSET = 64;
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final MappedByteBuffer buffer;
+	private final int base;
+	private final int data;
+	private final int capacity;
+	private final int mask;
+	private final SharedMemorySocket.WaitStrategy waitStrategy;
+	private final BooleanSupplier closed;
+	private final BooleanSupplier peerClosed;
+
+	/**
+	 * Creates a view of a ring inside the mapped file
+	 * @param buffer the mapped file
+	 * @param base the offset of the ring header
+	 * @param capacity of the data area, must be a power of two
+	 * @param waitStrategy how to wait for data or free space
+	 * @param closed indicating whether the local side has been closed
+	 * @param peerClosed indicating whether the remote side has been closed
+	 */
+	SharedMemoryRing(MappedByteBuffer buffer, int base, int capacity, SharedMemorySocket.WaitStrategy waitStrategy,
+			BooleanSupplier closed, BooleanSupplier peerClosed) {
+		this.buffer = buffer;
+		this.base = base;
+		this.data = base + HEADER_SIZE;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.waitStrategy = waitStrategy;
+		this.closed = closed;
+		this.peerClosed = peerClosed;
+	}
+
+	/**
+	 * Copies bytes into the ring, waiting for the consumer to free space as often as necessary
+	 * @param b the bytes
+	 * @param off offset of the first byte
+	 * @param len amount of bytes
+	 * @throws SocketException if either side has been closed
+	 * @throws InterruptedIOException if the thread has been interrupted while waiting
+	 */
+	void write(byte[] b, int off, int len) throws IOException {
+		long write = (long)LONG.getOpaque(this.buffer, this.base + WRITE_POSITION_OFFSET);
+		int idle = 0;
+		while(len > 0) {
+			if(this.closed.getAsBoolean()) {
+				throw new SocketException("Socket closed");
+			}
+			if(this.peerClosed.getAsBoolean()) {
+				throw new SocketException("Broken pipe");
+			}
+			long read = (long)LONG.getAcquire(this.buffer, this.base + READ_POSITION_OFFSET);
+			int free = (int)(this.capacity - (write - read));
+			if(free == 0) {
+				if(Thread.currentThread().isInterrupted()) {
+					throw new InterruptedIOException("Write interrupted");
+				}
+				idle = this.waitStrategy.idle(idle);
+				continue;
+			}
+			idle = 0;
+			int count = Math.min(free, len);
+			int index = (int)(write & this.mask);
+			int first = Math.min(count, this.capacity - index);
+			this.buffer.put(this.data + index, b, off, first);
+			if(count > first) {
+				this.buffer.put(this.data, b, off + first, count - first);
+			}
+			write += count;
+			off += count;
+			len -= count;
+			LONG.setRelease(this.buffer, this.base + WRITE_POSITION_OFFSET, write);
+		}
+	}
+
+	/**
+	 * Copies up to the given amount of bytes out of the ring, waiting until at least one is available
+	 * @param b the array to copy to
+	 * @param off offset in the array
+	 * @param len maximum amount of bytes
+	 * @return the amount of bytes copied, -1 if the remote side has been closed and all bytes have been read,
+	 * or 0 if the thread has been interrupted while waiting
+	 * @throws SocketException if the local side has been closed
+	 */
+	int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		long read = (long)LONG.getOpaque(this.buffer, this.base + READ_POSITION_OFFSET);
+		int idle = 0;
+		while(true) {
+			boolean peerClosed = this.peerClosed.getAsBoolean();
+			long write = (long)LONG.getAcquire(this.buffer, this.base + WRITE_POSITION_OFFSET);
+			int available = (int)(write - read);
+			if(available > 0) {
+				int count = Math.min(available, len);
+				int index = (int)(read & this.mask);
+				int first = Math.min(count, this.capacity - index);
+				this.buffer.get(this.data + index, b, off, first);
+				if(count > first) {
+					this.buffer.get(this.data, b, off + first, count - first);
+				}
+				LONG.setRelease(this.buffer, this.base + READ_POSITION_OFFSET, read + count);
+				return count;
+			}
+			if(this.closed.getAsBoolean()) {
+				throw new SocketException("Socket closed");
+			}
+			if(peerClosed) {
+				return -1;
+			}
+			if(Thread.currentThread().isInterrupted()) {
+				return 0;
+			}
+			idle = this.waitStrategy.idle(idle);
+		}
+	}
+
+	/**
+	 * Returns the amount of bytes that can be read without waiting
+	 * @return the amount of bytes that can be read without waiting
+	 */
+	int available() {
+		long write = (long)LONG.getAcquire(this.buffer, this.base + WRITE_POSITION_OFFSET);
+		return (int)(write - (long)LONG.getOpaque(this.buffer, this.base + READ_POSITION_OFFSET));
+	}
+
+}
@@ -0,0 +1,131 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ServerSocket} accepting {@link SharedMemorySocket}s through a directory.<br>
+ * While it is open, a marker file in the directory tells clients that the directory is served.
+ * Accepting polls the directory for new connection files once per millisecond, which only adds
+ * to the time it takes to connect, not to the latency of the connection.
+ *
+ * @see Server#setSharedMemoryDirectory(Path)
+ */
+public class SharedMemoryServerSocket extends ServerSocket {
+
+	/**
+	 * The name of the marker file
+	 */
+	static final String SERVER_MARKER = "server";
+	private static final long POLL_NANOS = 1_000_000;
+
+	private final Path directory;
+	private final Path marker;
+	private final HashSet<Path> seen;
+	private final SharedMemorySocket.WaitStrategy waitStrategy;
+	private volatile int timeout = 0;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a server socket serving the given directory, creating the directory if necessary
+	 * @param directory to serve
+	 * @param transportConfig the config of the server, whose wait strategy the accepted sockets wait with
+	 * @throws IOException if the directory or the marker file could not be created
+	 */
+	public SharedMemoryServerSocket(Path directory, TransportConfig transportConfig) throws IOException {
+		this.directory = directory;
+		this.marker = directory.resolve(SERVER_MARKER);
+		this.seen = new HashSet<Path>();
+		this.waitStrategy = transportConfig.getSharedMemoryWaitStrategy();
+		Files.createDirectories(directory);
+		Files.deleteIfExists(this.marker);
+		Files.createFile(this.marker);
+	}
+
+	/**
+	 * Waits for a connection file and accepts the connection.
+	 * If a timeout is set, a {@link SocketTimeoutException} is thrown once it elapses.
+	 * @return the accepted socket
+	 * @throws SocketException if the socket is closed
+	 * @throws InterruptedIOException if the waiting thread has been interrupted
+	 * @throws IOException if the directory could not be read
+	 */
+	@Override
+	public synchronized Socket accept() throws IOException {
+		long deadline = System.nanoTime() + this.timeout * 1_000_000L;
+		while(true) {
+			if(this.closed) {
+				throw new SocketException("Socket is closed");
+			}
+			ArrayList<Path> files = new ArrayList<Path>();
+			try(DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*"+SharedMemorySocket.FILE_SUFFIX)) {
+				stream.forEach(files::add);
+			}
+			this.seen.retainAll(files);
+			for(Path file : files) {
+				if(this.seen.add(file)) {
+					SharedMemorySocket socket = SharedMemorySocket.accept(file, this.waitStrategy);
+					if(socket != null) {
+						return socket;
+					}
+				}
+			}
+			if(Thread.currentThread().isInterrupted()) {
+				throw new InterruptedIOException("Accept interrupted");
+			}
+			if(this.timeout > 0 && System.nanoTime() - deadline > 0) {
+				throw new SocketTimeoutException("Accept timed out");
+			}
+			LockSupport.parkNanos(POLL_NANOS);
+		}
+	}
+
+	@Override
+	public void setSoTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public int getSoTimeout() {
+		return this.timeout;
+	}
+
+	@Override
+	public boolean isBound() {
+		return true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Stops serving the directory by removing the marker file
+	 * @throws IOException if the marker file could not be removed
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		Files.deleteIfExists(this.marker);
+	}
+
+	@Override
+	public String toString() {
+		return "SharedMemoryServerSocket["+this.directory+"]";
+	}
+
+}
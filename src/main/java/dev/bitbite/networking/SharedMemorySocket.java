@@ -0,0 +1,302 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An endpoint of a connection between two processes on the same host, backed by a memory-mapped file
+ * that holds one {@link SharedMemoryRing} per direction. Bytes written on one side are copied into the
+ * shared mapping and read from it by the other side, without any system call on the data path.<br>
+ * Connections are made through a directory served by a {@link SharedMemoryServerSocket}: the client
+ * creates a connection file in it and waits until the server has accepted it. The file is removed
+ * once both sides have closed the connection.<br>
+ * The capacity of the rings and the {@link WaitStrategy} are taken from the {@link TransportConfig} of each side.
+ * Waiting for data or free space is done according to the wait strategy. Since processes cannot
+ * wake each other up through the mapping, even the parking strategy polls.
+ * A process that dies without closing the socket is not noticed by the other side.
+ *
+ * @see Client#setSharedMemoryDirectory(Path)
+ */
+public class SharedMemorySocket extends Socket {
+
+	/**
+	 * The ways of waiting for data to read or space to write
+	 */
+	public enum WaitStrategy {
+		/**
+		 * Spins on the CPU. Gives the lowest latency, but keeps a core busy while waiting,
+		 * so it should only be used if there is a core to spare for every waiting thread.
+		 */
+		BUSY_SPIN {
+			@Override
+			int idle(int iteration) {
+				Thread.onSpinWait();
+				return iteration + 1;
+			}
+		},
+		/**
+		 * Spins briefly, then yields and finally parks for {@link SharedMemorySocket#PARK_NANOS} between polls.
+		 */
+		PARK {
+			@Override
+			int idle(int iteration) {
+				if(iteration < 100) {
+					Thread.onSpinWait();
+				} else if(iteration < 200) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+				return iteration + 1;
+			}
+		};
+
+		/**
+		 * Waits once
+		 * @param iteration the number of times waited in a row
+		 * @return the next iteration
+		 */
+		abstract int idle(int iteration);
+	}
+
+	/**
+	 * The suffix of connection files
+	 */
+	static final String FILE_SUFFIX = ".shm";
+	/**
+	 * The time in nanoseconds parked between polls by {@link WaitStrategy#PARK}
+	 */
+	static final long PARK_NANOS = 50_000;
+	private static final int MAGIC = 0x53484D31;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 4;
+	private static final int STATE_OFFSET = 8;
+	private static final int CLOSED_OFFSET = 12;
+	private static final int FILE_HEADER_SIZE = 128;
+	private static final int STATE_REQUESTED = 0;
+	private static final int STATE_ACCEPTED = 1;
+	private static final int CLOSED_CLIENT = 1;
+	private static final int CLOSED_SERVER = 2;
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	private final Path file;
+	private final MappedByteBuffer buffer;
+	private final boolean clientSide;
+	private final SocketAddress remoteAddress;
+	private final SharedMemoryRing inbound;
+	private final SharedMemoryRing outbound;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates an endpoint on a mapped connection file
+	 * @param file the connection file
+	 * @param buffer the mapping of the file
+	 * @param clientSide true if this is the endpoint of the client
+	 * @param remoteAddress the address to report for the remote side
+	 * @param waitStrategy how to wait for data to read or space to write
+	 */
+	private SharedMemorySocket(Path file, MappedByteBuffer buffer, boolean clientSide, SocketAddress remoteAddress, WaitStrategy waitStrategy) {
+		this.file = file;
+		this.buffer = buffer;
+		this.clientSide = clientSide;
+		this.remoteAddress = remoteAddress;
+		int capacity = buffer.getInt(CAPACITY_OFFSET);
+		int clientToServer = FILE_HEADER_SIZE;
+		int serverToClient = FILE_HEADER_SIZE + SharedMemoryRing.HEADER_SIZE + capacity;
+		int peerBit = clientSide ? CLOSED_SERVER : CLOSED_CLIENT;
+		this.inbound = new SharedMemoryRing(buffer, clientSide ? serverToClient : clientToServer, capacity, waitStrategy,
+				() -> this.closed, () -> ((int)INT.getAcquire(buffer, CLOSED_OFFSET) & peerBit) != 0);
+		this.outbound = new SharedMemoryRing(buffer, clientSide ? clientToServer : serverToClient, capacity, waitStrategy,
+				() -> this.closed, () -> ((int)INT.getAcquire(buffer, CLOSED_OFFSET) & peerBit) != 0);
+		this.inputStream = new RingInputStream();
+		this.outputStream = new RingOutputStream();
+	}
+
+	/**
+	 * Connects to the shared memory server serving the given directory.
+	 * The rings get the capacity of the config, and the socket waits with its wait strategy. The connect timeout
+	 * of the config is the time in milliseconds to wait for the server to accept the connection, 0 means no timeout.
+	 * @param directory served by the server
+	 * @param transportConfig the config of the client
+	 * @return the connected socket
+	 * @throws ConnectException if no server is serving the directory
+	 * @throws SocketTimeoutException if the server did not accept the connection in time
+	 * @throws IOException if the connection file could not be created
+	 */
+	public static SharedMemorySocket connect(Path directory, TransportConfig transportConfig) throws IOException {
+		Path marker = directory.resolve(SharedMemoryServerSocket.SERVER_MARKER);
+		if(!Files.exists(marker)) {
+			throw new ConnectException("No shared memory server serving "+directory);
+		}
+		String id = UUID.randomUUID().toString();
+		Path temporary = directory.resolve(id+".tmp");
+		Path file = directory.resolve(id+FILE_SUFFIX);
+		int capacity = transportConfig.getSharedMemoryRingCapacity();
+		int timeout = transportConfig.getConnectTimeout();
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			buffer = channel.map(MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + 2L * (SharedMemoryRing.HEADER_SIZE + capacity));
+		}
+		buffer.putInt(CAPACITY_OFFSET, capacity);
+		buffer.putInt(STATE_OFFSET, STATE_REQUESTED);
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+		long deadline = timeout > 0 ? System.nanoTime() + timeout * 1_000_000L : Long.MAX_VALUE;
+		while((int)INT.getAcquire(buffer, STATE_OFFSET) != STATE_ACCEPTED) {
+			if(!Files.exists(marker)) {
+				Files.deleteIfExists(file);
+				throw new ConnectException("Shared memory server serving "+directory+" has been closed");
+			}
+			if(System.nanoTime() - deadline > 0) {
+				Files.deleteIfExists(file);
+				throw new SocketTimeoutException("Connect timed out");
+			}
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+		return new SharedMemorySocket(file, buffer, true, new LocalAddress(directory.toString()), transportConfig.getSharedMemoryWaitStrategy());
+	}
+
+	/**
+	 * Accepts the connection requested through the given file
+	 * @param file the connection file
+	 * @param waitStrategy how the accepted socket waits for data to read or space to write
+	 * @return the socket or null if the file does not hold a connection request
+	 * @throws IOException if the file could not be mapped
+	 */
+	static SharedMemorySocket accept(Path file, WaitStrategy waitStrategy) throws IOException {
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if(channel.size() < FILE_HEADER_SIZE) {
+				return null;
+			}
+			buffer = channel.map(MapMode.READ_WRITE, 0, channel.size());
+		}
+		if(buffer.getInt(MAGIC_OFFSET) != MAGIC || !INT.compareAndSet(buffer, STATE_OFFSET, STATE_REQUESTED, STATE_ACCEPTED)) {
+			return null;
+		}
+		return new SharedMemorySocket(file, buffer, false, new LocalAddress(file.getFileName().toString()), waitStrategy);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return this.inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return this.outputStream;
+	}
+
+	@Override
+	public SocketAddress getRemoteSocketAddress() {
+		return this.remoteAddress;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	@Override
+	public void setKeepAlive(boolean on) {}
+
+	/**
+	 * Closes this side of the connection. The side closing last removes the connection file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		int bit = this.clientSide ? CLOSED_CLIENT : CLOSED_SERVER;
+		int previous = (int)INT.getAndBitwiseOr(this.buffer, CLOSED_OFFSET, bit);
+		if((previous | bit) == (CLOSED_CLIENT | CLOSED_SERVER)) {
+			Files.deleteIfExists(this.file);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SharedMemorySocket["+this.file+"]";
+	}
+
+	/**
+	 * Reads from the inbound ring
+	 */
+	private class RingInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int read;
+			while((read = read(b, 0, 1)) == 0) {
+				if(Thread.currentThread().isInterrupted()) {
+					return -1;
+				}
+			}
+			return read == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return SharedMemorySocket.this.inbound.read(b, off, len);
+		}
+
+		@Override
+		public int available() {
+			return SharedMemorySocket.this.inbound.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			SharedMemorySocket.this.close();
+		}
+	}
+
+	/**
+	 * Writes to the outbound ring
+	 */
+	private class RingOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			SharedMemorySocket.this.outbound.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			SharedMemorySocket.this.close();
+		}
+	}
+
+}
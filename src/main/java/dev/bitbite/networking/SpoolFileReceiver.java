@@ -0,0 +1,148 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MessageChunkReceiver} writing every message straight into a file in a spool directory,
+ * so that large messages never have to be held on the heap.<br>
+ * Chunks are written with positional writes of a {@link FileChannel} into the page cache. The file is never
+ * mapped while it is written, so it can be deleted on any platform and no mapping outlives it.
+ * Once a message is complete the file is passed to the consumer, which takes ownership of it
+ * and is responsible for moving or deleting it; it may map the file to read it without copying.<br>
+ * If the file cannot be created or written, the remaining chunks of the message are ignored, the file is deleted
+ * and the failure is thrown once the last chunk has arrived, which the {@link IOHandler} reports to its listeners.
+ *
+ * @see IOHandler#setMessageChunkReceiver(MessageChunkReceiver)
+ * @see FrameType#BULK_MESSAGE
+ */
+public class SpoolFileReceiver implements MessageChunkReceiver {
+
+	private final Path directory;
+	private final Consumer<Path> onFile;
+	private Path file;
+	private FileChannel channel;
+	private long written;
+	private IOException failure;
+
+	/**
+	 * Creates a SpoolFileReceiver
+	 * @param directory to create the files in
+	 * @param onFile called with the file once a message has been received completely
+	 */
+	public SpoolFileReceiver(Path directory, Consumer<Path> onFile) {
+		this.directory = directory;
+		this.onFile = onFile;
+	}
+
+	@Override
+	public void onMessageChunk(byte[] data, long messageLength, boolean first, boolean last) {
+		onMessageChunk(data, 0, data.length, messageLength, first, last);
+	}
+
+	/**
+	 * Writes the chunk to the file of the current message
+	 *
+	 * @throws UncheckedIOException with the last chunk of a message whose file could not be created or written.
+	 * The chunks following the failure have been ignored and the file has been deleted.
+	 */
+	@Override
+	public void onMessageChunk(byte[] buffer, int offset, int length, long messageLength, boolean first, boolean last) {
+		if(first) {
+			this.failure = null;
+			try {
+				begin();
+			} catch(IOException e) {
+				fail(e);
+			}
+		}
+		if(this.failure == null && this.channel != null) {
+			try {
+				write(buffer, offset, length, messageLength);
+				if(last) {
+					finish();
+				}
+			} catch(IOException e) {
+				fail(e);
+			}
+		}
+		if(last && this.failure != null) {
+			IOException failure = this.failure;
+			this.failure = null;
+			throw new UncheckedIOException(failure);
+		}
+	}
+
+	/**
+	 * Creates the file for a new message, deleting the file of an incomplete previous message
+	 * @throws IOException if the file could not be created
+	 */
+	private void begin() throws IOException {
+		abort();
+		this.file = Files.createTempFile(this.directory, "message-", ".bin");
+		this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+		this.written = 0;
+	}
+
+	/**
+	 * Appends a chunk to the file
+	 * @param buffer containing the chunk
+	 * @param offset of the chunk
+	 * @param length of the chunk
+	 * @param messageLength the length of the message or -1 if it is unknown
+	 * @throws IOException if the chunk could not be written or exceeds the announced length
+	 */
+	private void write(byte[] buffer, int offset, int length, long messageLength) throws IOException {
+		if(messageLength >= 0 && this.written + length > messageLength) {
+			throw new IOException("Received more bytes than announced");
+		}
+		ByteBuffer source = ByteBuffer.wrap(buffer, offset, length);
+		while(source.hasRemaining()) {
+			this.written += this.channel.write(source, this.written);
+		}
+	}
+
+	/**
+	 * Closes the file and passes it to the consumer
+	 * @throws IOException if the file could not be closed
+	 */
+	private void finish() throws IOException {
+		this.channel.close();
+		Path file = this.file;
+		this.channel = null;
+		this.file = null;
+		this.onFile.accept(file);
+	}
+
+	/**
+	 * Records the failure of the current message and deletes its file
+	 * @param e the failure
+	 */
+	private void fail(IOException e) {
+		this.failure = e;
+		abort();
+	}
+
+	/**
+	 * Closes and deletes the file of an incomplete message
+	 */
+	private void abort() {
+		try {
+			if(this.channel != null) {
+				this.channel.close();
+			}
+			if(this.file != null) {
+				Files.deleteIfExists(this.file);
+			}
+		} catch(IOException e) {}
+		this.channel = null;
+		this.file = null;
+	}
+
+}
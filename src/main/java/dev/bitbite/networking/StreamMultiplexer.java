@@ -0,0 +1,203 @@
+package dev.bitbite.networking;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Multiplexes logical streams over the single connection of an {@link IOHandler}.<br>
+ * Data written to a {@link MultiplexedStream} is split into chunks of at most {@link TransportConfig#getStreamChunkSize()}
+ * bytes, each sent as its own frame. Since the IOHandler grants writers access in the order they
+ * arrive, chunks of different streams and regular messages interleave instead of queueing behind
+ * a large payload.<br>
+ * Every stream has its own flow control window: the sender may only have
+ * {@link TransportConfig#getStreamWindowSize()} bytes in flight, and the receiver grants more once it has
+ * handed chunks to the {@link StreamReceiver}. A slow stream therefore cannot flood the connection.
+ * The grants are sent by a virtual thread rather than the reading thread, so reading goes on while the connection
+ * is busy writing, and grants for the same stream piling up meanwhile are merged into one.<br>
+ * Both sizes are taken from the {@link TransportConfig} of the IOHandler.<br>
+ * Stream ids opened by the client are odd, the ones opened by the server even.
+ * Multiplexing requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+ *
+ * @see FrameType#STREAM_DATA
+ * @see FrameType#STREAM_WINDOW_UPDATE
+ */
+public class StreamMultiplexer {
+
+	/**
+	 * Flag marking the last chunk of a stream
+	 */
+	static final byte FLAG_FIN = 0x01;
+
+	private final IOHandler iOHandler;
+	private final DataPreProcessor dataPreProcessor;
+	private final StreamReceiver receiver;
+	private final AtomicInteger nextStreamId;
+	private final ConcurrentHashMap<Integer, MultiplexedStream> outgoingStreams;
+	private final ConcurrentHashMap<Integer, int[]> unacknowledgedBytes;
+	private final ConcurrentHashMap<Integer, Integer> pendingGrants;
+	private final AtomicBoolean granting;
+	private final int maxChunkSize;
+	private final int initialWindowSize;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a StreamMultiplexer and registers it for stream frames at the IOHandler
+	 * @param iOHandler to multiplex the streams over
+	 * @param dataPreProcessor to process the chunks with
+	 * @param receiver to pass the chunks of incoming streams to
+	 * @param clientSide true if the multiplexer belongs to the client side of the connection
+	 */
+	public StreamMultiplexer(IOHandler iOHandler, DataPreProcessor dataPreProcessor, StreamReceiver receiver, boolean clientSide) {
+		this.iOHandler = iOHandler;
+		this.dataPreProcessor = dataPreProcessor;
+		this.receiver = receiver;
+		this.nextStreamId = new AtomicInteger(clientSide ? 1 : 2);
+		this.outgoingStreams = new ConcurrentHashMap<Integer, MultiplexedStream>();
+		this.unacknowledgedBytes = new ConcurrentHashMap<Integer, int[]>();
+		this.pendingGrants = new ConcurrentHashMap<Integer, Integer>();
+		this.granting = new AtomicBoolean();
+		this.maxChunkSize = iOHandler.getTransportConfig().getStreamChunkSize();
+		this.initialWindowSize = iOHandler.getTransportConfig().getStreamWindowSize();
+		if(iOHandler.getFraming() == IOHandler.Framing.LENGTH_PREFIXED) {
+			iOHandler.setFrameHandler(FrameType.STREAM_DATA, this::onData);
+			iOHandler.setFrameHandler(FrameType.STREAM_WINDOW_UPDATE, this::onWindowUpdate);
+		}
+	}
+
+	/**
+	 * Opens a new stream to the remote side
+	 * @return the stream
+	 *
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	public MultiplexedStream openStream() {
+		if(this.iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Streams require length-prefixed framing");
+		}
+		int id = this.nextStreamId.getAndAdd(2);
+		MultiplexedStream stream = new MultiplexedStream(this, id, this.maxChunkSize, this.initialWindowSize);
+		this.outgoingStreams.put(id, stream);
+		if(this.closed) {
+			stream.abort();
+		}
+		return stream;
+	}
+
+	/**
+	 * Aborts all open streams. Writers waiting for their window to open fail.
+	 */
+	public void close() {
+		this.closed = true;
+		this.outgoingStreams.values().forEach(MultiplexedStream::abort);
+		this.outgoingStreams.clear();
+		this.unacknowledgedBytes.clear();
+		this.pendingGrants.clear();
+	}
+
+	/**
+	 * Sends a chunk of a stream
+	 * @param stream the chunk belongs to
+	 * @param data of the chunk
+	 * @param last true if this is the last chunk of the stream
+	 * @return the amount of bytes counted against the window of the stream
+	 */
+	int sendChunk(MultiplexedStream stream, byte[] data, boolean last) {
+		byte[] processed = this.dataPreProcessor.process(TransferMode.OUT, data);
+		byte[] header = Arrays.copyOf(RequestHandler.encodeInt(stream.getId()), 5);
+		header[4] = last ? FLAG_FIN : 0;
+		this.iOHandler.write(FrameType.STREAM_DATA, header, processed);
+		if(last) {
+			this.outgoingStreams.remove(stream.getId());
+		}
+		return processed.length;
+	}
+
+	/**
+	 * Indicates whether the connection the streams are multiplexed over is closed
+	 * @return true if the connection is closed
+	 */
+	boolean isClosed() {
+		return this.closed || this.iOHandler.isClosed();
+	}
+
+	/**
+	 * Passes a received chunk to the receiver and grants the sender more bytes once
+	 * half of the window has been consumed
+	 * @param buffer containing the frame
+	 * @param offset of the stream id
+	 * @param length of the frame without the type byte
+	 */
+	private void onData(byte[] buffer, int offset, int length) {
+		if(length < 5) {
+			return;
+		}
+		int id = RequestHandler.decodeInt(buffer, offset);
+		boolean last = (buffer[offset + 4] & FLAG_FIN) != 0;
+		int size = length - 5;
+		byte[] data = Arrays.copyOfRange(buffer, offset + 5, offset + length);
+		this.receiver.onStreamData(id, this.dataPreProcessor.process(TransferMode.IN, data), last);
+		if(last) {
+			this.unacknowledgedBytes.remove(id);
+			return;
+		}
+		int[] unacknowledged = this.unacknowledgedBytes.computeIfAbsent(id, k -> new int[1]);
+		unacknowledged[0] += size;
+		if(unacknowledged[0] >= this.initialWindowSize / 2) {
+			grant(id, unacknowledged[0]);
+			unacknowledged[0] = 0;
+		}
+	}
+
+	/**
+	 * Queues a grant of more bytes for a stream and starts a virtual thread sending the queued grants
+	 * unless one is already running
+	 * @param id of the stream
+	 * @param bytes to grant
+	 */
+	private void grant(int id, int bytes) {
+		this.pendingGrants.merge(id, bytes, Integer::sum);
+		if(this.granting.compareAndSet(false, true)) {
+			Thread.ofVirtual().name("stream-window-updates").start(this::sendGrants);
+		}
+	}
+
+	/**
+	 * Sends the queued grants as window updates until none are left
+	 */
+	private void sendGrants() {
+		do {
+			for(Integer id : this.pendingGrants.keySet()) {
+				Integer bytes = this.pendingGrants.remove(id);
+				if(bytes == null || isClosed()) {
+					continue;
+				}
+				byte[] header = new byte[8];
+				System.arraycopy(RequestHandler.encodeInt(id), 0, header, 0, 4);
+				System.arraycopy(RequestHandler.encodeInt(bytes), 0, header, 4, 4);
+				this.iOHandler.write(FrameType.STREAM_WINDOW_UPDATE, header, new byte[0], Priority.HIGH);
+			}
+			this.granting.set(false);
+		} while(!this.pendingGrants.isEmpty() && this.granting.compareAndSet(false, true));
+	}
+
+	/**
+	 * Opens the window of a stream by the amount of bytes the receiver granted
+	 * @param buffer containing the frame
+	 * @param offset of the stream id
+	 * @param length of the frame without the type byte
+	 */
+	private void onWindowUpdate(byte[] buffer, int offset, int length) {
+		if(length < 8) {
+			return;
+		}
+		MultiplexedStream stream = this.outgoingStreams.get(RequestHandler.decodeInt(buffer, offset));
+		if(stream != null) {
+			stream.grant(RequestHandler.decodeInt(buffer, offset + 4));
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package dev.bitbite.networking;
+
+/**
+ * Receives the chunks of multiplexed streams opened by the remote side of a connection.
+ * 
+ * @see StreamMultiplexer
+ */
+@FunctionalInterface
+public interface StreamReceiver {
+
+	/**
+	 * Gets called for every chunk received on a stream, in the order the chunks were sent.
+	 * The sender is allowed to send more data once this method returns.
+	 * @param streamId of the stream the chunk belongs to
+	 * @param data of the chunk, processed by the {@link DataPreProcessor}
+	 * @param last true if the stream has been closed by the sender with this chunk
+	 */
+	public void onStreamData(int streamId, byte[] data, boolean last);
+	
+}
@@ -0,0 +1,157 @@
+package dev.bitbite.networking;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * A token bucket refilled at a fixed rate, holding up to a burst of tokens.<br>
+ * Instead of a token count the bucket keeps the point in time at which all tokens handed out so far
+ * have been paid for by the refill. Taking tokens moves that point into the future with a single
+ * compare-and-set, so the bucket is lock-free. Tokens are always handed out; if the bucket does not hold
+ * enough, the caller is told how long to wait before using them. This way a request larger than the burst
+ * is delayed rather than refused, and concurrent callers are served in the order they reserved.
+ *
+ * @see TrafficShaper
+ */
+public class TokenBucket {
+
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+	/**
+	 * The longest time in nanoseconds the bucket can be in debt, a quarter of the range of a long,
+	 * so points in time computed from it cannot overflow
+	 */
+	private static final long MAX_DEBT = Long.MAX_VALUE / 4;
+
+	/**
+	 * The amount of tokens added per second, 0 means unlimited
+	 */
+	@Getter private volatile long rate;
+	/**
+	 * The maximum amount of tokens that can be taken without waiting after the bucket has been idle
+	 */
+	@Getter private volatile long burst;
+	private final AtomicLong paidUntil;
+
+	/**
+	 * Creates an unlimited bucket
+	 */
+	public TokenBucket() {
+		this(0, 0);
+	}
+
+	/**
+	 * Creates a bucket
+	 * @param rate the amount of tokens added per second, 0 means unlimited
+	 * @param burst the maximum amount of tokens that can be taken without waiting
+	 */
+	public TokenBucket(long rate, long burst) {
+		this.rate = rate;
+		this.burst = burst;
+		this.paidUntil = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Sets the amount of tokens added per second
+	 * @param rate the amount of tokens added per second, 0 means unlimited
+	 */
+	public void setRate(long rate) {
+		this.rate = rate;
+	}
+
+	/**
+	 * Sets the maximum amount of tokens that can be taken without waiting
+	 * @param burst the maximum amount of tokens
+	 */
+	public void setBurst(long burst) {
+		this.burst = burst;
+	}
+
+	/**
+	 * Indicates whether tokens are handed out without limit
+	 * @return true if the rate is 0
+	 */
+	public boolean isUnlimited() {
+		return this.rate <= 0;
+	}
+
+	/**
+	 * Takes the given amount of tokens
+	 * @param tokens to take
+	 * @return the time in nanoseconds to wait before the tokens may be used
+	 */
+	public long reserve(long tokens) {
+		long rate = this.rate;
+		if(rate <= 0) {
+			return 0;
+		}
+		long cost = toNanos(tokens, rate);
+		long tolerance = toNanos(this.burst, rate);
+		while(true) {
+			long now = System.nanoTime();
+			long paid = this.paidUntil.get();
+			long debt = debt(paid, now, cost);
+			if(this.paidUntil.compareAndSet(paid, now + debt)) {
+				return Math.max(0, debt - tolerance);
+			}
+		}
+	}
+
+	/**
+	 * Takes the given amount of tokens only if that does not require waiting
+	 * @param tokens to take
+	 * @return true if the tokens have been taken
+	 */
+	public boolean tryAcquire(long tokens) {
+		long rate = this.rate;
+		if(rate <= 0) {
+			return true;
+		}
+		long cost = toNanos(tokens, rate);
+		long tolerance = toNanos(this.burst, rate);
+		while(true) {
+			long now = System.nanoTime();
+			long paid = this.paidUntil.get();
+			long debt = debt(paid, now, cost);
+			if(debt > tolerance) {
+				return false;
+			}
+			if(this.paidUntil.compareAndSet(paid, now + debt)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Converts an amount of tokens to the time in nanoseconds it takes to refill them.
+	 * The product of the tokens and a second may exceed a long, so it is computed with 128 bits
+	 * and, if the time does not fit, saturates at {@link #MAX_DEBT}.
+	 * @param tokens to convert
+	 * @param rate the amount of tokens added per second
+	 * @return the time in nanoseconds
+	 */
+	static long toNanos(long tokens, long rate) {
+		if(tokens <= 0) {
+			return 0;
+		}
+		long high = Math.multiplyHigh(tokens, NANOS_PER_SECOND);
+		long low = tokens * NANOS_PER_SECOND;
+		if(high == 0 && low >= 0) {
+			return Math.min(MAX_DEBT, low / rate);
+		}
+		return (long)Math.min(MAX_DEBT, (double)tokens * NANOS_PER_SECOND / rate);
+	}
+
+	/**
+	 * Computes the time from now until the tokens handed out so far and the given cost have been paid for,
+	 * saturating at {@link #MAX_DEBT}. The time is computed relative to now, so it never overflows.
+	 * @param paid the point in time up to which the tokens handed out so far have been paid for
+	 * @param now the current time
+	 * @param cost of the tokens to take in nanoseconds, at most {@link #MAX_DEBT}
+	 * @return the time in nanoseconds
+	 */
+	private static long debt(long paid, long now, long cost) {
+		return Math.min(MAX_DEBT, Math.max(0, paid - now) + cost);
+	}
+
+}
@@ -0,0 +1,191 @@
+package dev.bitbite.networking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Implements topic-based publish/subscribe messaging on top of an {@link IOHandler}.<br>
+ * Clients subscribe to and unsubscribe from topic patterns with control frames carrying the pattern.
+ * Publications are sent as {@link FrameType#PUBLISH} frames headed by the topic, so the server can publish
+ * a message by processing and encoding it once and writing the same bytes to every subscribed connection.
+ * Received subscriptions and publications are passed to the given callbacks on the read thread of the connection.<br>
+ * Payloads of publications are processed by the {@link DataPreProcessor} like regular messages.
+ * Publish/subscribe messaging requires {@link IOHandler.Framing#LENGTH_PREFIXED} framing.
+ *
+ * @see TopicTrie
+ * @see Server#publish(String, byte[])
+ * @see Client#subscribe(String)
+ */
+public class TopicHandler {
+
+	/**
+	 * The maximum length of a topic in bytes
+	 */
+	public static final int MAX_TOPIC_LENGTH = 65_535;
+
+	private final IOHandler iOHandler;
+	private final DataPreProcessor dataPreProcessor;
+	private final Consumer<String> subscriptionHandler;
+	private final Consumer<String> unsubscriptionHandler;
+	private final BiConsumer<String, byte[]> publicationHandler;
+
+	/**
+	 * Creates a TopicHandler and registers it for subscription and publication frames at the IOHandler
+	 * @param iOHandler to exchange subscriptions and publications with
+	 * @param dataPreProcessor to process the payloads with
+	 * @param subscriptionHandler receiving the patterns the remote side subscribes to, null to ignore subscriptions
+	 * @param unsubscriptionHandler receiving the patterns the remote side unsubscribes from, null to ignore them
+	 * @param publicationHandler receiving the topic and the processed payload of received publications
+	 */
+	public TopicHandler(IOHandler iOHandler, DataPreProcessor dataPreProcessor, Consumer<String> subscriptionHandler,
+						Consumer<String> unsubscriptionHandler, BiConsumer<String, byte[]> publicationHandler) {
+		this.iOHandler = iOHandler;
+		this.dataPreProcessor = dataPreProcessor;
+		this.subscriptionHandler = subscriptionHandler;
+		this.unsubscriptionHandler = unsubscriptionHandler;
+		this.publicationHandler = publicationHandler;
+		if(iOHandler.getFraming() == IOHandler.Framing.LENGTH_PREFIXED) {
+			if(subscriptionHandler != null) {
+				iOHandler.setFrameHandler(FrameType.SUBSCRIBE, (buffer, offset, length) -> this.onControlFrame(this.subscriptionHandler, buffer, offset, length));
+			}
+			if(unsubscriptionHandler != null) {
+				iOHandler.setFrameHandler(FrameType.UNSUBSCRIBE, (buffer, offset, length) -> this.onControlFrame(this.unsubscriptionHandler, buffer, offset, length));
+			}
+			iOHandler.setFrameHandler(FrameType.PUBLISH, this::onPublication);
+		}
+	}
+
+	/**
+	 * Subscribes the remote side to the topics matching a pattern
+	 * @param pattern of the topics, see {@link TopicTrie} for the syntax
+	 *
+	 * @throws IllegalArgumentException if the pattern is malformed
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	public void subscribe(String pattern) {
+		this.writeControlFrame(FrameType.SUBSCRIBE, pattern);
+	}
+
+	/**
+	 * Unsubscribes the remote side from a pattern
+	 * @param pattern to unsubscribe from
+	 *
+	 * @throws IllegalArgumentException if the pattern is malformed
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	public void unsubscribe(String pattern) {
+		this.writeControlFrame(FrameType.UNSUBSCRIBE, pattern);
+	}
+
+	/**
+	 * Publishes data to a topic
+	 * @param topic to publish to, must not contain wildcards
+	 * @param data to publish
+	 *
+	 * @throws IllegalArgumentException if the topic is malformed
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	public void publish(String topic, byte[] data) {
+		checkFraming(this.iOHandler);
+		byte[] header = encodeTopic(topic);
+		this.iOHandler.write(FrameType.PUBLISH, header, this.dataPreProcessor.process(TransferMode.OUT, data));
+	}
+
+	/**
+	 * Writes a publication that has already been encoded, so it can be written to several connections
+	 * @param iOHandler to write the publication to
+	 * @param header the encoded topic
+	 * @param data the processed payload
+	 */
+	static void writePublication(IOHandler iOHandler, byte[] header, byte[] data) {
+		iOHandler.write(FrameType.PUBLISH, header, data);
+	}
+
+	/**
+	 * Encodes a topic as the header of a publication, its length as two bytes followed by its UTF-8 bytes
+	 * @param topic to encode
+	 * @return the header
+	 *
+	 * @throws IllegalArgumentException if the topic is malformed or too long
+	 */
+	static byte[] encodeTopic(String topic) {
+		TopicTrie.split(topic, false);
+		byte[] bytes = topic.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > MAX_TOPIC_LENGTH) {
+			throw new IllegalArgumentException("Topic exceeds "+MAX_TOPIC_LENGTH+" bytes");
+		}
+		byte[] header = new byte[bytes.length + 2];
+		header[0] = (byte)(bytes.length >>> 8);
+		header[1] = (byte)bytes.length;
+		System.arraycopy(bytes, 0, header, 2, bytes.length);
+		return header;
+	}
+
+	/**
+	 * Writes a subscription control frame carrying the pattern as its payload
+	 * @param type of the frame
+	 * @param pattern to write
+	 */
+	private void writeControlFrame(FrameType type, String pattern) {
+		checkFraming(this.iOHandler);
+		TopicTrie.split(pattern, true);
+		this.iOHandler.write(type, new byte[0], pattern.getBytes(StandardCharsets.UTF_8), Priority.HIGH);
+	}
+
+	/**
+	 * Passes the pattern of a received subscription control frame to its handler.
+	 * Malformed patterns are reported to the listeners of the IOHandler as failed reads.
+	 * @param handler of the pattern
+	 * @param buffer containing the frame
+	 * @param offset of the pattern
+	 * @param length of the pattern
+	 */
+	private void onControlFrame(Consumer<String> handler, byte[] buffer, int offset, int length) {
+		try {
+			handler.accept(new String(buffer, offset, length, StandardCharsets.UTF_8));
+		} catch(Exception e) {
+			this.iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, e);
+		}
+	}
+
+	/**
+	 * Decodes a received publication and passes it to the publication handler.
+	 * Malformed publications are reported to the listeners of the IOHandler as failed reads.
+	 * @param buffer containing the frame
+	 * @param offset of the topic header
+	 * @param length of the frame without the type byte
+	 */
+	private void onPublication(byte[] buffer, int offset, int length) {
+		try {
+			if(length < 2) {
+				throw new IllegalStateException("Received publication without topic");
+			}
+			int topicLength = ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+			if(topicLength > length - 2) {
+				throw new IllegalStateException("Received publication with malformed topic");
+			}
+			String topic = new String(buffer, offset + 2, topicLength, StandardCharsets.UTF_8);
+			byte[] data = Arrays.copyOfRange(buffer, offset + 2 + topicLength, offset + length);
+			this.publicationHandler.accept(topic, this.dataPreProcessor.process(TransferMode.IN, data));
+		} catch(Exception e) {
+			this.iOHandler.notifyListeners(IOHandler.EventType.DATA_READ_FAILED, e);
+		}
+	}
+
+	/**
+	 * Ensures that the IOHandler uses length-prefixed framing
+	 * @param iOHandler to check
+	 *
+	 * @throws IllegalStateException if the IOHandler does not use length-prefixed framing
+	 */
+	private static void checkFraming(IOHandler iOHandler) {
+		if(iOHandler.getFraming() != IOHandler.Framing.LENGTH_PREFIXED) {
+			throw new IllegalStateException("Publish/subscribe requires length-prefixed framing");
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+package dev.bitbite.networking;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes subscribers by the topic patterns they subscribed to.<br>
+ * Topics consist of levels separated by <code>/</code>. In a pattern, the level <code>*</code> matches
+ * any single level and a trailing <code>#</code> matches any number of remaining levels, including none,
+ * so <code>prices/#</code> subscribes to <code>prices</code> and every topic below it.<br>
+ * Patterns are stored in a trie with one node per level, so matching a topic only visits the nodes
+ * along its levels and the wildcard branches next to them, regardless of the amount of subscriptions.
+ * Matching reads concurrent maps without locking, while changes to the subscriptions are serialized.
+ *
+ * @param <S> the type of the subscribers
+ */
+public class TopicTrie<S> {
+
+	/**
+	 * The separator of topic levels
+	 */
+	public static final String SEPARATOR = "/";
+	/**
+	 * The level matching any single level
+	 */
+	public static final String SINGLE_LEVEL_WILDCARD = "*";
+	/**
+	 * The level matching any amount of remaining levels
+	 */
+	public static final String MULTI_LEVEL_WILDCARD = "#";
+
+	/**
+	 * A level of the trie
+	 * @param <S> the type of the subscribers
+	 */
+	private static final class Node<S> {
+		private final ConcurrentHashMap<String, Node<S>> children = new ConcurrentHashMap<String, Node<S>>();
+		private final Set<S> subscribers = ConcurrentHashMap.newKeySet();
+
+		private boolean isEmpty() {
+			return this.children.isEmpty() && this.subscribers.isEmpty();
+		}
+	}
+
+	private final Node<S> root;
+	private final ConcurrentHashMap<S, Set<String>> subscriptions;
+
+	/**
+	 * Creates an empty trie
+	 */
+	public TopicTrie() {
+		this.root = new Node<S>();
+		this.subscriptions = new ConcurrentHashMap<S, Set<String>>();
+	}
+
+	/**
+	 * Subscribes a subscriber to the topics matching a pattern
+	 * @param pattern of the topics
+	 * @param subscriber to subscribe
+	 * @return true if the subscriber had not been subscribed to the pattern before
+	 *
+	 * @throws IllegalArgumentException if the pattern is malformed
+	 */
+	public synchronized boolean subscribe(String pattern, S subscriber) {
+		String[] levels = split(pattern, true);
+		Node<S> node = this.root;
+		for(String level : levels) {
+			node = node.children.computeIfAbsent(level, l -> new Node<S>());
+		}
+		if(!node.subscribers.add(subscriber)) {
+			return false;
+		}
+		this.subscriptions.computeIfAbsent(subscriber, s -> ConcurrentHashMap.newKeySet()).add(pattern);
+		return true;
+	}
+
+	/**
+	 * Unsubscribes a subscriber from a pattern it subscribed to
+	 * @param pattern the subscriber subscribed to
+	 * @param subscriber to unsubscribe
+	 * @return true if the subscriber had been subscribed to the pattern
+	 */
+	public synchronized boolean unsubscribe(String pattern, S subscriber) {
+		Set<String> patterns = this.subscriptions.get(subscriber);
+		if(patterns == null || !patterns.remove(pattern)) {
+			return false;
+		}
+		if(patterns.isEmpty()) {
+			this.subscriptions.remove(subscriber);
+		}
+		remove(this.root, split(pattern, true), 0, subscriber);
+		return true;
+	}
+
+	/**
+	 * Unsubscribes a subscriber from all patterns, for example once its connection has been closed
+	 * @param subscriber to unsubscribe
+	 * @return the patterns the subscriber has been unsubscribed from
+	 */
+	public synchronized Set<String> unsubscribeAll(S subscriber) {
+		Set<String> patterns = this.subscriptions.remove(subscriber);
+		if(patterns == null) {
+			return Collections.emptySet();
+		}
+		for(String pattern : patterns) {
+			remove(this.root, split(pattern, true), 0, subscriber);
+		}
+		return patterns;
+	}
+
+	/**
+	 * Returns the patterns a subscriber is subscribed to
+	 * @param subscriber whose patterns to return
+	 * @return the patterns
+	 */
+	public Set<String> getSubscriptions(S subscriber) {
+		Set<String> patterns = this.subscriptions.get(subscriber);
+		return patterns == null ? Collections.emptySet() : Collections.unmodifiableSet(patterns);
+	}
+
+	/**
+	 * Indicates whether the trie holds no subscriptions. Nodes left empty are pruned, so this also means the trie holds no nodes.
+	 * @return true if nobody is subscribed
+	 */
+	public boolean isEmpty() {
+		return this.root.isEmpty();
+	}
+
+	/**
+	 * Collects the subscribers of all patterns matching a topic. A subscriber matching several patterns is contained once.
+	 * @param topic to match, must not contain wildcards
+	 * @return the subscribers
+	 *
+	 * @throws IllegalArgumentException if the topic is malformed
+	 */
+	public Set<S> match(String topic) {
+		Set<S> result = new HashSet<S>();
+		collect(this.root, split(topic, false), 0, result);
+		return result;
+	}
+
+	/**
+	 * Collects the subscribers of the nodes below the given one matching the remaining levels
+	 * @param node the current node
+	 * @param levels of the topic
+	 * @param index of the next level
+	 * @param result to add the subscribers to
+	 */
+	private void collect(Node<S> node, String[] levels, int index, Set<S> result) {
+		Node<S> rest = node.children.get(MULTI_LEVEL_WILDCARD);
+		if(rest != null) {
+			result.addAll(rest.subscribers);
+		}
+		if(index == levels.length) {
+			result.addAll(node.subscribers);
+			return;
+		}
+		Node<S> exact = node.children.get(levels[index]);
+		if(exact != null) {
+			collect(exact, levels, index + 1, result);
+		}
+		Node<S> any = node.children.get(SINGLE_LEVEL_WILDCARD);
+		if(any != null) {
+			collect(any, levels, index + 1, result);
+		}
+	}
+
+	/**
+	 * Removes a subscriber from the node of a pattern and prunes nodes left empty
+	 * @param node the current node
+	 * @param levels of the pattern
+	 * @param index of the next level
+	 * @param subscriber to remove
+	 */
+	private void remove(Node<S> node, String[] levels, int index, S subscriber) {
+		if(index == levels.length) {
+			node.subscribers.remove(subscriber);
+			return;
+		}
+		Node<S> child = node.children.get(levels[index]);
+		if(child == null) {
+			return;
+		}
+		remove(child, levels, index + 1, subscriber);
+		if(child.isEmpty()) {
+			node.children.remove(levels[index], child);
+		}
+	}
+
+	/**
+	 * Splits a topic or pattern into its levels
+	 * @param topic to split
+	 * @param pattern true if wildcards are allowed
+	 * @return the levels
+	 *
+	 * @throws IllegalArgumentException if the topic is empty or contains wildcards where they are not allowed
+	 */
+	static String[] split(String topic, boolean pattern) {
+		if(topic == null || topic.isEmpty()) {
+			throw new IllegalArgumentException("Topic must not be empty");
+		}
+		String[] levels = topic.split(SEPARATOR, -1);
+		for(int i = 0; i < levels.length; i++) {
+			boolean wildcard = levels[i].equals(SINGLE_LEVEL_WILDCARD) || levels[i].equals(MULTI_LEVEL_WILDCARD);
+			if(wildcard && !pattern) {
+				throw new IllegalArgumentException("Topic "+topic+" must not contain wildcards");
+			}
+			if(levels[i].equals(MULTI_LEVEL_WILDCARD) && i != levels.length - 1) {
+				throw new IllegalArgumentException("Wildcard "+MULTI_LEVEL_WILDCARD+" must be the last level of "+topic);
+			}
+		}
+		return levels;
+	}
+
+}
@@ -0,0 +1,433 @@
+package dev.bitbite.networking;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the frames of the connections it is set on, with nanosecond timestamps, to a compact binary file.<br>
+ * The I/O threads never touch the file: a frame is copied into a ring buffer the size of the capacity,
+ * shared by all connections, and a writer thread drains the ring to the file. Producers claim space in the ring
+ * by advancing its tail with a compare-and-set, copy their record and publish it by writing its length with
+ * release semantics. The writer reads the lengths with acquire semantics, writes the published records straight from
+ * the ring, clears them and advances the head. If the ring is full, the frame is dropped and counted rather than
+ * waiting for the disk, see {@link #getDroppedFrames()}.<br>
+ * The file starts with a header of the magic number, the format version and the wall-clock time the capture started
+ * in milliseconds. Each record follows as the length of its body, the nanoseconds since the start of the capture,
+ * the id of the connection, the {@link Event}, the type of the frame and its content, all in big-endian order.
+ * Frames are captured as they are framed by the IOHandler, so messages too large to be reassembled and file regions
+ * transferred by {@link IOHandler#writeFile(java.nio.channels.FileChannel, long, long)} are not captured.
+ *
+ * @see IOHandler#setTrafficCapture(TrafficCapture)
+ * @see TrafficReplayer
+ */
+public class TrafficCapture implements Closeable {
+
+	/**
+	 * The events recorded for a connection
+	 */
+	public enum Event {
+		/**
+		 * The connection started being captured
+		 */
+		OPEN,
+		/**
+		 * A frame has been received
+		 */
+		INBOUND,
+		/**
+		 * A frame has been written
+		 */
+		OUTBOUND,
+		/**
+		 * The connection has been closed
+		 */
+		CLOSE
+	}
+
+	/**
+	 * A record read from a capture file
+	 */
+	public static final class Record {
+		private final long timestamp;
+		private final long connection;
+		private final Event event;
+		private final FrameType type;
+		private final byte[] payload;
+
+		private Record(long timestamp, long connection, Event event, FrameType type, byte[] payload) {
+			this.timestamp = timestamp;
+			this.connection = connection;
+			this.event = event;
+			this.type = type;
+			this.payload = payload;
+		}
+
+		/**
+		 * Returns the time the record has been captured at
+		 * @return the nanoseconds since the start of the capture
+		 */
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+
+		/**
+		 * Returns the id of the connection, unique within the capture
+		 * @return the id of the connection
+		 */
+		public long getConnection() {
+			return this.connection;
+		}
+
+		/**
+		 * Returns the recorded event
+		 * @return the event
+		 */
+		public Event getEvent() {
+			return this.event;
+		}
+
+		/**
+		 * Returns the type of the frame
+		 * @return the type, null for opened and closed connections or unknown types
+		 */
+		public FrameType getType() {
+			return this.type;
+		}
+
+		/**
+		 * Returns the content of the frame following its type, including the type specific header
+		 * @return the content
+		 */
+		public byte[] getPayload() {
+			return this.payload;
+		}
+	}
+
+	/**
+	 * Reads the records of a capture file one after another
+	 */
+	public static final class Reader implements Closeable {
+		private final DataInputStream input;
+		private final long startTime;
+
+		/**
+		 * Opens a capture file and reads its header
+		 * @param file to read
+		 * @throws IOException if the file could not be read or is not a capture
+		 */
+		public Reader(Path file) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+			try {
+				if(this.input.readInt() != MAGIC) {
+					throw new IOException(file+" is not a traffic capture");
+				}
+				int version = this.input.readInt();
+				if(version != VERSION) {
+					throw new IOException("Unsupported capture version "+version);
+				}
+				this.startTime = this.input.readLong();
+			} catch(IOException e) {
+				this.input.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Returns the wall-clock time the capture started
+		 * @return the time in milliseconds since the epoch
+		 */
+		public long getStartTime() {
+			return this.startTime;
+		}
+
+		/**
+		 * Reads the next record
+		 * @return the record, null at the end of the capture
+		 * @throws IOException if the file could not be read or is malformed
+		 */
+		public Record next() throws IOException {
+			int length;
+			try {
+				length = this.input.readInt();
+			} catch(EOFException e) {
+				return null;
+			}
+			if(length < RECORD_HEADER_SIZE) {
+				throw new IOException("Malformed capture record of "+length+" bytes");
+			}
+			long timestamp = this.input.readLong();
+			long connection = this.input.readLong();
+			int event = this.input.readByte();
+			byte type = this.input.readByte();
+			if(event < 0 || event >= EVENTS.length) {
+				throw new IOException("Unknown capture event "+event);
+			}
+			byte[] payload = new byte[length - RECORD_HEADER_SIZE];
+			this.input.readFully(payload);
+			Event e = EVENTS[event];
+			return new Record(timestamp, connection, e, e == Event.INBOUND || e == Event.OUTBOUND ? FrameType.fromId(type) : null, payload);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.input.close();
+		}
+	}
+
+	/**
+	 * The magic number a capture file starts with, "BBTC"
+	 */
+	static final int MAGIC = 0x42425443;
+	static final int VERSION = 1;
+	/**
+	 * The size of a record body without the content of the frame
+	 */
+	private static final int RECORD_HEADER_SIZE = 18;
+	/**
+	 * The size of the lengths in front of each record in the ring: the aligned length it occupies, then the length of its body
+	 */
+	private static final int SLOT_HEADER_SIZE = 8;
+	private static final int PADDING = -1;
+	private static final int BATCH_SIZE = 1024;
+	private static final Event[] EVENTS = Event.values();
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final byte[] ZEROS = new byte[4096];
+
+	private final FileChannel channel;
+	private final ByteBuffer ring;
+	private final int capacity;
+	private final int mask;
+	private final AtomicLong tail;
+	private volatile long head;
+	private final long start;
+	private final AtomicLong connections;
+	private final AtomicLong capturedFrames;
+	private final AtomicLong droppedFrames;
+	private final Thread writer;
+	private volatile boolean closed;
+	private volatile IOException failure;
+
+	/**
+	 * Creates a capture with a ring of 4 MiB writing to a file
+	 * @param file to write to, replaced if it exists
+	 * @throws IOException if the file could not be created
+	 */
+	public TrafficCapture(Path file) throws IOException {
+		this(file, 4 * 1024 * 1024);
+	}
+
+	/**
+	 * Creates a capture writing to a file
+	 * @param file to write to, replaced if it exists
+	 * @param capacity of the ring in bytes, rounded up to a power of two of at least 4 KiB. Frames larger than the ring are dropped.
+	 * @throws IOException if the file could not be created
+	 * @throws IllegalArgumentException if the capacity is not positive or exceeds 1 GiB
+	 */
+	public TrafficCapture(Path file, int capacity) throws IOException {
+		if(capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity must be between 1 byte and 1 GiB");
+		}
+		this.capacity = Math.max(ZEROS.length, Integer.highestOneBit(capacity - 1) << 1);
+		this.mask = this.capacity - 1;
+		this.ring = ByteBuffer.allocateDirect(this.capacity);
+		this.tail = new AtomicLong();
+		this.connections = new AtomicLong();
+		this.capturedFrames = new AtomicLong();
+		this.droppedFrames = new AtomicLong();
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(16).putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).flip();
+		while(header.hasRemaining()) {
+			this.channel.write(header);
+		}
+		this.start = System.nanoTime();
+		this.writer = Thread.ofPlatform().daemon().name("traffic-capture-writer").start(this::drain);
+	}
+
+	/**
+	 * Returns the amount of frames captured so far, including those not yet written to the file
+	 * @return the amount of captured frames
+	 */
+	public long getCapturedFrames() {
+		return this.capturedFrames.get();
+	}
+
+	/**
+	 * Returns the amount of frames dropped because the ring was full or the frame larger than the ring
+	 * @return the amount of dropped frames
+	 */
+	public long getDroppedFrames() {
+		return this.droppedFrames.get();
+	}
+
+	/**
+	 * Stops capturing, writes the remaining records and closes the file
+	 * @throws IOException if writing the capture failed
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		LockSupport.unpark(this.writer);
+		try {
+			this.writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.channel.close();
+		if(this.failure != null) {
+			throw this.failure;
+		}
+	}
+
+	/**
+	 * Assigns an id to a connection and records that it started being captured
+	 * @return the id of the connection
+	 */
+	long open() {
+		long connection = this.connections.incrementAndGet();
+		this.record(connection, Event.OPEN, (byte)0, null, null, 0, 0);
+		return connection;
+	}
+
+	/**
+	 * Records a frame or an event of a connection, or drops it if the ring has no space for it
+	 * @param connection the id of the connection
+	 * @param event to record
+	 * @param type id of the frame type
+	 * @param header type specific header of the frame, may be null
+	 * @param data buffer containing the rest of the frame, may be null if the length is 0
+	 * @param offset of the rest of the frame
+	 * @param length of the rest of the frame
+	 */
+	void record(long connection, Event event, byte type, byte[] header, byte[] data, int offset, int length) {
+		if(this.closed) {
+			return;
+		}
+		int headerLength = header == null ? 0 : header.length;
+		long bodyLength = (long)RECORD_HEADER_SIZE + headerLength + length;
+		long slotLength = (SLOT_HEADER_SIZE + bodyLength + 7) & ~7L;
+		if(slotLength > this.capacity) {
+			this.droppedFrames.incrementAndGet();
+			return;
+		}
+		long position;
+		int index;
+		int padding;
+		while(true) {
+			position = this.tail.get();
+			index = (int)(position & this.mask);
+			padding = index + slotLength > this.capacity ? this.capacity - index : 0;
+			if(position + padding + slotLength - this.head > this.capacity) {
+				this.droppedFrames.incrementAndGet();
+				return;
+			}
+			if(this.tail.compareAndSet(position, position + padding + slotLength)) {
+				break;
+			}
+		}
+		if(padding > 0) {
+			this.ring.putInt(index + 4, PADDING);
+			INT.setRelease(this.ring, index, padding);
+			index = 0;
+		}
+		int body = index + SLOT_HEADER_SIZE;
+		this.ring.putInt(index + 4, (int)bodyLength);
+		this.ring.putLong(body, System.nanoTime() - this.start);
+		this.ring.putLong(body + 8, connection);
+		this.ring.put(body + 16, (byte)event.ordinal());
+		this.ring.put(body + 17, type);
+		if(headerLength > 0) {
+			this.ring.put(body + RECORD_HEADER_SIZE, header);
+		}
+		if(length > 0) {
+			this.ring.put(body + RECORD_HEADER_SIZE + headerLength, data, offset, length);
+		}
+		INT.setRelease(this.ring, index, (int)slotLength);
+		this.capturedFrames.incrementAndGet();
+	}
+
+	/**
+	 * Writes the published records to the file until the capture is closed and the ring is empty.
+	 * Records are written in batches with a single gathering write straight from the ring.
+	 * The writer spins while a record has been claimed but not yet published, and parks while the ring is empty.
+	 */
+	private void drain() {
+		ByteBuffer[] batch = new ByteBuffer[BATCH_SIZE];
+		long position = this.head;
+		while(true) {
+			int count = 0;
+			long end = position;
+			while(count < BATCH_SIZE) {
+				int index = (int)(end & this.mask);
+				int slotLength = (int)INT.getAcquire(this.ring, index);
+				if(slotLength == 0) {
+					break;
+				}
+				int bodyLength = this.ring.getInt(index + 4);
+				if(bodyLength != PADDING) {
+					batch[count++] = this.ring.slice(index + 4, 4 + bodyLength);
+				}
+				end += slotLength;
+				if((end & this.mask) == 0) {
+					break;
+				}
+			}
+			if(end == position) {
+				if(this.tail.get() != position) {
+					Thread.onSpinWait();
+				} else if(this.closed) {
+					return;
+				} else {
+					LockSupport.parkNanos(100_000);
+				}
+				continue;
+			}
+			if(this.failure == null) {
+				try {
+					long remaining = 0;
+					for(int i = 0; i < count; i++) {
+						remaining += batch[i].remaining();
+					}
+					while(remaining > 0) {
+						remaining -= this.channel.write(batch, 0, count);
+					}
+				} catch(IOException e) {
+					this.failure = e;
+				}
+			}
+			this.clear((int)(position & this.mask), (int)(end - position));
+			position = end;
+			this.head = position;
+		}
+	}
+
+	/**
+	 * Zeroes consumed records, so their lengths read as unpublished once producers wrap around to them
+	 * @param index of the first record
+	 * @param length of the records, not wrapping around the end of the ring
+	 */
+	private void clear(int index, int length) {
+		while(length > 0) {
+			int count = Math.min(length, ZEROS.length);
+			this.ring.put(index, ZEROS, 0, count);
+			index += count;
+			length -= count;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Drives a {@link Server} with traffic recorded by a {@link TrafficCapture}.<br>
+ * Every captured connection is replayed over a connection of its own, opened and closed when the captured one was.
+ * The frames the server received are written again exactly as they were captured, after the {@link DataPreProcessor},
+ * so the server sees the same frames of the same types. The frames it sends back are read and discarded.
+ * The records are replayed at their original timing, at a multiple of it or as fast as possible, see {@link #setSpeed(double)}.
+ * The replaying clients use the default framing, which has to match the one of the server.<br>
+ * It can also be run on its own: {@code TrafficReplayer <capture> <host> <port> [speed]}
+ *
+ * @see TrafficCapture
+ */
+public class TrafficReplayer {
+
+	/**
+	 * The speed replaying the records without waiting between them
+	 */
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+	@Getter private final Path capture;
+	@Getter private final String host;
+	@Getter private final int port;
+	/**
+	 * The speed relative to the captured timing, 2 replays twice as fast, {@link #MAX_SPEED} as fast as possible
+	 */
+	@Getter private double speed = 1;
+	/**
+	 * The event of the frames to replay: {@link TrafficCapture.Event#INBOUND} for captures of a server,
+	 * {@link TrafficCapture.Event#OUTBOUND} for captures of clients, whose outbound frames the server received
+	 */
+	@Getter @Setter private TrafficCapture.Event replayedEvent = TrafficCapture.Event.INBOUND;
+
+	/**
+	 * Creates a replayer of a capture file
+	 * @param capture the file written by a {@link TrafficCapture}
+	 * @param host of the server to replay to
+	 * @param port of the server to replay to
+	 */
+	public TrafficReplayer(Path capture, String host, int port) {
+		this.capture = capture;
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Sets the speed relative to the captured timing
+	 * @param speed the factor the time between two records is divided by, {@link #MAX_SPEED} to replay as fast as possible
+	 *
+	 * @throws IllegalArgumentException if the speed is not positive
+	 */
+	public void setSpeed(double speed) {
+		if(!(speed > 0)) {
+			throw new IllegalArgumentException("Speed must be positive");
+		}
+		this.speed = speed;
+	}
+
+	/**
+	 * Replays the capture, blocking until all records have been replayed and the connections have been closed
+	 * @return the amount of frames replayed
+	 * @throws IOException if the capture could not be read or a connection could not be established
+	 */
+	public long replay() throws IOException {
+		Map<Long, Client> clients = new HashMap<Long, Client>();
+		long frames = 0;
+		try(TrafficCapture.Reader reader = new TrafficCapture.Reader(this.capture)) {
+			long start = System.nanoTime();
+			long first = -1;
+			TrafficCapture.Record record;
+			while((record = reader.next()) != null) {
+				if(first < 0) {
+					first = record.getTimestamp();
+				}
+				waitUntil(start + (long)((record.getTimestamp() - first) / this.speed));
+				if(record.getEvent() == TrafficCapture.Event.CLOSE) {
+					Client client = clients.remove(record.getConnection());
+					if(client != null && client.isConnected()) {
+						client.close();
+					}
+				} else if(record.getEvent() == TrafficCapture.Event.OPEN || record.getEvent() == this.replayedEvent) {
+					Client client = clients.get(record.getConnection());
+					if(client == null) {
+						client = this.createClient(this.host, this.port);
+						if(!client.connect()) {
+							throw new IOException("Could not connect to "+this.host+":"+this.port);
+						}
+						clients.put(record.getConnection(), client);
+					}
+					if(record.getEvent() == this.replayedEvent && record.getType() != null) {
+						client.getIOHandler().write(record.getType(), null, record.getPayload());
+						frames++;
+					}
+				}
+			}
+		} finally {
+			for(Client client : clients.values()) {
+				if(client.isConnected()) {
+					client.close();
+				}
+			}
+		}
+		return frames;
+	}
+
+	/**
+	 * Creates the client replaying a captured connection. By default its received data is discarded.
+	 * Can be overridden to configure the clients, for example with a different transport.
+	 * @param host of the server
+	 * @param port of the server
+	 * @return the client, not yet connected
+	 */
+	protected Client createClient(String host, int port) {
+		return new Client(host, port) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+	}
+
+	/**
+	 * Parks the thread until the given time
+	 * @param deadline as returned by {@link System#nanoTime()}
+	 */
+	private static void waitUntil(long deadline) {
+		long remaining;
+		while((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	/**
+	 * Replays a capture file to a server
+	 * @param args the capture file, the host and the port of the server, and optionally the speed or "max"
+	 * @throws IOException if the capture could not be read or a connection could not be established
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length < 3) {
+			System.err.println("Usage: TrafficReplayer <capture> <host> <port> [speed|max]");
+			System.exit(1);
+		}
+		TrafficReplayer replayer = new TrafficReplayer(Paths.get(args[0]), args[1], Integer.parseInt(args[2]));
+		if(args.length > 3) {
+			replayer.setSpeed(args[3].equalsIgnoreCase("max") ? MAX_SPEED : Double.parseDouble(args[3]));
+		}
+		long start = System.nanoTime();
+		long frames = replayer.replay();
+		System.out.println("Replayed "+frames+" frames in "+(System.nanoTime() - start) / 1_000_000+" ms");
+	}
+
+}
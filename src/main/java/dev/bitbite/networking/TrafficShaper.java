@@ -0,0 +1,132 @@
+package dev.bitbite.networking;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+
+/**
+ * Limits the bytes and messages per second flowing through the connections it is added to.<br>
+ * A shaper can be added to a single connection, shared by a group of connections, for example those of one tenant,
+ * or shared by all connections of a server. A connection with several shapers obeys all of them.
+ * Outbound traffic waits before being written, inbound traffic pauses reading, which lets the transport
+ * push back on the sender instead of dropping data. Each limit is a {@link TokenBucket}, unlimited by default,
+ * whose burst defaults to one second's worth of tokens.
+ *
+ * @see IOHandler#addTrafficShaper(TrafficShaper)
+ */
+public class TrafficShaper {
+
+	/**
+	 * Limits the bytes written per second
+	 */
+	@Getter private final TokenBucket outboundBytes;
+	/**
+	 * Limits the frames written per second
+	 */
+	@Getter private final TokenBucket outboundMessages;
+	/**
+	 * Limits the bytes read per second
+	 */
+	@Getter private final TokenBucket inboundBytes;
+	/**
+	 * Limits the frames read per second
+	 */
+	@Getter private final TokenBucket inboundMessages;
+
+	/**
+	 * Creates a shaper without limits
+	 */
+	public TrafficShaper() {
+		this(0, 0, 0, 0);
+	}
+
+	/**
+	 * Creates a shaper with the given limits, each allowing a burst of one second's worth. A limit of 0 means unlimited.
+	 * @param outboundBytesPerSecond maximum bytes written per second
+	 * @param outboundMessagesPerSecond maximum frames written per second
+	 * @param inboundBytesPerSecond maximum bytes read per second
+	 * @param inboundMessagesPerSecond maximum frames read per second
+	 */
+	public TrafficShaper(long outboundBytesPerSecond, long outboundMessagesPerSecond, long inboundBytesPerSecond, long inboundMessagesPerSecond) {
+		this.outboundBytes = new TokenBucket(outboundBytesPerSecond, outboundBytesPerSecond);
+		this.outboundMessages = new TokenBucket(outboundMessagesPerSecond, outboundMessagesPerSecond);
+		this.inboundBytes = new TokenBucket(inboundBytesPerSecond, inboundBytesPerSecond);
+		this.inboundMessages = new TokenBucket(inboundMessagesPerSecond, inboundMessagesPerSecond);
+	}
+
+	/**
+	 * Creates a shaper with the same limits as the given one but its own tokens,
+	 * used to give every connection a shaper of its own
+	 * @param template to copy the limits from
+	 */
+	public TrafficShaper(TrafficShaper template) {
+		this.outboundBytes = new TokenBucket(template.outboundBytes.getRate(), template.outboundBytes.getBurst());
+		this.outboundMessages = new TokenBucket(template.outboundMessages.getRate(), template.outboundMessages.getBurst());
+		this.inboundBytes = new TokenBucket(template.inboundBytes.getRate(), template.inboundBytes.getBurst());
+		this.inboundMessages = new TokenBucket(template.inboundMessages.getRate(), template.inboundMessages.getBurst());
+	}
+
+	/**
+	 * Takes the tokens for writing a frame
+	 * @param bytes the size of the frame
+	 * @return the time in nanoseconds to wait before writing
+	 */
+	long reserveOutbound(long bytes) {
+		return Math.max(this.outboundBytes.reserve(bytes), this.outboundMessages.reserve(1));
+	}
+
+	/**
+	 * Takes the tokens for bytes and frames that have been read
+	 * @param bytes the amount of bytes read
+	 * @param messages the amount of frames read
+	 * @return the time in nanoseconds to wait before reading again
+	 */
+	long reserveInbound(long bytes, int messages) {
+		long delay = this.inboundBytes.reserve(bytes);
+		if(messages > 0) {
+			delay = Math.max(delay, this.inboundMessages.reserve(messages));
+		}
+		return delay;
+	}
+
+	/**
+	 * Waits as long as the strictest of the given shapers requires before writing a frame
+	 * @param shapers to obey
+	 * @param bytes the size of the frame
+	 */
+	static void shapeOutbound(List<TrafficShaper> shapers, long bytes) {
+		long delay = 0;
+		for(TrafficShaper shaper : shapers) {
+			delay = Math.max(delay, shaper.reserveOutbound(bytes));
+		}
+		pause(delay);
+	}
+
+	/**
+	 * Waits as long as the strictest of the given shapers requires after bytes have been read
+	 * @param shapers to obey
+	 * @param bytes the amount of bytes read
+	 * @param messages the amount of frames read
+	 */
+	static void shapeInbound(List<TrafficShaper> shapers, long bytes, int messages) {
+		long delay = 0;
+		for(TrafficShaper shaper : shapers) {
+			delay = Math.max(delay, shaper.reserveInbound(bytes, messages));
+		}
+		pause(delay);
+	}
+
+	/**
+	 * Parks the calling thread for the given time or until it is interrupted
+	 * @param nanos to wait
+	 */
+	private static void pause(long nanos) {
+		long deadline = System.nanoTime() + nanos;
+		while(nanos > 0 && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(nanos);
+			nanos = deadline - System.nanoTime();
+		}
+	}
+
+}
@@ -0,0 +1,451 @@
+package dev.bitbite.networking;
+
+import java.net.Socket;
+import java.net.SocketException;
+
+import dev.bitbite.networking.IOHandler.Framing;
+import lombok.Getter;
+
+/**
+ * The transport settings of the connections of a {@link Server} or a {@link Client}: framing, buffer sizes,
+ * socket options, when written frames are flushed, timeouts and the chunking and flow control of multiplexed streams.<br>
+ * A TransportConfig is immutable. Every {@code with} method returns a copy with one setting changed,
+ * so a config can be shared between servers and clients, and changing the config of a server only
+ * affects connections accepted afterwards. Each {@link IOHandler} keeps the config it has been created with.<br>
+ * {@link #TransportConfig()} takes the framing, the end-of-message byte, the read size and the maximum message size
+ * from the defaults of {@link IOHandler}, the other settings keep the defaults of the platform.
+ * {@link #latencyOptimized()} and {@link #throughputOptimized()} tune them for small, latency-critical messages
+ * and bulk transfers respectively.<br>
+ * Socket options only apply to TCP connections, they are ignored by the other transports.
+ * The ring capacity and wait strategy only apply to the shared memory transport.
+ *
+ * @see Server#setTransportConfig(TransportConfig)
+ * @see Client#setTransportConfig(TransportConfig)
+ */
+public final class TransportConfig {
+
+	/**
+	 * When frames written to a connection are flushed to the socket
+	 */
+	public enum FlushPolicy {
+		/**
+		 * After every frame, so each frame leaves as soon as it has been encoded
+		 */
+		EVERY_FRAME,
+		/**
+		 * Once the frame of the writer has been written, along with the frames of other writers
+		 * that were written in the same rounds of the priority lanes
+		 */
+		EVERY_WRITE,
+		/**
+		 * Only once no other writer is waiting, so the frames of concurrent writers are coalesced
+		 * into as few socket writes as the write buffer allows
+		 */
+		WHEN_IDLE
+	}
+
+	/**
+	 * How messages are separated from each other on the wire, which both sides of a connection must agree on
+	 */
+	@Getter private final Framing framing;
+	/**
+	 * The byte terminating messages with {@link Framing#DELIMITED} framing
+	 */
+	@Getter private final byte endOfMessageByte;
+	/**
+	 * The amount of bytes read from a new connection at once
+	 */
+	@Getter private final int readBufferSize;
+	/**
+	 * The lower bound the amount of bytes read at once is adapted within
+	 */
+	@Getter private final int minReadBufferSize;
+	/**
+	 * The upper bound the amount of bytes read at once is adapted within
+	 */
+	@Getter private final int maxReadBufferSize;
+	/**
+	 * The maximum size of a message in bytes that is reassembled in memory
+	 */
+	@Getter private final int maxMessageSize;
+	/**
+	 * The size of the buffer frames are encoded into before they are written to the socket, 0 writes them unbuffered
+	 */
+	@Getter private final int writeBufferSize;
+	/**
+	 * When written frames are flushed to the socket
+	 */
+	@Getter private final FlushPolicy flushPolicy;
+	/**
+	 * Whether Nagle's algorithm is disabled (TCP_NODELAY), so small segments are sent without waiting for acknowledgements
+	 */
+	@Getter private final boolean tcpNoDelay;
+	/**
+	 * The size of the send buffer of the socket (SO_SNDBUF) in bytes, 0 keeps the default of the platform
+	 */
+	@Getter private final int sendBufferSize;
+	/**
+	 * The size of the receive buffer of the socket (SO_RCVBUF) in bytes, 0 keeps the default of the platform
+	 */
+	@Getter private final int receiveBufferSize;
+	/**
+	 * The timeout in milliseconds for establishing a connection, 0 means no timeout. Defaults to 10 seconds.
+	 * When several addresses are raced, it applies to each attempt.
+	 */
+	@Getter private final int connectTimeout;
+	/**
+	 * The time in milliseconds without receiving anything after which a connection is checked for being closed
+	 */
+	@Getter private final long idleTimeout;
+	/**
+	 * The maximum size in bytes of a chunk a {@link StreamMultiplexer} splits the data of a stream into
+	 */
+	@Getter private final int streamChunkSize;
+	/**
+	 * The amount of bytes a multiplexed stream may have in flight before the receiver grants more,
+	 * which both sides of a connection must agree on
+	 */
+	@Getter private final int streamWindowSize;
+	/**
+	 * The capacity in bytes of each ring of a shared memory connection. The client decides the capacity of a connection.
+	 */
+	@Getter private final int sharedMemoryRingCapacity;
+	/**
+	 * How the endpoints of shared memory connections wait for data to read or space to write
+	 */
+	@Getter private final SharedMemorySocket.WaitStrategy sharedMemoryWaitStrategy;
+
+	/**
+	 * Creates a TransportConfig with the current defaults of {@link IOHandler}, reads adapted between 64 bytes and 64 KiB,
+	 * an 8 KiB write buffer flushed on every write, the socket options of the platform, a connect timeout of 10 seconds,
+	 * an idle timeout of 5 seconds, streams multiplexed in chunks of 16 KiB with windows of 256 KiB
+	 * and shared memory rings of 1 MiB waited on with {@link SharedMemorySocket.WaitStrategy#PARK}
+	 */
+	public TransportConfig() {
+		this(IOHandler.getDefaultFraming(), IOHandler.getEndOfMessageByte(), IOHandler.getMaxReadSize(),
+				Math.min(64, IOHandler.getMaxReadSize()), Math.max(64 * 1024, IOHandler.getMaxReadSize()),
+				IOHandler.getMaxMessageSize(), 8 * 1024, FlushPolicy.EVERY_WRITE, false, 0, 0, 10_000, 5_000, 16 * 1024, 256 * 1024,
+				1024 * 1024, SharedMemorySocket.WaitStrategy.PARK);
+	}
+
+	private TransportConfig(Framing framing, byte endOfMessageByte, int readBufferSize, int minReadBufferSize, int maxReadBufferSize,
+			int maxMessageSize, int writeBufferSize, FlushPolicy flushPolicy, boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize,
+			int connectTimeout, long idleTimeout, int streamChunkSize, int streamWindowSize,
+			int sharedMemoryRingCapacity, SharedMemorySocket.WaitStrategy sharedMemoryWaitStrategy) {
+		this.framing = framing;
+		this.endOfMessageByte = endOfMessageByte;
+		this.readBufferSize = readBufferSize;
+		this.minReadBufferSize = minReadBufferSize;
+		this.maxReadBufferSize = maxReadBufferSize;
+		this.maxMessageSize = maxMessageSize;
+		this.writeBufferSize = writeBufferSize;
+		this.flushPolicy = flushPolicy;
+		this.tcpNoDelay = tcpNoDelay;
+		this.sendBufferSize = sendBufferSize;
+		this.receiveBufferSize = receiveBufferSize;
+		this.connectTimeout = connectTimeout;
+		this.idleTimeout = idleTimeout;
+		this.streamChunkSize = streamChunkSize;
+		this.streamWindowSize = streamWindowSize;
+		this.sharedMemoryRingCapacity = sharedMemoryRingCapacity;
+		this.sharedMemoryWaitStrategy = sharedMemoryWaitStrategy;
+	}
+
+	/**
+	 * Creates a TransportConfig for small, latency-critical messages: Nagle's algorithm is disabled
+	 * and every frame is flushed as soon as it has been written
+	 * @return the config, with the defaults for everything else
+	 */
+	public static TransportConfig latencyOptimized() {
+		return new TransportConfig()
+				.withTcpNoDelay(true)
+				.withFlushPolicy(FlushPolicy.EVERY_FRAME);
+	}
+
+	/**
+	 * Creates a TransportConfig for bulk transfers: reads start at 64 KiB and may grow to 256 KiB, writes go through
+	 * a 64 KiB buffer, the socket buffers are enlarged to 1 MiB and the frames of concurrent writers are coalesced
+	 * @return the config, with the defaults for everything else
+	 */
+	public static TransportConfig throughputOptimized() {
+		return new TransportConfig()
+				.withReadBufferSize(64 * 1024)
+				.withReadBufferBounds(64, 256 * 1024)
+				.withWriteBufferSize(64 * 1024)
+				.withFlushPolicy(FlushPolicy.WHEN_IDLE)
+				.withSendBufferSize(1024 * 1024)
+				.withReceiveBufferSize(1024 * 1024);
+	}
+
+	/**
+	 * Returns a copy using the given framing
+	 * @param framing how messages are separated on the wire
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the framing is null
+	 */
+	public TransportConfig withFraming(Framing framing) {
+		if(framing == null) {
+			throw new IllegalArgumentException("Framing must not be null");
+		}
+		return new TransportConfig(framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy using the given end-of-message byte
+	 * @param endOfMessageByte the byte terminating messages with delimited framing
+	 * @return the changed copy
+	 */
+	public TransportConfig withEndOfMessageByte(byte endOfMessageByte) {
+		return new TransportConfig(this.framing, endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy reading the given amount of bytes at once from new connections.
+	 * If the size is outside the bounds of the read buffer, the bounds are widened to include it.
+	 * @param readBufferSize the amount of bytes read at once from a new connection
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public TransportConfig withReadBufferSize(int readBufferSize) {
+		if(readBufferSize < 1) {
+			throw new IllegalArgumentException("Read buffer size must be positive");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, readBufferSize,
+				Math.min(readBufferSize, this.minReadBufferSize), Math.max(readBufferSize, this.maxReadBufferSize),
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy adapting the amount of bytes read at once within the given bounds.
+	 * Equal bounds read a fixed amount. The read buffer size of new connections is moved into the bounds.
+	 * @param minReadBufferSize the lower bound in bytes
+	 * @param maxReadBufferSize the upper bound in bytes
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the lower bound is not positive or greater than the upper bound
+	 */
+	public TransportConfig withReadBufferBounds(int minReadBufferSize, int maxReadBufferSize) {
+		if(minReadBufferSize < 1 || minReadBufferSize > maxReadBufferSize) {
+			throw new IllegalArgumentException("Read buffer bounds must be positive and ordered");
+		}
+		int readBufferSize = Math.max(minReadBufferSize, Math.min(maxReadBufferSize, this.readBufferSize));
+		return new TransportConfig(this.framing, this.endOfMessageByte, readBufferSize, minReadBufferSize, maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy reassembling messages up to the given size
+	 * @param maxMessageSize the maximum size of a message in bytes
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public TransportConfig withMaxMessageSize(int maxMessageSize) {
+		if(maxMessageSize < 1) {
+			throw new IllegalArgumentException("Maximum message size must be positive");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy encoding frames into a buffer of the given size
+	 * @param writeBufferSize the size of the write buffer in bytes, 0 to write frames unbuffered
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is negative
+	 */
+	public TransportConfig withWriteBufferSize(int writeBufferSize) {
+		if(writeBufferSize < 0) {
+			throw new IllegalArgumentException("Write buffer size must not be negative");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy flushing written frames according to the given policy
+	 * @param flushPolicy when written frames are flushed
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the policy is null
+	 */
+	public TransportConfig withFlushPolicy(FlushPolicy flushPolicy) {
+		if(flushPolicy == null) {
+			throw new IllegalArgumentException("Flush policy must not be null");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize,
+				flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy enabling or disabling Nagle's algorithm
+	 * @param tcpNoDelay true to disable Nagle's algorithm
+	 * @return the changed copy
+	 */
+	public TransportConfig withTcpNoDelay(boolean tcpNoDelay) {
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy requesting the given send buffer size of the socket
+	 * @param sendBufferSize the size in bytes, 0 to keep the default of the platform
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is negative
+	 */
+	public TransportConfig withSendBufferSize(int sendBufferSize) {
+		if(sendBufferSize < 0) {
+			throw new IllegalArgumentException("Send buffer size must not be negative");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy requesting the given receive buffer size of the socket
+	 * @param receiveBufferSize the size in bytes, 0 to keep the default of the platform
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is negative
+	 */
+	public TransportConfig withReceiveBufferSize(int receiveBufferSize) {
+		if(receiveBufferSize < 0) {
+			throw new IllegalArgumentException("Receive buffer size must not be negative");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy with the given connect timeout
+	 * @param connectTimeout in milliseconds, 0 means no timeout
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the timeout is negative
+	 */
+	public TransportConfig withConnectTimeout(int connectTimeout) {
+		if(connectTimeout < 0) {
+			throw new IllegalArgumentException("Connect timeout must not be negative");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy with the given idle timeout
+	 * @param idleTimeout in milliseconds without receiving anything until a connection is checked for being closed
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the timeout is negative
+	 */
+	public TransportConfig withIdleTimeout(long idleTimeout) {
+		if(idleTimeout < 0) {
+			throw new IllegalArgumentException("Idle timeout must not be negative");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy splitting the data of multiplexed streams into chunks of at most the given size.
+	 * Smaller chunks let other streams and messages through more often at the cost of more frames.
+	 * @param streamChunkSize the maximum size of a chunk in bytes
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public TransportConfig withStreamChunkSize(int streamChunkSize) {
+		if(streamChunkSize < 1) {
+			throw new IllegalArgumentException("Stream chunk size must be positive");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy letting multiplexed streams have the given amount of bytes in flight before the receiver grants more.
+	 * Both sides of a connection must use the same window size.
+	 * @param streamWindowSize the window size in bytes
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the size is not positive
+	 */
+	public TransportConfig withStreamWindowSize(int streamWindowSize) {
+		if(streamWindowSize < 1) {
+			throw new IllegalArgumentException("Stream window size must be positive");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, streamWindowSize,
+				this.sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy creating shared memory connections with rings of the given capacity
+	 * @param sharedMemoryRingCapacity the capacity of a ring in bytes, must be a power of two
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the capacity is not a power of two
+	 */
+	public TransportConfig withSharedMemoryRingCapacity(int sharedMemoryRingCapacity) {
+		if(sharedMemoryRingCapacity <= 0 || Integer.bitCount(sharedMemoryRingCapacity) != 1) {
+			throw new IllegalArgumentException("Ring capacity must be a power of two");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				sharedMemoryRingCapacity, this.sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Returns a copy letting the endpoints of shared memory connections wait with the given strategy
+	 * @param sharedMemoryWaitStrategy how to wait for data to read or space to write
+	 * @return the changed copy
+	 * @throws IllegalArgumentException if the strategy is null
+	 */
+	public TransportConfig withSharedMemoryWaitStrategy(SharedMemorySocket.WaitStrategy sharedMemoryWaitStrategy) {
+		if(sharedMemoryWaitStrategy == null) {
+			throw new IllegalArgumentException("Wait strategy must not be null");
+		}
+		return new TransportConfig(this.framing, this.endOfMessageByte, this.readBufferSize, this.minReadBufferSize, this.maxReadBufferSize,
+				this.maxMessageSize, this.writeBufferSize, this.flushPolicy, this.tcpNoDelay, this.sendBufferSize, this.receiveBufferSize, this.connectTimeout, this.idleTimeout, this.streamChunkSize, this.streamWindowSize,
+				this.sharedMemoryRingCapacity, sharedMemoryWaitStrategy);
+	}
+
+	/**
+	 * Applies the socket options to a TCP socket. Sockets of other transports are left as they are.
+	 * The receive buffer size should be applied before the socket connects, so the window scale can be negotiated for it.
+	 * @param socket to configure, connected or not
+	 * @return the socket
+	 * @throws SocketException if an option could not be set
+	 */
+	Socket configure(Socket socket) throws SocketException {
+		if(socket instanceof LocalSocket || socket instanceof UnixDomainSocket || socket instanceof SharedMemorySocket) {
+			return socket;
+		}
+		socket.setTcpNoDelay(this.tcpNoDelay);
+		if(this.sendBufferSize > 0) {
+			socket.setSendBufferSize(this.sendBufferSize);
+		}
+		if(this.receiveBufferSize > 0) {
+			socket.setReceiveBufferSize(this.receiveBufferSize);
+		}
+		return socket;
+	}
+
+	@Override
+	public String toString() {
+		return "TransportConfig[framing="+this.framing+", endOfMessageByte="+this.endOfMessageByte+", readBufferSize="+this.readBufferSize
+				+", minReadBufferSize="+this.minReadBufferSize+", maxReadBufferSize="+this.maxReadBufferSize+", maxMessageSize="+this.maxMessageSize+", writeBufferSize="+this.writeBufferSize+", flushPolicy="+this.flushPolicy
+				+", tcpNoDelay="+this.tcpNoDelay+", sendBufferSize="+this.sendBufferSize+", receiveBufferSize="+this.receiveBufferSize
+				+", connectTimeout="+this.connectTimeout+", idleTimeout="+this.idleTimeout
+				+", streamChunkSize="+this.streamChunkSize+", streamWindowSize="+this.streamWindowSize
+				+", sharedMemoryRingCapacity="+this.sharedMemoryRingCapacity+", sharedMemoryWaitStrategy="+this.sharedMemoryWaitStrategy+"]";
+	}
+
+}
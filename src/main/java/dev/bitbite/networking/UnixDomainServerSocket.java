@@ -0,0 +1,169 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.BindException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ServerSocket} backed by a Unix domain {@link ServerSocketChannel}, accepting {@link UnixDomainSocket}s.<br>
+ * A stale socket file left behind at the path, to which no server accepts connections any more, is replaced when binding.
+ * Any other file at the path, or a socket with a live server behind it, makes binding fail.
+ * The socket file is removed on {@link #close()}.
+ * Since the peers of Unix domain sockets are usually unnamed, every accepted socket reports the path of this
+ * socket followed by a sequence number as its remote address, which keeps client addresses unique.
+ *
+ * @see Server#setUnixDomainSocketPath(Path)
+ */
+public class UnixDomainServerSocket extends ServerSocket {
+
+	private final Path path;
+	private final ServerSocketChannel channel;
+	private final Selector selector;
+	private final AtomicLong acceptedSockets;
+	private volatile int timeout = 0;
+
+	/**
+	 * Creates a server socket bound to the given path
+	 * @param path of the socket file
+	 * @throws BindException if the path is taken by a file that is not a socket or by a live socket
+	 * @throws IOException if the socket could not be bound
+	 */
+	public UnixDomainServerSocket(Path path) throws IOException {
+		this.path = path;
+		this.acceptedSockets = new AtomicLong();
+		removeStaleSocket(path);
+		this.channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			this.channel.bind(UnixDomainSocketAddress.of(path));
+			this.channel.configureBlocking(false);
+			this.selector = Selector.open();
+			this.channel.register(this.selector, SelectionKey.OP_ACCEPT);
+		} catch(IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Removes a socket file left behind by a server that is no longer running.
+	 * A socket file is considered stale if connecting to it fails.
+	 * @param path of the socket file
+	 * @throws BindException if the path is taken by a file that is not a socket or by a live socket
+	 * @throws IOException if the stale socket file could not be removed
+	 */
+	private static void removeStaleSocket(Path path) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch(IOException e) {
+			return;
+		}
+		if(!attributes.isOther()) {
+			throw new BindException("Address already in use: "+path+" is not a socket");
+		}
+		boolean live;
+		try(SocketChannel probe = SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+			live = true;
+		} catch(IOException e) {
+			live = false;
+		}
+		if(live) {
+			throw new BindException("Address already in use: "+path);
+		}
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Waits for a connection and accepts it.
+	 * If a timeout is set, a {@link SocketTimeoutException} is thrown once it elapses.
+	 * @return the accepted socket
+	 * @throws SocketException if the socket is closed
+	 * @throws InterruptedIOException if the waiting thread has been interrupted
+	 * @throws IOException if accepting fails
+	 */
+	@Override
+	public Socket accept() throws IOException {
+		try {
+			while(true) {
+				int ready = this.selector.select(this.timeout);
+				this.selector.selectedKeys().clear();
+				SocketChannel accepted = this.channel.accept();
+				if(accepted != null) {
+					accepted.configureBlocking(true);
+					String remote = this.path+"#"+this.acceptedSockets.incrementAndGet();
+					return new UnixDomainSocket(accepted, UnixDomainSocketAddress.of(remote));
+				}
+				if(Thread.currentThread().isInterrupted()) {
+					throw new InterruptedIOException("Accept interrupted");
+				}
+				if(ready == 0 && this.timeout > 0) {
+					throw new SocketTimeoutException("Accept timed out");
+				}
+			}
+		} catch(ClosedChannelException | ClosedSelectorException e) {
+			throw new SocketException("Socket is closed");
+		}
+	}
+
+	@Override
+	public ServerSocketChannel getChannel() {
+		return this.channel;
+	}
+
+	@Override
+	public void setSoTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public int getSoTimeout() {
+		return this.timeout;
+	}
+
+	@Override
+	public boolean isBound() {
+		return true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return !this.channel.isOpen();
+	}
+
+	/**
+	 * Closes the channel and removes the socket file
+	 * @throws IOException if closing fails
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!this.channel.isOpen()) {
+			return;
+		}
+		this.channel.close();
+		this.selector.close();
+		Files.deleteIfExists(this.path);
+	}
+
+	@Override
+	public String toString() {
+		return "UnixDomainServerSocket["+this.path+"]";
+	}
+
+}
@@ -0,0 +1,153 @@
+package dev.bitbite.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * A {@link Socket} backed by a Unix domain {@link SocketChannel}, so that same-host connections
+ * can skip the TCP stack while the {@link Client} and {@link Server} keep working with sockets.<br>
+ * Only the methods used by this library are backed by the channel. Options that do not apply to
+ * Unix domain sockets, such as keep-alive, are ignored.
+ *
+ * @see UnixDomainServerSocket
+ * @see Client#setUnixDomainSocketPath(Path)
+ */
+public class UnixDomainSocket extends Socket {
+
+	private final SocketChannel channel;
+	private final SocketAddress remoteAddress;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
+
+	/**
+	 * Wraps a connected channel
+	 * @param channel the connected Unix domain socket channel
+	 * @param remoteAddress the address to report for the remote side
+	 */
+	UnixDomainSocket(SocketChannel channel, SocketAddress remoteAddress) {
+		this.channel = channel;
+		this.remoteAddress = remoteAddress;
+		this.inputStream = new ChannelInputStream();
+		this.outputStream = new ChannelOutputStream();
+	}
+
+	/**
+	 * Connects to the Unix domain socket at the given path
+	 * @param path of the socket file
+	 * @return the connected socket
+	 * @throws IOException if the connection could not be established
+	 */
+	public static UnixDomainSocket connect(Path path) throws IOException {
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+		SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			channel.connect(address);
+		} catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+		return new UnixDomainSocket(channel, address);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return this.inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		return this.outputStream;
+	}
+
+	@Override
+	public SocketChannel getChannel() {
+		return this.channel;
+	}
+
+	@Override
+	public SocketAddress getRemoteSocketAddress() {
+		return this.remoteAddress;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return this.channel.isConnected();
+	}
+
+	@Override
+	public boolean isClosed() {
+		return !this.channel.isOpen();
+	}
+
+	@Override
+	public void setKeepAlive(boolean on) {}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "UnixDomainSocket["+this.remoteAddress+"]";
+	}
+
+	/**
+	 * Reads from the channel. Unlike {@link java.nio.channels.Channels#newInputStream}, reading does not
+	 * block concurrent writes on older JDKs.
+	 */
+	private class ChannelInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(len == 0) {
+				return 0;
+			}
+			return UnixDomainSocket.this.channel.read(ByteBuffer.wrap(b, off, len));
+		}
+
+		@Override
+		public void close() throws IOException {
+			UnixDomainSocket.this.close();
+		}
+	}
+
+	/**
+	 * Writes to the channel
+	 */
+	private class ChannelOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while(buffer.hasRemaining()) {
+				UnixDomainSocket.this.channel.write(buffer);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			UnixDomainSocket.this.close();
+		}
+	}
+
+}
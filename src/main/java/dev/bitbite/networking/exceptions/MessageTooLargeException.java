@@ -0,0 +1,19 @@
+package dev.bitbite.networking.exceptions;
+
+/**
+ * Gets thrown if a received message exceeds the maximum message size
+ * and there is no {@link dev.bitbite.networking.MessageChunkReceiver} to stream it to.
+ * The message is discarded.
+ */
+public class MessageTooLargeException extends Exception {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Creates a new MessageTooLargeException
+	 * @param length of the message, or -1 if it is unknown
+	 * @param maxMessageSize the maximum message size that has been exceeded
+	 */
+	public MessageTooLargeException(long length, int maxMessageSize) {
+		super((length < 0 ? "Message" : "Message of "+length+" bytes")+" exceeds the maximum message size of "+maxMessageSize+" bytes");
+	}
+}
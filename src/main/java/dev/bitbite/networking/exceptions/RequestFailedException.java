@@ -0,0 +1,17 @@
+package dev.bitbite.networking.exceptions;
+
+/**
+ * Gets thrown if a request could not be answered, either because the remote side
+ * failed to process it or because the connection has been closed before a response arrived.
+ */
+public class RequestFailedException extends Exception {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Creates a new RequestFailedException
+	 * @param message error description
+	 */
+	public RequestFailedException(String message) {
+		super(message);
+	}
+}
@@ -5,4 +5,5 @@ module dev.bitbite.opennetlib {
 	exports dev.bitbite.networking.exceptions;
 	exports dev.bitbite.networking;
 	requires lombok;
+	requires jdk.jfr;
 }
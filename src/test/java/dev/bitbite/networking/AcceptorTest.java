@@ -0,0 +1,98 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Accepts clients on several listening sockets sharing one port
+ */
+public class AcceptorTest {
+
+	private Server server;
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * Further acceptors listen on the port of the first socket, and clients connecting to it are all served
+	 */
+	@Test
+	public void acceptorsShareThePort() throws Exception {
+		Set<String> received = ConcurrentHashMap.newKeySet();
+		this.server = startServer(4, received);
+		int port = this.server.getServerSocket().getLocalPort();
+		assertEquals(3, this.server.getAdditionalServerSockets().size());
+		for(ServerSocket serverSocket : this.server.getAdditionalServerSockets()) {
+			assertEquals(port, serverSocket.getLocalPort());
+		}
+		for(int i = 0; i < 16; i++) {
+			Client client = new Client("127.0.0.1", port) {
+				@Override
+				protected void processReceivedData(byte[] data) {}
+			};
+			this.clients.add(client);
+			assertTrue(client.connect());
+			client.send(("client "+i).getBytes(StandardCharsets.UTF_8));
+		}
+		TestSupport.await(() -> received.size() == 16);
+		assertEquals(16, this.server.getClientManager().getCommunicationHandler().size());
+	}
+
+	/**
+	 * A single acceptor listens on one socket only
+	 */
+	@Test
+	public void singleAcceptorOpensOneSocket() {
+		this.server = startServer(1, ConcurrentHashMap.newKeySet());
+		assertTrue(this.server.getAdditionalServerSockets().isEmpty());
+	}
+
+	/**
+	 * Closing the server closes every listening socket
+	 */
+	@Test
+	public void closingClosesEverySocket() {
+		this.server = startServer(3, ConcurrentHashMap.newKeySet());
+		this.server.close();
+		assertTrue(this.server.getServerSocket().isClosed());
+		for(ServerSocket serverSocket : this.server.getAdditionalServerSockets()) {
+			assertTrue(serverSocket.isClosed());
+		}
+		this.server = null;
+	}
+
+	/**
+	 * Starts a server on an ephemeral port collecting the messages it receives
+	 * @param acceptorCount the amount of listening sockets
+	 * @param received to add the received messages to
+	 * @return the server
+	 */
+	private static Server startServer(int acceptorCount, Set<String> received) {
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		server.setAcceptorCount(acceptorCount);
+		server.start();
+		return server;
+	}
+
+}
@@ -0,0 +1,234 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Admits and rejects connections by the limits of an {@link AdmissionPolicy}
+ */
+public class AdmissionPolicyTest {
+
+	private Server server;
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * Connections beyond the maximum are rejected and reported
+	 */
+	@Test
+	public void maxConnectionsRejectsExcess() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(2, 0, 0);
+		List<AdmissionPolicy.Rejection> rejections = startServer(policy);
+		for(int i = 0; i < 2; i++) {
+			connect();
+			int connected = i + 1;
+			TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == connected);
+		}
+		connect();
+		TestSupport.await(() -> rejections.size() == 1);
+		assertEquals(1, policy.getRejectedConnections(AdmissionPolicy.Rejection.MAX_CONNECTIONS));
+		assertEquals(List.of(AdmissionPolicy.Rejection.MAX_CONNECTIONS), rejections);
+		assertEquals(2, this.server.getClientManager().getCommunicationHandler().size());
+	}
+
+	/**
+	 * Connections from one address are limited, and a closed connection frees its slot
+	 */
+	@Test
+	public void connectionsPerAddressAreLimited() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(0, 1, 0);
+		startServer(policy);
+		InetAddress loopback = InetAddress.getByName("127.0.0.1");
+		Client first = connect();
+		TestSupport.await(() -> this.server.getClientManager().getConnectionCount(loopback) == 1);
+		connect();
+		TestSupport.await(() -> policy.getRejectedConnections(AdmissionPolicy.Rejection.MAX_CONNECTIONS_PER_ADDRESS) == 1);
+		first.close();
+		TestSupport.await(() -> this.server.getClientManager().getConnectionCount(loopback) == 0);
+		connect();
+		TestSupport.await(() -> this.server.getClientManager().getConnectionCount(loopback) == 1);
+		assertEquals(1, policy.getRejectedConnections());
+	}
+
+	/**
+	 * Concurrent admissions from one address reserve exactly as many connections as the limit allows
+	 */
+	@Test
+	public void concurrentAdmissionsRespectTheAddressLimit() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(0, 3, 0);
+		ClientManager clientManager = new ClientManager(idleServer());
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		AtomicInteger admitted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 16; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch(InterruptedException e) {
+					return;
+				}
+				if(policy.admit(clientManager, address) == null) {
+					admitted.incrementAndGet();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(3, admitted.get());
+		assertEquals(3, clientManager.getConnectionCount(address));
+		assertEquals(13, policy.getRejectedConnections(AdmissionPolicy.Rejection.MAX_CONNECTIONS_PER_ADDRESS));
+	}
+
+	/**
+	 * A connection rejected by a limit checked after the one per address does not keep its reservation
+	 */
+	@Test
+	public void laterRejectionsReleaseTheReservation() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(0, 5, 1);
+		ClientManager clientManager = new ClientManager(idleServer());
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		assertNull(policy.admit(clientManager, address));
+		assertEquals(AdmissionPolicy.Rejection.ACCEPT_RATE, policy.admit(clientManager, address));
+		assertEquals(1, clientManager.getConnectionCount(address));
+		assertEquals(1, clientManager.getConnectionCount());
+	}
+
+	/**
+	 * Concurrent admissions reserve exactly as many connections as the maximum allows, before any handler exists
+	 */
+	@Test
+	public void concurrentAdmissionsRespectTheMaximum() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(4, 0, 0);
+		ClientManager clientManager = new ClientManager(idleServer());
+		AtomicInteger admitted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 16; i++) {
+			InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte)i });
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch(InterruptedException e) {
+					return;
+				}
+				if(policy.admit(clientManager, address) == null) {
+					admitted.incrementAndGet();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(4, admitted.get());
+		assertEquals(4, clientManager.getConnectionCount());
+		assertEquals(12, policy.getRejectedConnections(AdmissionPolicy.Rejection.MAX_CONNECTIONS));
+		clientManager.releaseConnection(InetAddress.getByAddress(new byte[] { 10, 0, 0, 0 }));
+		assertNull(policy.admit(clientManager, null));
+	}
+
+	/**
+	 * A second's worth of connections is admitted in a burst, further ones are rejected until tokens are refilled
+	 */
+	@Test
+	public void acceptRateAllowsBurst() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy(0, 0, 3);
+		ClientManager clientManager = new ClientManager(idleServer());
+		for(int i = 0; i < 3; i++) {
+			assertNull(policy.admit(clientManager, null));
+		}
+		assertEquals(AdmissionPolicy.Rejection.ACCEPT_RATE, policy.admit(clientManager, null));
+		Thread.sleep(400);
+		assertNull(policy.admit(clientManager, null));
+		assertEquals(1, policy.getRejectedConnections(AdmissionPolicy.Rejection.ACCEPT_RATE));
+	}
+
+	/**
+	 * A high average handling time sheds connections until no more samples are recorded
+	 */
+	@Test
+	public void slowHandlersShedConnections() throws Exception {
+		AdmissionPolicy policy = new AdmissionPolicy();
+		policy.setMaxHandlerLatency(10);
+		ClientManager clientManager = new ClientManager(idleServer());
+		assertNull(policy.admit(clientManager, null));
+		for(int i = 0; i < 64; i++) {
+			policy.recordHandlerLatency(50_000_000L);
+		}
+		assertTrue(policy.getHandlerLatency() > 10_000_000L);
+		assertEquals(AdmissionPolicy.Rejection.HANDLER_LATENCY, policy.admit(clientManager, null));
+		Thread.sleep(1_100);
+		assertNull(policy.admit(clientManager, null));
+	}
+
+	/**
+	 * Starts a server with the given policy on an ephemeral port
+	 * @param policy to admit connections by
+	 * @return the reported rejections
+	 */
+	private List<AdmissionPolicy.Rejection> startServer(AdmissionPolicy policy) {
+		List<AdmissionPolicy.Rejection> rejections = new CopyOnWriteArrayList<AdmissionPolicy.Rejection>();
+		this.server = idleServer();
+		this.server.setAdmissionPolicy(policy);
+		this.server.registerListener(new ServerListener() {
+			@Override
+			public void onConnectionRejected(AdmissionPolicy.Rejection rejection, SocketAddress clientAddress) {
+				rejections.add(rejection);
+			}
+		});
+		this.server.start();
+		return rejections;
+	}
+
+	/**
+	 * Connects a client to the server
+	 * @return the client
+	 */
+	private Client connect() {
+		Client client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.clients.add(client);
+		client.connect();
+		return client;
+	}
+
+	/**
+	 * Creates a server ignoring the messages it receives
+	 * @return the server, not yet started
+	 */
+	private static Server idleServer() {
+		return new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+		};
+	}
+
+}
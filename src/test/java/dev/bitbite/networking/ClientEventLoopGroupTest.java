@@ -0,0 +1,125 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Multiplexes the connections of clients to an echo server on loopback with a {@link ClientEventLoopGroup}
+ */
+public class ClientEventLoopGroupTest {
+
+	private Server server;
+	private ClientEventLoopGroup group;
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@BeforeEach
+	public void start() throws Exception {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		this.group = new ClientEventLoopGroup(2);
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				send(clientAddress, data);
+			}
+		};
+		this.server.start();
+	}
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		this.group.close();
+		this.server.close();
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Many clients are served by the few loops of the group, and leave it once they are closed
+	 */
+	@Test
+	public void clientsShareTheLoops() throws Exception {
+		List<String> received = new CopyOnWriteArrayList<String>();
+		for(int i = 0; i < 20; i++) {
+			connect(received).send(("client "+i).getBytes(StandardCharsets.UTF_8));
+		}
+		TestSupport.await(() -> received.size() == 20);
+		assertEquals(20, this.group.getConnections());
+		for(int i = 0; i < 20; i++) {
+			assertTrue(received.contains("client "+i));
+		}
+		this.clients.forEach(Client::close);
+		TestSupport.await(() -> this.group.getConnections() == 0);
+	}
+
+	/**
+	 * A message larger than the socket buffers is written while the loop reads its echo
+	 */
+	@Test
+	public void largeMessagesAreEchoed() throws Exception {
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		Client client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				received.add(data);
+			}
+		};
+		client.setEventLoopGroup(this.group);
+		this.clients.add(client);
+		assertTrue(client.connect());
+		byte[] data = TestSupport.pattern(4 * 1024 * 1024, 3);
+		client.send(data);
+		TestSupport.await(() -> received.size() == 1);
+		assertArrayEquals(data, received.get(0));
+	}
+
+	/**
+	 * A connection closed by the server is noticed right away
+	 */
+	@Test
+	public void closedConnectionsAreNoticed() throws Exception {
+		Client client = connect(new CopyOnWriteArrayList<String>());
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		this.server.close();
+		TestSupport.await(() -> !client.isConnected());
+		TestSupport.await(() -> this.group.getConnections() == 0);
+	}
+
+	/**
+	 * A group needs at least one loop
+	 */
+	@Test
+	public void groupNeedsAThread() {
+		assertEquals(2, this.group.getThreads());
+		assertThrows(IllegalArgumentException.class, () -> new ClientEventLoopGroup(0));
+	}
+
+	/**
+	 * Connects a client served by the group, collecting the messages it receives
+	 * @param received to add the received messages to
+	 * @return the client
+	 */
+	private Client connect(List<String> received) {
+		Client client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		client.setEventLoopGroup(this.group);
+		this.clients.add(client);
+		assertTrue(client.connect());
+		return client;
+	}
+
+}
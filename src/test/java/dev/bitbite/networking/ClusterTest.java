@@ -0,0 +1,180 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Forwards publications and broadcasts between the nodes of a cluster of two servers on loopback
+ */
+public class ClusterTest {
+
+	private final List<Server> servers = new ArrayList<Server>();
+	private final List<ClusterNode> nodes = new ArrayList<ClusterNode>();
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@BeforeEach
+	public void setFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		this.nodes.forEach(ClusterNode::close);
+		this.servers.forEach(Server::close);
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * A publication on one node reaches the subscribers on the other node exactly once,
+	 * even though the nodes are linked in both directions, and does not reach clients that are not subscribed
+	 */
+	@Test
+	public void publicationsAreForwardedOnce() throws Exception {
+		Server first = startNode(1);
+		Server second = startNode(2);
+		this.nodes.get(0).addPeer("127.0.0.1", second.getServerSocket().getLocalPort());
+		this.nodes.get(1).addPeer("127.0.0.1", first.getServerSocket().getLocalPort());
+		List<String> subscriber = new ArrayList<String>();
+		List<String> bystander = new ArrayList<String>();
+		connect(second, subscriber).subscribe("news/*");
+		connect(second, bystander).subscribe("weather");
+		TestSupport.await(() -> this.nodes.get(0).getPeerIds().contains(2L) && this.nodes.get(1).getPeerIds().contains(1L));
+		TestSupport.await(() -> {
+			first.publish("news/probe", "probe".getBytes(StandardCharsets.UTF_8));
+			return received(subscriber).contains("probe");
+		});
+		first.publish("news/today", "headline".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> received(subscriber).contains("headline"));
+		Thread.sleep(200);
+		assertEquals(1, Collections.frequency(received(subscriber), "headline"));
+		assertTrue(received(bystander).isEmpty());
+	}
+
+	/**
+	 * A broadcast on one node reaches the clients of both nodes exactly once, but not the links between them
+	 */
+	@Test
+	public void broadcastsAreForwardedOnce() throws Exception {
+		Server first = startNode(1);
+		Server second = startNode(2);
+		this.nodes.get(0).addPeer("127.0.0.1", second.getServerSocket().getLocalPort());
+		this.nodes.get(1).addPeer("127.0.0.1", first.getServerSocket().getLocalPort());
+		List<String> local = new ArrayList<String>();
+		List<String> remote = new ArrayList<String>();
+		connect(first, local);
+		connect(second, remote);
+		TestSupport.await(() -> this.nodes.get(0).getPeerIds().contains(2L) && this.nodes.get(1).getPeerIds().contains(1L));
+		TestSupport.await(() -> first.getClientManager().getCommunicationHandler().size() == 2
+				&& second.getClientManager().getCommunicationHandler().size() == 2);
+		first.broadcast("hello".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> received(local).contains("hello") && received(remote).contains("hello"));
+		Thread.sleep(200);
+		assertEquals(List.of("hello"), received(local));
+		assertEquals(List.of("hello"), received(remote));
+	}
+
+	/**
+	 * A message forwarded by a peer is fanned out once, even if it arrives again on another link
+	 * or again on the same link, while the next message of the peer still gets through
+	 */
+	@Test
+	public void duplicatesAreSuppressed() throws Exception {
+		Server server = startNode(1);
+		List<String> local = new ArrayList<String>();
+		connect(server, local);
+		Client firstLink = connect(server, new ArrayList<String>());
+		Client secondLink = connect(server, new ArrayList<String>());
+		introduce(firstLink, 7);
+		introduce(secondLink, 7);
+		TestSupport.await(() -> this.nodes.get(0).getPeerIds().contains(7L));
+		forwardBroadcast(firstLink, 7, 100, "once");
+		forwardBroadcast(secondLink, 7, 100, "once");
+		forwardBroadcast(firstLink, 7, 100, "once");
+		forwardBroadcast(secondLink, 7, 101, "next");
+		TestSupport.await(() -> received(local).contains("once") && received(local).contains("next"));
+		Thread.sleep(200);
+		assertEquals(1, Collections.frequency(received(local), "once"));
+		assertEquals(2, received(local).size());
+	}
+
+	/**
+	 * Introduces a client connection as the link of a node
+	 * @param link the client connection
+	 * @param nodeId of the pretended node
+	 */
+	private static void introduce(Client link, long nodeId) {
+		byte[] hello = ByteBuffer.allocate(8).putLong(nodeId).array();
+		link.getIOHandler().write(FrameType.CLUSTER, new byte[] {ClusterNode.HELLO}, hello);
+	}
+
+	/**
+	 * Forwards a broadcast over a client connection introduced as a link
+	 * @param link the client connection
+	 * @param origin the id of the node the broadcast originates from
+	 * @param sequence of the broadcast
+	 * @param message to broadcast
+	 */
+	private static void forwardBroadcast(Client link, long origin, long sequence, String message) {
+		byte[] header = ByteBuffer.allocate(17).put(ClusterNode.BROADCAST).putLong(origin).putLong(sequence).array();
+		link.getIOHandler().write(FrameType.CLUSTER, header, message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Starts a server joined into the cluster
+	 * @param nodeId of its node
+	 * @return the server
+	 */
+	private Server startNode(long nodeId) {
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+		};
+		this.nodes.add(new ClusterNode(server, nodeId));
+		server.start();
+		this.servers.add(server);
+		return server;
+	}
+
+	/**
+	 * Connects a client to a server, collecting the messages it receives
+	 * @param server to connect to
+	 * @param received to add the received messages to
+	 * @return the connected client
+	 */
+	private Client connect(Server server, List<String> received) {
+		Client client = new Client("127.0.0.1", server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				synchronized(received) {
+					received.add(new String(data, StandardCharsets.UTF_8));
+				}
+			}
+		};
+		assertTrue(client.connect());
+		this.clients.add(client);
+		return client;
+	}
+
+	/**
+	 * Returns a snapshot of the messages a client has received
+	 * @param received the messages of the client
+	 * @return the snapshot
+	 */
+	private static List<String> received(List<String> received) {
+		synchronized(received) {
+			return new ArrayList<String>(received);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Races connection attempts to addresses on loopback, some of which refuse or never answer
+ */
+public class ConnectRacerTest {
+
+	private ServerSocket first;
+	private ServerSocket second;
+	private InetSocketAddress refused;
+	private InetSocketAddress blackholed;
+	private final List<BlackholeSocket> sockets = new CopyOnWriteArrayList<BlackholeSocket>();
+
+	@BeforeEach
+	public void listen() throws IOException {
+		InetAddress loopback = InetAddress.getByName("127.0.0.1");
+		this.first = new ServerSocket(0, 50, loopback);
+		this.second = new ServerSocket(0, 50, loopback);
+		try(ServerSocket closed = new ServerSocket(0, 50, loopback)) {
+			this.refused = new InetSocketAddress(loopback, closed.getLocalPort());
+		}
+		try(ServerSocket closed = new ServerSocket(0, 50, loopback)) {
+			this.blackholed = new InetSocketAddress(loopback, closed.getLocalPort());
+		}
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		this.first.close();
+		this.second.close();
+	}
+
+	/**
+	 * The first address wins if it connects before the attempt delay elapses
+	 */
+	@Test
+	public void firstAddressIsPreferred() throws Exception {
+		try(Socket socket = connect(List.of(address(this.first), address(this.second)), 1_000)) {
+			assertEquals(this.first.getLocalPort(), socket.getPort());
+		}
+	}
+
+	/**
+	 * An address that never answers only delays the connection by the attempt delay, and its attempt is cancelled
+	 */
+	@Test
+	public void blackholedAddressCostsTheAttemptDelay() throws Exception {
+		long start = System.nanoTime();
+		try(Socket socket = connect(List.of(this.blackholed, address(this.first)), 100)) {
+			long elapsed = (System.nanoTime() - start) / 1_000_000;
+			assertEquals(this.first.getLocalPort(), socket.getPort());
+			assertTrue(elapsed >= 100 && elapsed < 5_000, "connected after "+elapsed+" ms");
+		}
+		assertEquals(2, this.sockets.size());
+		assertTrue(this.sockets.get(0).isClosed());
+	}
+
+	/**
+	 * A refused attempt starts the next attempt right away instead of waiting for the attempt delay
+	 */
+	@Test
+	public void failureStartsTheNextAttempt() throws Exception {
+		long start = System.nanoTime();
+		try(Socket socket = connect(List.of(this.refused, address(this.first)), 10_000)) {
+			assertEquals(this.first.getLocalPort(), socket.getPort());
+		}
+		assertTrue(System.nanoTime() - start < 5_000_000_000L);
+	}
+
+	/**
+	 * If every attempt fails, the first failure is thrown with the others suppressed
+	 */
+	@Test
+	public void failuresAreAggregated() throws Exception {
+		InetSocketAddress other;
+		try(ServerSocket closed = new ServerSocket(0, 50, this.refused.getAddress())) {
+			other = new InetSocketAddress(this.refused.getAddress(), closed.getLocalPort());
+		}
+		IOException failure = assertThrows(IOException.class, () -> connect(List.of(this.refused, other), 10));
+		assertEquals(1, failure.getSuppressed().length);
+		for(BlackholeSocket socket : this.sockets) {
+			assertTrue(socket.isClosed());
+		}
+	}
+
+	/**
+	 * Resolved endpoints are kept in order, endpoints that cannot be resolved are skipped unless none is left
+	 */
+	@Test
+	public void unresolvableEndpointsAreSkipped() throws Exception {
+		InetSocketAddress unknown = InetSocketAddress.createUnresolved("unknown.invalid", 1);
+		assertEquals(List.of(this.refused, this.blackholed), ConnectRacer.resolve(List.of(this.refused, unknown, this.blackholed)));
+		assertThrows(UnknownHostException.class, () -> ConnectRacer.resolve(List.of(unknown)));
+	}
+
+	/**
+	 * A client whose host refuses connections connects to an alternate endpoint
+	 */
+	@Test
+	public void clientFallsBackToAlternateEndpoint() {
+		Client client = new Client("127.0.0.1", this.refused.getPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		client.addAlternateEndpoint("127.0.0.1", this.first.getLocalPort());
+		try {
+			assertTrue(client.connect());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * Races the addresses with sockets treating the blackholed address as one that never answers
+	 * @param addresses to race
+	 * @param attemptDelay in milliseconds
+	 * @return the connected socket
+	 */
+	private Socket connect(List<InetSocketAddress> addresses, int attemptDelay) throws IOException {
+		return ConnectRacer.connect(addresses, () -> {
+			BlackholeSocket socket = new BlackholeSocket(this.blackholed);
+			this.sockets.add(socket);
+			return socket;
+		}, attemptDelay, 10_000);
+	}
+
+	/**
+	 * Returns the loopback address of a server socket
+	 * @param serverSocket listening on loopback
+	 * @return the address
+	 */
+	private static InetSocketAddress address(ServerSocket serverSocket) {
+		return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+	}
+
+	/**
+	 * A socket whose attempts to connect to one address hang until it is closed
+	 */
+	private static class BlackholeSocket extends Socket {
+
+		private final SocketAddress blackholed;
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		private BlackholeSocket(SocketAddress blackholed) {
+			this.blackholed = blackholed;
+		}
+
+		@Override
+		public void connect(SocketAddress endpoint, int timeout) throws IOException {
+			if(!endpoint.equals(this.blackholed)) {
+				super.connect(endpoint, timeout);
+				return;
+			}
+			try {
+				this.closed.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			throw new IOException("Socket closed");
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			this.closed.countDown();
+			super.close();
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Exchanges datagrams between a {@link DatagramServer} and its clients on loopback
+ */
+public class DatagramTest {
+
+	private DatagramServer server;
+	private final List<DatagramClient> clients = new ArrayList<DatagramClient>();
+	private final List<String> serverReceived = new CopyOnWriteArrayList<String>();
+	private final List<DatagramSession> started = new CopyOnWriteArrayList<DatagramSession>();
+	private final List<DatagramSession> expired = new CopyOnWriteArrayList<DatagramSession>();
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(DatagramClient::close);
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * A datagram sent by a client is answered by the server through the session it started
+	 */
+	@Test
+	public void serverAnswersThroughSession() throws Exception {
+		startServer(30_000);
+		List<String> received = new CopyOnWriteArrayList<String>();
+		DatagramClient client = connect(received);
+		client.send("ping".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.serverReceived.contains("ping"));
+		assertEquals(1, this.started.size());
+		String address = this.started.get(0).getClientAddress();
+		assertNotNull(this.server.getSession(address));
+		assertTrue(this.server.send(address, "pong".getBytes(StandardCharsets.UTF_8)));
+		TestSupport.await(() -> received.contains("pong"));
+		assertFalse(this.server.send("/127.0.0.1:1", new byte[] { 1 }));
+	}
+
+	/**
+	 * A broadcast reaches every peer with a session, and data passes the layers of both sides
+	 */
+	@Test
+	public void broadcastReachesAllSessions() throws Exception {
+		startServer(30_000);
+		invert(this.server.getDataPreProcessor());
+		List<String> first = new CopyOnWriteArrayList<String>();
+		List<String> second = new CopyOnWriteArrayList<String>();
+		DatagramClient firstClient = connect(first);
+		DatagramClient secondClient = connect(second);
+		invert(firstClient.getDataPreProcessor());
+		invert(secondClient.getDataPreProcessor());
+		firstClient.send("first".getBytes(StandardCharsets.UTF_8));
+		secondClient.send("second".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.serverReceived.contains("first") && this.serverReceived.contains("second"));
+		this.server.broadcast("news".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> first.contains("news") && second.contains("news"));
+	}
+
+	/**
+	 * A session expires once its peer has been silent for the session timeout
+	 */
+	@Test
+	public void silentSessionsExpire() throws Exception {
+		startServer(200);
+		DatagramClient client = connect(new CopyOnWriteArrayList<String>());
+		client.send("hello".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.started.size() == 1);
+		TestSupport.await(() -> this.expired.size() == 1);
+		assertEquals(this.started.get(0), this.expired.get(0));
+		assertNull(this.server.getSession(this.started.get(0).getClientAddress()));
+	}
+
+	/**
+	 * Data larger than a datagram is rejected instead of being fragmented
+	 */
+	@Test
+	public void oversizedDatagramsAreRejected() throws Exception {
+		startServer(30_000);
+		DatagramClient client = connect(new CopyOnWriteArrayList<String>());
+		byte[] data = new byte[DatagramServer.MAX_DATAGRAM_SIZE + 1];
+		assertThrows(IllegalArgumentException.class, () -> client.send(data));
+		assertThrows(IllegalArgumentException.class, () -> this.server.broadcast(data));
+	}
+
+	/**
+	 * Starts a server collecting the datagrams it receives and the sessions started and expired
+	 * @param sessionTimeout of the server in milliseconds
+	 */
+	private void startServer(long sessionTimeout) {
+		this.server = new DatagramServer(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				serverReceived.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		this.server.setSessionTimeout(sessionTimeout);
+		this.server.registerListener(new ServerListener() {
+			@Override
+			public void onSessionStart(DatagramSession session) {
+				started.add(session);
+			}
+
+			@Override
+			public void onSessionExpired(DatagramSession session) {
+				expired.add(session);
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * Connects a client to the server, collecting the datagrams it receives
+	 * @param received to add the received datagrams to
+	 * @return the client
+	 */
+	private DatagramClient connect(List<String> received) throws Exception {
+		int port = ((InetSocketAddress)this.server.getChannel().getLocalAddress()).getPort();
+		DatagramClient client = new DatagramClient("127.0.0.1", port) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		assertTrue(client.connect());
+		this.clients.add(client);
+		return client;
+	}
+
+	/**
+	 * Adds a layer inverting every byte in both directions
+	 * @param dataPreProcessor to add the layers to
+	 */
+	private static void invert(DataPreProcessor dataPreProcessor) {
+		DataProcessingLayer invert = data -> {
+			byte[] inverted = new byte[data.length];
+			for(int i = 0; i < data.length; i++) {
+				inverted[i] = (byte)~data[i];
+			}
+			return inverted;
+		};
+		dataPreProcessor.addLayer(TransferMode.IN, invert);
+		dataPreProcessor.addLayer(TransferMode.OUT, invert);
+	}
+
+}
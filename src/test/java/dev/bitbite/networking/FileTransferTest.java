@@ -0,0 +1,202 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Sends files and regions of files as single messages, in memory and over loopback connections
+ */
+public class FileTransferTest {
+
+	private Path file;
+	private byte[] content;
+	private Server server;
+	private Client client;
+	private final List<byte[]> serverReceived = new CopyOnWriteArrayList<byte[]>();
+	private final List<byte[]> clientReceived = new CopyOnWriteArrayList<byte[]>();
+
+	@BeforeEach
+	public void createFile() throws IOException {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		this.content = TestSupport.pattern(300_000, 0);
+		this.file = Files.createTempFile("transfer", ".bin");
+		Files.write(this.file, this.content);
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		Files.deleteIfExists(this.file);
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * A file sent by a client arrives at the server as a single message between the messages sent around it
+	 */
+	@Test
+	public void clientSendsFile() throws Exception {
+		connect();
+		this.client.send(new byte[] { 1 });
+		this.client.sendFile(this.file);
+		this.client.send(new byte[] { 2 });
+		TestSupport.await(() -> this.serverReceived.size() == 3);
+		assertArrayEquals(new byte[] { 1 }, this.serverReceived.get(0));
+		assertArrayEquals(this.content, this.serverReceived.get(1));
+		assertArrayEquals(new byte[] { 2 }, this.serverReceived.get(2));
+	}
+
+	/**
+	 * A region of a file sent by the server arrives at the client as a single message
+	 */
+	@Test
+	public void serverSendsRegion() throws Exception {
+		connect();
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		String address = this.server.getClientManager().getCommunicationHandler().get(0).getIP();
+		try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			assertTrue(this.server.sendFile(address, channel, 1_000, 50_000));
+		}
+		TestSupport.await(() -> this.clientReceived.size() == 1);
+		assertArrayEquals(Arrays.copyOfRange(this.content, 1_000, 51_000), this.clientReceived.get(0));
+	}
+
+	/**
+	 * With outgoing layers registered, files are processed like any other message
+	 */
+	@Test
+	public void filesAreProcessedByLayers() throws Exception {
+		connect();
+		DataProcessingLayer invert = data -> {
+			byte[] inverted = new byte[data.length];
+			for(int i = 0; i < data.length; i++) {
+				inverted[i] = (byte)~data[i];
+			}
+			return inverted;
+		};
+		this.client.getDataPreProcessor().addLayer(TransferMode.OUT, invert);
+		this.server.getDataPreProcessor().addLayer(TransferMode.IN, invert);
+		this.client.sendFile(this.file);
+		TestSupport.await(() -> this.serverReceived.size() == 1);
+		assertArrayEquals(this.content, this.serverReceived.get(0));
+	}
+
+	/**
+	 * Without a channel the file is copied to the stream, framed like any other message
+	 */
+	@Test
+	public void fileIsFramedWithoutChannel() throws Exception {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, data -> {});
+		try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			writer.writeFile(channel, 0, this.content.length);
+		}
+		writer.write(new byte[] { 3 });
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler reader = new IOHandler(new ByteArrayInputStream(wire.toByteArray()), OutputStream.nullOutputStream(), received::add);
+		while(received.size() < 2 && !reader.isClosed()) {
+			reader.readBlocking();
+		}
+		assertEquals(2, received.size());
+		assertArrayEquals(this.content, received.get(0));
+		assertArrayEquals(new byte[] { 3 }, received.get(1));
+	}
+
+	/**
+	 * A region reaching beyond the end of the file fails before anything is written and leaves the connection open
+	 */
+	@Test
+	public void regionBeyondTheFileFails() throws Exception {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, data -> {});
+		try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			assertThrows(IOException.class, () -> writer.writeFile(channel, this.content.length - 10, 20));
+			assertThrows(IOException.class, () -> writer.writeEncoded(channel, this.content.length + 1, 0));
+		}
+		assertEquals(0, wire.size());
+		assertFalse(writer.isClosed());
+	}
+
+	/**
+	 * A transfer failing after the frame header has been written closes the connection
+	 */
+	@Test
+	public void failedTransferClosesTheConnection() throws Exception {
+		OutputStream failing = new OutputStream() {
+			private int written;
+
+			@Override
+			public void write(int b) throws IOException {
+				if(++this.written > 1000) {
+					throw new IOException("Broken pipe");
+				}
+			}
+		};
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), failing, data -> {});
+		try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			assertThrows(IOException.class, () -> writer.writeFile(channel, 0, this.content.length));
+		}
+		assertTrue(writer.isClosed());
+	}
+
+	/**
+	 * Files are refused with delimited framing, as they may contain the end-of-message byte
+	 */
+	@Test
+	public void delimitedFramingIsRefused() throws Exception {
+		TransportConfig delimited = new TransportConfig().withFraming(IOHandler.Framing.DELIMITED);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, null, delimited, data -> {});
+		try(FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+			assertThrows(IllegalStateException.class, () -> writer.writeFile(channel, 0, this.content.length));
+		}
+		assertEquals(0, wire.size());
+	}
+
+	/**
+	 * Starts a server and connects a client to it, both collecting the messages they receive
+	 */
+	private void connect() {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				serverReceived.add(data);
+			}
+		};
+		this.server.start();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				clientReceived.add(data);
+			}
+		};
+		assertTrue(this.client.connect());
+	}
+
+}
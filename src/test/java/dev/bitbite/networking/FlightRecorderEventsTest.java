@@ -0,0 +1,140 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Records the flight recorder events of a loopback connection
+ */
+public class FlightRecorderEventsTest {
+
+	private static final String[] EVENTS = {
+			"dev.bitbite.networking.ConnectionAccepted",
+			"dev.bitbite.networking.ConnectionClosed",
+			"dev.bitbite.networking.FrameRead",
+			"dev.bitbite.networking.FrameWrite",
+			"dev.bitbite.networking.OutboundStall",
+			"dev.bitbite.networking.LayerInvocation",
+			"dev.bitbite.networking.HandlerExecution"
+	};
+
+	private Server server;
+	private Client client;
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * Without thresholds, an exchange of messages emits an event for every step from accept to close
+	 */
+	@Test
+	public void exchangeEmitsEvents() throws Exception {
+		List<RecordedEvent> events = record(true);
+		List<String> names = events.stream().map(event -> event.getEventType().getName()).distinct().collect(Collectors.toList());
+		for(String name : EVENTS) {
+			if(!name.endsWith("OutboundStall")) {
+				assertTrue(names.contains(name), name+" has not been recorded");
+			}
+		}
+		RecordedEvent write = events.stream()
+									.filter(event -> event.getEventType().getName().endsWith("FrameWrite") && event.getInt("size") == 5)
+									.findFirst().orElseThrow();
+		assertEquals("MESSAGE", write.getString("frameType"));
+		assertEquals("NORMAL", write.getString("priority"));
+		RecordedEvent layer = events.stream()
+									.filter(event -> event.getEventType().getName().endsWith("LayerInvocation"))
+									.findFirst().orElseThrow();
+		assertEquals("IN", layer.getString("mode"));
+	}
+
+	/**
+	 * With their default thresholds, only frame writes and layer invocations taking at least the threshold are recorded,
+	 * while connections are recorded regardless of their duration
+	 */
+	@Test
+	public void fastOperationsStayBelowThresholds() throws Exception {
+		List<RecordedEvent> events = record(false);
+		assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().endsWith("ConnectionAccepted")));
+		for(RecordedEvent event : events) {
+			if(event.getEventType().getName().endsWith("FrameWrite")) {
+				assertFalse(event.getDuration().compareTo(Duration.ofMillis(20)) < 0);
+			} else if(event.getEventType().getName().endsWith("LayerInvocation")) {
+				assertFalse(event.getDuration().compareTo(Duration.ofMillis(5)) < 0);
+			}
+		}
+	}
+
+	/**
+	 * Records the events of a client sending a message to a server with an incoming layer, which answers it
+	 * @param withoutThresholds true to record events of any duration
+	 * @return the recorded events of this library
+	 */
+	private List<RecordedEvent> record(boolean withoutThresholds) throws Exception {
+		Path file = Files.createTempFile("events", ".jfr");
+		try(Recording recording = new Recording()) {
+			for(String name : EVENTS) {
+				if(withoutThresholds) {
+					recording.enable(name).withThreshold(Duration.ZERO);
+				} else {
+					recording.enable(name);
+				}
+			}
+			recording.start();
+			List<String> received = new CopyOnWriteArrayList<String>();
+			this.server = new Server(0) {
+				@Override
+				protected void processReceivedData(String clientAddress, byte[] data) {
+					send(clientAddress, data);
+				}
+			};
+			this.server.getDataPreProcessor().addLayer(TransferMode.IN, data -> data);
+			this.server.start();
+			this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+				@Override
+				protected void processReceivedData(byte[] data) {
+					received.add(new String(data, StandardCharsets.UTF_8));
+				}
+			};
+			assertTrue(this.client.connect());
+			this.client.send("hello".getBytes(StandardCharsets.UTF_8));
+			TestSupport.await(() -> received.size() == 1);
+			this.client.close();
+			this.client = null;
+			TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().isEmpty());
+			recording.stop();
+			recording.dump(file);
+		}
+		try {
+			return RecordingFile.readAllEvents(file).stream()
+								.filter(event -> event.getEventType().getName().startsWith("dev.bitbite.networking."))
+								.collect(Collectors.toList());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
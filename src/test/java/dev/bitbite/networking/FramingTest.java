@@ -0,0 +1,151 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round-trips messages through the framings of the {@link IOHandler}, in memory and over loopback connections
+ */
+public class FramingTest {
+
+	private Server server;
+	private Client client;
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		IOHandler.setMaxReadSize(1024);
+	}
+
+	/**
+	 * Messages of all sizes, including empty ones and ones containing the end-of-message byte,
+	 * arrive unchanged and in order with length-prefixed framing
+	 */
+	@Test
+	public void lengthPrefixedRoundTrip() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		IOHandler.setMaxReadSize(16);
+		byte[][] messages = { new byte[0], "hello".getBytes(StandardCharsets.UTF_8), new byte[] { 0, 0x0A, 0 }, TestSupport.pattern(100_000, 0) };
+		List<byte[]> received = roundTrip(messages);
+		assertEquals(messages.length, received.size());
+		for(int i = 0; i < messages.length; i++) {
+			assertArrayEquals(messages[i], received.get(i), "message "+i);
+		}
+	}
+
+	/**
+	 * Messages not containing the end-of-message byte arrive unchanged and in order with delimited framing,
+	 * even if they are split across several reads
+	 */
+	@Test
+	public void delimitedRoundTrip() {
+		IOHandler.setMaxReadSize(16);
+		byte[][] messages = { "first".getBytes(StandardCharsets.UTF_8), "a somewhat longer second message".getBytes(StandardCharsets.UTF_8), new byte[0] };
+		List<byte[]> received = roundTrip(messages);
+		assertEquals(messages.length, received.size());
+		for(int i = 0; i < messages.length; i++) {
+			assertArrayEquals(messages[i], received.get(i), "message "+i);
+		}
+	}
+
+	/**
+	 * Messages sent over a loopback connection arrive in both directions with length-prefixed framing
+	 */
+	@Test
+	public void lengthPrefixedLoopback() throws Exception {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		loopback();
+	}
+
+	/**
+	 * Messages sent over a loopback connection arrive in both directions with delimited framing
+	 */
+	@Test
+	public void delimitedLoopback() throws Exception {
+		loopback();
+	}
+
+	/**
+	 * Sends messages from a client to a server and back
+	 */
+	private void loopback() throws Exception {
+		List<String> serverReceived = new CopyOnWriteArrayList<String>();
+		List<String> clientReceived = new CopyOnWriteArrayList<String>();
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				serverReceived.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		this.server.start();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				clientReceived.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		assertTrue(this.client.connect());
+		for(int i = 0; i < 100; i++) {
+			this.client.send(("message "+i).getBytes(StandardCharsets.UTF_8));
+		}
+		TestSupport.await(() -> serverReceived.size() == 100);
+		for(int i = 0; i < 100; i++) {
+			assertEquals("message "+i, serverReceived.get(i));
+		}
+		this.server.broadcast("reply".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> clientReceived.size() == 1);
+		assertEquals("reply", clientReceived.get(0));
+	}
+
+	/**
+	 * A length prefix of zero closes the connection instead of reading the following bytes as frames
+	 */
+	@Test
+	public void frameWithoutTypeClosesTheConnection() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		byte[] wire = { 0, 0, 0, 0, 0, 0, 0, 2, FrameType.MESSAGE.getId(), 'x' };
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler reader = new IOHandler(new ByteArrayInputStream(wire), OutputStream.nullOutputStream(), received::add);
+		reader.readBlocking();
+		assertTrue(reader.isClosed());
+		assertTrue(received.isEmpty());
+	}
+
+	/**
+	 * Writes the messages with one IOHandler and reads them with another one
+	 * @param messages to write
+	 * @return the messages read
+	 */
+	private static List<byte[]> roundTrip(byte[]... messages) {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, data -> {});
+		for(byte[] message : messages) {
+			writer.write(message);
+		}
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler reader = new IOHandler(new ByteArrayInputStream(wire.toByteArray()), OutputStream.nullOutputStream(), received::add);
+		while(received.size() < messages.length && !reader.isClosed()) {
+			reader.readBlocking();
+		}
+		return received;
+	}
+
+}
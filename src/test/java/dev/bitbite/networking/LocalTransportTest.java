@@ -0,0 +1,178 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.BindException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Connects clients to a server in the same JVM through the local transport
+ */
+public class LocalTransportTest {
+
+	private Server server;
+	private Client client;
+	private final List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * Messages are handed to the other side by reference, in order, in both directions
+	 */
+	@Test
+	public void messagesArePassedByReference() throws Exception {
+		startServer("local-messages");
+		List<byte[]> clientReceived = new CopyOnWriteArrayList<byte[]>();
+		connect("local-messages", clientReceived);
+		byte[][] messages = new byte[100][];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = ("message "+i).getBytes(StandardCharsets.UTF_8);
+			this.client.send(messages[i]);
+		}
+		TestSupport.await(() -> this.received.size() == messages.length);
+		for(int i = 0; i < messages.length; i++) {
+			assertSame(messages[i], this.received.get(i));
+		}
+		byte[] reply = "reply".getBytes(StandardCharsets.UTF_8);
+		this.server.broadcast(reply);
+		TestSupport.await(() -> clientReceived.size() == 1);
+		assertSame(reply, clientReceived.get(0));
+	}
+
+	/**
+	 * Requests work over the local transport without configuring length-prefixed framing
+	 */
+	@Test
+	public void requestsAreAnswered() throws Exception {
+		startServer("local-requests");
+		connect("local-requests", new CopyOnWriteArrayList<byte[]>());
+		byte[] response = this.client.request("question".getBytes(StandardCharsets.UTF_8)).get(10, TimeUnit.SECONDS);
+		assertEquals("QUESTION", new String(response, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A client notices the server going away once it has drained the messages sent before
+	 */
+	@Test
+	public void closingTheServerEndsTheConnection() throws Exception {
+		startServer("local-close");
+		List<byte[]> clientReceived = new CopyOnWriteArrayList<byte[]>();
+		connect("local-close", clientReceived);
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		this.server.broadcast("last".getBytes(StandardCharsets.UTF_8));
+		this.server.close();
+		this.server = null;
+		TestSupport.await(() -> !this.client.isConnected());
+		assertEquals(1, clientReceived.size());
+	}
+
+	/**
+	 * Names are unique, and connecting to a name nobody listens on fails
+	 */
+	@Test
+	public void namesAreUnique() throws Exception {
+		startServer("local-unique");
+		assertThrows(BindException.class, () -> new LocalServerSocket("local-unique"));
+		Client other = new Client(null, 0) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		other.setLocalName("local-nobody");
+		assertFalse(other.connect());
+	}
+
+	/**
+	 * A writer faster than the reader waits once the window of the reader is full, and no frame is lost
+	 */
+	@Test
+	public void slowReadersHoldBackWriters() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<byte[]> slowReceived = new CopyOnWriteArrayList<byte[]>();
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				slowReceived.add(data);
+			}
+		};
+		this.server.setLocalName("local-window");
+		this.server.start();
+		connect("local-window", new CopyOnWriteArrayList<byte[]>());
+		AtomicInteger sent = new AtomicInteger();
+		Thread writer = new Thread(() -> {
+			for(int i = 0; i < 200; i++) {
+				this.client.send(new byte[64 * 1024]);
+				sent.incrementAndGet();
+			}
+		});
+		writer.start();
+		TestSupport.await(() -> sent.get() > 0);
+		Thread.sleep(200);
+		int queued = sent.get();
+		assertTrue(queued < 200 && queued <= LocalSocket.WINDOW_SIZE / (64 * 1024) + 2, queued+" frames in flight");
+		release.countDown();
+		writer.join(10_000);
+		TestSupport.await(() -> slowReceived.size() == 200);
+	}
+
+	/**
+	 * Starts a server registered under the given name, collecting the messages it receives and upper-casing requests
+	 * @param name to register the server under
+	 */
+	private void startServer(String name) {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(data);
+			}
+
+			@Override
+			protected byte[] processRequest(String clientAddress, byte[] data) {
+				return new String(data, StandardCharsets.UTF_8).toUpperCase().getBytes(StandardCharsets.UTF_8);
+			}
+		};
+		this.server.setLocalName(name);
+		this.server.start();
+	}
+
+	/**
+	 * Connects the client to the server registered under the given name
+	 * @param name of the server
+	 * @param messages to add the messages received by the client to
+	 */
+	private void connect(String name, List<byte[]> messages) {
+		this.client = new Client(null, 0) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				messages.add(data);
+			}
+		};
+		this.client.setLocalName(name);
+		assertTrue(this.client.connect());
+	}
+
+}
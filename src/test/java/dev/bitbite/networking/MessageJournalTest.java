@@ -0,0 +1,286 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Journals messages, recovers journals from their segment files and replays them to clients over loopback
+ */
+public class MessageJournalTest {
+
+	private Path directory;
+	private Server server;
+	private Client client;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("journal");
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		try(Stream<Path> files = Files.walk(this.directory)) {
+			for(Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * A reopened journal continues the sequence numbers of the messages appended before
+	 */
+	@Test
+	public void sequenceContinuesAfterReopening() throws IOException {
+		MessageJournal journal = new MessageJournal(this.directory);
+		long first = journal.getNextSequence();
+		append(journal, 3);
+		journal.close();
+		MessageJournal reopened = new MessageJournal(this.directory);
+		assertEquals(first, reopened.getFirstSequence());
+		assertEquals(first + 3, reopened.getNextSequence());
+		reopened.close();
+	}
+
+	/**
+	 * Records torn by a crash while appending are not recovered: neither one whose length has not been written yet,
+	 * nor one whose length has been written but whose body has not reached the file
+	 */
+	@Test
+	public void tornRecordIsNotRecovered() throws IOException {
+		MessageJournal journal = new MessageJournal(this.directory);
+		journal.setSegmentSize(4096);
+		long first = journal.getNextSequence();
+		append(journal, 2);
+		journal.close();
+		Path segment;
+		try(Stream<Path> files = Files.list(this.directory)) {
+			segment = files.findFirst().orElseThrow();
+		}
+		byte[] content = Files.readAllBytes(segment);
+		int recordLength = 4 + 1 + 8 + 1 + 1;
+		int torn = 2 * recordLength;
+		content[torn + 4] = FrameType.JOURNALED.getId();
+		MessageJournal.writeLong(content, torn + 5, first + 2);
+		Files.write(segment, content);
+		MessageJournal withoutLength = new MessageJournal(this.directory);
+		assertEquals(first + 2, withoutLength.getNextSequence());
+		withoutLength.close();
+		content[torn + 3] = (byte)(recordLength - 4);
+		MessageJournal.writeLong(content, torn + 5, 0);
+		Files.write(segment, content);
+		MessageJournal withoutBody = new MessageJournal(this.directory);
+		assertEquals(first + 2, withoutBody.getNextSequence());
+		withoutBody.close();
+	}
+
+	/**
+	 * A client connecting after messages have been broadcast receives them in order by replaying the journal
+	 */
+	@Test
+	public void replayDeliversMissedBroadcasts() throws Exception {
+		MessageJournal journal = startServer();
+		long first = journal.getNextSequence();
+		for(int i = 0; i < 3; i++) {
+			this.server.broadcast(("missed "+i).getBytes(StandardCharsets.UTF_8));
+		}
+		List<String> received = connect();
+		this.client.requestReplay(first);
+		TestSupport.await(() -> size(received) == 3);
+		this.server.broadcast("live".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> size(received) == 4);
+		synchronized(received) {
+			assertEquals(List.of("missed 0", "missed 1", "missed 2", "live"), received);
+		}
+		assertEquals(first + 3, this.client.getLastSequence());
+	}
+
+	/**
+	 * Publications to topics the client is not subscribed to are left out of a replay
+	 */
+	@Test
+	public void replaySkipsUnsubscribedTopics() throws Exception {
+		MessageJournal journal = startServer();
+		long first = journal.getNextSequence();
+		this.server.publish("news", "wanted".getBytes(StandardCharsets.UTF_8));
+		this.server.publish("sports", "unwanted".getBytes(StandardCharsets.UTF_8));
+		this.server.publish("news", "wanted too".getBytes(StandardCharsets.UTF_8));
+		List<String> received = connect();
+		this.client.subscribe("news");
+		this.client.requestReplay(first);
+		TestSupport.await(() -> size(received) == 2);
+		Thread.sleep(200);
+		synchronized(received) {
+			assertEquals(List.of("wanted", "wanted too"), received);
+		}
+	}
+
+	/**
+	 * A client set to replay on reconnect catches up on the messages journaled while it was disconnected
+	 */
+	@Test
+	public void reconnectingClientCatchesUp() throws Exception {
+		startServer();
+		int port = this.server.getServerSocket().getLocalPort();
+		List<String> received = connect();
+		this.client.setReconnectPolicy(new ReconnectPolicy(20, 100, 0));
+		this.client.setReplayOnReconnect(true);
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		this.server.broadcast("first".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> size(received) == 1);
+		this.server.close();
+		TestSupport.await(() -> !this.client.isConnected());
+		MessageJournal journal = startServer(port, false);
+		journal.append(FrameType.MESSAGE, null, "missed".getBytes(StandardCharsets.UTF_8), header -> {});
+		this.server.start();
+		TestSupport.await(() -> size(received) == 2);
+		this.server.broadcast("live".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> size(received) == 3);
+		synchronized(received) {
+			assertEquals(List.of("first", "missed", "live"), received);
+		}
+	}
+
+	/**
+	 * Messages arriving while a replay is pending are held back up to a limit, beyond which the connection is closed
+	 */
+	@Test
+	public void heldBackMessagesAreLimited() throws Exception {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, data -> {});
+		for(int i = 0; i < 3; i++) {
+			byte[] sequence = new byte[8];
+			MessageJournal.writeLong(sequence, 0, i);
+			writer.write(FrameType.JOURNALED, sequence, new byte[] { FrameType.MESSAGE.getId(), (byte)i });
+		}
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler reader = new IOHandler(new ByteArrayInputStream(wire.toByteArray()), OutputStream.nullOutputStream(), received::add);
+		JournalReceiver receiver = new JournalReceiver(2);
+		receiver.attach(reader);
+		receiver.requestReplay(0);
+		reader.readBlocking();
+		assertTrue(reader.isClosed());
+		assertTrue(received.isEmpty());
+		assertEquals(-1, receiver.getLastSequence());
+	}
+
+	/**
+	 * A journal is refused by a server using delimited framing, and a server whose framing was changed
+	 * after setting the journal fails to start
+	 */
+	@Test
+	public void journalRequiresLengthPrefixedFraming() throws Exception {
+		MessageJournal journal = startServer(0, false);
+		this.server.setTransportConfig(new TransportConfig().withFraming(IOHandler.Framing.DELIMITED));
+		List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+		this.server.registerListener(new ServerListener() {
+			@Override
+			public void onStartFailed(Exception exception) {
+				failures.add(exception);
+			}
+		});
+		this.server.start();
+		assertEquals(1, failures.size());
+		assertInstanceOf(IllegalStateException.class, failures.get(0));
+		this.server.setJournal(null);
+		assertThrows(IllegalStateException.class, () -> this.server.setJournal(journal));
+		assertNull(this.server.getJournal());
+		journal.close();
+	}
+
+	/**
+	 * Starts a server journaling to the directory
+	 * @return the journal
+	 */
+	private MessageJournal startServer() throws IOException {
+		return startServer(0, true);
+	}
+
+	/**
+	 * Creates a server journaling to the directory
+	 * @param port to listen on
+	 * @param start true to start the server
+	 * @return the journal
+	 */
+	private MessageJournal startServer(int port, boolean start) throws IOException {
+		MessageJournal journal = new MessageJournal(this.directory);
+		this.server = new Server(port) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+		};
+		this.server.setJournal(journal);
+		if(start) {
+			this.server.start();
+		}
+		return journal;
+	}
+
+	/**
+	 * Connects a client to the server, collecting the messages it receives
+	 * @return the received messages
+	 */
+	private List<String> connect() {
+		List<String> received = new ArrayList<String>();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				synchronized(received) {
+					received.add(new String(data, StandardCharsets.UTF_8));
+				}
+			}
+		};
+		assertTrue(this.client.connect());
+		return received;
+	}
+
+	/**
+	 * Appends messages of a single byte to a journal
+	 * @param journal to append to
+	 * @param amount of messages
+	 */
+	private static void append(MessageJournal journal, int amount) throws IOException {
+		for(int i = 0; i < amount; i++) {
+			journal.append(FrameType.MESSAGE, null, new byte[] {(byte)i}, header -> {});
+		}
+	}
+
+	/**
+	 * Returns how many messages a client has received
+	 * @param received the messages of the client
+	 * @return the amount of messages
+	 */
+	private static int size(List<String> received) {
+		synchronized(received) {
+			return received.size();
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Orders outbound frames by the priority lanes of an {@link IOHandler}
+ */
+public class PriorityTest {
+
+	private static final TransportConfig UNBUFFERED = new TransportConfig().withWriteBufferSize(0);
+
+	private Server server;
+	private Client client;
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * A frame of a high priority overtakes frames of a low priority queued before it
+	 */
+	@Test
+	public void highPriorityOvertakesQueuedFrames() throws Exception {
+		GatedOutputStream out = new GatedOutputStream();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), out, null, UNBUFFERED, data -> {});
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(write(iOHandler, "blocker", Priority.LOW));
+		TestSupport.await(() -> out.blocked.getCount() == 0);
+		for(int i = 0; i < 3; i++) {
+			writers.add(write(iOHandler, "low"+i, Priority.LOW));
+		}
+		writers.add(write(iOHandler, "high", Priority.HIGH));
+		TestSupport.await(() -> iOHandler.getPendingWrites() == 5);
+		Thread.sleep(50);
+		out.gate.countDown();
+		for(Thread writer : writers) {
+			writer.join();
+		}
+		List<String> frames = out.frames();
+		assertEquals(5, frames.size());
+		assertEquals("blocker", frames.get(0));
+		assertEquals("high", frames.get(1));
+		assertEquals(List.of("low0", "low1", "low2"), frames.subList(2, 5).stream().sorted().toList());
+	}
+
+	/**
+	 * A frame of a low priority is written within the first round, even while many frames of a high priority are waiting
+	 */
+	@Test
+	public void lowPriorityDoesNotStarve() throws Exception {
+		GatedOutputStream out = new GatedOutputStream();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), out, null, UNBUFFERED, data -> {});
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(write(iOHandler, "blocker", Priority.HIGH));
+		TestSupport.await(() -> out.blocked.getCount() == 0);
+		writers.add(write(iOHandler, "low", Priority.LOW));
+		for(int i = 0; i < 20; i++) {
+			writers.add(write(iOHandler, "high"+i, Priority.HIGH));
+		}
+		TestSupport.await(() -> iOHandler.getPendingWrites() == 22);
+		Thread.sleep(50);
+		out.gate.countDown();
+		for(Thread writer : writers) {
+			writer.join();
+		}
+		List<String> frames = out.frames();
+		assertEquals(22, frames.size());
+		int position = frames.indexOf("low");
+		assertTrue(position > 0 && position <= 1 + Priority.HIGH.getWeight(), "low written at "+position);
+	}
+
+	/**
+	 * A failing write closes the connection and discards the queued frames instead of writing them after the broken one
+	 */
+	@Test
+	public void failedWriteClosesTheConnection() throws Exception {
+		GatedOutputStream out = new GatedOutputStream();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), out, null, UNBUFFERED, data -> {});
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(write(iOHandler, "blocker", Priority.NORMAL));
+		TestSupport.await(() -> out.blocked.getCount() == 0);
+		for(int i = 0; i < 3; i++) {
+			writers.add(write(iOHandler, "queued"+i, Priority.HIGH));
+		}
+		TestSupport.await(() -> iOHandler.getPendingWrites() == 4);
+		out.failing = true;
+		out.gate.countDown();
+		for(Thread writer : writers) {
+			writer.join();
+		}
+		assertTrue(iOHandler.isClosed());
+		assertEquals(0, iOHandler.getPendingWrites());
+		assertEquals(1, out.attempts.get());
+	}
+
+	/**
+	 * Data sent with a priority arrives like any other data
+	 */
+	@Test
+	public void prioritizedDataArrives() throws Exception {
+		List<String> received = new CopyOnWriteArrayList<String>();
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				String message = new String(data, StandardCharsets.UTF_8);
+				received.add(message);
+				send(clientAddress, ("re "+message).getBytes(StandardCharsets.UTF_8), Priority.HIGH);
+			}
+		};
+		this.server.start();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		assertTrue(this.client.connect());
+		this.client.send("bulk".getBytes(StandardCharsets.UTF_8), Priority.LOW);
+		TestSupport.await(() -> received.size() == 2);
+		assertEquals(List.of("bulk", "re bulk"), received);
+	}
+
+	/**
+	 * Writes a frame from a new thread
+	 * @param iOHandler to write with
+	 * @param message to write
+	 * @param priority of the frame
+	 * @return the started thread
+	 */
+	private static Thread write(IOHandler iOHandler, String message, Priority priority) {
+		Thread thread = new Thread(() -> iOHandler.write(message.getBytes(StandardCharsets.UTF_8), priority));
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Records the written bytes, blocking the first write until the gate is opened.
+	 * Once failing, every write throws instead.
+	 */
+	private static class GatedOutputStream extends OutputStream {
+
+		private final CountDownLatch blocked = new CountDownLatch(1);
+		private final CountDownLatch gate = new CountDownLatch(1);
+		private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		private final AtomicInteger attempts = new AtomicInteger();
+		private volatile boolean failing;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.attempts.incrementAndGet();
+			this.blocked.countDown();
+			try {
+				this.gate.await();
+			} catch(InterruptedException e) {
+				throw new IOException(e);
+			}
+			if(this.failing) {
+				throw new IOException("Broken pipe");
+			}
+			synchronized(this.written) {
+				this.written.write(b, off, len);
+			}
+		}
+
+		/**
+		 * Splits the written bytes into the delimited frames
+		 * @return the frames in the order they were written
+		 */
+		private List<String> frames() {
+			synchronized(this.written) {
+				return Arrays.asList(this.written.toString(StandardCharsets.UTF_8).split("\n"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Matches topics against the patterns of a {@link TopicTrie} and publishes to subscribed clients over loopback
+ */
+public class PublishSubscribeTest {
+
+	private Server server;
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@BeforeEach
+	public void setFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Exact levels, single-level and multi-level wildcards match the topics they cover and no others
+	 */
+	@Test
+	public void wildcardsMatchTheirLevels() {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.subscribe("prices/eur", "exact");
+		trie.subscribe("prices/*", "single");
+		trie.subscribe("prices/#", "rest");
+		trie.subscribe("*/eur/daily", "inner");
+		trie.subscribe("#", "all");
+		assertEquals(Set.of("exact", "single", "rest", "all"), trie.match("prices/eur"));
+		assertEquals(Set.of("rest", "all"), trie.match("prices"));
+		assertEquals(Set.of("rest", "inner", "all"), trie.match("prices/eur/daily"));
+		assertEquals(Set.of("inner", "all"), trie.match("rates/eur/daily"));
+		assertEquals(Set.of("all"), trie.match("news"));
+	}
+
+	/**
+	 * A subscriber matching several patterns is returned once, and subscribing twice has no effect
+	 */
+	@Test
+	public void subscribersAreMatchedOnce() {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		assertTrue(trie.subscribe("a/b", "s"));
+		assertTrue(trie.subscribe("a/*", "s"));
+		assertFalse(trie.subscribe("a/b", "s"));
+		assertEquals(Set.of("s"), trie.match("a/b"));
+		assertEquals(Set.of("a/b", "a/*"), trie.getSubscriptions("s"));
+	}
+
+	/**
+	 * Removing the last subscriptions prunes every node
+	 */
+	@Test
+	public void unsubscribingPrunesTheTrie() {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		trie.subscribe("a/b/c", "first");
+		trie.subscribe("a/b", "second");
+		trie.subscribe("a/#", "first");
+		assertFalse(trie.unsubscribe("a/b", "first"));
+		assertTrue(trie.unsubscribe("a/b/c", "first"));
+		assertEquals(Set.of("second", "first"), trie.match("a/b"));
+		assertTrue(trie.match("a/b/c").contains("first"));
+		trie.unsubscribeAll("first");
+		assertEquals(Set.of("second"), trie.match("a/b"));
+		assertTrue(trie.getSubscriptions("first").isEmpty());
+		trie.unsubscribe("a/b", "second");
+		assertTrue(trie.isEmpty());
+	}
+
+	/**
+	 * Empty topics, wildcards in topics and multi-level wildcards before the last level are rejected
+	 */
+	@Test
+	public void malformedTopicsAreRejected() {
+		TopicTrie<String> trie = new TopicTrie<String>();
+		assertThrows(IllegalArgumentException.class, () -> trie.subscribe("", "s"));
+		assertThrows(IllegalArgumentException.class, () -> trie.subscribe("a/#/b", "s"));
+		assertThrows(IllegalArgumentException.class, () -> trie.match("a/*"));
+		assertThrows(IllegalArgumentException.class, () -> trie.match("#"));
+		assertTrue(trie.isEmpty());
+	}
+
+	/**
+	 * Publications of the server and relayed publications of clients reach exactly the subscribed clients
+	 */
+	@Test
+	public void publicationsReachSubscribers() throws Exception {
+		startServer();
+		List<String> prices = new CopyOnWriteArrayList<String>();
+		List<String> news = new CopyOnWriteArrayList<String>();
+		Client pricesClient = connect(prices);
+		Client newsClient = connect(news);
+		pricesClient.subscribe("prices/*");
+		newsClient.subscribe("news/#");
+		TestSupport.await(() -> this.server.getTopics().match("prices/eur").size() == 1 && this.server.getTopics().match("news").size() == 1);
+		assertEquals(1, this.server.publish("prices/eur", "1.08".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(0, this.server.publish("weather", "rain".getBytes(StandardCharsets.UTF_8)));
+		newsClient.publish("prices/usd", "0.92".getBytes(StandardCharsets.UTF_8));
+		pricesClient.publish("news/today", "quiet".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> prices.size() == 2 && news.size() == 1);
+		assertEquals(List.of("prices/eur 1.08", "prices/usd 0.92"), prices);
+		assertEquals(List.of("news/today quiet"), news);
+	}
+
+	/**
+	 * Subscriptions are renewed when a client reconnects and removed when its connection closes
+	 */
+	@Test
+	public void subscriptionsFollowTheConnection() throws Exception {
+		startServer();
+		List<String> received = new CopyOnWriteArrayList<String>();
+		Client client = connect(received);
+		client.subscribe("a/b");
+		TestSupport.await(() -> this.server.getTopics().match("a/b").size() == 1);
+		client.unsubscribe("a/b");
+		TestSupport.await(() -> this.server.getTopics().isEmpty());
+		client.subscribe("a/#");
+		TestSupport.await(() -> !this.server.getTopics().isEmpty());
+		client.close();
+		TestSupport.await(() -> this.server.getTopics().isEmpty());
+		assertEquals(Set.of("a/#"), client.getSubscriptions());
+		assertTrue(client.connect());
+		TestSupport.await(() -> this.server.getTopics().match("a/b").size() == 1);
+		this.server.publish("a/b", "again".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> received.size() == 1);
+		assertEquals("a/b again", received.get(0));
+	}
+
+	/**
+	 * A subscription arriving for a connection that is already being closed is not kept
+	 */
+	@Test
+	public void closedConnectionsCannotSubscribe() throws Exception {
+		startServer();
+		connect(new CopyOnWriteArrayList<String>());
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		CommunicationHandler ch = this.server.getClientManager().getCommunicationHandler().get(0);
+		ch.close();
+		assertTrue(ch.isClosed());
+		this.server.subscribe(ch, "a/b");
+		assertTrue(this.server.getTopics().isEmpty());
+	}
+
+	/**
+	 * Publications are rejected with a clear exception before the first connect and while reconnecting
+	 */
+	@Test
+	public void publicationsRequireAConnection() throws Exception {
+		startServer();
+		Client client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.clients.add(client);
+		assertThrows(IllegalStateException.class, () -> client.publish("a/b", new byte[0]));
+		List<Integer> attempts = new CopyOnWriteArrayList<Integer>();
+		client.setReconnectPolicy(new ReconnectPolicy(5_000, 5_000, 0));
+		client.registerListener(new ClientListener() {
+			@Override
+			public void onReconnect(int attempt, long delay) {
+				attempts.add(attempt);
+			}
+		});
+		assertTrue(client.connect());
+		this.server.close();
+		TestSupport.await(() -> !attempts.isEmpty());
+		assertThrows(IllegalStateException.class, () -> client.publish("a/b", new byte[0]));
+	}
+
+	/**
+	 * Starts a server on an ephemeral port relaying publications
+	 */
+	private void startServer() {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+		};
+		this.server.start();
+	}
+
+	/**
+	 * Connects a client collecting the publications it receives as topic and text
+	 * @param received to add the publications to
+	 * @return the client
+	 */
+	private Client connect(List<String> received) {
+		Client client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+
+			@Override
+			protected void processPublication(String topic, byte[] data) {
+				received.add(topic+" "+new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		this.clients.add(client);
+		assertTrue(client.connect());
+		return client;
+	}
+
+}
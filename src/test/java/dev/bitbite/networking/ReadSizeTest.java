@@ -0,0 +1,132 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks how an {@link IOHandler} adapts the amount of bytes it reads at once to the traffic of its connection
+ */
+public class ReadSizeTest {
+
+	private static final TransportConfig CONFIG = new TransportConfig()
+			.withFraming(IOHandler.Framing.LENGTH_PREFIXED)
+			.withReadBufferSize(1024)
+			.withReadBufferBounds(64, 16 * 1024);
+
+	/**
+	 * Reads filling the whole read size double it up to the upper bound, and the messages arrive intact
+	 */
+	@Test
+	public void fullReadsGrowTheReadSize() {
+		byte[][] messages = { TestSupport.pattern(100_000, 1), TestSupport.pattern(50_000, 2) };
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(encode(messages)), new ByteArrayOutputStream(), null, CONFIG, received::add);
+		int previous = iOHandler.getReadSize();
+		while(received.size() < messages.length) {
+			iOHandler.readBlocking();
+			int readSize = iOHandler.getReadSize();
+			assertTrue(readSize == previous || readSize == Math.min(16 * 1024, previous * 2), "grew from "+previous+" to "+readSize);
+			previous = readSize;
+		}
+		assertEquals(16 * 1024, iOHandler.getReadSize());
+		assertArrayEquals(messages[0], received.get(0));
+		assertArrayEquals(messages[1], received.get(1));
+	}
+
+	/**
+	 * Two reads in a row that fit into half of the read size halve it down to the lower bound
+	 */
+	@Test
+	public void smallReadsShrinkTheReadSize() {
+		byte[][] messages = new byte[40][];
+		for(int i = 0; i < messages.length; i++) {
+			messages[i] = new byte[] { (byte)i, (byte)i };
+		}
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler iOHandler = new IOHandler(trickle(encode(messages), 7), new ByteArrayOutputStream(), null, CONFIG, received::add);
+		iOHandler.readBlocking();
+		assertEquals(1024, iOHandler.getReadSize());
+		iOHandler.readBlocking();
+		assertEquals(512, iOHandler.getReadSize());
+		while(received.size() < messages.length) {
+			iOHandler.readBlocking();
+		}
+		assertEquals(64, iOHandler.getReadSize());
+		for(int i = 0; i < messages.length; i++) {
+			assertArrayEquals(messages[i], received.get(i));
+		}
+	}
+
+	/**
+	 * Equal bounds keep the read size fixed
+	 */
+	@Test
+	public void equalBoundsFixTheReadSize() {
+		TransportConfig config = CONFIG.withReadBufferBounds(256, 256);
+		assertEquals(256, config.getReadBufferSize());
+		byte[][] messages = { TestSupport.pattern(10_000, 3) };
+		List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(encode(messages)), new ByteArrayOutputStream(), null, config, received::add);
+		while(received.isEmpty()) {
+			iOHandler.readBlocking();
+			assertEquals(256, iOHandler.getReadSize());
+		}
+		assertArrayEquals(messages[0], received.get(0));
+	}
+
+	/**
+	 * The bounds are validated, clamp the initial read size and are widened by an initial read size outside of them
+	 */
+	@Test
+	public void boundsContainTheInitialReadSize() {
+		assertThrows(IllegalArgumentException.class, () -> CONFIG.withReadBufferBounds(0, 64));
+		assertThrows(IllegalArgumentException.class, () -> CONFIG.withReadBufferBounds(128, 64));
+		assertEquals(4096, CONFIG.withReadBufferBounds(4096, 8192).getReadBufferSize());
+		assertEquals(128, CONFIG.withReadBufferBounds(64, 128).getReadBufferSize());
+		TransportConfig widened = CONFIG.withReadBufferSize(32 * 1024);
+		assertEquals(64, widened.getMinReadBufferSize());
+		assertEquals(32 * 1024, widened.getMaxReadBufferSize());
+	}
+
+	/**
+	 * Encodes messages the way an IOHandler writes them with the framing of the config
+	 * @param messages to encode
+	 * @return the bytes on the wire
+	 */
+	private static byte[] encode(byte[][] messages) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(new ByteArrayInputStream(new byte[0]), out, null, CONFIG.withWriteBufferSize(0), data -> {});
+		for(byte[] message : messages) {
+			writer.write(message);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns a stream handing out at most the given amount of bytes per read
+	 * @param data to read
+	 * @param max the maximum amount of bytes per read
+	 * @return the stream
+	 */
+	private static InputStream trickle(byte[] data, int max) {
+		return new FilterInputStream(new ByteArrayInputStream(data)) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return super.read(b, off, Math.min(len, max));
+			}
+		};
+	}
+
+}
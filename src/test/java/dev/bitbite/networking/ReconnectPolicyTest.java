@@ -0,0 +1,151 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Computes reconnect delays and re-establishes the connection of a client to a restarted server on loopback
+ */
+public class ReconnectPolicyTest {
+
+	private Server server;
+	private Client client;
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+	}
+
+	/**
+	 * Delays are drawn from a bound growing with every attempt until it reaches the maximum delay
+	 */
+	@Test
+	public void delaysStayWithinTheirBound() {
+		ReconnectPolicy policy = new ReconnectPolicy(100, 1_000, 0);
+		long[] bounds = { 100, 200, 400, 800, 1_000, 1_000 };
+		for(int attempt = 0; attempt < bounds.length; attempt++) {
+			long max = 0;
+			for(int i = 0; i < 2_000; i++) {
+				long delay = policy.computeDelay(attempt);
+				assertTrue(delay >= 0 && delay <= bounds[attempt], "attempt "+attempt+": "+delay);
+				max = Math.max(max, delay);
+			}
+			assertTrue(max > bounds[attempt] / 2, "attempt "+attempt+" never came close to its bound");
+		}
+		assertTrue(policy.computeDelay(10_000) <= 1_000);
+	}
+
+	/**
+	 * A policy without an initial delay reconnects immediately
+	 */
+	@Test
+	public void zeroInitialDelayReconnectsImmediately() {
+		ReconnectPolicy policy = new ReconnectPolicy(0, 1_000, 0);
+		for(int attempt = 0; attempt < 5; attempt++) {
+			assertEquals(0, policy.computeDelay(attempt));
+		}
+	}
+
+	/**
+	 * Attempts are limited by the maximum amount of attempts, unless it is below 1
+	 */
+	@Test
+	public void attemptsAreLimited() {
+		ReconnectPolicy limited = new ReconnectPolicy(100, 1_000, 3);
+		assertTrue(limited.allowsAttempt(0));
+		assertTrue(limited.allowsAttempt(2));
+		assertFalse(limited.allowsAttempt(3));
+		ReconnectPolicy unlimited = new ReconnectPolicy(100, 1_000, 0);
+		assertTrue(unlimited.allowsAttempt(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * A client whose server restarts reconnects, and data sent in the meantime reaches the new server in order
+	 */
+	@Test
+	public void clientReconnectsToRestartedServer() throws Exception {
+		List<String> received = new CopyOnWriteArrayList<String>();
+		this.server = startServer(0, received);
+		int port = this.server.getServerSocket().getLocalPort();
+		List<Integer> attempts = new CopyOnWriteArrayList<Integer>();
+		this.client = new Client("127.0.0.1", port) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.client.setReconnectPolicy(new ReconnectPolicy(20, 100, 0));
+		this.client.registerListener(new ClientListener() {
+			@Override
+			public void onReconnect(int attempt, long delay) {
+				attempts.add(attempt);
+			}
+		});
+		assertTrue(this.client.connect());
+		this.client.send("before".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> received.contains("before"));
+		this.server.close();
+		TestSupport.await(() -> !attempts.isEmpty());
+		assertFalse(this.client.isConnected());
+		this.client.send("during".getBytes(StandardCharsets.UTF_8));
+		this.server = startServer(port, received);
+		TestSupport.await(() -> this.client.isConnected());
+		this.client.send("after".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> received.contains("after"));
+		assertEquals(List.of("before", "during", "after"), received);
+	}
+
+	/**
+	 * A client closed on purpose does not reconnect
+	 */
+	@Test
+	public void closedClientDoesNotReconnect() throws Exception {
+		this.server = startServer(0, new CopyOnWriteArrayList<String>());
+		List<Integer> attempts = new CopyOnWriteArrayList<Integer>();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.client.setReconnectPolicy(new ReconnectPolicy(20, 100, 0));
+		this.client.registerListener(new ClientListener() {
+			@Override
+			public void onReconnect(int attempt, long delay) {
+				attempts.add(attempt);
+			}
+		});
+		assertTrue(this.client.connect());
+		this.client.close();
+		Thread.sleep(200);
+		assertTrue(attempts.isEmpty());
+		assertFalse(this.client.isConnected());
+	}
+
+	/**
+	 * Starts a server collecting the messages it receives
+	 * @param port to listen on
+	 * @param received to add the received messages to
+	 * @return the server
+	 */
+	private static Server startServer(int port, List<String> received) {
+		Server server = new Server(port) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		server.start();
+		return server;
+	}
+
+}
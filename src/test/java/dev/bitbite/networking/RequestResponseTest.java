@@ -0,0 +1,204 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+import dev.bitbite.networking.exceptions.RequestFailedException;
+
+/**
+ * Sends requests over a loopback connection whose data is scrambled by {@link DataProcessingLayer}s on both sides
+ */
+public class RequestResponseTest {
+
+	private Server server;
+	private Client client;
+
+	@BeforeEach
+	public void useLengthPrefixedFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Responses are matched to their requests, even if many requests are pending at once
+	 */
+	@Test
+	public void responsesCompleteTheirRequests() throws Exception {
+		connect();
+		List<CompletableFuture<byte[]>> responses = new ArrayList<CompletableFuture<byte[]>>();
+		for(int i = 0; i < 50; i++) {
+			responses.add(this.client.request(("request "+i).getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS));
+		}
+		for(int i = 0; i < 50; i++) {
+			assertEquals(("REQUEST "+i), new String(responses.get(i).get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * A slow request does not hold back the requests sent after it
+	 */
+	@Test
+	public void slowRequestDoesNotBlockOthers() throws Exception {
+		connect();
+		CompletableFuture<byte[]> slow = this.client.request("slow".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		CompletableFuture<byte[]> fast = this.client.request("fast".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		assertEquals("FAST", new String(fast.get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+		assertFalse(slow.isDone());
+	}
+
+	/**
+	 * A responder failing completes the request exceptionally with its message, which has been
+	 * processed like any other response
+	 */
+	@Test
+	public void failingResponderFailsRequest() throws Exception {
+		connect();
+		CompletableFuture<byte[]> response = this.client.request("fail".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(RequestFailedException.class, exception.getCause());
+		assertEquals("Request rejected", exception.getCause().getMessage());
+	}
+
+	/**
+	 * Requests beyond the maximum amount processed at once are answered with an error right away
+	 */
+	@Test
+	public void excessRequestsAreRejected() throws Exception {
+		connect();
+		for(int i = 0; i < RequestHandler.MAX_REQUESTS_IN_FLIGHT; i++) {
+			this.client.request("slow".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		}
+		CompletableFuture<byte[]> excess = this.client.request("fast".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> excess.get(4, TimeUnit.SECONDS));
+		assertInstanceOf(RequestFailedException.class, exception.getCause());
+		assertEquals("Too many requests in flight", exception.getCause().getMessage());
+	}
+
+	/**
+	 * A request without a response fails once its timeout elapses
+	 */
+	@Test
+	public void unansweredRequestTimesOut() throws Exception {
+		connect();
+		CompletableFuture<byte[]> response = this.client.request("slow".getBytes(StandardCharsets.UTF_8), 100, TimeUnit.MILLISECONDS);
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(TimeoutException.class, exception.getCause());
+	}
+
+	/**
+	 * Pending requests fail once the connection is closed
+	 */
+	@Test
+	public void closingFailsPendingRequests() throws Exception {
+		connect();
+		CompletableFuture<byte[]> response = this.client.request("slow".getBytes(StandardCharsets.UTF_8), 10, TimeUnit.SECONDS);
+		this.client.close();
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(RequestFailedException.class, exception.getCause());
+	}
+
+	/**
+	 * The server can send requests to a client, which rejects them unless it overrides the processing of requests
+	 */
+	@Test
+	public void clientRejectsRequestsByDefault() throws Exception {
+		connect();
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		String address = this.server.getClientManager().getCommunicationHandler().get(0).getIP();
+		CompletableFuture<byte[]> response = this.server.request(address, "hello".getBytes(StandardCharsets.UTF_8));
+		ExecutionException exception = assertThrows(ExecutionException.class, () -> response.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(RequestFailedException.class, exception.getCause());
+		assertEquals("Client does not accept requests", exception.getCause().getMessage());
+	}
+
+	/**
+	 * Requests need length-prefixed framing to carry their correlation ids
+	 */
+	@Test
+	public void requestsRequireLengthPrefixedFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		RequestHandler requestHandler = new RequestHandler(
+				new IOHandler(InputStream.nullInputStream(), OutputStream.nullOutputStream(), data -> {}),
+				new DataPreProcessor(), data -> data);
+		assertThrows(IllegalStateException.class, () -> requestHandler.request(new byte[0], 1, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Starts a server upper-casing requests and connects a client to it, both scrambling their data
+	 */
+	private void connect() throws Exception {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+
+			@Override
+			protected byte[] processRequest(String clientAddress, byte[] data) {
+				String request = new String(data, StandardCharsets.UTF_8);
+				if(request.equals("fail")) {
+					throw new IllegalArgumentException("Request rejected");
+				}
+				if(request.equals("slow")) {
+					try {
+						Thread.sleep(5_000);
+					} catch(InterruptedException e) {}
+				}
+				return request.toUpperCase().getBytes(StandardCharsets.UTF_8);
+			}
+		};
+		scramble(this.server.getDataPreProcessor());
+		this.server.start();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		scramble(this.client.getDataPreProcessor());
+		assertTrue(this.client.connect());
+	}
+
+	/**
+	 * Adds a layer inverting every byte in both directions, so unprocessed data cannot be mistaken for processed data
+	 * @param dataPreProcessor to add the layers to
+	 */
+	private static void scramble(DataPreProcessor dataPreProcessor) {
+		DataProcessingLayer invert = data -> {
+			byte[] inverted = new byte[data.length];
+			for(int i = 0; i < data.length; i++) {
+				inverted[i] = (byte)~data[i];
+			}
+			return inverted;
+		};
+		dataPreProcessor.addLayer(TransferMode.IN, invert);
+		dataPreProcessor.addLayer(TransferMode.OUT, invert);
+		assertArrayEquals(new byte[] { 1 }, dataPreProcessor.process(TransferMode.IN, dataPreProcessor.process(TransferMode.OUT, new byte[] { 1 })));
+	}
+
+}
@@ -0,0 +1,223 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Routes keys across servers on loopback with a {@link ShardedClient}
+ */
+public class ShardedClientTest {
+
+	private final List<Server> servers = new ArrayList<Server>();
+	private final List<AtomicInteger> requests = new ArrayList<AtomicInteger>();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private ShardedClient shardedClient;
+
+	@BeforeEach
+	public void setUp() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		this.shardedClient = new ShardedClient() {
+			@Override
+			protected void processReceivedData(String endpoint, byte[] data) {}
+		};
+	}
+
+	@AfterEach
+	public void close() {
+		this.release.countDown();
+		this.shardedClient.close();
+		this.servers.forEach(Server::close);
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Keys are spread evenly across the endpoints and always routed to the same one
+	 */
+	@Test
+	public void keysAreSpreadAndStable() {
+		addEndpoints(3);
+		Map<Client, Integer> counts = new HashMap<Client, Integer>();
+		for(int i = 0; i < 3_000; i++) {
+			Client client = this.shardedClient.getClient("key-"+i);
+			assertSame(client, this.shardedClient.getClient("key-"+i));
+			counts.merge(client, 1, Integer::sum);
+		}
+		assertEquals(3, counts.size());
+		for(int count : counts.values()) {
+			assertTrue(count > 600 && count < 1_400, "shard got "+count+" keys");
+		}
+	}
+
+	/**
+	 * An added endpoint only takes over keys, and a removed endpoint only gives away its own keys
+	 */
+	@Test
+	public void changesOnlyMoveAdjacentKeys() {
+		addEndpoints(3);
+		Map<String, String> before = owners();
+		Server added = startServer();
+		String endpoint = "127.0.0.1:"+added.getServerSocket().getLocalPort();
+		this.shardedClient.addEndpoint("127.0.0.1", added.getServerSocket().getLocalPort());
+		Map<String, String> after = owners();
+		int moved = 0;
+		for(String key : before.keySet()) {
+			if(!before.get(key).equals(after.get(key))) {
+				assertEquals(endpoint, after.get(key));
+				moved++;
+			}
+		}
+		assertTrue(moved > 300 && moved < 800, moved+" keys moved");
+		Server removed = this.servers.get(0);
+		String removedEndpoint = "127.0.0.1:"+removed.getServerSocket().getLocalPort();
+		assertTrue(this.shardedClient.removeEndpoint("127.0.0.1", removed.getServerSocket().getLocalPort()));
+		Map<String, String> last = owners();
+		for(String key : after.keySet()) {
+			if(!after.get(key).equals(removedEndpoint)) {
+				assertEquals(after.get(key), last.get(key));
+			}
+		}
+		assertEquals(3, this.shardedClient.getEndpoints().size());
+	}
+
+	/**
+	 * Keys of a shard that lost its connection go to the next shard until the health check reconnects it
+	 */
+	@Test
+	public void unhealthyShardsArePassedOver() throws Exception {
+		addEndpoints(2);
+		this.shardedClient.setHealthCheckInterval(50);
+		Client owner = this.shardedClient.getClient("key");
+		owner.close();
+		assertNotEquals(owner, this.shardedClient.getClient("key"));
+		TestSupport.await(() -> this.shardedClient.getClient("key") == owner);
+	}
+
+	/**
+	 * The client of a removed shard is closed even if it never connected, so the health check leaves it alone
+	 */
+	@Test
+	public void removedShardsAreClosed() throws Exception {
+		Server server = startServer();
+		int port = server.getServerSocket().getLocalPort();
+		server.close();
+		this.shardedClient.setHealthCheckInterval(20);
+		Client client = this.shardedClient.addEndpoint("127.0.0.1", port);
+		assertFalse(client.isConnected());
+		assertTrue(this.shardedClient.removeEndpoint("127.0.0.1", port));
+		assertTrue(client.isClosed());
+		Thread.sleep(100);
+		assertFalse(client.isConnected());
+		assertTrue(this.shardedClient.getEndpoints().isEmpty());
+	}
+
+	/**
+	 * With bounded loads, requests for a single key spill over to further shards once its owner carries more than its share
+	 */
+	@Test
+	public void boundedLoadsSpillOver() throws Exception {
+		addEndpoints(3);
+		this.shardedClient.setLoadFactor(1.25);
+		List<CompletableFuture<byte[]>> futures = new ArrayList<CompletableFuture<byte[]>>();
+		for(int i = 0; i < 12; i++) {
+			futures.add(this.shardedClient.request("hot", new byte[] { (byte)i }));
+		}
+		TestSupport.await(() -> this.requests.stream().mapToInt(AtomicInteger::get).sum() == 12);
+		int busiest = this.requests.stream().mapToInt(AtomicInteger::get).max().getAsInt();
+		assertTrue(busiest <= 6, "busiest shard got "+busiest+" requests");
+		this.release.countDown();
+		for(CompletableFuture<byte[]> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Without bounded loads, all requests for a key go to its owner
+	 */
+	@Test
+	public void unboundedLoadsStayWithTheOwner() throws Exception {
+		addEndpoints(3);
+		for(int i = 0; i < 12; i++) {
+			this.shardedClient.request("hot", new byte[] { (byte)i });
+		}
+		TestSupport.await(() -> this.requests.stream().mapToInt(AtomicInteger::get).sum() == 12);
+		assertEquals(12, this.requests.stream().mapToInt(AtomicInteger::get).max().getAsInt());
+	}
+
+	/**
+	 * Routing without endpoints fails
+	 */
+	@Test
+	public void routingWithoutEndpointsFails() throws Exception {
+		assertThrows(IllegalStateException.class, () -> this.shardedClient.getClient("key"));
+		assertTrue(this.shardedClient.request("key", new byte[0]).isCompletedExceptionally());
+	}
+
+	/**
+	 * Starts servers and adds them as endpoints
+	 * @param count of the servers
+	 */
+	private void addEndpoints(int count) {
+		for(int i = 0; i < count; i++) {
+			Server server = startServer();
+			assertTrue(this.shardedClient.addEndpoint("127.0.0.1", server.getServerSocket().getLocalPort()).isConnected());
+		}
+	}
+
+	/**
+	 * Starts a server counting the requests it receives and answering them once released
+	 * @return the server
+	 */
+	private Server startServer() {
+		AtomicInteger received = new AtomicInteger();
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+
+			@Override
+			protected byte[] processRequest(String clientAddress, byte[] data) {
+				received.incrementAndGet();
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return data;
+			}
+		};
+		server.start();
+		this.servers.add(server);
+		this.requests.add(received);
+		return server;
+	}
+
+	/**
+	 * Routes a fixed set of keys
+	 * @return the endpoint of each key
+	 */
+	private Map<String, String> owners() {
+		Map<String, String> owners = new HashMap<String, String>();
+		for(int i = 0; i < 2_000; i++) {
+			Client client = this.shardedClient.getClient("key-"+i);
+			owners.put("key-"+i, client.HOST+":"+client.PORT);
+		}
+		return owners;
+	}
+
+}
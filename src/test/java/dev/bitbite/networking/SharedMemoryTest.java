@@ -0,0 +1,174 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Moves bytes through the ring buffers of the shared memory transport and connects a client to a server through them
+ */
+public class SharedMemoryTest {
+
+	private Path directory;
+	private Server server;
+	private Client client;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("shm");
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		try(Stream<Path> files = Files.walk(this.directory)) {
+			for(Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Bytes written by one thread arrive unchanged at another thread, even though they wrap around the ring many times
+	 */
+	@Test
+	public void ringWrapsAround() throws Exception {
+		Path file = this.directory.resolve("ring");
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			buffer = channel.map(MapMode.READ_WRITE, 0, SharedMemoryRing.HEADER_SIZE + 64);
+		}
+		SharedMemoryRing ring = new SharedMemoryRing(buffer, 0, 64, SharedMemorySocket.WaitStrategy.PARK, () -> false, () -> false);
+		byte[] data = TestSupport.pattern(100_000, 0);
+		Thread writer = new Thread(() -> {
+			try {
+				for(int position = 0; position < data.length; position += 50) {
+					ring.write(data, position, Math.min(50, data.length - position));
+				}
+			} catch(IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+		writer.start();
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		byte[] chunk = new byte[37];
+		while(received.size() < data.length) {
+			int count = ring.read(chunk, 0, chunk.length);
+			received.write(chunk, 0, count);
+		}
+		writer.join();
+		assertArrayEquals(data, received.toByteArray());
+		assertEquals(0, ring.available());
+	}
+
+	/**
+	 * Messages larger than the ring travel in both directions
+	 */
+	@Test
+	public void messagesTravelBothWays() throws Exception {
+		List<byte[]> serverReceived = new CopyOnWriteArrayList<byte[]>();
+		List<byte[]> clientReceived = new CopyOnWriteArrayList<byte[]>();
+		startServer(serverReceived);
+		connect(clientReceived);
+		byte[] large = TestSupport.pattern(20_000, 1);
+		for(int i = 0; i < 10; i++) {
+			this.client.send(large);
+		}
+		TestSupport.await(() -> serverReceived.size() == 10);
+		serverReceived.forEach(message -> assertArrayEquals(large, message));
+		this.server.broadcast(large);
+		TestSupport.await(() -> clientReceived.size() == 1);
+		assertArrayEquals(large, clientReceived.get(0));
+	}
+
+	/**
+	 * The connection file is removed once both sides have closed, and the directory is no longer served once the server closed
+	 */
+	@Test
+	public void filesAreRemovedOnClose() throws Exception {
+		startServer(new CopyOnWriteArrayList<byte[]>());
+		connect(new CopyOnWriteArrayList<byte[]>());
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		assertEquals(1, connectionFiles());
+		this.client.close();
+		this.server.close();
+		this.server = null;
+		TestSupport.await(() -> connectionFiles() == 0);
+		Client late = new Client(null, 0) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		late.setSharedMemoryDirectory(this.directory);
+		assertFalse(late.connect());
+	}
+
+	/**
+	 * Starts a server serving the directory
+	 * @param received to add the messages received by the server to
+	 */
+	private void startServer(List<byte[]> received) {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(data);
+			}
+		};
+		this.server.setSharedMemoryDirectory(this.directory);
+		this.server.start();
+	}
+
+	/**
+	 * Connects the client to the server serving the directory
+	 * @param received to add the messages received by the client to
+	 */
+	private void connect(List<byte[]> received) {
+		this.client = new Client(null, 0) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				received.add(data);
+			}
+		};
+		this.client.setSharedMemoryDirectory(this.directory);
+		this.client.setTransportConfig(this.client.getTransportConfig().withSharedMemoryRingCapacity(4096));
+		this.client.setConnectTimeout(10_000);
+		assertTrue(this.client.connect());
+	}
+
+	/**
+	 * Counts the connection files in the directory
+	 * @return the amount of connection files
+	 */
+	private long connectionFiles() {
+		try(Stream<Path> files = Files.list(this.directory)) {
+			return files.filter(file -> file.toString().endsWith(SharedMemorySocket.FILE_SUFFIX)).count();
+		} catch(IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Sends multiplexed streams from a client to a server over loopback, using the chunk and window sizes of their transport config
+ */
+public class StreamMultiplexerTest {
+
+	private static final TransportConfig CONFIG = new TransportConfig()
+			.withFraming(IOHandler.Framing.LENGTH_PREFIXED)
+			.withStreamChunkSize(4 * 1024)
+			.withStreamWindowSize(64 * 1024);
+
+	private Server server;
+	private Client client;
+	private final Map<Integer, ByteArrayOutputStream> streams = new ConcurrentHashMap<Integer, ByteArrayOutputStream>();
+	private final Map<Integer, Boolean> finished = new ConcurrentHashMap<Integer, Boolean>();
+	private final AtomicInteger largestChunk = new AtomicInteger();
+	private final CountDownLatch receiving = new CountDownLatch(1);
+	private volatile boolean blockReceiver = false;
+
+	@BeforeEach
+	public void useLengthPrefixedFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() {
+		this.receiving.countDown();
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Streams written concurrently arrive complete and in order, each in chunks of at most the maximum chunk size
+	 */
+	@Test
+	public void concurrentStreamsArriveIntact() throws Exception {
+		connect();
+		byte[] first = TestSupport.pattern(1_000_000, 1);
+		byte[] second = TestSupport.pattern(700_000, 7);
+		MultiplexedStream firstStream = this.client.openStream();
+		MultiplexedStream secondStream = this.client.openStream();
+		Thread writer = new Thread(() -> send(secondStream, second));
+		writer.start();
+		send(firstStream, first);
+		writer.join();
+		TestSupport.await(() -> this.finished.size() == 2);
+		assertArrayEquals(first, this.streams.get(firstStream.getId()).toByteArray());
+		assertArrayEquals(second, this.streams.get(secondStream.getId()).toByteArray());
+		assertTrue(this.largestChunk.get() <= CONFIG.getStreamChunkSize());
+	}
+
+	/**
+	 * Streams sent in both directions at once complete, since granting more bytes never blocks the reading side
+	 */
+	@Test
+	public void streamsInBothDirectionsComplete() throws Exception {
+		connect();
+		TestSupport.await(() -> this.server.getClientManager().getCommunicationHandler().size() == 1);
+		String address = this.server.getClientManager().getCommunicationHandler().get(0).getIP();
+		byte[] upstream = TestSupport.pattern(4_000_000, 11);
+		byte[] downstream = TestSupport.pattern(4_000_000, 13);
+		MultiplexedStream clientStream = this.client.openStream();
+		MultiplexedStream serverStream = this.server.openStream(address);
+		Thread writer = new Thread(() -> send(serverStream, downstream));
+		writer.start();
+		send(clientStream, upstream);
+		writer.join(10_000);
+		TestSupport.await(() -> this.finished.size() == 2);
+		assertArrayEquals(upstream, this.streams.get(clientStream.getId()).toByteArray());
+		assertArrayEquals(downstream, this.streams.get(serverStream.getId()).toByteArray());
+	}
+
+	/**
+	 * A sender whose receiver does not consume any data stops once the window of the stream is exhausted
+	 */
+	@Test
+	public void senderStopsAtTheWindow() throws Exception {
+		connect();
+		this.blockReceiver = true;
+		MultiplexedStream stream = this.client.openStream();
+		AtomicLong written = new AtomicLong();
+		byte[] data = TestSupport.pattern(1_000_000, 3);
+		Thread writer = new Thread(() -> {
+			try {
+				for(int position = 0; position < data.length; position += 1024) {
+					stream.write(data, position, Math.min(1024, data.length - position));
+					written.addAndGet(Math.min(1024, data.length - position));
+				}
+				stream.close();
+			} catch(IOException e) {}
+		});
+		writer.start();
+		Thread.sleep(500);
+		assertTrue(written.get() <= CONFIG.getStreamWindowSize() + 1024, "written "+written.get());
+		this.receiving.countDown();
+		writer.join(10_000);
+		TestSupport.await(() -> this.finished.size() == 1);
+		assertArrayEquals(data, this.streams.get(stream.getId()).toByteArray());
+	}
+
+	/**
+	 * Closing the connection fails writers waiting for their window
+	 */
+	@Test
+	public void closingAbortsStreams() throws Exception {
+		connect();
+		this.blockReceiver = true;
+		MultiplexedStream stream = this.client.openStream();
+		byte[] data = TestSupport.pattern(CONFIG.getStreamWindowSize() * 2, 5);
+		AtomicInteger failures = new AtomicInteger();
+		Thread writer = new Thread(() -> {
+			try {
+				stream.write(data);
+			} catch(IOException e) {
+				failures.incrementAndGet();
+			}
+		});
+		writer.start();
+		Thread.sleep(200);
+		this.client.close();
+		writer.join(10_000);
+		assertEquals(1, failures.get());
+	}
+
+	/**
+	 * Streams need length-prefixed framing to carry their ids
+	 */
+	@Test
+	public void streamsRequireLengthPrefixedFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		StreamMultiplexer multiplexer = new StreamMultiplexer(
+				new IOHandler(InputStream.nullInputStream(), OutputStream.nullOutputStream(), data -> {}),
+				new DataPreProcessor(), (id, data, last) -> {}, true);
+		assertThrows(IllegalStateException.class, () -> multiplexer.openStream());
+	}
+
+	/**
+	 * Starts a server collecting the streams it receives and connects a client collecting its streams as well, both using the test config
+	 */
+	private void connect() throws Exception {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+
+			@Override
+			protected void processStreamData(String clientAddress, int streamId, byte[] data, boolean last) {
+				if(blockReceiver) {
+					try {
+						receiving.await();
+					} catch(InterruptedException e) {}
+				}
+				largestChunk.accumulateAndGet(data.length, Math::max);
+				streams.computeIfAbsent(streamId, id -> new ByteArrayOutputStream()).writeBytes(data);
+				if(last) {
+					finished.put(streamId, true);
+				}
+			}
+		};
+		this.server.setTransportConfig(CONFIG);
+		this.server.start();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+
+			@Override
+			protected void processStreamData(int streamId, byte[] data, boolean last) {
+				streams.computeIfAbsent(streamId, id -> new ByteArrayOutputStream()).writeBytes(data);
+				if(last) {
+					finished.put(streamId, true);
+				}
+			}
+		};
+		this.client.setTransportConfig(CONFIG);
+		assertTrue(this.client.connect());
+	}
+
+	/**
+	 * Writes data to a stream in pieces of varying size and closes it
+	 * @param stream to write to
+	 * @param data to write
+	 */
+	private static void send(MultiplexedStream stream, byte[] data) {
+		try(stream) {
+			int position = 0;
+			int piece = 1;
+			while(position < data.length) {
+				int length = Math.min(piece, data.length - position);
+				stream.write(data, position, length);
+				position += length;
+				piece = piece * 3 % 50_000 + 1;
+			}
+		} catch(IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
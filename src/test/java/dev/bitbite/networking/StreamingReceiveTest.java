@@ -0,0 +1,274 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.exceptions.MessageTooLargeException;
+
+/**
+ * Passes messages exceeding the maximum message size to {@link MessageChunkReceiver}s,
+ * including the {@link SpoolFileReceiver} spooling them to files
+ */
+public class StreamingReceiveTest {
+
+	@BeforeEach
+	public void limitMessageSize() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		IOHandler.setMaxReadSize(256);
+		IOHandler.setMaxMessageSize(1024);
+	}
+
+	@AfterEach
+	public void restoreDefaults() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		IOHandler.setMaxReadSize(1024);
+		IOHandler.setMaxMessageSize(16 * 1024 * 1024);
+	}
+
+	/**
+	 * A large message arrives as a sequence of chunks adding up to the message, the first and the last one flagged
+	 */
+	@Test
+	public void largeMessageArrivesInChunks() {
+		byte[] message = TestSupport.pattern(10_000, 0);
+		ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+		List<Boolean> firsts = new ArrayList<Boolean>();
+		List<Boolean> lasts = new ArrayList<Boolean>();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		IOHandler reader = reader(write(message, "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.setMessageChunkReceiver((data, length, first, last) -> {
+			assertEquals(message.length, length);
+			reassembled.writeBytes(data);
+			firsts.add(first);
+			lasts.add(last);
+		});
+		readAll(reader, messages, 1);
+		assertArrayEquals(message, reassembled.toByteArray());
+		assertTrue(firsts.size() > 1);
+		assertTrue(firsts.get(0));
+		assertFalse(firsts.subList(1, firsts.size()).contains(true));
+		assertTrue(lasts.get(lasts.size() - 1));
+		assertFalse(lasts.subList(0, lasts.size() - 1).contains(true));
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * With delimited framing the length of a large message is unknown until its end-of-message byte arrives
+	 */
+	@Test
+	public void delimitedMessageHasUnknownLength() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+		byte[] message = new byte[5_000];
+		Arrays.fill(message, (byte)'x');
+		ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+		List<Long> lengths = new ArrayList<Long>();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		IOHandler reader = reader(write(message, "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.setMessageChunkReceiver((data, length, first, last) -> {
+			reassembled.writeBytes(data);
+			lengths.add(length);
+		});
+		readAll(reader, messages, 1);
+		assertArrayEquals(message, reassembled.toByteArray());
+		assertTrue(lengths.stream().allMatch(length -> length == -1));
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Without a receiver a large message is discarded and reported, and the following messages arrive intact
+	 */
+	@Test
+	public void oversizedMessageIsDiscarded() {
+		List<byte[]> messages = new ArrayList<byte[]>();
+		List<Exception> failures = new ArrayList<Exception>();
+		IOHandler reader = reader(write(TestSupport.pattern(10_000, 0), "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.registerListener(failureListener(failures));
+		readAll(reader, messages, 1);
+		assertEquals(1, failures.size());
+		assertInstanceOf(MessageTooLargeException.class, failures.get(0));
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A failing receiver gets no further chunks of its message, the failure is reported
+	 * and the following messages arrive intact
+	 */
+	@Test
+	public void failingReceiverKeepsFrameBoundaries() {
+		List<byte[]> messages = new ArrayList<byte[]>();
+		List<Exception> failures = new ArrayList<Exception>();
+		List<byte[]> chunks = new ArrayList<byte[]>();
+		IOHandler reader = reader(write(TestSupport.pattern(10_000, 0), "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.registerListener(failureListener(failures));
+		reader.setMessageChunkReceiver((data, length, first, last) -> {
+			chunks.add(data);
+			throw new IllegalStateException("receiver failed");
+		});
+		readAll(reader, messages, 1);
+		assertEquals(1, chunks.size());
+		assertEquals(1, failures.size());
+		assertInstanceOf(IllegalStateException.class, failures.get(0));
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A {@link SpoolFileReceiver} writes a large message to a file in the spool directory
+	 */
+	@Test
+	public void spoolFileReceiverSpoolsMessage() throws Exception {
+		Path directory = Files.createTempDirectory("spool");
+		byte[] message = TestSupport.pattern(50_000, 0);
+		List<Path> files = new ArrayList<Path>();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		IOHandler reader = reader(write(message, "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.setMessageChunkReceiver(new SpoolFileReceiver(directory, files::add));
+		readAll(reader, messages, 1);
+		assertEquals(1, files.size());
+		assertArrayEquals(message, Files.readAllBytes(files.get(0)));
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+		Files.delete(files.get(0));
+		Files.delete(directory);
+	}
+
+	/**
+	 * A message that cannot be spooled is reported once, leaves no file behind and the following messages arrive intact
+	 */
+	@Test
+	public void failedSpoolIsReportedOnce() throws Exception {
+		Path directory = Files.createTempDirectory("spool");
+		Path missing = directory.resolve("missing");
+		List<Path> files = new ArrayList<Path>();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		List<Exception> failures = new ArrayList<Exception>();
+		IOHandler reader = reader(write(TestSupport.pattern(50_000, 0), "after".getBytes(StandardCharsets.UTF_8)), messages::add);
+		reader.registerListener(failureListener(failures));
+		reader.setMessageChunkReceiver(new SpoolFileReceiver(missing, files::add));
+		readAll(reader, messages, 1);
+		assertEquals(1, failures.size());
+		assertInstanceOf(UncheckedIOException.class, failures.get(0));
+		assertTrue(files.isEmpty());
+		assertEquals("after", new String(messages.get(0), StandardCharsets.UTF_8));
+		Files.delete(directory);
+	}
+
+	/**
+	 * A file sent to a server with a spool directory arrives as a file, even though it is smaller than the maximum message size
+	 */
+	@Test
+	public void bulkMessagesAreSpooled() throws Exception {
+		Path directory = Files.createTempDirectory("spool");
+		Path sent = Files.createTempFile("bulk", ".bin");
+		byte[] content = TestSupport.pattern(500, 0);
+		Files.write(sent, content);
+		List<byte[]> files = new CopyOnWriteArrayList<byte[]>();
+		List<byte[]> messages = new CopyOnWriteArrayList<byte[]>();
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				messages.add(data);
+			}
+
+			@Override
+			protected void processReceivedFile(String clientAddress, Path file) {
+				try {
+					files.add(Files.readAllBytes(file));
+					Files.delete(file);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+		server.setSpoolDirectory(directory);
+		server.start();
+		Client client = new Client("127.0.0.1", server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		try {
+			assertTrue(client.connect());
+			client.sendFile(sent);
+			client.send(content);
+			TestSupport.await(() -> files.size() == 1 && messages.size() == 1);
+			assertArrayEquals(content, files.get(0));
+			assertArrayEquals(content, messages.get(0));
+		} finally {
+			client.close();
+			server.close();
+			Files.delete(sent);
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Encodes messages as an IOHandler writes them
+	 * @param messages to encode
+	 * @return the encoded messages
+	 */
+	private static byte[] write(byte[]... messages) {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		IOHandler writer = new IOHandler(InputStream.nullInputStream(), wire, data -> {});
+		for(byte[] message : messages) {
+			writer.write(message);
+		}
+		return wire.toByteArray();
+	}
+
+	/**
+	 * Creates an IOHandler reading the encoded messages
+	 * @param wire the encoded messages
+	 * @param onRead called with every message not exceeding the maximum message size
+	 * @return the IOHandler
+	 */
+	private static IOHandler reader(byte[] wire, Consumer<byte[]> onRead) {
+		return new IOHandler(new ByteArrayInputStream(wire), OutputStream.nullOutputStream(), onRead);
+	}
+
+	/**
+	 * Reads until the given amount of messages has been passed to the read callback or the input has ended
+	 * @param reader to read with
+	 * @param messages the messages passed to the read callback
+	 * @param amount of messages to wait for
+	 */
+	private static void readAll(IOHandler reader, List<byte[]> messages, int amount) {
+		while(messages.size() < amount && !reader.isClosed()) {
+			reader.readBlocking();
+		}
+	}
+
+	/**
+	 * Creates a listener collecting the failures of reading
+	 * @param failures to add the failures to
+	 * @return the listener
+	 */
+	private static IOHandlerListener failureListener(List<Exception> failures) {
+		return new IOHandlerListener() {
+			@Override
+			public void onDataReadFailed(Exception exception) {
+				failures.add(exception);
+			}
+		};
+	}
+
+}
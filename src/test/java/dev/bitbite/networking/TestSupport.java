@@ -0,0 +1,42 @@
+package dev.bitbite.networking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Helpers shared by the tests
+ */
+final class TestSupport {
+
+	private TestSupport() {}
+
+	/**
+	 * Waits up to ten seconds for a condition to become true
+	 * @param condition to wait for
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(!condition.getAsBoolean()) {
+			if(System.nanoTime() > deadline) {
+				throw new AssertionError("Condition not met in time");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Creates data of the given length which differs at every position from its neighbours
+	 * @param length of the data
+	 * @param seed distinguishing data created with different seeds
+	 * @return the data
+	 */
+	static byte[] pattern(int length, int seed) {
+		byte[] data = new byte[length];
+		for(int i = 0; i < length; i++) {
+			data[i] = (byte)(i * 31 + seed + (i >>> 8));
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,173 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Captures frames through the ring of a {@link TrafficCapture} and replays captured traffic with a {@link TrafficReplayer}
+ */
+public class TrafficCaptureTest {
+
+	private Path directory;
+	private final List<Server> servers = new ArrayList<Server>();
+	private Client client;
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("capture");
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		if(this.client != null) {
+			this.client.close();
+		}
+		this.servers.forEach(Server::close);
+		try(Stream<Path> files = Files.walk(this.directory)) {
+			for(Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Frames recorded concurrently wrap around a small ring many times, and every frame not dropped is read back intact and in order
+	 */
+	@Test
+	public void ringWrapsAround() throws Exception {
+		Path file = this.directory.resolve("ring.cap");
+		TrafficCapture capture = new TrafficCapture(file, 4096);
+		int threads = 4;
+		int frames = 2_000;
+		List<Thread> producers = new ArrayList<Thread>();
+		for(int t = 0; t < threads; t++) {
+			int producer = t;
+			Thread thread = new Thread(() -> {
+				for(int i = 0; i < frames; i++) {
+					byte[] payload = payload(producer, i);
+					capture.record(producer, TrafficCapture.Event.OUTBOUND, FrameType.MESSAGE.getId(), null, payload, 0, payload.length);
+					LockSupport.parkNanos(20_000);
+				}
+			});
+			producers.add(thread);
+			thread.start();
+		}
+		for(Thread thread : producers) {
+			thread.join();
+		}
+		capture.close();
+		assertEquals(threads * frames, capture.getCapturedFrames() + capture.getDroppedFrames());
+		int[] last = new int[threads];
+		Arrays.fill(last, -1);
+		long read = 0;
+		long bytes = 0;
+		try(TrafficCapture.Reader reader = new TrafficCapture.Reader(file)) {
+			TrafficCapture.Record record;
+			while((record = reader.next()) != null) {
+				int producer = (int)record.getConnection();
+				int index = ByteBuffer.wrap(record.getPayload()).getInt();
+				assertEquals(TrafficCapture.Event.OUTBOUND, record.getEvent());
+				assertEquals(FrameType.MESSAGE, record.getType());
+				assertArrayEquals(payload(producer, index), record.getPayload());
+				assertTrue(index > last[producer], "frames of a producer are in order");
+				last[producer] = index;
+				read++;
+				bytes += record.getPayload().length;
+			}
+		}
+		assertEquals(capture.getCapturedFrames(), read);
+		assertTrue(bytes > 2 * 4096, "the ring has wrapped, read "+bytes+" bytes");
+	}
+
+	/**
+	 * A frame larger than the ring is dropped and counted
+	 */
+	@Test
+	public void oversizedFramesAreDropped() throws Exception {
+		TrafficCapture capture = new TrafficCapture(this.directory.resolve("drop.cap"), 4096);
+		byte[] payload = new byte[8192];
+		capture.record(1, TrafficCapture.Event.INBOUND, FrameType.MESSAGE.getId(), null, payload, 0, payload.length);
+		capture.close();
+		assertEquals(0, capture.getCapturedFrames());
+		assertEquals(1, capture.getDroppedFrames());
+	}
+
+	/**
+	 * The messages a server received are captured and sent again to another server by replaying the capture
+	 */
+	@Test
+	public void capturedTrafficIsReplayed() throws Exception {
+		Path file = this.directory.resolve("server.cap");
+		TrafficCapture capture = new TrafficCapture(file);
+		List<String> original = new CopyOnWriteArrayList<String>();
+		Server server = startServer(original);
+		server.setTrafficCapture(capture);
+		this.client = new Client("127.0.0.1", server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		assertTrue(this.client.connect());
+		for(String message : List.of("one", "two", "three")) {
+			this.client.send(message.getBytes(StandardCharsets.UTF_8));
+		}
+		TestSupport.await(() -> original.size() == 3);
+		this.client.close();
+		this.client = null;
+		server.close();
+		capture.close();
+		List<String> replayed = new CopyOnWriteArrayList<String>();
+		Server target = startServer(replayed);
+		TrafficReplayer replayer = new TrafficReplayer(file, "127.0.0.1", target.getServerSocket().getLocalPort());
+		replayer.setSpeed(TrafficReplayer.MAX_SPEED);
+		assertEquals(3, replayer.replay());
+		TestSupport.await(() -> replayed.size() == 3);
+		assertEquals(original, replayed);
+	}
+
+	/**
+	 * Creates the payload of a frame identifying its producer and index, filled with a pattern
+	 * @param producer the recording thread
+	 * @param index of the frame
+	 * @return the payload
+	 */
+	private static byte[] payload(int producer, int index) {
+		byte[] pattern = TestSupport.pattern(20 + index % 80, producer);
+		return ByteBuffer.allocate(4 + pattern.length).putInt(index).put(pattern).array();
+	}
+
+	/**
+	 * Starts a server on an ephemeral port collecting the messages it receives
+	 * @param received to add the messages to
+	 * @return the server
+	 */
+	private Server startServer(List<String> received) {
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		server.start();
+		this.servers.add(server);
+		return server;
+	}
+
+}
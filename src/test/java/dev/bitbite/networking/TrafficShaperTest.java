@@ -0,0 +1,100 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Hands out tokens of {@link TokenBucket}s and shapes the traffic of an {@link IOHandler} with them
+ */
+public class TrafficShaperTest {
+
+	/**
+	 * An unlimited bucket never asks to wait
+	 */
+	@Test
+	public void unlimitedBucketNeverWaits() {
+		TokenBucket bucket = new TokenBucket();
+		assertTrue(bucket.isUnlimited());
+		assertEquals(0, bucket.reserve(Long.MAX_VALUE / 2));
+		assertTrue(bucket.tryAcquire(Long.MAX_VALUE / 2));
+	}
+
+	/**
+	 * The burst is handed out without waiting, further tokens have to be waited for at the rate
+	 */
+	@Test
+	public void burstIsFreeThenTokensCostTime() {
+		TokenBucket bucket = new TokenBucket(1_000, 100);
+		assertEquals(0, bucket.reserve(100));
+		long wait = bucket.reserve(100);
+		assertTrue(wait > 90_000_000L && wait <= 100_000_000L, "waited "+wait);
+		long next = bucket.reserve(100);
+		assertTrue(next - wait > 90_000_000L, "reservations are served in order");
+	}
+
+	/**
+	 * Tokens that would require waiting are not taken
+	 */
+	@Test
+	public void tryAcquireRefusesBeyondTheBurst() throws Exception {
+		TokenBucket bucket = new TokenBucket(1_000, 100);
+		assertTrue(bucket.tryAcquire(100));
+		assertFalse(bucket.tryAcquire(10));
+		Thread.sleep(50);
+		assertTrue(bucket.tryAcquire(10));
+	}
+
+	/**
+	 * Amounts of tokens whose time does not fit into a long saturate instead of wrapping around,
+	 * so they are never handed out for free
+	 */
+	@Test
+	public void hugeAmountsDoNotOverflow() {
+		assertEquals(10_000_000_000L, TokenBucket.toNanos(20_000_000_000L, 2_000_000_000L));
+		assertTrue(TokenBucket.toNanos(Long.MAX_VALUE, 1) > 0);
+		assertEquals(TokenBucket.toNanos(Long.MAX_VALUE, 1), TokenBucket.toNanos(Long.MAX_VALUE / 2, 1));
+		TokenBucket bucket = new TokenBucket(1_000_000, 1_000);
+		assertTrue(bucket.reserve(10_000_000_000L) > 0);
+		assertTrue(bucket.reserve(Long.MAX_VALUE) > 0);
+		assertTrue(bucket.reserve(Long.MAX_VALUE) > 0);
+		assertFalse(bucket.tryAcquire(1));
+		assertFalse(new TokenBucket(1, 1).tryAcquire(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Writes beyond the burst of frames per second are delayed
+	 */
+	@Test
+	public void outboundFramesAreDelayed() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), out, data -> {});
+		iOHandler.addTrafficShaper(new TrafficShaper(0, 20, 0, 0));
+		long start = System.nanoTime();
+		for(int i = 0; i < 30; i++) {
+			iOHandler.write(new byte[] { 1 });
+		}
+		long elapsed = System.nanoTime() - start;
+		assertTrue(elapsed > 400_000_000L, "took "+elapsed);
+		assertEquals(60, out.size());
+	}
+
+	/**
+	 * A copy of a shaper has the same limits but tokens of its own
+	 */
+	@Test
+	public void copiesHaveTheirOwnTokens() {
+		TrafficShaper template = new TrafficShaper(1_000, 0, 0, 0);
+		TrafficShaper first = new TrafficShaper(template);
+		TrafficShaper second = new TrafficShaper(template);
+		assertEquals(0, first.reserveOutbound(1_000));
+		assertTrue(first.reserveOutbound(1_000) > 0);
+		assertEquals(0, second.reserveOutbound(1_000));
+	}
+
+}
@@ -0,0 +1,215 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.TransportConfig.FlushPolicy;
+
+/**
+ * Checks the copies and presets of {@link TransportConfig} and that connections follow the config they have been created with
+ */
+public class TransportConfigTest {
+
+	private final List<Server> servers = new ArrayList<Server>();
+	private final List<Client> clients = new ArrayList<Client>();
+
+	@AfterEach
+	public void close() {
+		this.clients.forEach(Client::close);
+		this.servers.forEach(Server::close);
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Every {@code with} method returns a changed copy and leaves the original untouched
+	 */
+	@Test
+	public void copiesLeaveTheOriginal() {
+		TransportConfig original = new TransportConfig();
+		TransportConfig copy = original.withFraming(IOHandler.Framing.LENGTH_PREFIXED)
+				.withReadBufferSize(64)
+				.withWriteBufferSize(0)
+				.withFlushPolicy(FlushPolicy.WHEN_IDLE)
+				.withConnectTimeout(250);
+		assertEquals(IOHandler.Framing.DELIMITED, original.getFraming());
+		assertEquals(IOHandler.getMaxReadSize(), original.getReadBufferSize());
+		assertEquals(8 * 1024, original.getWriteBufferSize());
+		assertEquals(FlushPolicy.EVERY_WRITE, original.getFlushPolicy());
+		assertEquals(10_000, original.getConnectTimeout());
+		assertEquals(IOHandler.Framing.LENGTH_PREFIXED, copy.getFraming());
+		assertEquals(64, copy.getReadBufferSize());
+		assertEquals(0, copy.getWriteBufferSize());
+		assertEquals(FlushPolicy.WHEN_IDLE, copy.getFlushPolicy());
+		assertEquals(250, copy.getConnectTimeout());
+	}
+
+	/**
+	 * Invalid settings are rejected instead of being copied
+	 */
+	@Test
+	public void invalidSettingsAreRejected() {
+		TransportConfig config = new TransportConfig();
+		assertThrows(IllegalArgumentException.class, () -> config.withFraming(null));
+		assertThrows(IllegalArgumentException.class, () -> config.withFlushPolicy(null));
+		assertThrows(IllegalArgumentException.class, () -> config.withReadBufferSize(0));
+		assertThrows(IllegalArgumentException.class, () -> config.withMaxMessageSize(0));
+		assertThrows(IllegalArgumentException.class, () -> config.withWriteBufferSize(-1));
+		assertThrows(IllegalArgumentException.class, () -> config.withSendBufferSize(-1));
+		assertThrows(IllegalArgumentException.class, () -> config.withReceiveBufferSize(-1));
+		assertThrows(IllegalArgumentException.class, () -> config.withConnectTimeout(-1));
+		assertThrows(IllegalArgumentException.class, () -> config.withIdleTimeout(-1));
+		assertThrows(IllegalArgumentException.class, () -> config.withStreamChunkSize(0));
+		assertThrows(IllegalArgumentException.class, () -> config.withStreamWindowSize(0));
+		assertThrows(IllegalArgumentException.class, () -> config.withSharedMemoryRingCapacity(1000));
+		assertThrows(IllegalArgumentException.class, () -> config.withSharedMemoryWaitStrategy(null));
+	}
+
+	/**
+	 * The presets tune latency and throughput and keep the defaults for everything else
+	 */
+	@Test
+	public void presetsTuneTheirGoal() {
+		TransportConfig latency = TransportConfig.latencyOptimized();
+		assertTrue(latency.isTcpNoDelay());
+		assertEquals(FlushPolicy.EVERY_FRAME, latency.getFlushPolicy());
+		TransportConfig throughput = TransportConfig.throughputOptimized();
+		assertFalse(throughput.isTcpNoDelay());
+		assertEquals(FlushPolicy.WHEN_IDLE, throughput.getFlushPolicy());
+		assertEquals(64 * 1024, throughput.getWriteBufferSize());
+		assertEquals(1024 * 1024, throughput.getReceiveBufferSize());
+		assertEquals(latency.getFraming(), throughput.getFraming());
+	}
+
+	/**
+	 * The config is taken when an IOHandler is created, so later changes of the defaults do not affect it
+	 */
+	@Test
+	public void ioHandlersKeepTheirConfig() {
+		TransportConfig config = new TransportConfig();
+		IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(), null, config, data -> {});
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+		assertSame(config, iOHandler.getTransportConfig());
+		assertEquals(IOHandler.Framing.DELIMITED, iOHandler.getFraming());
+		assertEquals(IOHandler.Framing.LENGTH_PREFIXED, new TransportConfig().getFraming());
+	}
+
+	/**
+	 * Buffered frames are flushed once per frame with {@link FlushPolicy#EVERY_FRAME}
+	 * and reach the stream at the end of every write with the other policies as long as nobody else is writing
+	 */
+	@Test
+	public void bufferedFramesAreFlushed() {
+		for(FlushPolicy flushPolicy : FlushPolicy.values()) {
+			FlushCountingOutputStream out = new FlushCountingOutputStream();
+			TransportConfig config = new TransportConfig().withFraming(IOHandler.Framing.LENGTH_PREFIXED).withFlushPolicy(flushPolicy);
+			IOHandler iOHandler = new IOHandler(new ByteArrayInputStream(new byte[0]), out, null, config, data -> {});
+			for(int i = 0; i < 3; i++) {
+				iOHandler.write(new byte[] { (byte)i });
+				assertEquals((i+1) * 6, out.size(), flushPolicy.name());
+			}
+			assertTrue(out.flushes >= 3, flushPolicy.name());
+		}
+	}
+
+	/**
+	 * Two servers with different framing in the same JVM each talk to clients using the matching config
+	 */
+	@Test
+	public void serversUseTheirOwnFraming() throws Exception {
+		for(IOHandler.Framing framing : IOHandler.Framing.values()) {
+			TransportConfig config = new TransportConfig().withFraming(framing);
+			Server server = new Server(0) {
+				@Override
+				protected void processReceivedData(String clientAddress, byte[] data) {
+					send(clientAddress, data);
+				}
+			};
+			server.setTransportConfig(config);
+			this.servers.add(server);
+			server.start();
+		}
+		for(int i = 0; i < this.servers.size(); i++) {
+			Server server = this.servers.get(i);
+			List<byte[]> received = new CopyOnWriteArrayList<byte[]>();
+			Client client = new Client("127.0.0.1", server.getServerSocket().getLocalPort()) {
+				@Override
+				protected void processReceivedData(byte[] data) {
+					received.add(data);
+				}
+			};
+			client.setTransportConfig(server.getTransportConfig());
+			this.clients.add(client);
+			assertTrue(client.connect());
+			TestSupport.await(() -> server.getClientManager().getCommunicationHandler().size() == 1);
+			byte[] data = ("framed by "+server.getTransportConfig().getFraming()).getBytes(StandardCharsets.UTF_8);
+			client.send(data);
+			TestSupport.await(() -> received.size() == 1);
+			assertArrayEquals(data, received.get(0));
+		}
+	}
+
+	/**
+	 * A connection whose handler fails to be set up is closed, released and never registered
+	 */
+	@Test
+	public void failedSetupReleasesTheConnection() throws Exception {
+		List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+		Server server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+
+			@Override
+			public TrafficCapture getTrafficCapture() {
+				throw new IllegalStateException("broken setup");
+			}
+		};
+		server.registerListener(new ServerListener() {
+			@Override
+			public void onCommunicationHandlerInitFailed(Exception exception) {
+				failures.add(exception);
+			}
+		});
+		this.servers.add(server);
+		server.start();
+		Client client = new Client("127.0.0.1", server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.clients.add(client);
+		assertTrue(client.connect());
+		TestSupport.await(() -> failures.size() == 1);
+		TestSupport.await(() -> !client.isConnected());
+		assertEquals(0, server.getClientManager().getConnectionCount());
+		assertTrue(server.getClientManager().getCommunicationHandler().isEmpty());
+	}
+
+	/**
+	 * Collects written bytes and counts the flushes
+	 */
+	private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+
+		private int flushes;
+
+		@Override
+		public void flush() throws IOException {
+			this.flushes++;
+		}
+
+	}
+
+}
@@ -0,0 +1,223 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.bitbite.networking.DataPreProcessor.TransferMode;
+
+/**
+ * Sends typed messages encoded by the codecs of a {@link MessageCodecRegistry} over loopback
+ */
+public class TypedMessageTest {
+
+	/**
+	 * A message carrying two coordinates
+	 */
+	private record Point(int x, int y) {}
+
+	/**
+	 * Encodes a point as two ints
+	 */
+	private static final MessageCodec<Point> POINT_CODEC = new MessageCodec<Point>() {
+		@Override
+		public byte[] encode(Point message) {
+			return ByteBuffer.allocate(8).putInt(message.x()).putInt(message.y()).array();
+		}
+
+		@Override
+		public Point decode(byte[] buffer, int offset, int length) {
+			ByteBuffer data = ByteBuffer.wrap(buffer, offset, length);
+			return new Point(data.getInt(), data.getInt());
+		}
+	};
+
+	/**
+	 * Encodes a string as UTF-8
+	 */
+	private static final MessageCodec<String> STRING_CODEC = new MessageCodec<String>() {
+		@Override
+		public byte[] encode(String message) {
+			return message.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public String decode(byte[] buffer, int offset, int length) {
+			return new String(buffer, offset, length, StandardCharsets.UTF_8);
+		}
+	};
+
+	private Server server;
+	private Client client;
+
+	@BeforeEach
+	public void setFraming() {
+		IOHandler.setDefaultFraming(IOHandler.Framing.LENGTH_PREFIXED);
+	}
+
+	@AfterEach
+	public void close() {
+		if(this.client != null) {
+			this.client.close();
+		}
+		if(this.server != null) {
+			this.server.close();
+		}
+		IOHandler.setDefaultFraming(IOHandler.Framing.DELIMITED);
+	}
+
+	/**
+	 * Messages reach the handler of their type, which replies on the connection they arrived on
+	 */
+	@Test
+	public void messagesReachTheirHandlers() throws Exception {
+		startServer();
+		this.server.getMessageCodecs().register(300, Point.class, POINT_CODEC,
+				(connection, point) -> connection.sendMessage(new Point(point.x() + 1, point.y() + 1)));
+		this.server.getMessageCodecs().register(1, String.class, STRING_CODEC,
+				(connection, text) -> connection.sendMessage(text.toUpperCase()));
+		List<Object> received = new CopyOnWriteArrayList<Object>();
+		connect();
+		this.client.getMessageCodecs().register(300, Point.class, POINT_CODEC, (connection, point) -> received.add(point));
+		this.client.getMessageCodecs().register(1, String.class, STRING_CODEC, (connection, text) -> received.add(text));
+		this.client.sendMessage(new Point(1, 2));
+		TestSupport.await(() -> received.size() == 1);
+		this.client.sendMessage("hello");
+		TestSupport.await(() -> received.size() == 2);
+		assertEquals(List.of(new Point(2, 3), "HELLO"), received);
+	}
+
+	/**
+	 * Payloads of typed messages pass through the layers of both sides
+	 */
+	@Test
+	public void messagesAreProcessedByLayers() throws Exception {
+		startServer();
+		scramble(this.server.getDataPreProcessor());
+		this.server.getMessageCodecs().register(7, String.class, STRING_CODEC, (connection, text) -> connection.sendMessage(text+"!"));
+		List<String> received = new CopyOnWriteArrayList<String>();
+		connect();
+		scramble(this.client.getDataPreProcessor());
+		this.client.getMessageCodecs().register(7, String.class, STRING_CODEC, (connection, text) -> received.add(text));
+		this.client.sendMessage("layered");
+		TestSupport.await(() -> received.size() == 1);
+		assertEquals("layered!", received.get(0));
+	}
+
+	/**
+	 * A message of an unknown type id is reported as a failed read and the connection keeps working
+	 */
+	@Test
+	public void unknownTypeIsReported() throws Exception {
+		startServer();
+		List<Exception> failures = new CopyOnWriteArrayList<Exception>();
+		this.server.registerListener(new IOHandlerListener() {
+			@Override
+			public void onDataReadFailed(Exception exception) {
+				failures.add(exception);
+			}
+		});
+		List<String> received = new CopyOnWriteArrayList<String>();
+		this.server.getMessageCodecs().register(2, String.class, STRING_CODEC, (connection, text) -> received.add(text));
+		connect();
+		this.client.getMessageCodecs().register(1, Point.class, POINT_CODEC);
+		this.client.getMessageCodecs().register(2, String.class, STRING_CODEC);
+		this.client.sendMessage(new Point(0, 0));
+		this.client.sendMessage("after");
+		TestSupport.await(() -> received.size() == 1);
+		assertEquals(1, failures.size());
+		assertInstanceOf(IllegalStateException.class, failures.get(0));
+	}
+
+	/**
+	 * Ids out of range, ids and types registered twice and messages without a codec are rejected
+	 */
+	@Test
+	public void invalidRegistrationsAreRejected() {
+		MessageCodecRegistry registry = new MessageCodecRegistry();
+		registry.register(1, Point.class, POINT_CODEC);
+		assertThrows(IllegalArgumentException.class, () -> registry.register(-1, String.class, STRING_CODEC));
+		assertThrows(IllegalArgumentException.class, () -> registry.register(MessageCodecRegistry.MAX_TYPE_ID + 1, String.class, STRING_CODEC));
+		assertThrows(IllegalArgumentException.class, () -> registry.register(1, String.class, STRING_CODEC));
+		assertThrows(IllegalArgumentException.class, () -> registry.register(2, Point.class, POINT_CODEC));
+		assertThrows(IllegalArgumentException.class, () -> registry.setHandler(String.class, (connection, text) -> {}));
+		startServer();
+		connect();
+		assertThrows(IllegalArgumentException.class, () -> this.client.sendMessage("no codec"));
+	}
+
+	/**
+	 * Messages are rejected with a clear exception before the first connect and while reconnecting
+	 */
+	@Test
+	public void messagesRequireAConnection() throws Exception {
+		startServer();
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		this.client.getMessageCodecs().register(1, String.class, STRING_CODEC);
+		assertThrows(IllegalStateException.class, () -> this.client.sendMessage("early"));
+		List<Integer> attempts = new CopyOnWriteArrayList<Integer>();
+		this.client.setReconnectPolicy(new ReconnectPolicy(5_000, 5_000, 0));
+		this.client.registerListener(new ClientListener() {
+			@Override
+			public void onReconnect(int attempt, long delay) {
+				attempts.add(attempt);
+			}
+		});
+		assertTrue(this.client.connect());
+		this.server.close();
+		TestSupport.await(() -> !attempts.isEmpty());
+		assertThrows(IllegalStateException.class, () -> this.client.sendMessage("during"));
+	}
+
+	/**
+	 * Adds a layer inverting every byte in both directions, so unprocessed payloads cannot be mistaken for processed ones
+	 * @param dataPreProcessor to add the layers to
+	 */
+	private static void scramble(DataPreProcessor dataPreProcessor) {
+		DataProcessingLayer invert = data -> {
+			byte[] inverted = new byte[data.length];
+			for(int i = 0; i < data.length; i++) {
+				inverted[i] = (byte)~data[i];
+			}
+			return inverted;
+		};
+		dataPreProcessor.addLayer(TransferMode.IN, invert);
+		dataPreProcessor.addLayer(TransferMode.OUT, invert);
+	}
+
+	/**
+	 * Starts a server on an ephemeral port
+	 */
+	private void startServer() {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {}
+		};
+		this.server.start();
+	}
+
+	/**
+	 * Connects the client to the server
+	 */
+	private void connect() {
+		this.client = new Client("127.0.0.1", this.server.getServerSocket().getLocalPort()) {
+			@Override
+			protected void processReceivedData(byte[] data) {}
+		};
+		assertTrue(this.client.connect());
+	}
+
+}
@@ -0,0 +1,149 @@
+package dev.bitbite.networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Connects clients to a server over a Unix domain socket
+ */
+public class UnixDomainSocketTest {
+
+	private Path directory;
+	private Path path;
+	private Server server;
+	private final List<Client> clients = new ArrayList<Client>();
+	private final List<String> received = new CopyOnWriteArrayList<String>();
+
+	@BeforeEach
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("uds");
+		this.path = this.directory.resolve("server.sock");
+	}
+
+	@AfterEach
+	public void close() throws IOException {
+		this.clients.forEach(Client::close);
+		if(this.server != null) {
+			this.server.close();
+		}
+		Files.deleteIfExists(this.path);
+		Files.delete(this.directory);
+	}
+
+	/**
+	 * Messages are exchanged in both directions, and every client gets an address of its own
+	 */
+	@Test
+	public void messagesTravelBothWays() throws Exception {
+		startServer();
+		List<String> first = new CopyOnWriteArrayList<String>();
+		List<String> second = new CopyOnWriteArrayList<String>();
+		connect(first).send("from first".getBytes(StandardCharsets.UTF_8));
+		connect(second).send("from second".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.received.size() == 2);
+		List<CommunicationHandler> handlers = this.server.getClientManager().getCommunicationHandler();
+		assertEquals(2, handlers.size());
+		assertNotEquals(handlers.get(0).getIP(), handlers.get(1).getIP());
+		this.server.broadcast("to all".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> first.contains("to all") && second.contains("to all"));
+	}
+
+	/**
+	 * The socket file is removed once the server is closed
+	 */
+	@Test
+	public void socketFileIsRemovedOnClose() throws Exception {
+		startServer();
+		assertTrue(Files.exists(this.path));
+		this.server.close();
+		this.server = null;
+		assertFalse(Files.exists(this.path));
+	}
+
+	/**
+	 * A socket file left behind by a server that did not shut down cleanly is replaced
+	 */
+	@Test
+	public void staleSocketFileIsReplaced() throws Exception {
+		try(ServerSocketChannel stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			stale.bind(UnixDomainSocketAddress.of(this.path));
+		}
+		assertTrue(Files.exists(this.path));
+		startServer();
+		connect(new CopyOnWriteArrayList<String>()).send("hello".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.received.contains("hello"));
+	}
+
+	/**
+	 * A regular file at the socket path is left alone and binding fails
+	 */
+	@Test
+	public void regularFileIsNotReplaced() throws Exception {
+		Files.writeString(this.path, "data");
+		assertThrows(BindException.class, () -> new UnixDomainServerSocket(this.path));
+		assertEquals("data", Files.readString(this.path));
+	}
+
+	/**
+	 * The socket of a running server is not taken over by a second one
+	 */
+	@Test
+	public void liveSocketIsNotReplaced() throws Exception {
+		startServer();
+		assertThrows(BindException.class, () -> new UnixDomainServerSocket(this.path));
+		connect(new CopyOnWriteArrayList<String>()).send("still there".getBytes(StandardCharsets.UTF_8));
+		TestSupport.await(() -> this.received.contains("still there"));
+	}
+
+	/**
+	 * Starts a server listening on the socket path, collecting the messages it receives
+	 */
+	private void startServer() {
+		this.server = new Server(0) {
+			@Override
+			protected void processReceivedData(String clientAddress, byte[] data) {
+				received.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		this.server.setUnixDomainSocketPath(this.path);
+		this.server.start();
+	}
+
+	/**
+	 * Connects a client to the socket path, collecting the messages it receives
+	 * @param messages to add the received messages to
+	 * @return the client
+	 */
+	private Client connect(List<String> messages) {
+		Client client = new Client(null, 0) {
+			@Override
+			protected void processReceivedData(byte[] data) {
+				messages.add(new String(data, StandardCharsets.UTF_8));
+			}
+		};
+		client.setUnixDomainSocketPath(this.path);
+		assertTrue(client.connect());
+		this.clients.add(client);
+		return client;
+	}
+
+}